@@ -144,6 +144,45 @@ public class RoiInfo {
         return synapseCountsPerRoi.get(roi);
     }
 
+    /**
+     * Returns a cluster name of the form "inputs-outputs", where inputs are the included ROIs holding more than
+     * threshold of the postsynaptic densities and outputs are the included ROIs holding more than threshold of the
+     * presynaptic densities, each joined with "." (or "none" if there are no such ROIs).
+     *
+     * @param totalPre     total presynaptic density count of the neuron
+     * @param totalPost    total postsynaptic density count of the neuron
+     * @param threshold    fraction of densities a ROI must exceed
+     * @param includedRois ROIs that may appear in the cluster name
+     * @return cluster name
+     */
+    public String getClusterName(long totalPre, long totalPost, double threshold, Set<String> includedRois) {
+
+        StringBuilder inputs = new StringBuilder();
+        StringBuilder outputs = new StringBuilder();
+        for (String roi : getSetOfRois()) {
+            if (includedRois.contains(roi)) {
+                if ((get(roi).getPre() * 1.0) / totalPre > threshold) {
+                    outputs.append(roi).append(".");
+                }
+                if ((get(roi).getPost() * 1.0) / totalPost > threshold) {
+                    inputs.append(roi).append(".");
+                }
+            }
+        }
+        if (outputs.length() > 0) {
+            outputs.deleteCharAt(outputs.length() - 1);
+        } else {
+            outputs.append("none");
+        }
+        if (inputs.length() > 0) {
+            inputs.deleteCharAt(inputs.length() - 1);
+        } else {
+            inputs.append("none");
+        }
+
+        return inputs + "-" + outputs;
+    }
+
     @Override
     public String toString() {
         return this.synapseCountsPerRoi.toString();
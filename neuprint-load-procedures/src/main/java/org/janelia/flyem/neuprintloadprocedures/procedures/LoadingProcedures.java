@@ -365,31 +365,7 @@ public class LoadingProcedures {
     }
 
     public static String generateClusterName(RoiInfo roiInfo, long totalPre, long totalPost, double threshold, Set<String> includedRois) {
-
-        StringBuilder inputs = new StringBuilder();
-        StringBuilder outputs = new StringBuilder();
-        for (String roi : roiInfo.getSetOfRois()) {
-            if (includedRois.contains(roi)) {
-                if ((roiInfo.get(roi).getPre() * 1.0) / totalPre > threshold) {
-                    outputs.append(roi).append(".");
-                }
-                if ((roiInfo.get(roi).getPost() * 1.0) / totalPost > threshold) {
-                    inputs.append(roi).append(".");
-                }
-            }
-        }
-        if (outputs.length() > 0) {
-            outputs.deleteCharAt(outputs.length() - 1);
-        } else {
-            outputs.append("none");
-        }
-        if (inputs.length() > 0) {
-            inputs.deleteCharAt(inputs.length() - 1);
-        } else {
-            inputs.append("none");
-        }
-
-        return inputs + "-" + outputs;
+        return roiInfo.getClusterName(totalPre, totalPost, threshold, includedRois);
     }
 
     public static void addWeightAndWeightHPToConnectsTo(Node connectionSet, int weight, int weightHP) {
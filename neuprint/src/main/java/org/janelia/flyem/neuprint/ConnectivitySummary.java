@@ -0,0 +1,400 @@
+package org.janelia.flyem.neuprint;
+
+import org.janelia.flyem.neuprint.model.Location;
+import org.janelia.flyem.neuprint.model.Neuron;
+import org.janelia.flyem.neuprint.model.Synapse;
+import org.janelia.flyem.neuprint.model.SynapticConnection;
+import org.janelia.flyem.neuprintloadprocedures.model.RoiInfo;
+import org.janelia.flyem.neuprintloadprocedures.model.RoiInfoWithHighPrecisionCounts;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Joins synapse, synaptic connection and neuron input in memory into the connectivity that a standard load
+ * computes in the database with the loader.addPropsAndConnectionInfoToSegment procedure: pre/post counts,
+ * roiInfo, Neuron label and cluster name for each segment, and the synapses, weight, weightHP and roiInfo of
+ * each ConnectionSet. Synapses are indexed by their packed location (see {@link #packLocation(Location)}).
+ * <p>
+ * The synapses are those a standard load creates: one per location from the synapse input (as merged by
+ * addSynapsesWithRois), plus a synapse without ROIs for each connection endpoint that has no synapse of that
+ * type at its location (as merged by addSynapsesTo).
+ */
+public class ConnectivitySummary {
+
+    private static final String PRE = "pre";
+    private static final String POST = "post";
+
+    private final Map<Long, List<Synapse>> synapsesByLocation = new LinkedHashMap<>();
+    private final List<Synapse> synapses = new ArrayList<>();
+    private final RoiInfo datasetRoiInfo = new RoiInfo();
+    private final Set<String> superLevelRois = new TreeSet<>();
+    private long totalPreCount = 0;
+    private long totalPostCount = 0;
+    private final Map<Long, SegmentSummary> segmentSummaries = new LinkedHashMap<>();
+    private final Map<List<Long>, ConnectionSetSummary> connectionSets = new LinkedHashMap<>();
+
+    /**
+     * Class constructor. Computes the summary of the provided input; any of the lists may be empty.
+     *
+     * @param synapseList     list of {@link Synapse} objects
+     * @param connectionsList list of {@link SynapticConnection} objects
+     * @param neuronList      list of {@link Neuron} objects
+     * @param preHPThreshold  high-precision threshold for presynaptic densities
+     * @param postHPThreshold high-precision threshold for postsynaptic densities
+     * @param neuronThreshold Neuron must have greater than or equal to neuronThreshold/5 presynaptic densities or greater than or equal to neuronThreshold postsynaptic densities to be given a :Neuron label
+     */
+    public ConnectivitySummary(final List<Synapse> synapseList,
+                               final List<SynapticConnection> connectionsList,
+                               final List<Neuron> neuronList,
+                               final double preHPThreshold,
+                               final double postHPThreshold,
+                               final long neuronThreshold) {
+        this(synapseList, connectionsList, neuronList, null, preHPThreshold, postHPThreshold, neuronThreshold);
+    }
+
+    /**
+     * Class constructor. Computes the summary of the provided input; any of the lists may be empty. The body
+     * containing each connection endpoint is looked up in locationIndex, which must hold the synapse locations
+     * of every neuron in neuronList, instead of in a map built on the heap.
+     *
+     * @param synapseList     list of {@link Synapse} objects
+     * @param connectionsList list of {@link SynapticConnection} objects
+     * @param neuronList      list of {@link Neuron} objects
+     * @param locationIndex   index filled from neuronList, or null to build a map of synapse locations to body ids
+     * @param preHPThreshold  high-precision threshold for presynaptic densities
+     * @param postHPThreshold high-precision threshold for postsynaptic densities
+     * @param neuronThreshold Neuron must have greater than or equal to neuronThreshold/5 presynaptic densities or greater than or equal to neuronThreshold postsynaptic densities to be given a :Neuron label
+     */
+    public ConnectivitySummary(final List<Synapse> synapseList,
+                               final List<SynapticConnection> connectionsList,
+                               final List<Neuron> neuronList,
+                               final LocationBodyIdIndex locationIndex,
+                               final double preHPThreshold,
+                               final double postHPThreshold,
+                               final long neuronThreshold) {
+
+        LOG.info("ConnectivitySummary: entry");
+
+        final Map<Long, Synapse> inputSynapses = new LinkedHashMap<>();
+        for (final Synapse synapse : synapseList) {
+            inputSynapses.put(synapse.getPackedLocation(), synapse);
+        }
+        for (final Map.Entry<Long, Synapse> entry : inputSynapses.entrySet()) {
+            synapsesByLocation.computeIfAbsent(entry.getKey(), k -> new ArrayList<>(1)).add(entry.getValue());
+        }
+        for (final SynapticConnection connection : connectionsList) {
+            addSynapseIfAbsent(connection.getPreLocation(), PRE);
+            addSynapseIfAbsent(connection.getPostLocation(), POST);
+        }
+        synapsesByLocation.values().forEach(synapses::addAll);
+
+        // dataset roiInfo and super level rois (the first listed roi of each synapse)
+        for (final Synapse synapse : synapses) {
+            final Set<String> rois = synapse.getRois();
+            if (rois.size() > 0) {
+                superLevelRois.add(rois.iterator().next());
+            }
+            if (synapse.getType().equals(PRE)) {
+                rois.forEach(datasetRoiInfo::incrementPreForRoi);
+                totalPreCount++;
+            } else if (synapse.getType().equals(POST)) {
+                rois.forEach(datasetRoiInfo::incrementPostForRoi);
+                totalPostCount++;
+            }
+        }
+        final Set<String> datasetRois = datasetRoiInfo.getSetOfRois();
+
+        // counts for each segment with a synapse set, and the body containing each synapse location
+        final Map<Long, Long> bodyIdByLocation = new HashMap<>();
+        final long preSynapseThreshold = (long) (neuronThreshold / 5.0F);
+        int missingSynapseCount = 0;
+        for (final Neuron neuron : neuronList) {
+            if (segmentSummaries.containsKey(neuron.getId()) || neuron.getSynapseLocationSet().isEmpty()) {
+                continue;
+            }
+            final SegmentSummary segment = new SegmentSummary(neuron.getId());
+            for (final Location location : neuron.getSynapseLocationSet()) {
+                final long packedLocation = packLocation(location);
+                final List<Synapse> synapsesAtLocation = synapsesByLocation.get(packedLocation);
+                if (synapsesAtLocation == null) {
+                    missingSynapseCount++;
+                    continue;
+                }
+                if (locationIndex == null) {
+                    bodyIdByLocation.put(packedLocation, neuron.getId());
+                }
+                // as in addSegments, the synapse set contains every synapse at the location
+                for (final Synapse synapse : synapsesAtLocation) {
+                    segment.synapses.add(synapse);
+                    if (synapse.getType().equals(PRE)) {
+                        synapse.getRois().forEach(segment.roiInfo::incrementPreForRoi);
+                        segment.pre++;
+                    } else if (synapse.getType().equals(POST)) {
+                        synapse.getRois().forEach(segment.roiInfo::incrementPostForRoi);
+                        segment.post++;
+                    }
+                }
+            }
+            segment.neuron = segment.pre >= preSynapseThreshold || segment.post >= neuronThreshold;
+            if (segment.neuron && segment.hasSynapses()) {
+                segment.clusterName = segment.roiInfo.getClusterName(segment.pre, segment.post, 0.10, superLevelRois);
+            }
+            segmentSummaries.put(neuron.getId(), segment);
+        }
+        if (missingSynapseCount > 0) {
+            LOG.warn(String.format("Skipped %d synapse set members that are not in the synapse or connection input.", missingSynapseCount));
+        }
+
+        // connection sets between segments containing both synapses of a connection; each synapse is counted once per set
+        for (final SynapticConnection connection : connectionsList) {
+            final long prePackedLocation = connection.getPackedPreLocation();
+            final long postPackedLocation = connection.getPackedPostLocation();
+            final Long preBodyId = locationIndex == null ? bodyIdByLocation.get(prePackedLocation) : bodyIdOrNull(locationIndex, prePackedLocation);
+            final Long postBodyId = locationIndex == null ? bodyIdByLocation.get(postPackedLocation) : bodyIdOrNull(locationIndex, postPackedLocation);
+            if (preBodyId != null && postBodyId != null) {
+                final ConnectionSetSummary connectionSet = connectionSets.computeIfAbsent(
+                        Arrays.asList(preBodyId, postBodyId),
+                        k -> new ConnectionSetSummary(preBodyId, postBodyId));
+                connectionSet.synapses.add(synapseOfType(synapsesByLocation.get(prePackedLocation), PRE));
+                connectionSet.synapses.add(synapseOfType(synapsesByLocation.get(postPackedLocation), POST));
+            }
+        }
+        for (final ConnectionSetSummary connectionSet : connectionSets.values()) {
+            for (final Synapse synapse : connectionSet.synapses) {
+                final boolean isPre = synapse.getType().equals(PRE);
+                final boolean isHighPrecision = synapse.getConfidence() > (isPre ? preHPThreshold : postHPThreshold);
+                if (!isPre) {
+                    connectionSet.weight++;
+                    if (isHighPrecision) {
+                        connectionSet.weightHP++;
+                    }
+                }
+                for (final String roi : synapse.getRois()) {
+                    if (!datasetRois.contains(roi)) {
+                        continue;
+                    }
+                    if (isPre) {
+                        connectionSet.roiInfo.incrementPreForRoi(roi);
+                        if (isHighPrecision) {
+                            connectionSet.roiInfo.incrementPreHPForRoi(roi);
+                        }
+                    } else {
+                        connectionSet.roiInfo.incrementPostForRoi(roi);
+                        if (isHighPrecision) {
+                            connectionSet.roiInfo.incrementPostHPForRoi(roi);
+                        }
+                    }
+                }
+            }
+        }
+
+        LOG.info(String.format("ConnectivitySummary: exit, %d synapses, %d segments with synapses, %d connection sets", synapses.size(), segmentSummaries.size(), connectionSets.size()));
+    }
+
+    /**
+     * @param location location
+     * @return location packed into a long, for use as a map key (see {@link Location#getPackedLocation()})
+     */
+    static long packLocation(final Location location) {
+        return location.getPackedLocation();
+    }
+
+    private static Long bodyIdOrNull(final LocationBodyIdIndex locationIndex, final long packedLocation) {
+        final long bodyId = locationIndex.get(packedLocation);
+        return bodyId == LocationBodyIdIndex.NO_BODY_ID ? null : bodyId;
+    }
+
+    private void addSynapseIfAbsent(final Location location, final String type) {
+        final List<Synapse> synapsesAtLocation = synapsesByLocation.computeIfAbsent(packLocation(location), k -> new ArrayList<>(1));
+        if (synapseOfType(synapsesAtLocation, type) == null) {
+            synapsesAtLocation.add(new Synapse(type, 0.0D, location));
+        }
+    }
+
+    private static Synapse synapseOfType(final List<Synapse> synapses, final String type) {
+        for (final Synapse synapse : synapses) {
+            if (synapse.getType().equals(type)) {
+                return synapse;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return all synapses of the load, in input order
+     */
+    public List<Synapse> getSynapses() {
+        return synapses;
+    }
+
+    /**
+     * @return roiInfo of all synapses, as stored on the Meta node
+     */
+    public RoiInfo getDatasetRoiInfo() {
+        return datasetRoiInfo;
+    }
+
+    /**
+     * @return first listed roi of each synapse
+     */
+    public Set<String> getSuperLevelRois() {
+        return superLevelRois;
+    }
+
+    public long getTotalPreCount() {
+        return totalPreCount;
+    }
+
+    public long getTotalPostCount() {
+        return totalPostCount;
+    }
+
+    /**
+     * @param bodyId body id
+     * @return summary of the segment, or null if the body has no synapse set
+     */
+    public SegmentSummary getSegmentSummary(final long bodyId) {
+        return segmentSummaries.get(bodyId);
+    }
+
+    /**
+     * @return summaries of all segments with synapse sets, in neuron input order
+     */
+    public Collection<SegmentSummary> getSegmentSummaries() {
+        return segmentSummaries.values();
+    }
+
+    /**
+     * @return summaries of all connection sets
+     */
+    public Collection<ConnectionSetSummary> getConnectionSets() {
+        return connectionSets.values();
+    }
+
+    /**
+     * Synapse set, counts, roiInfo and Neuron status of a segment.
+     */
+    public static class SegmentSummary {
+
+        private final long bodyId;
+        private final List<Synapse> synapses = new ArrayList<>();
+        private final RoiInfo roiInfo = new RoiInfo();
+        private long pre = 0;
+        private long post = 0;
+        private boolean neuron = false;
+        private String clusterName;
+
+        SegmentSummary(final long bodyId) {
+            this.bodyId = bodyId;
+        }
+
+        public long getBodyId() {
+            return bodyId;
+        }
+
+        /**
+         * @return synapses in the synapse set of the segment
+         */
+        public List<Synapse> getSynapses() {
+            return synapses;
+        }
+
+        public RoiInfo getRoiInfo() {
+            return roiInfo;
+        }
+
+        public long getPre() {
+            return pre;
+        }
+
+        public long getPost() {
+            return post;
+        }
+
+        /**
+         * @return true if the segment has pre or post synapses, in which case pre, post, roiInfo and rois are set on the segment
+         */
+        public boolean hasSynapses() {
+            return pre > 0 || post > 0;
+        }
+
+        /**
+         * @return true if the segment should be labeled a Neuron
+         */
+        public boolean isNeuron() {
+            return neuron;
+        }
+
+        /**
+         * @return cluster name of a Neuron with synapses, otherwise null
+         */
+        public String getClusterName() {
+            return clusterName;
+        }
+    }
+
+    /**
+     * Synapses, weights and roiInfo of the ConnectionSet from one segment to another.
+     */
+    public static class ConnectionSetSummary {
+
+        private final long preBodyId;
+        private final long postBodyId;
+        private final Set<Synapse> synapses = new LinkedHashSet<>();
+        private final RoiInfoWithHighPrecisionCounts roiInfo = new RoiInfoWithHighPrecisionCounts();
+        private int weight = 0;
+        private int weightHP = 0;
+
+        ConnectionSetSummary(final long preBodyId, final long postBodyId) {
+            this.preBodyId = preBodyId;
+            this.postBodyId = postBodyId;
+        }
+
+        public long getPreBodyId() {
+            return preBodyId;
+        }
+
+        public long getPostBodyId() {
+            return postBodyId;
+        }
+
+        /**
+         * @return pre synapses in the presynaptic segment and post synapses in the postsynaptic segment that are connected
+         */
+        public Set<Synapse> getSynapses() {
+            return synapses;
+        }
+
+        public RoiInfoWithHighPrecisionCounts getRoiInfo() {
+            return roiInfo;
+        }
+
+        /**
+         * @return number of post synapses, the ConnectsTo weight
+         */
+        public int getWeight() {
+            return weight;
+        }
+
+        /**
+         * @return number of post synapses above the high-precision threshold, the ConnectsTo weightHP
+         */
+        public int getWeightHP() {
+            return weightHP;
+        }
+    }
+
+    private static final Logger LOG = LoggerFactory.getLogger(ConnectivitySummary.class);
+
+}
@@ -0,0 +1,332 @@
+package org.janelia.flyem.neuprint;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import org.janelia.flyem.neuprint.model.Location;
+import org.janelia.flyem.neuprint.model.LocationSet;
+import org.janelia.flyem.neuprint.model.Neuron;
+import org.janelia.flyem.neuprint.model.Synapse;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PrimitiveIterator;
+import java.util.Set;
+
+/**
+ * Content hashes that a diff load (--diffLoad) stores in the database and compares with a new export to find what
+ * changed. Each Segment has a hash of its properties, ROIs, soma and synapse locations. Synapses and synaptic
+ * connections are grouped into blocks of {@value #BLOCK_SIZE} voxels on a side by the location of the synapse (the
+ * presynaptic location of a connection), so that a synapse added or removed in one place leaves the other blocks
+ * as they were. A block is stored as its entries, pairs of a packed location (see {@link Location#getPackedLocation()})
+ * and a value (the hash of a synapse, the packed postsynaptic location of a connection), sorted, and a hash of the
+ * entries. Only blocks whose hash changed are read back and compared entry by entry.
+ */
+public class ContentDigests {
+
+    private static final int BLOCK_SHIFT = 10;
+    public static final int BLOCK_SIZE = 1 << BLOCK_SHIFT;
+
+    private static final HashFunction HASH_FUNCTION = Hashing.murmur3_128();
+
+    /**
+     * @param packedLocation packed location
+     * @return key of the block containing the location
+     */
+    public static long blockOf(final long packedLocation) {
+        return Location.pack(Location.unpackX(packedLocation) >> BLOCK_SHIFT,
+                             Location.unpackY(packedLocation) >> BLOCK_SHIFT,
+                             Location.unpackZ(packedLocation) >> BLOCK_SHIFT);
+    }
+
+    /**
+     * @param synapse synapse
+     * @return hash of the type, confidence and ROIs of the synapse (its location is the key of its entry)
+     */
+    public static long synapseHash(final Synapse synapse) {
+        final Hasher hasher = HASH_FUNCTION.newHasher();
+        putString(hasher, synapse.getType());
+        hasher.putDouble(synapse.getConfidence());
+        putStrings(hasher, synapse.getRois());
+        return hasher.hash().asLong();
+    }
+
+    /**
+     * @param neuron neuron
+     * @return hash of the properties, ROIs, soma and synapse locations of the neuron
+     */
+    public static long neuronHash(final Neuron neuron) {
+        final Hasher hasher = HASH_FUNCTION.newHasher();
+        hasher.putLong(neuron.getId());
+        for (final String property : new String[]{neuron.getStatus(), neuron.getName(), neuron.getType(), neuron.getInstance(),
+                neuron.getPrimaryNeurite(), neuron.getMajorInput(), neuron.getMajorOutput(), neuron.getClonalUnit(),
+                neuron.getNeurotransmitter(), neuron.getProperty()}) {
+            putString(hasher, property);
+        }
+        hasher.putLong(neuron.getSize() == null ? -1L : neuron.getSize());
+        putStrings(hasher, neuron.getRois());
+        if (neuron.getSoma() == null) {
+            hasher.putBoolean(false);
+        } else {
+            hasher.putBoolean(true);
+            hasher.putLong(neuron.getSoma().getLocation().getPackedLocation());
+            hasher.putDouble(neuron.getSoma().getRadius() == null ? -1.0 : neuron.getSoma().getRadius());
+        }
+        final long[] synapseLocations = neuron.getSynapseLocationSet() == null ? new long[0] : packedLocations(neuron.getSynapseLocationSet());
+        Arrays.sort(synapseLocations);
+        for (final long synapseLocation : synapseLocations) {
+            hasher.putLong(synapseLocation);
+        }
+        return hasher.hash().asLong();
+    }
+
+    private static void putString(final Hasher hasher, final String value) {
+        if (value == null) {
+            hasher.putInt(-1);
+        } else {
+            hasher.putInt(value.length());
+            hasher.putString(value, StandardCharsets.UTF_8);
+        }
+    }
+
+    // in iteration order, since the first ROI of a synapse or neuron is its super level ROI
+    private static void putStrings(final Hasher hasher, final Iterable<String> values) {
+        if (values == null) {
+            hasher.putInt(-1);
+        } else {
+            int count = 0;
+            for (final String value : values) {
+                putString(hasher, value);
+                count++;
+            }
+            hasher.putInt(count);
+        }
+    }
+
+    /**
+     * The sorted entries of one block and their hash.
+     */
+    public static class BlockDigest {
+
+        private final long block;
+        private final long[] keys;
+        private final long[] values;
+        private final long hash;
+
+        /**
+         * Class constructor. Sorts the entries by key and then value.
+         *
+         * @param block  key of block
+         * @param keys   packed locations of entries
+         * @param values values of entries
+         */
+        public BlockDigest(final long block, final long[] keys, final long[] values) {
+            if (keys.length != values.length) {
+                throw new IllegalArgumentException("block " + block + " has " + keys.length + " keys and " + values.length + " values");
+            }
+            this.block = block;
+            this.keys = keys;
+            this.values = values;
+            sortEntries(keys, values, 0, keys.length - 1);
+            final Hasher hasher = HASH_FUNCTION.newHasher();
+            for (int i = 0; i < keys.length; i++) {
+                hasher.putLong(keys[i]).putLong(values[i]);
+            }
+            this.hash = hasher.hash().asLong();
+        }
+
+        /**
+         * @param block key of block
+         * @return digest of a block without entries
+         */
+        public static BlockDigest empty(final long block) {
+            return new BlockDigest(block, new long[0], new long[0]);
+        }
+
+        public long getBlock() {
+            return block;
+        }
+
+        public long[] getKeys() {
+            return keys;
+        }
+
+        public long[] getValues() {
+            return values;
+        }
+
+        public long getHash() {
+            return hash;
+        }
+
+        public int size() {
+            return keys.length;
+        }
+
+        /**
+         * Compares the entries of this (stored) digest with the entries of a current digest of the same block,
+         * calling the listener with each entry that is only in one of them.
+         *
+         * @param current  current digest
+         * @param listener receives the removed and added entries
+         */
+        public void diff(final BlockDigest current, final EntryDiffListener listener) {
+            int i = 0;
+            int j = 0;
+            while (i < keys.length || j < current.keys.length) {
+                final int order;
+                if (i == keys.length) {
+                    order = 1;
+                } else if (j == current.keys.length) {
+                    order = -1;
+                } else {
+                    order = compareEntries(keys[i], values[i], current.keys[j], current.values[j]);
+                }
+                if (order < 0) {
+                    listener.removed(keys[i], values[i]);
+                    i++;
+                } else if (order > 0) {
+                    listener.added(current.keys[j], current.values[j]);
+                    j++;
+                } else {
+                    i++;
+                    j++;
+                }
+            }
+        }
+
+        private static int compareEntries(final long key, final long value, final long otherKey, final long otherValue) {
+            final int order = Long.compare(key, otherKey);
+            return order != 0 ? order : Long.compare(value, otherValue);
+        }
+
+        // quicksort of the entries by key and then value
+        private static void sortEntries(final long[] keys, final long[] values, int low, int high) {
+            while (low < high) {
+                final int middle = low + (high - low) / 2;
+                final long pivotKey = keys[middle];
+                final long pivotValue = values[middle];
+                int i = low;
+                int j = high;
+                while (i <= j) {
+                    while (compareEntries(keys[i], values[i], pivotKey, pivotValue) < 0) {
+                        i++;
+                    }
+                    while (compareEntries(keys[j], values[j], pivotKey, pivotValue) > 0) {
+                        j--;
+                    }
+                    if (i <= j) {
+                        swap(keys, i, j);
+                        swap(values, i, j);
+                        i++;
+                        j--;
+                    }
+                }
+                // recurse into the smaller part to bound the stack depth
+                if (j - low < high - i) {
+                    sortEntries(keys, values, low, j);
+                    low = i;
+                } else {
+                    sortEntries(keys, values, i, high);
+                    high = j;
+                }
+            }
+        }
+
+        private static void swap(final long[] array, final int i, final int j) {
+            final long swapped = array[i];
+            array[i] = array[j];
+            array[j] = swapped;
+        }
+
+    }
+
+    /**
+     * Receives the entries that differ between a stored and a current block digest.
+     */
+    public interface EntryDiffListener {
+
+        /**
+         * @param key   packed location of entry only in the stored digest
+         * @param value value of entry
+         */
+        void removed(long key, long value);
+
+        /**
+         * @param key   packed location of entry only in the current digest
+         * @param value value of entry
+         */
+        void added(long key, long value);
+    }
+
+    /**
+     * Groups entries into blocks by the location of their key. Not thread safe.
+     */
+    public static class Builder {
+
+        private final Map<Long, Entries> entriesByBlock = new HashMap<>();
+
+        /**
+         * @param key   packed location
+         * @param value value of entry
+         */
+        public void add(final long key, final long value) {
+            entriesByBlock.computeIfAbsent(blockOf(key), block -> new Entries()).add(key, value);
+        }
+
+        /**
+         * @return digest of each block with entries, by block key
+         */
+        public Map<Long, BlockDigest> build() {
+            final Map<Long, BlockDigest> digests = new HashMap<>();
+            for (final Map.Entry<Long, Entries> blockEntries : entriesByBlock.entrySet()) {
+                final Entries entries = blockEntries.getValue();
+                digests.put(blockEntries.getKey(), new BlockDigest(blockEntries.getKey(),
+                                                                   Arrays.copyOf(entries.keys, entries.size),
+                                                                   Arrays.copyOf(entries.values, entries.size)));
+            }
+            entriesByBlock.clear();
+            return digests;
+        }
+
+        private static class Entries {
+
+            private long[] keys = new long[16];
+            private long[] values = new long[16];
+            private int size;
+
+            private void add(final long key, final long value) {
+                if (size == keys.length) {
+                    keys = Arrays.copyOf(keys, size * 2);
+                    values = Arrays.copyOf(values, size * 2);
+                }
+                keys[size] = key;
+                values[size] = value;
+                size++;
+            }
+        }
+
+    }
+
+    /**
+     * @param locations set of locations
+     * @return packed locations of the set, in iteration order
+     */
+    static long[] packedLocations(final Set<Location> locations) {
+        final long[] packedLocations = new long[locations.size()];
+        int i = 0;
+        if (locations instanceof LocationSet) {
+            for (final PrimitiveIterator.OfLong iterator = ((LocationSet) locations).packedIterator(); iterator.hasNext(); ) {
+                packedLocations[i++] = iterator.nextLong();
+            }
+        } else {
+            for (final Location location : locations) {
+                packedLocations[i++] = location.getPackedLocation();
+            }
+        }
+        return packedLocations;
+    }
+
+}
@@ -0,0 +1,436 @@
+package org.janelia.flyem.neuprint;
+
+import com.google.common.collect.Lists;
+import org.janelia.flyem.neuprint.model.Location;
+import org.janelia.flyem.neuprint.model.LocationSet;
+import org.janelia.flyem.neuprint.model.Neuron;
+import org.janelia.flyem.neuprint.model.Synapse;
+import org.janelia.flyem.neuprint.model.SynapticConnection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PrimitiveIterator;
+import java.util.Set;
+
+/**
+ * Applies a new export of a dataset to a database holding an earlier export (--diffLoad). The synapse, synaptic
+ * connection and neuron input are compared with the content hashes stored by the previous diff load (see
+ * {@link ContentDigests}), and only the differences are written: synapses and connections are added, deleted or
+ * updated in place, and each Segment that was added, removed or changed, or that contains a synapse that changed
+ * or whose connections changed, is deleted and added again with its connection info recomputed by the
+ * loader.addPropsAndConnectionInfoToSegment procedure. The content hashes are stored once the differences are
+ * written, so a diff load that stops partway can be run again.
+ * <p>
+ * Synapses and connections are read twice, once to compute the digests and once to collect the objects to write;
+ * neurons are read once, keeping the changed neurons in memory. Synapses must be compared before connections, and
+ * both before neurons, since the neuron comparison uses the synapse locations that changed.
+ * <p>
+ * The first diff load of a dataset finds no stored hashes: every synapse and connection is written as if added
+ * (existing nodes and relationships are merged, not replaced) and every Segment is replaced.
+ */
+public class DiffLoader {
+
+    static final String SYNAPSE_DIGESTS = "synapses";
+    static final String CONNECTION_DIGESTS = "connections";
+
+    /**
+     * Reads the input, passing each batch to the writer. Called once for each pass over the input.
+     *
+     * @param <T> type of object in each batch
+     */
+    @FunctionalInterface
+    public interface BatchSource<T> {
+        /**
+         * @param writer receives each batch
+         * @throws IOException if the input cannot be read
+         */
+        void readBatches(PipelinedBatchLoader.BatchWriter<T> writer) throws IOException;
+    }
+
+    /**
+     * Numbers of objects added, removed and changed by a comparison.
+     */
+    public static class Changes {
+
+        private final String name;
+        private long unchanged;
+        private long added;
+        private long removed;
+        private long changed;
+
+        Changes(final String name) {
+            this.name = name;
+        }
+
+        public long getUnchanged() {
+            return unchanged;
+        }
+
+        public long getAdded() {
+            return added;
+        }
+
+        public long getRemoved() {
+            return removed;
+        }
+
+        public long getChanged() {
+            return changed;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: %d unchanged, %d added, %d removed, %d changed", name, unchanged, added, removed, changed);
+        }
+    }
+
+    private final String dataset;
+    private final LocalDateTime timeStamp;
+    private final int writeBatchSize;
+    // locations of synapses added, removed or changed, or whose connections were; the bodies containing them are replaced
+    private final LocationSet changedSynapseLocations = new LocationSet();
+
+    /**
+     * Class constructor.
+     *
+     * @param dataset        dataset name
+     * @param timeStamp      time stamp for load
+     * @param writeBatchSize maximum number of objects written at a time
+     */
+    public DiffLoader(final String dataset,
+                      final LocalDateTime timeStamp,
+                      final int writeBatchSize) {
+        this.dataset = dataset;
+        this.timeStamp = timeStamp;
+        this.writeBatchSize = writeBatchSize;
+    }
+
+    /**
+     * @return locations of the synapses that changed so far, or whose connections did
+     */
+    public LocationSet getChangedSynapseLocations() {
+        return changedSynapseLocations;
+    }
+
+    /**
+     * Compares synapse input with the stored synapse digests and writes the differences.
+     *
+     * @param neo4jImporter importer used for reading stored hashes and writing
+     * @param synapses      synapse input
+     * @return numbers of synapses added, removed and changed
+     * @throws IOException if the input cannot be read
+     */
+    public Changes diffSynapses(final Neo4jImporter neo4jImporter, final BatchSource<Synapse> synapses) throws IOException {
+
+        final ContentDigests.Builder builder = new ContentDigests.Builder();
+        synapses.readBatches(batch -> {
+            for (final Synapse synapse : batch) {
+                builder.add(synapse.getPackedLocation(), ContentDigests.synapseHash(synapse));
+            }
+        });
+        final Map<Long, ContentDigests.BlockDigest> digests = builder.build();
+
+        final Changes changes = new Changes(SYNAPSE_DIGESTS);
+        final LocationSet added = new LocationSet();
+        final LocationSet removed = new LocationSet();
+        final LocationSet changed = new LocationSet();
+        final List<Long> removedBlocks = diffBlocks(neo4jImporter, SYNAPSE_DIGESTS, digests, changes, (stored, current) -> {
+            final LocationSet blockAdded = new LocationSet();
+            final LocationSet blockRemoved = new LocationSet();
+            stored.diff(current, new ContentDigests.EntryDiffListener() {
+                @Override
+                public void removed(final long key, final long value) {
+                    blockRemoved.addPacked(key);
+                }
+
+                @Override
+                public void added(final long key, final long value) {
+                    blockAdded.addPacked(key);
+                }
+            });
+            // a location with an entry removed and one added holds a synapse that changed
+            for (final PrimitiveIterator.OfLong iterator = blockRemoved.packedIterator(); iterator.hasNext(); ) {
+                final long location = iterator.nextLong();
+                (blockAdded.removePacked(location) ? changed : removed).addPacked(location);
+            }
+            added.addAll(blockAdded);
+        });
+        changes.added = added.size();
+        changes.removed = removed.size();
+        changes.changed = changed.size();
+        changes.unchanged -= changes.added + changes.changed;
+
+        neo4jImporter.deleteSynapses(dataset, ContentDigests.packedLocations(removed));
+
+        if (!added.isEmpty() || !changed.isEmpty()) {
+            final List<Synapse> addedSynapses = new ArrayList<>();
+            final List<Synapse> changedSynapses = new ArrayList<>();
+            synapses.readBatches(batch -> {
+                for (final Synapse synapse : batch) {
+                    if (added.containsPacked(synapse.getPackedLocation())) {
+                        addedSynapses.add(synapse);
+                    } else if (changed.containsPacked(synapse.getPackedLocation())) {
+                        changedSynapses.add(synapse);
+                    }
+                }
+                if (addedSynapses.size() + changedSynapses.size() >= writeBatchSize) {
+                    writeSynapses(neo4jImporter, addedSynapses, changedSynapses);
+                }
+            });
+            writeSynapses(neo4jImporter, addedSynapses, changedSynapses);
+        }
+
+        changedSynapseLocations.addAll(added);
+        changedSynapseLocations.addAll(removed);
+        changedSynapseLocations.addAll(changed);
+
+        writeDigests(neo4jImporter, SYNAPSE_DIGESTS, digests, removedBlocks);
+
+        LOG.info(changes.toString());
+        return changes;
+    }
+
+    private void writeSynapses(final Neo4jImporter neo4jImporter, final List<Synapse> addedSynapses, final List<Synapse> changedSynapses) {
+        if (!addedSynapses.isEmpty()) {
+            neo4jImporter.addSynapsesWithRois(dataset, addedSynapses, timeStamp);
+            addedSynapses.clear();
+        }
+        if (!changedSynapses.isEmpty()) {
+            neo4jImporter.updateSynapses(dataset, changedSynapses, timeStamp);
+            changedSynapses.clear();
+        }
+    }
+
+    /**
+     * Compares synaptic connection input with the stored connection digests and writes the differences. A
+     * connection has no content apart from its locations, so connections are only added or removed.
+     *
+     * @param neo4jImporter importer used for reading stored hashes and writing
+     * @param connections   synaptic connection input
+     * @return numbers of connections added and removed
+     * @throws IOException if the input cannot be read
+     */
+    public Changes diffConnections(final Neo4jImporter neo4jImporter, final BatchSource<SynapticConnection> connections) throws IOException {
+
+        final ContentDigests.Builder builder = new ContentDigests.Builder();
+        connections.readBatches(batch -> {
+            for (final SynapticConnection connection : batch) {
+                builder.add(connection.getPackedPreLocation(), connection.getPackedPostLocation());
+            }
+        });
+        final Map<Long, ContentDigests.BlockDigest> digests = builder.build();
+
+        final Changes changes = new Changes(CONNECTION_DIGESTS);
+        final Set<SynapticConnection> added = new HashSet<>();
+        final List<SynapticConnection> removed = new ArrayList<>();
+        final List<Long> removedBlocks = diffBlocks(neo4jImporter, CONNECTION_DIGESTS, digests, changes, (stored, current) ->
+                stored.diff(current, new ContentDigests.EntryDiffListener() {
+                    @Override
+                    public void removed(final long key, final long value) {
+                        removed.add(new SynapticConnection(key, value));
+                    }
+
+                    @Override
+                    public void added(final long key, final long value) {
+                        added.add(new SynapticConnection(key, value));
+                    }
+                }));
+        changes.added = added.size();
+        changes.removed = removed.size();
+        changes.unchanged -= changes.added;
+
+        for (final List<SynapticConnection> removedChunk : Lists.partition(removed, writeBatchSize)) {
+            neo4jImporter.deleteSynapsesTo(dataset, removedChunk);
+        }
+
+        if (!added.isEmpty()) {
+            final List<SynapticConnection> addedConnections = new ArrayList<>();
+            connections.readBatches(batch -> {
+                for (final SynapticConnection connection : batch) {
+                    if (added.contains(connection)) {
+                        addedConnections.add(connection);
+                    }
+                }
+                if (addedConnections.size() >= writeBatchSize) {
+                    neo4jImporter.addSynapsesTo(dataset, addedConnections, timeStamp);
+                    addedConnections.clear();
+                }
+            });
+            if (!addedConnections.isEmpty()) {
+                neo4jImporter.addSynapsesTo(dataset, addedConnections, timeStamp);
+            }
+        }
+
+        for (final SynapticConnection connection : added) {
+            changedSynapseLocations.addPacked(connection.getPackedPreLocation());
+            changedSynapseLocations.addPacked(connection.getPackedPostLocation());
+        }
+        for (final SynapticConnection connection : removed) {
+            changedSynapseLocations.addPacked(connection.getPackedPreLocation());
+            changedSynapseLocations.addPacked(connection.getPackedPostLocation());
+        }
+
+        writeDigests(neo4jImporter, CONNECTION_DIGESTS, digests, removedBlocks);
+
+        LOG.info(changes.toString());
+        return changes;
+    }
+
+    /**
+     * Compares neuron input with the content hashes stored on the Segments and replaces the Segments that were
+     * added, removed or changed, or that contain a synapse that changed in {@link #diffSynapses} or
+     * {@link #diffConnections}, recomputing their connection info. Removed Segments are deleted with their
+     * skeletons; replaced Segments keep theirs.
+     *
+     * @param neo4jImporter                      importer used for reading stored hashes and writing
+     * @param neurons                            neuron input
+     * @param addConnectionSetRoiInfoAndWeightHP boolean indicating if ConnectionSet nodes should have roiInfo property and weightHP should be added to ConnectsTo relationships
+     * @param preHPThreshold                     high-precision threshold for presynaptic densities
+     * @param postHPThreshold                    high-precision threshold for postsynaptic densities
+     * @param neuronThreshold                    Neuron must have greater than or equal to neuronThreshold/5 presynaptic densities or greater than or equal to neuronThreshold postsynaptic densities to be given a :Neuron label
+     * @return numbers of Segments added, removed and changed
+     * @throws IOException if the input cannot be read
+     */
+    public Changes diffNeurons(final Neo4jImporter neo4jImporter,
+                               final BatchSource<Neuron> neurons,
+                               final boolean addConnectionSetRoiInfoAndWeightHP,
+                               final double preHPThreshold,
+                               final double postHPThreshold,
+                               final long neuronThreshold) throws IOException {
+
+        final Changes changes = new Changes("neurons");
+        // bodies are removed from the stored hashes as they are read, leaving the bodies not in the input
+        final Map<Long, Long> storedHashes = neo4jImporter.getSegmentContentHashes(dataset);
+        final List<Neuron> changedNeurons = new ArrayList<>();
+        final Map<Long, Long> changedHashes = new LinkedHashMap<>();
+        neurons.readBatches(batch -> {
+            for (final Neuron neuron : batch) {
+                final long hash = ContentDigests.neuronHash(neuron);
+                final boolean stored = storedHashes.containsKey(neuron.getId());
+                final Long storedHash = storedHashes.remove(neuron.getId());
+                if (!stored) {
+                    changes.added++;
+                } else if (!Objects.equals(storedHash, hash) || containsChangedSynapse(neuron)) {
+                    changes.changed++;
+                } else {
+                    changes.unchanged++;
+                    continue;
+                }
+                changedNeurons.add(neuron);
+                changedHashes.put(neuron.getId(), hash);
+            }
+        });
+        changes.removed = storedHashes.size();
+
+        for (final List<Long> bodyIds : Lists.partition(new ArrayList<>(storedHashes.keySet()), writeBatchSize)) {
+            neo4jImporter.deleteSegments(dataset, bodyIds, true);
+        }
+        for (final List<Long> bodyIds : Lists.partition(new ArrayList<>(changedHashes.keySet()), writeBatchSize)) {
+            neo4jImporter.deleteSegments(dataset, bodyIds, false);
+        }
+        // every replaced Segment is added before connection info is computed, so that connection sets between them are complete
+        for (final List<Neuron> neuronChunk : Lists.partition(changedNeurons, writeBatchSize)) {
+            neo4jImporter.addSegments(dataset, neuronChunk, timeStamp);
+        }
+        for (final List<Neuron> neuronChunk : Lists.partition(changedNeurons, writeBatchSize)) {
+            neo4jImporter.addConnectionInfo(dataset, neuronChunk, addConnectionSetRoiInfoAndWeightHP, preHPThreshold, postHPThreshold, neuronThreshold);
+        }
+
+        final Map<Long, Long> hashChunk = new HashMap<>();
+        for (final Map.Entry<Long, Long> changedHash : changedHashes.entrySet()) {
+            hashChunk.put(changedHash.getKey(), changedHash.getValue());
+            if (hashChunk.size() == writeBatchSize) {
+                neo4jImporter.setSegmentContentHashes(dataset, hashChunk);
+                hashChunk.clear();
+            }
+        }
+        neo4jImporter.setSegmentContentHashes(dataset, hashChunk);
+
+        LOG.info(changes.toString());
+        return changes;
+    }
+
+    private boolean containsChangedSynapse(final Neuron neuron) {
+        if (changedSynapseLocations.isEmpty() || neuron.getSynapseLocationSet() == null) {
+            return false;
+        }
+        for (final Location location : neuron.getSynapseLocationSet()) {
+            if (changedSynapseLocations.contains(location)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @FunctionalInterface
+    private interface BlockComparison {
+        void compare(ContentDigests.BlockDigest stored, ContentDigests.BlockDigest current);
+    }
+
+    /**
+     * Compares current block digests with the stored hashes, reads the stored digests of the blocks that differ
+     * and passes each to the comparison with its current digest (an empty digest for a block with no stored
+     * digest or no current entries). Counts the entries of all current blocks as unchanged; the comparison
+     * subtracts those that are not.
+     *
+     * @return keys of the stored blocks that have no current entries
+     */
+    private List<Long> diffBlocks(final Neo4jImporter neo4jImporter,
+                                  final String kind,
+                                  final Map<Long, ContentDigests.BlockDigest> digests,
+                                  final Changes changes,
+                                  final BlockComparison comparison) {
+
+        final Map<Long, Long> storedHashes = neo4jImporter.getLoadDigestHashes(dataset, kind);
+        if (storedHashes.isEmpty() && !digests.isEmpty()) {
+            LOG.info(String.format("No %s digests stored for dataset %s; all %s are written", kind, dataset, kind));
+        }
+
+        final List<Long> differentBlocks = new ArrayList<>();
+        for (final ContentDigests.BlockDigest digest : digests.values()) {
+            changes.unchanged += digest.size();
+            final Long storedHash = storedHashes.remove(digest.getBlock());
+            if (storedHash == null || storedHash != digest.getHash()) {
+                differentBlocks.add(digest.getBlock());
+            }
+        }
+        final List<Long> removedBlocks = new ArrayList<>(storedHashes.keySet());
+        differentBlocks.addAll(removedBlocks);
+
+        for (final List<Long> blockChunk : Lists.partition(differentBlocks, writeBatchSize)) {
+            final Map<Long, ContentDigests.BlockDigest> storedDigests = neo4jImporter.getLoadDigests(dataset, kind, blockChunk);
+            for (final Long block : blockChunk) {
+                comparison.compare(storedDigests.getOrDefault(block, ContentDigests.BlockDigest.empty(block)),
+                                   digests.getOrDefault(block, ContentDigests.BlockDigest.empty(block)));
+            }
+        }
+
+        // only the blocks that differ are written
+        digests.keySet().retainAll(new HashSet<>(differentBlocks));
+        return removedBlocks;
+    }
+
+    private void writeDigests(final Neo4jImporter neo4jImporter,
+                              final String kind,
+                              final Map<Long, ContentDigests.BlockDigest> changedDigests,
+                              final List<Long> removedBlocks) {
+        for (final List<ContentDigests.BlockDigest> digestChunk : Lists.partition(new ArrayList<>(changedDigests.values()), writeBatchSize)) {
+            neo4jImporter.writeLoadDigests(dataset, kind, digestChunk, timeStamp);
+        }
+        for (final List<Long> blockChunk : Lists.partition(removedBlocks, writeBatchSize)) {
+            neo4jImporter.deleteLoadDigests(dataset, kind, blockChunk);
+        }
+    }
+
+    private static final Logger LOG = LoggerFactory.getLogger(DiffLoader.class);
+
+}
@@ -0,0 +1,289 @@
+package org.janelia.flyem.neuprint;
+
+import org.janelia.flyem.neuprint.json.JsonInputFiles;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Records which batches of an input file have been committed to the database so that a load that stops partway
+ * can be resumed. The journal is a text file written next to the input with a line for each file of the input
+ * (its path, size and modification time, so that changed, added or removed shards are noticed), one
+ * tab-separated line per committed batch (phase, input, batch number, index of the first array element in the
+ * batch and number of elements) and a line for each phase that completed. Each line is forced to disk before
+ * the next batch is recorded.
+ * <p>
+ * When a load is resumed, the elements of each phase up to the first batch that was not recorded are skipped.
+ * Batches written after that point (e.g. by other writer threads, or the batch being written when the load
+ * stopped) are written again, which the MERGE statements used by {@link Neo4jImporter} allow.
+ */
+public class LoadCheckpointJournal implements Closeable {
+
+    private static final String JOURNAL_SUFFIX = ".checkpoint";
+    private static final String DATASET = "dataset";
+    private static final String INPUT = "input";
+    private static final String BATCH = "batch";
+    private static final String COMPLETE = "complete";
+
+    private final Path journalPath;
+    private final String inputFile;
+    private final FileChannel channel;
+    private final Map<String, List<long[]>> committedRangesByPhase = new HashMap<>();
+    private final Map<String, Long> nextBatchNumberByPhase = new HashMap<>();
+    private final Set<String> completedPhases = new HashSet<>();
+
+    private LoadCheckpointJournal(final Path journalPath,
+                                  final String inputFile,
+                                  final FileChannel channel) {
+        this.journalPath = journalPath;
+        this.inputFile = inputFile;
+        this.channel = channel;
+    }
+
+    /**
+     * Names the journal after the input file, directory or glob pattern, with any character that does not
+     * belong in a file name (e.g. the * of a pattern) replaced, and places it in the same directory.
+     *
+     * @param inputFile path to input file or directory, or glob pattern
+     * @param dataset   dataset name
+     * @return path of the journal for loading the input into the dataset
+     */
+    public static Path journalPathFor(final String inputFile,
+                                      final String dataset) {
+        final Path inputPath = new File(inputFile).toPath().toAbsolutePath().normalize();
+        final String baseName = inputPath.getFileName() == null ? "input" : inputPath.getFileName().toString();
+        return inputPath.resolveSibling(sanitize(baseName) + "." + sanitize(dataset) + JOURNAL_SUFFIX);
+    }
+
+    private static String sanitize(final String name) {
+        return name.replaceAll("[^A-Za-z0-9._-]", "_");
+    }
+
+    /**
+     * @param inputFile path to input file or directory, or glob pattern
+     * @return path, size and modification time of each file of the input, tab-separated
+     * @throws IOException if the input does not exist or no files match it
+     */
+    private static List<String> fingerprint(final String inputFile) throws IOException {
+        final List<String> fileLines = new ArrayList<>();
+        for (final Path file : JsonInputFiles.resolve(inputFile)) {
+            fileLines.add(String.join("\t",
+                                      file.toAbsolutePath().normalize().toString(),
+                                      String.valueOf(Files.size(file)),
+                                      String.valueOf(Files.getLastModifiedTime(file).toMillis())));
+        }
+        return fileLines;
+    }
+
+    /**
+     * Opens the journal for loading an input file into a dataset. If resume is false, any existing journal is
+     * replaced. If resume is true, the batches recorded in an existing journal are read; the journal must have
+     * been written for the same dataset and the same input files, each with the same size and modification time.
+     *
+     * @param inputFile path to input file or directory, or glob pattern
+     * @param dataset   dataset name
+     * @param resume    true to continue a previous load of the input file
+     * @return the journal
+     * @throws IOException if the journal cannot be read or written
+     */
+    public static LoadCheckpointJournal open(final String inputFile,
+                                             final String dataset,
+                                             final boolean resume) throws IOException {
+
+        final Path journalPath = journalPathFor(inputFile, dataset);
+        final String inputPath = new File(inputFile).getAbsolutePath();
+        final List<String> inputFingerprint = fingerprint(inputFile);
+        final boolean resumeFromJournal = resume && Files.exists(journalPath);
+
+        String journalText = "";
+        if (resumeFromJournal) {
+            journalText = new String(Files.readAllBytes(journalPath), StandardCharsets.UTF_8);
+        } else if (resume) {
+            LOG.info("No checkpoint journal found at {}, loading {} from the beginning", journalPath, inputFile);
+        }
+
+        final FileChannel channel;
+        if (resumeFromJournal) {
+            // a line cut short when the load stopped is dropped; its batch is written again
+            journalText = journalText.substring(0, journalText.lastIndexOf('\n') + 1);
+            channel = FileChannel.open(journalPath, StandardOpenOption.WRITE);
+            channel.truncate(journalText.getBytes(StandardCharsets.UTF_8).length);
+            channel.position(channel.size());
+        } else {
+            channel = FileChannel.open(journalPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        }
+        final LoadCheckpointJournal journal = new LoadCheckpointJournal(journalPath, inputPath, channel);
+
+        try {
+            if (journalText.isEmpty()) {
+                journal.append(DATASET, dataset);
+                for (final String fileLine : inputFingerprint) {
+                    journal.append(INPUT, fileLine);
+                }
+            } else {
+                journal.read(journalText.split("\n"), dataset, inputFingerprint);
+            }
+        } catch (final IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+
+        return journal;
+    }
+
+    /**
+     * @return a journal that records nothing, for loads that cannot be resumed
+     */
+    public static LoadCheckpointJournal none() {
+        return new LoadCheckpointJournal(null, null, null);
+    }
+
+    private void read(final String[] lines,
+                      final String dataset,
+                      final List<String> inputFingerprint) {
+        final List<String> journalFingerprint = new ArrayList<>();
+        for (final String line : lines) {
+            final String[] fields = line.split("\t", -1);
+            switch (fields[0]) {
+                case DATASET:
+                    if (fields.length != 2 || !fields[1].equals(dataset)) {
+                        throw new IllegalArgumentException("checkpoint journal " + journalPath + " was not written for dataset " + dataset);
+                    }
+                    break;
+                case INPUT:
+                    journalFingerprint.add(line.substring(INPUT.length() + 1));
+                    break;
+                case BATCH:
+                    addBatch(fields[1], Long.parseLong(fields[3]), Long.parseLong(fields[4]), Long.parseLong(fields[5]));
+                    break;
+                case COMPLETE:
+                    completedPhases.add(fields[1]);
+                    break;
+                default:
+                    break;
+            }
+        }
+        if (!journalFingerprint.equals(inputFingerprint)) {
+            throw new IllegalArgumentException("input " + inputFile + " has changed since checkpoint journal " + journalPath + " was written");
+        }
+        LOG.info("Resuming from checkpoint journal {}: {}", journalPath, this);
+    }
+
+    private void addBatch(final String phase,
+                          final long batchNumber,
+                          final long firstIndex,
+                          final long count) {
+        committedRangesByPhase.computeIfAbsent(phase, p -> new ArrayList<>()).add(new long[]{firstIndex, firstIndex + count});
+        nextBatchNumberByPhase.merge(phase, batchNumber + 1, Math::max);
+    }
+
+    /**
+     * @param phase name of load phase
+     * @return true if the phase was recorded as complete
+     */
+    public synchronized boolean isPhaseComplete(final String phase) {
+        return completedPhases.contains(phase);
+    }
+
+    /**
+     * @param phase name of load phase
+     * @return number of array elements from the beginning of the input that have been committed in the phase
+     */
+    public synchronized long getCommittedCount(final String phase) {
+        final List<long[]> ranges = new ArrayList<>(committedRangesByPhase.getOrDefault(phase, new ArrayList<>()));
+        ranges.sort(Comparator.comparingLong(range -> range[0]));
+        long committedCount = 0;
+        for (final long[] range : ranges) {
+            if (range[0] > committedCount) {
+                break;
+            }
+            committedCount = Math.max(committedCount, range[1]);
+        }
+        return committedCount;
+    }
+
+    /**
+     * @param phase name of load phase
+     * @return number to give the next batch written in the phase
+     */
+    public synchronized long getNextBatchNumber(final String phase) {
+        return nextBatchNumberByPhase.getOrDefault(phase, 0L);
+    }
+
+    /**
+     * Records a committed batch.
+     *
+     * @param phase       name of load phase
+     * @param batchNumber batch number
+     * @param firstIndex  index in the input array of the first element in the batch
+     * @param count       number of elements in the batch
+     * @throws IOException if the journal cannot be written
+     */
+    public synchronized void recordBatch(final String phase,
+                                         final long batchNumber,
+                                         final long firstIndex,
+                                         final long count) throws IOException {
+        addBatch(phase, batchNumber, firstIndex, count);
+        append(BATCH, phase, inputFile, String.valueOf(batchNumber), String.valueOf(firstIndex), String.valueOf(count));
+    }
+
+    /**
+     * Records that all of a phase has been committed.
+     *
+     * @param phase name of load phase
+     * @throws IOException if the journal cannot be written
+     */
+    public synchronized void recordPhaseComplete(final String phase) throws IOException {
+        completedPhases.add(phase);
+        append(COMPLETE, phase, inputFile);
+    }
+
+    private void append(final String... fields) throws IOException {
+        if (channel == null) {
+            return;
+        }
+        final ByteBuffer buffer = ByteBuffer.wrap((String.join("\t", fields) + "\n").getBytes(StandardCharsets.UTF_8));
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        channel.force(false);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+        }
+    }
+
+    @Override
+    public synchronized String toString() {
+        final List<String> phases = new ArrayList<>();
+        for (final String phase : committedRangesByPhase.keySet()) {
+            phases.add(String.format("%s: %d committed", phase, getCommittedCount(phase)));
+        }
+        for (final String phase : completedPhases) {
+            phases.add(phase + ": complete");
+        }
+        return journalPath + " " + phases;
+    }
+
+    private static final Logger LOG = LoggerFactory.getLogger(LoadCheckpointJournal.class);
+
+}
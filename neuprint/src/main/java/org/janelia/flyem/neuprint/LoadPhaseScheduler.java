@@ -0,0 +1,260 @@
+package org.janelia.flyem.neuprint;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the phases of a load as a dependency graph. Each phase declares the inputs it needs and the outputs it
+ * produces (e.g. "Synapse nodes"), and depends on the earlier added phases that produce any of its inputs; an
+ * input that no phase produces is expected to be in the database already. When phases may run concurrently,
+ * a phase starts as soon as the phases it depends on have completed and it fits in the budget: the writer
+ * sessions of the running phases may not exceed the writer budget (a phase needing more than the budget runs
+ * alone), and only one phase that holds a whole input in memory runs at a time. Otherwise phases run one at a
+ * time in the order they were added.
+ * <p>
+ * If a phase fails, no further phases are started, and the first failure is thrown once the running phases
+ * have finished. The status and timing of every phase are logged as a load report at the end.
+ */
+public class LoadPhaseScheduler {
+
+    /**
+     * The work of a phase.
+     */
+    @FunctionalInterface
+    public interface PhaseAction {
+        /**
+         * @throws Exception if the phase fails
+         */
+        void run() throws Exception;
+    }
+
+    /**
+     * Status of a phase.
+     */
+    public enum Status {
+        PENDING, RUNNING, COMPLETE, FAILED
+    }
+
+    /**
+     * A phase of the load and its timing.
+     */
+    public static class Phase {
+
+        private final String name;
+        private final Set<String> inputs;
+        private final Set<String> outputs;
+        private final int writerSessions;
+        private final boolean holdsInputInMemory;
+        private final PhaseAction action;
+        private final List<Phase> dependencies = new ArrayList<>();
+        private Status status = Status.PENDING;
+        private Throwable failure;
+        private long startNanos;
+        private long endNanos;
+
+        private Phase(final String name,
+                      final Collection<String> inputs,
+                      final Collection<String> outputs,
+                      final int writerSessions,
+                      final boolean holdsInputInMemory,
+                      final PhaseAction action) {
+            this.name = name;
+            this.inputs = Collections.unmodifiableSet(new LinkedHashSet<>(inputs));
+            this.outputs = Collections.unmodifiableSet(new LinkedHashSet<>(outputs));
+            this.writerSessions = writerSessions;
+            this.holdsInputInMemory = holdsInputInMemory;
+            this.action = action;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public Set<String> getInputs() {
+            return inputs;
+        }
+
+        public Set<String> getOutputs() {
+            return outputs;
+        }
+
+        /**
+         * @return phases this phase waits for
+         */
+        public List<Phase> getDependencies() {
+            return Collections.unmodifiableList(dependencies);
+        }
+
+        public Status getStatus() {
+            return status;
+        }
+
+        private boolean isReady() {
+            return dependencies.stream().allMatch(dependency -> dependency.status == Status.COMPLETE);
+        }
+
+        private long getMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(endNanos - startNanos);
+        }
+    }
+
+    private final boolean concurrent;
+    private final int writerBudget;
+    private final List<Phase> phases = new ArrayList<>();
+    private long loadStartNanos;
+    private long loadEndNanos;
+
+    /**
+     * Class constructor.
+     *
+     * @param concurrent   true if independent phases may run at the same time
+     * @param writerBudget number of writer sessions the concurrently running phases may use
+     */
+    public LoadPhaseScheduler(final boolean concurrent, final int writerBudget) {
+        this.concurrent = concurrent;
+        this.writerBudget = Math.max(1, writerBudget);
+    }
+
+    /**
+     * Adds a phase, which depends on the phases already added that produce any of its inputs.
+     *
+     * @param name               name of phase, used in log messages
+     * @param inputs             data the phase needs
+     * @param outputs            data the phase produces
+     * @param writerSessions     number of database writer sessions the phase uses
+     * @param holdsInputInMemory true if the phase reads a whole input into memory
+     * @param action             work of the phase
+     * @return the added phase
+     */
+    public Phase addPhase(final String name,
+                          final Collection<String> inputs,
+                          final Collection<String> outputs,
+                          final int writerSessions,
+                          final boolean holdsInputInMemory,
+                          final PhaseAction action) {
+        final Phase phase = new Phase(name, inputs, outputs, writerSessions, holdsInputInMemory, action);
+        for (final Phase earlierPhase : phases) {
+            if (!Collections.disjoint(earlierPhase.outputs, phase.inputs)) {
+                phase.dependencies.add(earlierPhase);
+            }
+        }
+        phases.add(phase);
+        return phase;
+    }
+
+    /**
+     * @return phases in the order they were added
+     */
+    public List<Phase> getPhases() {
+        return Collections.unmodifiableList(phases);
+    }
+
+    /**
+     * Runs all phases and logs the load report.
+     *
+     * @throws Exception the first failure of a phase
+     */
+    public void run() throws Exception {
+
+        final ExecutorService phaseService = Executors.newFixedThreadPool(concurrent ? Math.max(1, phases.size()) : 1);
+        final CompletionService<Phase> completedPhases = new ExecutorCompletionService<>(phaseService);
+        final List<Phase> pendingPhases = new ArrayList<>(phases);
+        int runningPhaseCount = 0;
+        int writerSessionsInUse = 0;
+        boolean inputInMemory = false;
+        Throwable failure = null;
+
+        loadStartNanos = System.nanoTime();
+        try {
+            while (runningPhaseCount > 0 || (failure == null && !pendingPhases.isEmpty())) {
+
+                if (failure == null) {
+                    for (final Iterator<Phase> i = pendingPhases.iterator(); i.hasNext(); ) {
+                        final Phase phase = i.next();
+                        final boolean fits = runningPhaseCount == 0 ||
+                                (concurrent && writerSessionsInUse + phase.writerSessions <= writerBudget && !(inputInMemory && phase.holdsInputInMemory));
+                        if (phase.isReady() && fits) {
+                            i.remove();
+                            runningPhaseCount++;
+                            writerSessionsInUse += phase.writerSessions;
+                            inputInMemory |= phase.holdsInputInMemory;
+                            phase.status = Status.RUNNING;
+                            phase.startNanos = System.nanoTime();
+                            LOG.info(String.format("Starting %s phase", phase.name));
+                            completedPhases.submit(() -> {
+                                try {
+                                    phase.action.run();
+                                    phase.status = Status.COMPLETE;
+                                } catch (final Throwable t) {
+                                    phase.failure = t;
+                                    phase.status = Status.FAILED;
+                                }
+                                return phase;
+                            });
+                        } else if (!concurrent) {
+                            // in order, one at a time
+                            break;
+                        }
+                    }
+                }
+
+                if (runningPhaseCount == 0) {
+                    throw new IllegalStateException("no load phase can be started: " + pendingPhases.get(0).name);
+                }
+
+                final Phase phase = completedPhases.take().get();
+                runningPhaseCount--;
+                writerSessionsInUse -= phase.writerSessions;
+                inputInMemory &= !phase.holdsInputInMemory;
+                phase.endNanos = System.nanoTime();
+                if (phase.status == Status.FAILED && failure == null) {
+                    failure = phase.failure;
+                }
+                LOG.info(String.format("Finished %s phase (%s) in %d ms", phase.name, phase.status, phase.getMillis()));
+            }
+        } finally {
+            phaseService.shutdownNow();
+            loadEndNanos = System.nanoTime();
+            LOG.info(getReport());
+        }
+
+        if (failure instanceof Exception) {
+            throw (Exception) failure;
+        } else if (failure != null) {
+            throw (Error) failure;
+        }
+    }
+
+    /**
+     * @return status and timing of each phase
+     */
+    public String getReport() {
+        final StringBuilder report = new StringBuilder("Load report:");
+        long phaseMillis = 0;
+        for (final Phase phase : phases) {
+            report.append(String.format("%n  %-32s %-8s", phase.name, phase.status));
+            if (phase.status == Status.COMPLETE || phase.status == Status.FAILED) {
+                report.append(String.format(" started at %8d ms, took %8d ms", TimeUnit.NANOSECONDS.toMillis(phase.startNanos - loadStartNanos), phase.getMillis()));
+                phaseMillis += phase.getMillis();
+            }
+        }
+        report.append(String.format("%n  total %d ms, %d ms of phase time", TimeUnit.NANOSECONDS.toMillis(loadEndNanos - loadStartNanos), phaseMillis));
+        return report.toString();
+    }
+
+    private static final Logger LOG = LoggerFactory.getLogger(LoadPhaseScheduler.class);
+
+}
@@ -0,0 +1,243 @@
+package org.janelia.flyem.neuprint;
+
+import org.janelia.flyem.neuprint.model.Location;
+import org.janelia.flyem.neuprint.model.LocationSet;
+import org.janelia.flyem.neuprint.model.Neuron;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.PrimitiveIterator;
+import java.util.Set;
+
+/**
+ * An index from synapse location to the id of the body whose synapse set contains it, filled from
+ * {@link Neuron#getSynapseLocationSet()} while neurons are loaded. Entries are kept off the heap in an
+ * open-addressing hash table with linear probing, in a memory-mapped temporary file: each slot holds a packed
+ * location (see {@link Location#getPackedLocation()}) and a body id in 16 bytes, and the table is kept at most
+ * three quarters full, so a few hundred million locations take a few GB of file-backed memory and no heap.
+ * <p>
+ * Adding entries is not thread safe. Once filled, the index can be read by several threads.
+ */
+public class LocationBodyIdIndex implements Closeable {
+
+    /**
+     * Returned by {@link #get(long)} for a location that is not in the index.
+     */
+    public static final long NO_BODY_ID = -1L;
+
+    private static final int SLOT_BYTES = 16;
+    // slots per mapped segment, so that each segment is at most 1 GB
+    private static final int SEGMENT_SLOT_BITS = 26;
+    private static final long MIN_CAPACITY = 1L << 16;
+    // the highest bit of a packed location is always 0, so setting it in a stored key distinguishes a slot
+    // holding location 0 from the zeros of an empty slot
+    private static final long OCCUPIED = Long.MIN_VALUE;
+
+    private final Path directory;
+    private Path file;
+    private ByteBuffer[] segments;
+    private long capacity;
+    private long size;
+    private long conflictCount;
+
+    private LocationBodyIdIndex(final Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * @param directory directory in which the index file is written
+     * @return empty index
+     * @throws IOException if the index file cannot be created
+     */
+    public static LocationBodyIdIndex create(final Path directory) throws IOException {
+        Files.createDirectories(directory);
+        final LocationBodyIdIndex index = new LocationBodyIdIndex(directory);
+        index.mapTable(MIN_CAPACITY);
+        return index;
+    }
+
+    private void mapTable(final long newCapacity) throws IOException {
+        final Path newFile = Files.createTempFile(directory, "location-index", ".bin");
+        // also removed if the load exits without closing the index
+        newFile.toFile().deleteOnExit();
+        final long segmentSlots = Math.min(newCapacity, 1L << SEGMENT_SLOT_BITS);
+        final ByteBuffer[] newSegments = new ByteBuffer[(int) (newCapacity / segmentSlots)];
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(newFile.toFile(), "rw")) {
+            // a new file reads as zeros, so every slot starts out empty
+            randomAccessFile.setLength(newCapacity * SLOT_BYTES);
+            final FileChannel channel = randomAccessFile.getChannel();
+            for (int i = 0; i < newSegments.length; i++) {
+                final MappedByteBuffer segment = channel.map(FileChannel.MapMode.READ_WRITE, i * segmentSlots * SLOT_BYTES, segmentSlots * SLOT_BYTES);
+                newSegments[i] = segment.order(ByteOrder.nativeOrder());
+            }
+        }
+        file = newFile;
+        segments = newSegments;
+        capacity = newCapacity;
+    }
+
+    private static long slot(final long packedLocation, final long mask) {
+        final long h = packedLocation * 0x9E3779B97F4A7C15L;
+        return (h ^ (h >>> 32)) & mask;
+    }
+
+    private static long keyAt(final ByteBuffer[] table, final long slot) {
+        return table[(int) (slot >>> SEGMENT_SLOT_BITS)].getLong(offset(slot));
+    }
+
+    private static long bodyIdAt(final ByteBuffer[] table, final long slot) {
+        return table[(int) (slot >>> SEGMENT_SLOT_BITS)].getLong(offset(slot) + 8);
+    }
+
+    private static void setSlot(final ByteBuffer[] table, final long slot, final long key, final long bodyId) {
+        final ByteBuffer segment = table[(int) (slot >>> SEGMENT_SLOT_BITS)];
+        segment.putLong(offset(slot), key);
+        segment.putLong(offset(slot) + 8, bodyId);
+    }
+
+    private static int offset(final long slot) {
+        return (int) (slot & ((1L << SEGMENT_SLOT_BITS) - 1)) * SLOT_BYTES;
+    }
+
+    /**
+     * @param packedLocation packed location
+     * @param bodyId         id of body containing the location
+     * @return body id the location had before, or {@link #NO_BODY_ID} if it was not in the index
+     * @throws IOException if the index file cannot be grown
+     */
+    public long put(final long packedLocation, final long bodyId) throws IOException {
+        final long key = packedLocation | OCCUPIED;
+        final long mask = capacity - 1;
+        long i = slot(packedLocation, mask);
+        long storedKey;
+        while ((storedKey = keyAt(segments, i)) != 0) {
+            if (storedKey == key) {
+                final long previousBodyId = bodyIdAt(segments, i);
+                setSlot(segments, i, key, bodyId);
+                return previousBodyId;
+            }
+            i = (i + 1) & mask;
+        }
+        setSlot(segments, i, key, bodyId);
+        size++;
+        if (size > capacity - capacity / 4) {
+            resize(capacity << 1);
+        }
+        return NO_BODY_ID;
+    }
+
+    /**
+     * Adds the synapse locations of each neuron. A location already in the index with a different body id is
+     * given the id of the later neuron and counted as a conflict (see {@link #getConflictCount()}).
+     *
+     * @param neuronList neurons to add
+     * @throws IOException if the index file cannot be grown
+     */
+    public void addNeurons(final List<Neuron> neuronList) throws IOException {
+        for (final Neuron neuron : neuronList) {
+            final Set<Location> locations = neuron.getSynapseLocationSet();
+            if (locations == null) {
+                continue;
+            }
+            final long bodyId = neuron.getId();
+            if (locations instanceof LocationSet) {
+                final PrimitiveIterator.OfLong packedLocations = ((LocationSet) locations).packedIterator();
+                while (packedLocations.hasNext()) {
+                    addNeuronLocation(packedLocations.nextLong(), bodyId);
+                }
+            } else {
+                for (final Location location : locations) {
+                    addNeuronLocation(location.getPackedLocation(), bodyId);
+                }
+            }
+        }
+    }
+
+    private void addNeuronLocation(final long packedLocation, final long bodyId) throws IOException {
+        final long previousBodyId = put(packedLocation, bodyId);
+        if (previousBodyId != NO_BODY_ID && previousBodyId != bodyId) {
+            conflictCount++;
+        }
+    }
+
+    /**
+     * @param packedLocation packed location
+     * @return id of body containing the location, or {@link #NO_BODY_ID} if it is not in the index
+     */
+    public long get(final long packedLocation) {
+        final long key = packedLocation | OCCUPIED;
+        final long mask = capacity - 1;
+        long i = slot(packedLocation, mask);
+        long storedKey;
+        while ((storedKey = keyAt(segments, i)) != 0) {
+            if (storedKey == key) {
+                return bodyIdAt(segments, i);
+            }
+            i = (i + 1) & mask;
+        }
+        return NO_BODY_ID;
+    }
+
+    /**
+     * @param location location
+     * @return id of body containing the location, or {@link #NO_BODY_ID} if it is not in the index
+     */
+    public long get(final Location location) {
+        return get(location.getPackedLocation());
+    }
+
+    /**
+     * @return number of locations in the index
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * @return number of locations added by {@link #addNeurons(List)} that were already in the index with a different body id
+     */
+    public long getConflictCount() {
+        return conflictCount;
+    }
+
+    private void resize(final long newCapacity) throws IOException {
+        final ByteBuffer[] oldSegments = segments;
+        final long oldCapacity = capacity;
+        final Path oldFile = file;
+        mapTable(newCapacity);
+        final long mask = newCapacity - 1;
+        for (long slot = 0; slot < oldCapacity; slot++) {
+            final long key = keyAt(oldSegments, slot);
+            if (key != 0) {
+                long i = slot(key & ~OCCUPIED, mask);
+                while (keyAt(segments, i) != 0) {
+                    i = (i + 1) & mask;
+                }
+                setSlot(segments, i, key, bodyIdAt(oldSegments, slot));
+            }
+        }
+        // the old mapping is released when it is garbage collected
+        Files.deleteIfExists(oldFile);
+    }
+
+    /**
+     * Deletes the index file. The index cannot be used afterwards.
+     */
+    @Override
+    public void close() throws IOException {
+        segments = null;
+        if (file != null) {
+            Files.deleteIfExists(file);
+            file = null;
+        }
+    }
+
+}
@@ -0,0 +1,196 @@
+package org.janelia.flyem.neuprint;
+
+import org.janelia.flyem.neuprint.model.Location;
+import org.janelia.flyem.neuprint.model.Neuron;
+import org.janelia.flyem.neuprint.model.Skeleton;
+import org.janelia.flyem.neuprint.model.Synapse;
+import org.janelia.flyem.neuprint.model.SynapticConnection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Writes the synapses, synaptic connections, neurons and skeletons of a dataset as node and relationship
+ * CSV files for <a href="https://neo4j.com/docs/operations-manual/3.5/tools/import/" target="_blank">neo4j-admin import</a>,
+ * which builds a new database far faster than transactional loading. The files describe the same graph as a
+ * standard load with {@link Neo4jImporter} (see {@link OfflineGraphWriter}).
+ * <p>
+ * Besides the CSV files, the output directory gets an import-arguments.txt file to pass to
+ * {@code neo4j-admin import --f} and a schema.cypher file with the constraints and indices to create once
+ * the imported database is started.
+ */
+public class Neo4jAdminImportExporter extends OfflineGraphWriter {
+
+    static final String IMPORT_ARGUMENTS_FILE = "import-arguments.txt";
+    static final String SCHEMA_FILE = "schema.cypher";
+
+    private final File outputDirectory;
+
+    private final List<String> nodeFiles = new ArrayList<>();
+    private final List<String> relationshipFiles = new ArrayList<>();
+
+    /**
+     * Class constructor.
+     *
+     * @param outputDirectory                    directory for the CSV files (created if it does not exist)
+     * @param dataset                            dataset name
+     * @param dataModelVersion                   version of data model
+     * @param preHPThreshold                     high-precision threshold for presynaptic densities
+     * @param postHPThreshold                    high-precision threshold for postsynaptic densities
+     * @param addConnectionSetRoiInfoAndWeightHP boolean indicating if ConnectionSet nodes should have roiInfo property and weightHP should be added to ConnectsTo relationships
+     * @param neuronThreshold                    Neuron must have greater than or equal to neuronThreshold/5 presynaptic densities or greater than or equal to neuronThreshold postsynaptic densities to be given a :Neuron label
+     * @param addClusterNames                    boolean indicating if the cluster name index should be created
+     * @param timeStamp                          time stamp for load
+     */
+    public Neo4jAdminImportExporter(final File outputDirectory,
+                                    final String dataset,
+                                    final float dataModelVersion,
+                                    final double preHPThreshold,
+                                    final double postHPThreshold,
+                                    final boolean addConnectionSetRoiInfoAndWeightHP,
+                                    final long neuronThreshold,
+                                    final boolean addClusterNames,
+                                    final LocalDateTime timeStamp) {
+        super(dataset, dataModelVersion, preHPThreshold, postHPThreshold, addConnectionSetRoiInfoAndWeightHP, neuronThreshold, addClusterNames, timeStamp);
+        this.outputDirectory = outputDirectory;
+    }
+
+    /**
+     * Writes the CSV files for the provided input. Any of the lists may be empty.
+     *
+     * @param synapseList     list of {@link Synapse} objects
+     * @param connectionsList list of {@link SynapticConnection} objects
+     * @param neuronList      list of {@link Neuron} objects
+     * @param skeletonList    list of {@link Skeleton} objects
+     * @throws IOException if a file cannot be written
+     */
+    public void export(final List<Synapse> synapseList,
+                       final List<SynapticConnection> connectionsList,
+                       final List<Neuron> neuronList,
+                       final List<Skeleton> skeletonList) throws IOException {
+
+        LOG.info("export: entry");
+
+        Files.createDirectories(outputDirectory.toPath());
+        nodeFiles.clear();
+        relationshipFiles.clear();
+
+        writeGraph(synapseList, connectionsList, neuronList, skeletonList);
+        writeImportArguments();
+
+        LOG.info(String.format("Wrote neo4j-admin import files to %s. Import with: neo4j-admin import --f=%s", outputDirectory, new File(outputDirectory, IMPORT_ARGUMENTS_FILE)));
+        LOG.info("export: exit");
+    }
+
+    @Override
+    protected RowWriter nodeRows(final String name, final List<String> header) throws IOException {
+        final String fileName = name + ".csv";
+        nodeFiles.add(fileName);
+        return new CsvFile(new File(outputDirectory, fileName), header);
+    }
+
+    @Override
+    protected RowWriter relationshipRows(final String name, final List<String> header) throws IOException {
+        final String fileName = name + ".csv";
+        relationshipFiles.add(fileName);
+        return new CsvFile(new File(outputDirectory, fileName), header);
+    }
+
+    @Override
+    protected void writeSchema(final List<String> schemaTexts) throws IOException {
+        try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(new File(outputDirectory, SCHEMA_FILE).toPath(), StandardCharsets.UTF_8))) {
+            for (final String statement : schemaTexts) {
+                writer.println(statement + ";");
+            }
+        }
+    }
+
+    private void writeImportArguments() throws IOException {
+        try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(new File(outputDirectory, IMPORT_ARGUMENTS_FILE).toPath(), StandardCharsets.UTF_8))) {
+            for (final String nodeFile : nodeFiles) {
+                writer.println("--nodes=" + new File(outputDirectory, nodeFile).getAbsolutePath());
+            }
+            for (final String relationshipFile : relationshipFiles) {
+                writer.println("--relationships=" + new File(outputDirectory, relationshipFile).getAbsolutePath());
+            }
+            // roiInfo strings hold JSON, so quotes are escaped by doubling rather than with backslashes
+            writer.println("--quote=\"");
+            writer.println("--array-delimiter=;");
+        }
+    }
+
+    /**
+     * A CSV file in the format read by neo4j-admin import. Strings and points are quoted, with quotes escaped
+     * by doubling; null values are written as empty unquoted fields, which the importer skips.
+     */
+    static class CsvFile implements RowWriter {
+
+        private final Writer writer;
+        private final StringBuilder line = new StringBuilder();
+
+        CsvFile(final File file, final List<String> header) throws IOException {
+            this.writer = new BufferedWriter(Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8));
+            // header fields are written as is, since the importer reads names and types from them
+            writer.write(String.join(",", header) + "\n");
+        }
+
+        @Override
+        public void writeRow(final Object... values) throws IOException {
+            line.setLength(0);
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) {
+                    line.append(',');
+                }
+                appendValue(values[i]);
+            }
+            line.append('\n');
+            writer.write(line.toString());
+        }
+
+        private void appendValue(final Object value) {
+            if (value == null) {
+                return;
+            }
+            if (value instanceof Number || value instanceof Boolean || value instanceof LocalDateTime) {
+                line.append(value);
+            } else if (value instanceof Location) {
+                final Location location = (Location) value;
+                appendQuoted(point(location.getX(), location.getY(), location.getZ()));
+            } else if (value instanceof List) {
+                final List<String> elements = new ArrayList<>();
+                for (final Object element : (List<?>) value) {
+                    elements.add(String.valueOf(element));
+                }
+                appendQuoted(String.join(";", elements));
+            } else {
+                appendQuoted(value.toString());
+            }
+        }
+
+        private void appendQuoted(final String value) {
+            line.append('"').append(value.replace("\"", "\"\"")).append('"');
+        }
+
+        private static String point(final long x, final long y, final long z) {
+            return "{x:" + x + ", y:" + y + ", z:" + z + "}";
+        }
+
+        @Override
+        public void close() throws IOException {
+            writer.close();
+        }
+    }
+
+    private static final Logger LOG = LoggerFactory.getLogger(Neo4jAdminImportExporter.class);
+
+}
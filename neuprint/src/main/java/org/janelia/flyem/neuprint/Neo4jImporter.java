@@ -1,9 +1,17 @@
 package org.janelia.flyem.neuprint;
 
+import com.google.common.collect.Lists;
 import com.google.common.reflect.TypeToken;
 import com.google.gson.Gson;
+import org.janelia.flyem.neuprint.db.AdaptiveBatchSizeController;
+import org.janelia.flyem.neuprint.db.AdaptiveDbTransactionBatch;
 import org.janelia.flyem.neuprint.db.DbConfig;
 import org.janelia.flyem.neuprint.db.DbTransactionBatch;
+import org.janelia.flyem.neuprint.db.ParallelDbTransactionBatch;
+import org.janelia.flyem.neuprint.db.ProfilingTransactionBatch;
+import org.janelia.flyem.neuprint.db.QueryPlanCacheStats;
+import org.janelia.flyem.neuprint.db.QueryPlanCacheTrackingTransactionBatch;
+import org.janelia.flyem.neuprint.db.StatementProfile;
 import org.janelia.flyem.neuprint.db.StdOutTransactionBatch;
 import org.janelia.flyem.neuprint.db.TransactionBatch;
 import org.janelia.flyem.neuprint.model.Location;
@@ -18,24 +26,31 @@ import org.janelia.flyem.neuprintloadprocedures.model.SynapseCounter;
 import org.neo4j.driver.v1.AuthTokens;
 import org.neo4j.driver.v1.Driver;
 import org.neo4j.driver.v1.GraphDatabase;
+import org.neo4j.driver.v1.Record;
 import org.neo4j.driver.v1.Session;
 import org.neo4j.driver.v1.Statement;
 import org.neo4j.driver.v1.StatementResult;
 import org.neo4j.driver.v1.Transaction;
+import org.neo4j.driver.v1.Value;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
-import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 
 import static org.neo4j.driver.v1.Values.parameters;
 
@@ -44,9 +59,26 @@ import static org.neo4j.driver.v1.Values.parameters;
  */
 public class Neo4jImporter implements AutoCloseable {
 
+    // adaptive transaction sizes may grow to this multiple of the configured sizes
+    private static final int MAX_BATCH_SIZE_FACTOR = 10;
+    private static final long DEFAULT_TARGET_COMMIT_MILLIS = 1000;
+    private static final long INDEX_POLL_MILLIS = 500;
+    private static final long INDEX_PROGRESS_LOG_MILLIS = 60000;
+
     private final Driver driver;
     private final int statementsPerTransaction;
     private final int connectionInfoStatementsPerTransaction;
+    private final int rowsPerUnwindStatement;
+    private final int writerThreads;
+    private final QueryPlanCacheStats queryPlanCacheStats;
+    // null when transaction sizes are fixed
+    private final AdaptiveBatchSizeController statementBatchSizes;
+    private final AdaptiveBatchSizeController connectionInfoBatchSizes;
+    // null unless this is a dry run
+    private final StatementProfile profile;
+    private boolean useUnwindBatches = false;
+    private boolean useRoiPropertyMaps = false;
+    private boolean deferIndexes = false;
 
     /**
      * Class constructor.
@@ -60,6 +92,12 @@ public class Neo4jImporter implements AutoCloseable {
             this.driver = null;
             this.statementsPerTransaction = 1;
             this.connectionInfoStatementsPerTransaction = 1;
+            this.rowsPerUnwindStatement = 1;
+            this.writerThreads = 1;
+            this.queryPlanCacheStats = new QueryPlanCacheStats(1000);
+            this.statementBatchSizes = null;
+            this.connectionInfoBatchSizes = null;
+            this.profile = null;
 
         } else {
 
@@ -68,20 +106,135 @@ public class Neo4jImporter implements AutoCloseable {
                             dbConfig.getPassword()));
             this.statementsPerTransaction = dbConfig.getStatementsPerTransaction();
             this.connectionInfoStatementsPerTransaction = dbConfig.getConnectionInfoStatementsPerTransaction();
+            this.rowsPerUnwindStatement = dbConfig.getRowsPerUnwindStatement();
+            this.writerThreads = dbConfig.getWriterThreads();
+            this.queryPlanCacheStats = new QueryPlanCacheStats(dbConfig.getQueryCacheSize());
+            this.statementBatchSizes = adaptiveBatchSizes("statementsPerTransaction", statementsPerTransaction, dbConfig.getTargetCommitMillis());
+            this.connectionInfoBatchSizes = adaptiveBatchSizes("connectionInfoStatementsPerTransaction", connectionInfoStatementsPerTransaction, dbConfig.getTargetCommitMillis());
+            this.profile = null;
 
         }
 
     }
 
+    /**
+     * Class constructor for a dry run, which connects to no database: statements are recorded in the provided
+     * profile instead of being written, and reads of the Meta node and synapse counts find nothing. Transaction
+     * sizes, rows per UNWIND statement and writer threads are taken from the database configuration, if one is
+     * provided, so that the profile counts the statements and transactions of a load with that configuration
+     * (with the initial sizes when transaction sizes are adjusted toward a commit latency).
+     *
+     * @param dbConfig {@link DbConfig} object containing the database configuration, or null for the defaults
+     * @param profile  profile recording the statements
+     */
+    public Neo4jImporter(final DbConfig dbConfig, final StatementProfile profile) {
+        this.driver = null;
+        this.statementsPerTransaction = dbConfig == null ? 100 : dbConfig.getStatementsPerTransaction();
+        this.connectionInfoStatementsPerTransaction = dbConfig == null ? 2 : dbConfig.getConnectionInfoStatementsPerTransaction();
+        this.rowsPerUnwindStatement = dbConfig == null ? 1000 : dbConfig.getRowsPerUnwindStatement();
+        this.writerThreads = dbConfig == null ? 1 : dbConfig.getWriterThreads();
+        this.queryPlanCacheStats = profile.getQueryPlanCacheStats();
+        this.statementBatchSizes = null;
+        this.connectionInfoBatchSizes = null;
+        this.profile = profile;
+    }
+
     /**
      * Class constructor for testing.
      *
      * @param driver neo4j bolt driver
      */
     public Neo4jImporter(final Driver driver) {
+        this(driver, 1);
+    }
+
+    /**
+     * Class constructor for testing with concurrent writers.
+     *
+     * @param driver        neo4j bolt driver
+     * @param writerThreads number of sessions writing synapses, connections, segments and skeletons concurrently
+     */
+    public Neo4jImporter(final Driver driver, final int writerThreads) {
         this.driver = driver;
         this.statementsPerTransaction = 20;
         this.connectionInfoStatementsPerTransaction = 1;
+        this.rowsPerUnwindStatement = 20;
+        this.writerThreads = writerThreads;
+        this.queryPlanCacheStats = new QueryPlanCacheStats(1000);
+        this.statementBatchSizes = adaptiveBatchSizes("statementsPerTransaction", statementsPerTransaction, DEFAULT_TARGET_COMMIT_MILLIS);
+        this.connectionInfoBatchSizes = adaptiveBatchSizes("connectionInfoStatementsPerTransaction", connectionInfoStatementsPerTransaction, DEFAULT_TARGET_COMMIT_MILLIS);
+        this.profile = null;
+    }
+
+    private static AdaptiveBatchSizeController adaptiveBatchSizes(final String name,
+                                                                  final int initialBatchSize,
+                                                                  final long targetCommitMillis) {
+        return targetCommitMillis > 0 ?
+                new AdaptiveBatchSizeController(name, initialBatchSize, initialBatchSize * MAX_BATCH_SIZE_FACTOR, targetCommitMillis) :
+                null;
+    }
+
+    /**
+     * Selects how synapses, synaptic connections, segments and skeletons are written. When true, each
+     * transaction batch flush sends one parameterized UNWIND statement per entity kind carrying up to
+     * rowsPerUnwindStatement rows as a list parameter, instead of one statement per entity.
+     *
+     * @param useUnwindBatches true to load using UNWIND batches
+     */
+    public void setUseUnwindBatches(final boolean useUnwindBatches) {
+        this.useUnwindBatches = useUnwindBatches;
+    }
+
+    /**
+     * @return true if entities are written with UNWIND batches
+     */
+    public boolean isUsingUnwindBatches() {
+        return useUnwindBatches;
+    }
+
+    /**
+     * Selects how ROI membership is written for synapses and segments when loading one statement per entity.
+     * When true, the ROIs are passed as a map parameter and applied with SET += so that the query text is the
+     * same for every synapse or segment and its plan can be reused from the query cache. When false, each ROI
+     * name is written into the query text. UNWIND batches always pass ROIs as a map.
+     *
+     * @param useRoiPropertyMaps true to pass ROI membership as a map parameter
+     */
+    public void setUseRoiPropertyMaps(final boolean useRoiPropertyMaps) {
+        this.useRoiPropertyMaps = useRoiPropertyMaps;
+    }
+
+    /**
+     * @return true if ROI membership is passed as a map parameter
+     */
+    public boolean isUsingRoiPropertyMaps() {
+        return useRoiPropertyMaps;
+    }
+
+    /**
+     * Selects when indexes are created. When true, {@link #prepDatabase(String)} creates only the uniqueness
+     * constraints and the Synapse location index that MERGE and MATCH statements of the load rely on, and the other indexes (including the cluster name and ROI
+     * indexes) are not created until {@link #createDeferredIndexes(String, boolean)} is called after the data
+     * is loaded, so they are built once instead of being maintained during the load.
+     *
+     * @param deferIndexes true to defer index creation
+     */
+    public void setDeferIndexes(final boolean deferIndexes) {
+        this.deferIndexes = deferIndexes;
+    }
+
+    /**
+     * @return true if index creation is deferred
+     */
+    public boolean isDeferringIndexes() {
+        return deferIndexes;
+    }
+
+    /**
+     * @return {@link QueryPlanCacheStats} for all statements written by this importer
+     */
+    public QueryPlanCacheStats getQueryPlanCacheStats() {
+        return queryPlanCacheStats;
     }
 
     /**
@@ -89,8 +242,15 @@ public class Neo4jImporter implements AutoCloseable {
      */
     @Override
     public void close() {
-        driver.close();
-        LOG.info("Driver closed.");
+        LOG.info("Query {}", queryPlanCacheStats);
+        if (statementBatchSizes != null) {
+            statementBatchSizes.logSummary();
+            connectionInfoBatchSizes.logSummary();
+        }
+        if (driver != null) {
+            driver.close();
+            LOG.info("Driver closed.");
+        }
     }
 
     /**
@@ -99,17 +259,72 @@ public class Neo4jImporter implements AutoCloseable {
      * @return {@link TransactionBatch} object for storing and writing transactions
      */
     private TransactionBatch getBatch() {
+        return getBatch(statementsPerTransaction, statementBatchSizes);
+    }
+
+    /**
+     * Acquires a database transaction batch with the provided fixed size, or with sizes chosen by the provided controller.
+     *
+     * @param batchSize            number of statements per transaction if sizes are fixed
+     * @param adaptiveBatchSizes   controller choosing the number of statements per transaction, or null if sizes are fixed
+     * @return {@link TransactionBatch} object for storing and writing transactions
+     */
+    private TransactionBatch getBatch(final int batchSize,
+                                      final AdaptiveBatchSizeController adaptiveBatchSizes) {
         final TransactionBatch batch;
         if (driver == null) {
-            batch = new StdOutTransactionBatch();
+            batch = profile == null ? new StdOutTransactionBatch() : new ProfilingTransactionBatch(profile, adaptiveBatchSizes == null ? batchSize : adaptiveBatchSizes.getBatchSize());
+        } else if (adaptiveBatchSizes != null) {
+            batch = new AdaptiveDbTransactionBatch(driver.session(), adaptiveBatchSizes);
         } else {
-            batch = new DbTransactionBatch(driver.session(), statementsPerTransaction);
+            batch = new DbTransactionBatch(driver.session(), batchSize);
+        }
+        return new QueryPlanCacheTrackingTransactionBatch(batch, queryPlanCacheStats);
+    }
+
+    /**
+     * Acquires a database transaction batch for statements added with partition keys. When more than one
+     * writer thread is configured, statements are committed on that many sessions concurrently.
+     *
+     * @return {@link TransactionBatch} object for storing and writing transactions
+     */
+    private TransactionBatch getPartitionedBatch() {
+        if (driver == null || writerThreads < 2) {
+            return getBatch();
+        }
+        return new QueryPlanCacheTrackingTransactionBatch(new ParallelDbTransactionBatch(driver, statementsPerTransaction, writerThreads), queryPlanCacheStats);
+    }
+
+    /**
+     * Splits rows into chunks of at most rowsPerUnwindStatement rows such that all rows in a chunk have
+     * partition keys in the same writer partition. With a single writer thread rows are chunked in order.
+     *
+     * @param rows         rows to split
+     * @param partitionKey returns the partition key of a row
+     * @param <T>          row type
+     * @return list of chunks
+     */
+    private <T> List<List<T>> unwindChunks(final List<T> rows, final Function<T, Object> partitionKey) {
+        if (writerThreads < 2) {
+            return Lists.partition(rows, rowsPerUnwindStatement);
+        }
+        final List<List<T>> rowsPerPartition = new ArrayList<>();
+        for (int i = 0; i < writerThreads; i++) {
+            rowsPerPartition.add(new ArrayList<>());
+        }
+        for (final T row : rows) {
+            rowsPerPartition.get(ParallelDbTransactionBatch.partitionOf(partitionKey.apply(row), writerThreads)).add(row);
+        }
+        final List<List<T>> chunks = new ArrayList<>();
+        for (final List<T> partitionRows : rowsPerPartition) {
+            chunks.addAll(Lists.partition(partitionRows, rowsPerUnwindStatement));
         }
-        return batch;
+        return chunks;
     }
 
     /**
-     * Adds uniqueness constraints and indices to database.
+     * Adds uniqueness constraints and indices to database. If index creation is deferred, only the constraints and
+     * the indexes that statements of the load look up nodes with are added (see {@link #isCreatedBeforeLoad(String, String)}).
      *
      * @param dataset dataset name
      */
@@ -117,7 +332,26 @@ public class Neo4jImporter implements AutoCloseable {
 
         LOG.info("prepDatabase: entry");
 
-        final String[] prepTextArray = {
+        for (final String prepText : prepDatabaseTexts(dataset)) {
+            if (deferIndexes && !isCreatedBeforeLoad(prepText, dataset)) {
+                continue;
+            }
+            try (final TransactionBatch batch = getBatch()) {
+                batch.addStatement(new Statement(prepText));
+                batch.writeTransaction();
+            }
+        }
+
+        LOG.info("prepDatabase: exit");
+
+    }
+
+    /**
+     * @param dataset dataset name
+     * @return statements creating the uniqueness constraints and indices for the dataset
+     */
+    static String[] prepDatabaseTexts(final String dataset) {
+        return new String[]{
                 "CREATE CONSTRAINT ON (n:`" + dataset + "-Neuron`) ASSERT n.bodyId IS UNIQUE",
                 "CREATE CONSTRAINT ON (n:`" + dataset + "-Segment`) ASSERT n.bodyId IS UNIQUE",
                 "CREATE CONSTRAINT ON (s:`" + dataset + "-ConnectionSet`) ASSERT s.datasetBodyIds IS UNIQUE",
@@ -137,59 +371,180 @@ public class Neo4jImporter implements AutoCloseable {
                 "CREATE INDEX ON :Neuron(name)",
                 "CREATE INDEX ON :`" + dataset + "-Segment`(pre)",
                 "CREATE INDEX ON :`" + dataset + "-Segment`(post)",
-                "CREATE INDEX ON :`" + dataset + "-Synapse`(location)",
+                synapseLocationIndexText(dataset),
                 "CREATE CONSTRAINT ON (n:`" + dataset + "-Segment`) ASSERT n.mutationUuidAndId IS UNIQUE" //used for live updates
         };
+    }
 
-        for (final String prepText : prepTextArray) {
-            try (final TransactionBatch batch = getBatch()) {
-                batch.addStatement(new Statement(prepText));
-                batch.writeTransaction();
-            }
-        }
-
-        LOG.info("prepDatabase: exit");
+    private static String synapseLocationIndexText(final String dataset) {
+        return "CREATE INDEX ON :`" + dataset + "-Synapse`(location)";
+    }
 
+    /**
+     * Synapses are merged and matched by their Synapse label and location while synapses, synapse sets and
+     * diff loads are written, so that index is needed during the load like the uniqueness constraints;
+     * without it each of those lookups scans every Synapse node.
+     *
+     * @param prepText statement creating a constraint or index
+     * @param dataset  dataset name
+     * @return true if the statement is run before the load even when index creation is deferred
+     */
+    static boolean isCreatedBeforeLoad(final String prepText, final String dataset) {
+        return prepText.startsWith("CREATE CONSTRAINT") || prepText.equals(synapseLocationIndexText(dataset));
     }
 
     /**
-     * Creates index if clusterNames will be added.
+     * Creates index if clusterNames will be added (unless index creation is deferred).
      *
      * @param dataset dataset for load
      */
     public void prepDatabaseForClusterNames(final String dataset) {
 
-        LOG.info("prepDatabaseForClusterNames: entry");
+        if (deferIndexes) {
+            LOG.info("prepDatabaseForClusterNames: cluster name index deferred");
+            return;
+        }
 
-        final String prepText = "CREATE INDEX ON :`" + dataset + "-Neuron`(clusterName)";
+        LOG.info("prepDatabaseForClusterNames: entry");
 
         try (final TransactionBatch batch = getBatch()) {
-            batch.addStatement(new Statement(prepText));
+            batch.addStatement(new Statement(clusterNameIndexText(dataset)));
             batch.writeTransaction();
         }
 
         LOG.info("prepDatabaseForClusterNames: exit");
     }
 
+    static String clusterNameIndexText(final String dataset) {
+        return "CREATE INDEX ON :`" + dataset + "-Neuron`(clusterName)";
+    }
+
     /**
-     * Creates an index for each ROI present in the dataset. ROIs are stored as boolean properties (set to true) on Neuron/Segment nodes and Synapse (PreSyn and PostSyn) nodes.
+     * Creates an index for each ROI present in the dataset (unless index creation is deferred). ROIs are stored as boolean properties (set to true) on Neuron/Segment nodes and Synapse (PreSyn and PostSyn) nodes.
      *
      * @param dataset dataset for load
      */
     public void indexBooleanRoiProperties(String dataset) {
 
+        if (deferIndexes) {
+            return;
+        }
+
         LOG.info("indexBooleanRoiProperties: entry");
 
-        RoiInfo currentRoiInfo;
+        for (final String indexText : roiIndexTexts(dataset, getRoiNames(dataset))) {
+            try (final TransactionBatch batch = getBatch()) {
+                batch.addStatement(new Statement(indexText));
+                batch.writeTransaction();
+            }
+        }
+        LOG.info("indexBooleanRoiProperties: exit");
+
+    }
+
+    private Set<String> getRoiNames(final String dataset) {
+        if (driver == null) {
+            return new RoiInfo().getSetOfRois();
+        }
+        final RoiInfo currentRoiInfo;
         try (Session session = driver.session()) {
             currentRoiInfo = session.readTransaction(tx -> getMetaNodeRoiInfo(tx, dataset));
         }
-        if (currentRoiInfo == null) {
-            currentRoiInfo = new RoiInfo();
+        return currentRoiInfo == null ? new RoiInfo().getSetOfRois() : currentRoiInfo.getSetOfRois();
+    }
+
+    /**
+     * Creates the indexes whose creation was deferred (see {@link #setDeferIndexes(boolean)}) in one transaction
+     * and waits until every index in the database is online, logging how long each took to build. Indexes that
+     * already exist are left as they are, so this can be called again, e.g. after a resumed load.
+     *
+     * @param dataset         dataset name
+     * @param addClusterNames true if the cluster name index should be created
+     * @throws IllegalStateException if an index fails to build
+     */
+    public void createDeferredIndexes(final String dataset, final boolean addClusterNames) {
+
+        LOG.info("createDeferredIndexes: entry");
+
+        final List<String> indexTexts = new ArrayList<>();
+        for (final String prepText : prepDatabaseTexts(dataset)) {
+            if (!isCreatedBeforeLoad(prepText, dataset)) {
+                indexTexts.add(prepText);
+            }
+        }
+        if (addClusterNames) {
+            indexTexts.add(clusterNameIndexText(dataset));
+        }
+        if (driver != null) {
+            indexTexts.addAll(Arrays.asList(roiIndexTexts(dataset, getRoiNames(dataset))));
+        }
+
+        final long startMillis = System.currentTimeMillis();
+        try (final TransactionBatch batch = driver == null ? getBatch() : new DbTransactionBatch(driver.session(), indexTexts.size() + 1)) {
+            for (final String indexText : indexTexts) {
+                batch.addStatement(new Statement(indexText));
+            }
+            batch.writeTransaction();
+        }
+        LOG.info("createDeferredIndexes: created {} indexes", indexTexts.size());
+
+        if (driver != null) {
+            awaitIndexesOnline(startMillis);
         }
 
-        Set<String> roiNameSet = currentRoiInfo.getSetOfRois();
+        LOG.info("createDeferredIndexes: exit");
+
+    }
+
+    /**
+     * Waits until every index in the database is online and logs the time each one took, measured from startMillis.
+     */
+    private void awaitIndexesOnline(final long startMillis) {
+        final Map<String, Long> onlineMillis = new LinkedHashMap<>();
+        long lastProgressLogMillis = System.currentTimeMillis();
+        try (Session session = driver.session()) {
+            while (true) {
+                final List<Record> indexes = session.readTransaction(tx -> tx.run("CALL db.indexes() YIELD description, state RETURN description, state").list());
+                final long nowMillis = System.currentTimeMillis();
+                final List<String> building = new ArrayList<>();
+                for (final Record index : indexes) {
+                    final String description = index.get("description").asString();
+                    final String state = index.get("state").asString();
+                    if ("ONLINE".equals(state)) {
+                        if (!onlineMillis.containsKey(description)) {
+                            onlineMillis.put(description, nowMillis - startMillis);
+                            LOG.info("awaitIndexesOnline: {} online after {} ms", description, nowMillis - startMillis);
+                        }
+                    } else if ("FAILED".equals(state)) {
+                        throw new IllegalStateException("failed to build " + description);
+                    } else {
+                        building.add(description);
+                    }
+                }
+                if (building.isEmpty()) {
+                    break;
+                }
+                if (nowMillis - lastProgressLogMillis >= INDEX_PROGRESS_LOG_MILLIS) {
+                    LOG.info("awaitIndexesOnline: waiting for {} of {} indexes, e.g. {}", building.size(), indexes.size(), building.get(0));
+                    lastProgressLogMillis = nowMillis;
+                }
+                try {
+                    Thread.sleep(INDEX_POLL_MILLIS);
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("interrupted while waiting for indexes", e);
+                }
+            }
+        }
+        LOG.info("awaitIndexesOnline: all {} indexes online after {} ms", onlineMillis.size(), System.currentTimeMillis() - startMillis);
+    }
 
+    /**
+     * @param dataset    dataset name
+     * @param roiNameSet ROIs in the dataset
+     * @return statements creating an index on each ROI property of Neuron, Segment and Synapse nodes
+     */
+    static String[] roiIndexTexts(final String dataset, final Set<String> roiNameSet) {
         String[] indexTextArray = new String[roiNameSet.size() * 4];
         int i = 0;
         for (String roi : roiNameSet) {
@@ -199,15 +554,7 @@ public class Neo4jImporter implements AutoCloseable {
             indexTextArray[i + 3] = "CREATE INDEX ON :`" + dataset + "-PostSyn`(`" + roi + "`)";
             i += 4;
         }
-
-        for (final String indexText : indexTextArray) {
-            try (final TransactionBatch batch = getBatch()) {
-                batch.addStatement(new Statement(indexText));
-                batch.writeTransaction();
-            }
-        }
-        LOG.info("indexBooleanRoiProperties: exit");
-
+        return indexTextArray;
     }
 
     /**
@@ -303,6 +650,7 @@ public class Neo4jImporter implements AutoCloseable {
         LOG.info("addSynapses: entry");
 
         String roiPropertyBaseString = " s.`%s` = TRUE,";
+        String roiPropertyMapString = " s += $roiProps,";
 
         final String preSynapseText =
                 "MERGE (s:`" + dataset + "-Synapse`{location:$location}) " +
@@ -328,57 +676,117 @@ public class Neo4jImporter implements AutoCloseable {
                         "%s" + //placeholder for roi properties
                         " s.timeStamp=$timeStamp";
 
-        // get existing values from meta node
-        Set<String> currentSuperLevelRois;
-        RoiInfo currentRoiInfo;
-        try (Session session = driver.session()) {
-            currentSuperLevelRois = session.readTransaction(tx -> getMetaNodeSuperLevelRois(tx, dataset));
-            currentRoiInfo = session.readTransaction(tx -> getMetaNodeRoiInfo(tx, dataset));
-        }
-
-        RoiInfo updatedRoiInfo = currentRoiInfo;
-        Set<String> updatedSuperLevelRois = currentSuperLevelRois;
-
-        try (final TransactionBatch batch = getBatch()) {
-            for (final Synapse synapse : synapseList) {
-                // accumulates super level rois and roi info data
-                StringBuilder roiProperties = updateSuperRoisRoiInfoAndCreateRoiPropertyString(updatedSuperLevelRois, updatedRoiInfo, roiPropertyBaseString, synapse.getRois(), synapse.getType());
+        // super level rois and roi info for this list of synapses, added to the meta node values once written
+        RoiInfo updatedRoiInfo = new RoiInfo();
+        Set<String> updatedSuperLevelRois = new HashSet<>();
 
-                if (synapse.getType().equals("pre")) {
+        try (final TransactionBatch batch = getPartitionedBatch()) {
+            if (useUnwindBatches) {
+                addSynapseUnwindStatements(batch, dataset, synapseList, updatedSuperLevelRois, updatedRoiInfo, timeStamp);
+            } else {
+                final String preSynapseTextWithRoiMap = String.format(preSynapseText, roiPropertyMapString);
+                final String postSynapseTextWithRoiMap = String.format(postSynapseText, roiPropertyMapString);
+
+                for (final Synapse synapse : synapseList) {
+                    // accumulates super level rois and roi info data
+                    final String preSynapseTextWithRois;
+                    final String postSynapseTextWithRois;
+                    final Map<String, Object> roiPropertyMap;
+                    if (useRoiPropertyMaps) {
+                        roiPropertyMap = updateSuperRoisRoiInfoAndCreateRoiPropertyMap(updatedSuperLevelRois, updatedRoiInfo, synapse.getRois(), synapse.getType());
+                        preSynapseTextWithRois = preSynapseTextWithRoiMap;
+                        postSynapseTextWithRois = postSynapseTextWithRoiMap;
+                    } else {
+                        StringBuilder roiProperties = updateSuperRoisRoiInfoAndCreateRoiPropertyString(updatedSuperLevelRois, updatedRoiInfo, roiPropertyBaseString, synapse.getRois(), synapse.getType());
+                        roiPropertyMap = Collections.emptyMap();
+                        preSynapseTextWithRois = String.format(preSynapseText, roiProperties.toString());
+                        postSynapseTextWithRois = String.format(postSynapseText, roiProperties.toString());
+                    }
 
-                    String preSynapseTextWithRois = String.format(preSynapseText, roiProperties.toString());
-                    batch.addStatement(new Statement(
-                            preSynapseTextWithRois,
-                            parameters("location", synapse.getLocationAsPoint(),
-                                    "datasetLocation", dataset + ":" + synapse.getLocationString(),
-                                    "confidence", synapse.getConfidence(),
-                                    "type", synapse.getType(),
-                                    "timeStamp", timeStamp))
-                    );
-                } else if (synapse.getType().equals("post")) {
+                    if (synapse.getType().equals("pre")) {
+
+                        batch.addStatement(new Statement(
+                                preSynapseTextWithRois,
+                                parameters("location", synapse.getLocationAsPoint(),
+                                        "datasetLocation", dataset + ":" + synapse.getLocationString(),
+                                        "confidence", synapse.getConfidence(),
+                                        "type", synapse.getType(),
+                                        "roiProps", roiPropertyMap,
+                                        "timeStamp", timeStamp)),
+                                synapse.getLocation()
+                        );
+                    } else if (synapse.getType().equals("post")) {
+
+                        batch.addStatement(new Statement(
+                                postSynapseTextWithRois,
+                                parameters("location", synapse.getLocationAsPoint(),
+                                        "datasetLocation", dataset + ":" + synapse.getLocationString(),
+                                        "confidence", synapse.getConfidence(),
+                                        "type", synapse.getType(),
+                                        "roiProps", roiPropertyMap,
+                                        "timeStamp", timeStamp)),
+                                synapse.getLocation()
+                        );
 
-                    String postSynapseTextWithRois = String.format(postSynapseText, roiProperties.toString());
-                    batch.addStatement(new Statement(
-                            postSynapseTextWithRois,
-                            parameters("location", synapse.getLocationAsPoint(),
-                                    "datasetLocation", dataset + ":" + synapse.getLocationString(),
-                                    "confidence", synapse.getConfidence(),
-                                    "type", synapse.getType(),
-                                    "timeStamp", timeStamp))
-                    );
+                    }
 
                 }
-
             }
 
             batch.writeTransaction();
         }
 
-        //delay to allow transactions to complete before taking count
-        try {
-            TimeUnit.MILLISECONDS.sleep(10);
-        } catch (InterruptedException e) {
-            e.printStackTrace();
+        // running totals from the parsed synapses; synapses merged onto existing locations are corrected by reconcileSynapseCounts
+        long preCount = 0;
+        long postCount = 0;
+        for (final Synapse synapse : synapseList) {
+            if (synapse.getType().equals("pre")) {
+                preCount++;
+            } else if (synapse.getType().equals("post")) {
+                postCount++;
+            }
+        }
+
+        updateMetaNodeSynapseTotals(dataset, updatedSuperLevelRois, updatedRoiInfo, preCount, postCount, timeStamp);
+
+        LOG.info("addSynapses: exit");
+    }
+
+    /**
+     * Adds the super level rois, roi info counts and synapse counts for a list of synapses to the values on the Meta node.
+     * Synchronized so that synapse lists written on different threads do not overwrite each other's counts.
+     */
+    private synchronized void updateMetaNodeSynapseTotals(final String dataset,
+                                                          final Set<String> addedSuperLevelRois,
+                                                          final RoiInfo addedRoiInfo,
+                                                          final long addedPreCount,
+                                                          final long addedPostCount,
+                                                          final LocalDateTime timeStamp) {
+
+        Set<String> superLevelRois;
+        RoiInfo roiInfo;
+        SynapseCounter totals;
+        if (driver == null) {
+            superLevelRois = new HashSet<>();
+            roiInfo = new RoiInfo();
+            totals = new SynapseCounter();
+        } else {
+            try (Session session = driver.session()) {
+                superLevelRois = session.readTransaction(tx -> getMetaNodeSuperLevelRois(tx, dataset));
+                roiInfo = session.readTransaction(tx -> getMetaNodeRoiInfo(tx, dataset));
+                totals = session.readTransaction(tx -> getMetaNodeSynapseTotals(tx, dataset));
+            }
+        }
+
+        superLevelRois.addAll(addedSuperLevelRois);
+        for (String roi : addedRoiInfo.getSetOfRois()) {
+            SynapseCounter current = roiInfo.get(roi);
+            SynapseCounter added = addedRoiInfo.get(roi);
+            if (current == null) {
+                roiInfo.addSynapseCountsForRoi(roi, added.getPre(), added.getPost());
+            } else {
+                roiInfo.addSynapseCountsForRoi(roi, current.getPre() + added.getPre(), current.getPost() + added.getPost());
+            }
         }
 
         final String metaNodeString = "MATCH (m:Meta{dataset:$dataset}) SET " +
@@ -388,36 +796,21 @@ public class Neo4jImporter implements AutoCloseable {
                 "m.totalPreCount=$totalPreCount, " +
                 "m.totalPostCount=$totalPostCount";
 
-        long totalPreCount;
-        long totalPostCount;
-        RoiInfo newRoiInfo = new RoiInfo();
-        try (Session session = driver.session()) {
-            totalPreCount = session.readTransaction(tx -> getTotalPreCount(tx, dataset));
-            totalPostCount = session.readTransaction(tx -> getTotalPostCount(tx, dataset));
-            for (String roi : updatedRoiInfo.getSetOfRois()) {
-                long roiPreCount = session.readTransaction(tx -> getRoiPreCount(tx, dataset, roi));
-                long roiPostCount = session.readTransaction(tx -> getRoiPostCount(tx, dataset, roi));
-                newRoiInfo.addSynapseCountsForRoi(roi, roiPreCount, roiPostCount);
-            }
-        }
-
         try (final TransactionBatch batch = getBatch()) {
             batch.addStatement(new Statement(
                     metaNodeString,
                     parameters(
                             "dataset", dataset,
                             "timeStamp", timeStamp,
-                            "roiInfo", newRoiInfo.getAsJsonString(),
-                            "superLevelRois", updatedSuperLevelRois,
-                            "totalPreCount", totalPreCount,
-                            "totalPostCount", totalPostCount
+                            "roiInfo", roiInfo.getAsJsonString(),
+                            "superLevelRois", superLevelRois,
+                            "totalPreCount", totals.getPre() + addedPreCount,
+                            "totalPostCount", totals.getPost() + addedPostCount
                     )
 
             ));
             batch.writeTransaction();
         }
-
-        LOG.info("addSynapses: exit");
     }
 
     /**
@@ -440,49 +833,102 @@ public class Neo4jImporter implements AutoCloseable {
                 "MERGE (t:`" + dataset + "-PostSyn`{location:$postlocation}) SET t.timeStamp=$timeStamp \n" +
                 "MERGE (s)-[:SynapsesTo]->(t)";
 
-        try (final TransactionBatch batch = getBatch()) {
-            for (SynapticConnection connection : synapticConnectionList) {
-                batch.addStatement(new Statement(preSynapseMergeText,
-                        parameters(
-                                "prelocation", connection.getPreLocation().getAsPoint(),
-                                "timeStamp", timeStamp
-                        )
-                ));
-                batch.addStatement(new Statement(postSynapseMergeText,
-                        parameters(
-                                "postlocation", connection.getPostLocation().getAsPoint(),
-                                "timeStamp", timeStamp
-                        )
-                ));
-                batch.addStatement(new Statement(synapseRelationsText,
-                        parameters(
-                                "prelocation", connection.getPreLocation().getAsPoint(),
-                                "timeStamp", timeStamp,
-                                "postlocation", connection.getPostLocation().getAsPoint()
-                        )
-                ));
+        try (final TransactionBatch batch = getPartitionedBatch()) {
+            if (useUnwindBatches) {
+                addSynapsesToUnwindStatements(batch, dataset, synapticConnectionList, timeStamp);
+            } else {
+                for (SynapticConnection connection : synapticConnectionList) {
+                    // keyed by presynaptic location so that each presynaptic density is only written by one partition
+                    batch.addStatement(new Statement(preSynapseMergeText,
+                            parameters(
+                                    "prelocation", connection.getPreLocation().getAsPoint(),
+                                    "timeStamp", timeStamp
+                            )
+                    ), connection.getPreLocation());
+                    batch.addStatement(new Statement(postSynapseMergeText,
+                            parameters(
+                                    "postlocation", connection.getPostLocation().getAsPoint(),
+                                    "timeStamp", timeStamp
+                            )
+                    ), connection.getPreLocation());
+                    batch.addStatement(new Statement(synapseRelationsText,
+                            parameters(
+                                    "prelocation", connection.getPreLocation().getAsPoint(),
+                                    "timeStamp", timeStamp,
+                                    "postlocation", connection.getPostLocation().getAsPoint()
+                            )
+                    ), connection.getPreLocation());
+                }
             }
             batch.writeTransaction();
         }
 
-        //delay to allow transactions to complete before taking count
-        // note pre and post counts may have changed if synapses in the connections file were not listed in the synapses file
-        try {
-            TimeUnit.MILLISECONDS.sleep(10);
-        } catch (InterruptedException e) {
-            e.printStackTrace();
+        // note pre and post counts may have changed if synapses in the connections file were not listed in the synapses file.
+        // these are counted by reconcileSynapseCounts once all connections have been loaded.
+        final String metaNodeString = "MATCH (m:Meta{dataset:$dataset}) SET " +
+                "m.lastDatabaseEdit=$timeStamp";
+
+        try (final TransactionBatch batch = getBatch()) {
+            batch.addStatement(new Statement(
+                    metaNodeString,
+                    parameters(
+                            "dataset", dataset,
+                            "timeStamp", timeStamp
+                    )
+
+            ));
+            batch.writeTransaction();
         }
 
+        LOG.info("addSynapsesTo: exit");
+    }
+
+    /**
+     * Counts the PreSyn and PostSyn nodes in the database, in total and per ROI, and sets the totalPreCount,
+     * totalPostCount and roiInfo properties on the Meta node to the result. {@link #addSynapsesWithRois} keeps
+     * these properties up to date from the synapses it is given, which does not account for synapses listed more
+     * than once or synapses created by {@link #addSynapsesTo}. This should be called once after all synapses and
+     * synaptic connections have been loaded.
+     *
+     * @param dataset   dataset name
+     * @param timeStamp time stamp for load
+     */
+    public void reconcileSynapseCounts(final String dataset, final LocalDateTime timeStamp) {
+
+        LOG.info("reconcileSynapseCounts: entry");
+
         final String metaNodeString = "MATCH (m:Meta{dataset:$dataset}) SET " +
                 "m.lastDatabaseEdit=$timeStamp," +
+                "m.roiInfo=$roiInfo, " +
                 "m.totalPreCount=$totalPreCount, " +
                 "m.totalPostCount=$totalPostCount";
 
         long totalPreCount;
         long totalPostCount;
-        try (Session session = driver.session()) {
-            totalPreCount = session.readTransaction(tx -> getTotalPreCount(tx, dataset));
-            totalPostCount = session.readTransaction(tx -> getTotalPostCount(tx, dataset));
+        SynapseCounter runningTotals;
+        RoiInfo runningRoiInfo;
+        RoiInfo newRoiInfo = new RoiInfo();
+        if (driver == null) {
+            runningTotals = new SynapseCounter();
+            totalPreCount = 0;
+            totalPostCount = 0;
+        } else {
+            try (Session session = driver.session()) {
+                runningTotals = session.readTransaction(tx -> getMetaNodeSynapseTotals(tx, dataset));
+                runningRoiInfo = session.readTransaction(tx -> getMetaNodeRoiInfo(tx, dataset));
+                totalPreCount = session.readTransaction(tx -> getTotalPreCount(tx, dataset));
+                totalPostCount = session.readTransaction(tx -> getTotalPostCount(tx, dataset));
+                for (String roi : runningRoiInfo.getSetOfRois()) {
+                    long roiPreCount = session.readTransaction(tx -> getRoiPreCount(tx, dataset, roi));
+                    long roiPostCount = session.readTransaction(tx -> getRoiPostCount(tx, dataset, roi));
+                    newRoiInfo.addSynapseCountsForRoi(roi, roiPreCount, roiPostCount);
+                }
+            }
+        }
+
+        if (runningTotals.getPre() != totalPreCount || runningTotals.getPost() != totalPostCount) {
+            LOG.info("reconcileSynapseCounts: running totals pre " + runningTotals.getPre() + ", post " + runningTotals.getPost() +
+                    " corrected to pre " + totalPreCount + ", post " + totalPostCount);
         }
 
         try (final TransactionBatch batch = getBatch()) {
@@ -491,6 +937,7 @@ public class Neo4jImporter implements AutoCloseable {
                     parameters(
                             "dataset", dataset,
                             "timeStamp", timeStamp,
+                            "roiInfo", newRoiInfo.getAsJsonString(),
                             "totalPreCount", totalPreCount,
                             "totalPostCount", totalPostCount
                     )
@@ -499,7 +946,7 @@ public class Neo4jImporter implements AutoCloseable {
             batch.writeTransaction();
         }
 
-        LOG.info("addSynapsesTo: exit");
+        LOG.info("reconcileSynapseCounts: exit");
     }
 
     /**
@@ -515,6 +962,7 @@ public class Neo4jImporter implements AutoCloseable {
         LOG.info("addSegments: entry");
 
         String roiPropertyBaseString = " n.`%s` = TRUE,";
+        String roiPropertyMapString = " n += $roiProps,";
 
         final String segmentText = "MERGE (n:`" + dataset + "-Segment`{bodyId:$bodyId}) " +
                 "ON CREATE SET n.bodyId = $bodyId," +
@@ -549,58 +997,75 @@ public class Neo4jImporter implements AutoCloseable {
         final String metaNodeString = "MATCH (m:Meta{dataset:$dataset}) SET " +
                 "m.lastDatabaseEdit=$timeStamp";
 
-        try (final TransactionBatch batch = getBatch()) {
-            for (final Neuron neuron : neuronList) {
-
-                // accumulates super level rois
-                StringBuilder roiProperties = updateSuperRoisRoiInfoAndCreateRoiPropertyString(new HashSet<>(), new RoiInfo(), roiPropertyBaseString, neuron.getRois(), "none");
-
-                String segmentTextWithRois = String.format(segmentText, roiProperties.toString());
-
-                batch.addStatement(
-                        new Statement(segmentTextWithRois,
-                                parameters(
-                                        "bodyId", neuron.getId(),
-                                        "name", neuron.getName(),
-                                        "type", neuron.getType(),
-                                        "instance", neuron.getInstance(),
-                                        "primaryNeurite", neuron.getPrimaryNeurite(),
-                                        "majorInput", neuron.getMajorInput(),
-                                        "majorOutput", neuron.getMajorOutput(),
-                                        "clonalUnit", neuron.getClonalUnit(),
-                                        "neurotransmitter", neuron.getNeurotransmitter(),
-                                        "property", neuron.getProperty(),
-                                        "status", neuron.getStatus(),
-                                        "size", neuron.getSize(),
-                                        "somaLocation", neuron.getSomaLocation(),
-                                        "somaRadius", neuron.getSomaRadius(),
-                                        "timeStamp", timeStamp))
-                );
+        try (final TransactionBatch batch = getPartitionedBatch()) {
+            if (useUnwindBatches) {
+                addSegmentUnwindStatements(batch, dataset, neuronList, timeStamp);
+            } else {
+                final String segmentTextWithRoiMap = String.format(segmentText, roiPropertyMapString);
+
+                for (final Neuron neuron : neuronList) {
+
+                    // accumulates super level rois
+                    final String segmentTextWithRois;
+                    final Map<String, Object> roiPropertyMap;
+                    if (useRoiPropertyMaps) {
+                        roiPropertyMap = updateSuperRoisRoiInfoAndCreateRoiPropertyMap(new HashSet<>(), new RoiInfo(), neuron.getRois(), "none");
+                        segmentTextWithRois = segmentTextWithRoiMap;
+                    } else {
+                        StringBuilder roiProperties = updateSuperRoisRoiInfoAndCreateRoiPropertyString(new HashSet<>(), new RoiInfo(), roiPropertyBaseString, neuron.getRois(), "none");
+                        roiPropertyMap = Collections.emptyMap();
+                        segmentTextWithRois = String.format(segmentText, roiProperties.toString());
+                    }
 
-                if (neuron.getSynapseLocationSet().size() > 0) {
                     batch.addStatement(
-                            new Statement(synapseSetText,
+                            new Statement(segmentTextWithRois,
                                     parameters(
-                                            "datasetBodyId", dataset + ":" + neuron.getId(),
-                                            "timeStamp", timeStamp))
+                                            "bodyId", neuron.getId(),
+                                            "name", neuron.getName(),
+                                            "type", neuron.getType(),
+                                            "instance", neuron.getInstance(),
+                                            "primaryNeurite", neuron.getPrimaryNeurite(),
+                                            "majorInput", neuron.getMajorInput(),
+                                            "majorOutput", neuron.getMajorOutput(),
+                                            "clonalUnit", neuron.getClonalUnit(),
+                                            "neurotransmitter", neuron.getNeurotransmitter(),
+                                            "property", neuron.getProperty(),
+                                            "status", neuron.getStatus(),
+                                            "size", neuron.getSize(),
+                                            "somaLocation", neuron.getSomaLocation(),
+                                            "somaRadius", neuron.getSomaRadius(),
+                                            "roiProps", roiPropertyMap,
+                                            "timeStamp", timeStamp)),
+                            neuron.getId()
                     );
 
-                    batch.addStatement(
-                            new Statement(segmentContainsSynapseSetText,
+                    if (neuron.getSynapseLocationSet().size() > 0) {
+                        batch.addStatement(
+                                new Statement(synapseSetText,
+                                        parameters(
+                                                "datasetBodyId", dataset + ":" + neuron.getId(),
+                                                "timeStamp", timeStamp)),
+                                neuron.getId()
+                        );
+
+                        batch.addStatement(
+                                new Statement(segmentContainsSynapseSetText,
+                                        parameters(
+                                                "bodyId", neuron.getId(),
+                                                "datasetBodyId", dataset + ":" + neuron.getId())),
+                                neuron.getId());
+
+                        for (Location synapseLocation : neuron.getSynapseLocationSet()) {
+                            batch.addStatement(new Statement(synapseSetContainsSynapseText,
                                     parameters(
-                                            "bodyId", neuron.getId(),
-                                            "datasetBodyId", dataset + ":" + neuron.getId())));
-
-                    for (Location synapseLocation : neuron.getSynapseLocationSet()) {
-                        batch.addStatement(new Statement(synapseSetContainsSynapseText,
-                                parameters(
-                                        "location", synapseLocation.getAsPoint(),
-                                        "datasetBodyId", dataset + ":" + neuron.getId()
-                                )));
+                                            "location", synapseLocation.getAsPoint(),
+                                            "datasetBodyId", dataset + ":" + neuron.getId()
+                                    )), neuron.getId());
 
+                        }
                     }
-                }
 
+                }
             }
 
             batch.writeTransaction();
@@ -642,8 +1107,8 @@ public class Neo4jImporter implements AutoCloseable {
         final String addConnectionDetailsToSegment = "MATCH (n:`" + dataset + "-Segment`{bodyId:$bodyId})," +
                 "(ss:`" + dataset + "-SynapseSet`{datasetBodyId:$datasetBodyId})" +
                 " WITH n,ss CALL loader.addPropsAndConnectionInfoToSegment(n, ss, $dataset, $preHPThreshold, $postHPThreshold, $neuronThreshold, $addCSRoiInfoAndWeightHP) RETURN n.bodyId";
-        try (final TransactionBatch batch = getBatch()) {
-            int statementCount = 0;
+        // the procedure call is more complicated than other statements used during the load, so it gets its own (generally smaller) transaction size
+        try (final TransactionBatch batch = getBatch(connectionInfoStatementsPerTransaction, connectionInfoBatchSizes)) {
             for (final Neuron neuron : neuronList) {
 
                 batch.addStatement(new Statement(addConnectionDetailsToSegment,
@@ -657,24 +1122,129 @@ public class Neo4jImporter implements AutoCloseable {
                                 "addCSRoiInfoAndWeightHP", addConnectionSetRoiInfoAndWeightHP
                         )));
 
-                statementCount++;
-
-                // This procedure call is more complicated than other statements used during the load, so generally needs a smaller batch size. This can be specified in the properties file or will default to 1/40th of the standard transaction size.
-                if (statementCount == this.connectionInfoStatementsPerTransaction) {
-                    batch.writeTransaction();
-                    statementCount = 0;
+            }
+            batch.writeTransaction();
+        }
+
+    }
+
+    /**
+     * Adds connection information (ConnectsTo relationships, ConnectionSets, weight/weightHP, roiInfo and pre/post counts on Segments, :Neuron label)
+     * that was computed in memory from the load input, instead of calling loader.addPropsAndConnectionInfoToSegment for each neuron. Must be
+     * called after the synapses, synaptic connections and segments of the summarized input have been added. Rows are written in UNWIND
+     * statements of rowsPerUnwindStatement rows.
+     *
+     * @param dataset                            dataset name
+     * @param summary                            {@link ConnectivitySummary} of the load input
+     * @param addConnectionSetRoiInfoAndWeightHP boolean indicating if ConnectionSet nodes should have roiInfo property and weightHP should be added to ConnectsTo relationships
+     * @param timeStamp                          time stamp for load
+     */
+    public void addConnectionInfo(final String dataset,
+                                  final ConnectivitySummary summary,
+                                  final boolean addConnectionSetRoiInfoAndWeightHP,
+                                  final LocalDateTime timeStamp) {
+
+        LOG.info("addConnectionInfo: entry");
+
+        final String segmentCountsRowText = "MATCH (n:`" + dataset + "-Segment`{bodyId:row.bodyId}) " +
+                "SET n.pre = row.pre, n.post = row.post, n.roiInfo = row.roiInfo, n += row.roiProps";
+
+        final String neuronRowText = "MATCH (n:`" + dataset + "-Segment`{bodyId:row.bodyId}) " +
+                "SET n:Neuron, n:`" + dataset + "-Neuron`, n.clusterName = coalesce(row.clusterName, n.clusterName)";
+
+        final String connectionSetRowText = "MATCH (a:`" + dataset + "-Segment`{bodyId:row.preBodyId}), (b:`" + dataset + "-Segment`{bodyId:row.postBodyId}) \n" +
+                "MERGE (a)-[r:ConnectsTo]->(b) SET r.weight = row.weight" + (addConnectionSetRoiInfoAndWeightHP ? ", r.weightHP = row.weightHP" : "") + " \n" +
+                "MERGE (c:`" + dataset + "-ConnectionSet`{datasetBodyIds:row.datasetBodyIds}) ON CREATE SET c:ConnectionSet, c:" + dataset + ", c.timeStamp = $timeStamp \n" +
+                (addConnectionSetRoiInfoAndWeightHP ? "SET c.roiInfo = row.roiInfo \n" : "") +
+                "MERGE (c)-[:From]->(a) \n" +
+                "MERGE (c)-[:To]->(b)";
+
+        final String connectionSetContainsRowText = "MATCH (c:`" + dataset + "-ConnectionSet`{datasetBodyIds:row.datasetBodyIds}) " +
+                "UNWIND row.locations AS location " +
+                "MATCH (s:`" + dataset + "-%s`{location:location}) " +
+                "MERGE (c)-[:Contains]->(s)";
+        final String connectionSetContainsPreRowText = String.format(connectionSetContainsRowText, "PreSyn");
+        final String connectionSetContainsPostRowText = String.format(connectionSetContainsRowText, "PostSyn");
+
+        final List<ConnectivitySummary.SegmentSummary> segmentSummaries = new ArrayList<>(summary.getSegmentSummaries());
+        try (final TransactionBatch batch = getPartitionedBatch()) {
+            for (final List<ConnectivitySummary.SegmentSummary> segmentChunk : unwindChunks(segmentSummaries, ConnectivitySummary.SegmentSummary::getBodyId)) {
+                final Object partitionKey = segmentChunk.get(0).getBodyId();
+                final List<Map<String, Object>> countRows = new ArrayList<>();
+                final List<Map<String, Object>> neuronRows = new ArrayList<>();
+                for (final ConnectivitySummary.SegmentSummary segment : segmentChunk) {
+                    if (segment.hasSynapses()) {
+                        final Map<String, Object> countRow = new HashMap<>();
+                        countRow.put("bodyId", segment.getBodyId());
+                        countRow.put("pre", segment.getPre());
+                        countRow.put("post", segment.getPost());
+                        countRow.put("roiInfo", segment.getRoiInfo().getAsJsonString());
+                        countRow.put("roiProps", updateSuperRoisRoiInfoAndCreateRoiPropertyMap(new HashSet<>(), new RoiInfo(), segment.getRoiInfo().getSetOfRois(), "none"));
+                        countRows.add(countRow);
+                    }
+                    if (segment.isNeuron()) {
+                        final Map<String, Object> neuronRow = new HashMap<>();
+                        neuronRow.put("bodyId", segment.getBodyId());
+                        neuronRow.put("clusterName", segment.getClusterName());
+                        neuronRows.add(neuronRow);
+                    }
                 }
-                //delay to allow transactions to complete to prevent blocking
-                try {
-                    TimeUnit.MILLISECONDS.sleep(2);
-                } catch (InterruptedException e) {
-                    e.printStackTrace();
+                if (countRows.size() > 0) {
+                    batch.addStatement(unwindStatement(segmentCountsRowText, countRows, timeStamp), partitionKey);
                 }
+                if (neuronRows.size() > 0) {
+                    batch.addStatement(unwindStatement(neuronRowText, neuronRows, timeStamp), partitionKey);
+                }
+                batch.writeTransaction(partitionKey);
+            }
+        }
 
+        // a connection set touches two segments, so connection sets are written on a single session to avoid lock contention between writers
+        final List<ConnectivitySummary.ConnectionSetSummary> connectionSets = new ArrayList<>(summary.getConnectionSets());
+        try (final TransactionBatch batch = getBatch()) {
+            for (final List<ConnectivitySummary.ConnectionSetSummary> connectionSetChunk : Lists.partition(connectionSets, rowsPerUnwindStatement)) {
+                final List<Map<String, Object>> connectionSetRows = new ArrayList<>();
+                final List<Map<String, Object>> containsPreRows = new ArrayList<>();
+                final List<Map<String, Object>> containsPostRows = new ArrayList<>();
+                for (final ConnectivitySummary.ConnectionSetSummary connectionSet : connectionSetChunk) {
+                    final String datasetBodyIds = dataset + ":" + connectionSet.getPreBodyId() + ":" + connectionSet.getPostBodyId();
+
+                    final Map<String, Object> connectionSetRow = new HashMap<>();
+                    connectionSetRow.put("preBodyId", connectionSet.getPreBodyId());
+                    connectionSetRow.put("postBodyId", connectionSet.getPostBodyId());
+                    connectionSetRow.put("datasetBodyIds", datasetBodyIds);
+                    connectionSetRow.put("weight", connectionSet.getWeight());
+                    connectionSetRow.put("weightHP", connectionSet.getWeightHP());
+                    connectionSetRow.put("roiInfo", connectionSet.getRoiInfo().getAsJsonString());
+                    connectionSetRows.add(connectionSetRow);
+
+                    final List<Object> preLocations = new ArrayList<>();
+                    final List<Object> postLocations = new ArrayList<>();
+                    for (final Synapse synapse : connectionSet.getSynapses()) {
+                        if (synapse.getType().equals("pre")) {
+                            preLocations.add(synapse.getLocationAsPoint());
+                        } else {
+                            postLocations.add(synapse.getLocationAsPoint());
+                        }
+                    }
+                    final Map<String, Object> containsPreRow = new HashMap<>();
+                    containsPreRow.put("datasetBodyIds", datasetBodyIds);
+                    containsPreRow.put("locations", preLocations);
+                    containsPreRows.add(containsPreRow);
+
+                    final Map<String, Object> containsPostRow = new HashMap<>();
+                    containsPostRow.put("datasetBodyIds", datasetBodyIds);
+                    containsPostRow.put("locations", postLocations);
+                    containsPostRows.add(containsPostRow);
+                }
+                batch.addStatement(unwindStatement(connectionSetRowText, connectionSetRows, timeStamp));
+                batch.addStatement(unwindStatement(connectionSetContainsPreRowText, containsPreRows, timeStamp));
+                batch.addStatement(unwindStatement(connectionSetContainsPostRowText, containsPostRows, timeStamp));
+                batch.writeTransaction();
             }
-            batch.writeTransaction();
         }
 
+        LOG.info("addConnectionInfo: exit");
     }
 
     StringBuilder updateSuperRoisRoiInfoAndCreateRoiPropertyString(Set<String> datasetSuperLevelRois, RoiInfo datasetRoiInfo, String roiPropertyBaseString, Set<String> synapseOrNeuronRois, String synapseType) {
@@ -693,6 +1263,22 @@ public class Neo4jImporter implements AutoCloseable {
         return roiProperties;
     }
 
+    Map<String, Object> updateSuperRoisRoiInfoAndCreateRoiPropertyMap(Set<String> datasetSuperLevelRois, RoiInfo datasetRoiInfo, Set<String> synapseOrNeuronRois, String synapseType) {
+        Map<String, Object> roiProperties = new LinkedHashMap<>();
+        if (synapseOrNeuronRois != null && synapseOrNeuronRois.size() > 0) {
+            datasetSuperLevelRois.add(synapseOrNeuronRois.iterator().next()); // first listed roi will be a "super" roi
+            for (String roi : synapseOrNeuronRois) {
+                roiProperties.put(roi, true);
+                if (synapseType.equals("pre")) {
+                    datasetRoiInfo.incrementPreForRoi(roi);
+                } else if (synapseType.equals("post")) {
+                    datasetRoiInfo.incrementPostForRoi(roi);
+                }
+            }
+        }
+        return roiProperties;
+    }
+
     /**
      * Adds Skeleton and SkelNode nodes to database. Segments are connected to Skeletons via Contains relationships.
      * Skeletons are connected to SkelNodes via Contains relationships. SkelNodes point to their children with LinksTo
@@ -724,59 +1310,393 @@ public class Neo4jImporter implements AutoCloseable {
                 "MERGE (p:`" + dataset + "-SkelNode`{skelNodeId:$parentSkelNodeId}) \n" +
                 "MERGE (p)-[:LinksTo]-(c)";
 
-        try (final TransactionBatch batch = getBatch()) {
-            for (Skeleton skeleton : skeletonList) {
-
-                Long associatedBodyId = skeleton.getAssociatedBodyId();
-                List<SkelNode> skelNodeList = skeleton.getSkelNodeList();
-
-                batch.addStatement(new Statement(segmentMergeString, parameters(
-                        "bodyId", associatedBodyId,
-                        "timeStamp", timeStamp
-                )));
+        try (final TransactionBatch batch = getPartitionedBatch()) {
+            if (useUnwindBatches) {
+                addSkeletonUnwindStatements(batch, dataset, skeletonList, timeStamp);
+            } else {
+                for (Skeleton skeleton : skeletonList) {
 
-                batch.addStatement(new Statement(segmentToSkeletonConnectionString, parameters("bodyId", associatedBodyId,
-                        "skeletonId", dataset + ":" + associatedBodyId,
-                        "timeStamp", timeStamp
-                )));
+                    Long associatedBodyId = skeleton.getAssociatedBodyId();
+                    List<SkelNode> skelNodeList = skeleton.getSkelNodeList();
 
-                for (SkelNode skelNode : skelNodeList) {
+                    batch.addStatement(new Statement(segmentMergeString, parameters(
+                            "bodyId", associatedBodyId,
+                            "timeStamp", timeStamp
+                    )), associatedBodyId);
 
-                    batch.addStatement(new Statement(parentNodeString, parameters(
-                            "pLocation", skelNode.getLocationAsPoint(),
-                            "pRadius", skelNode.getRadius(),
+                    batch.addStatement(new Statement(segmentToSkeletonConnectionString, parameters("bodyId", associatedBodyId,
                             "skeletonId", dataset + ":" + associatedBodyId,
-                            "parentSkelNodeId", skelNode.getSkelNodeId(dataset),
-                            "pRowNumber", skelNode.getRowNumber(),
-                            "pType", skelNode.getType(),
                             "timeStamp", timeStamp
-                    )));
+                    )), associatedBodyId);
 
-                    for (SkelNode childSkelNode : skelNode.getChildren()) {
-                        String childNodeId = childSkelNode.getSkelNodeId(dataset);
-                        batch.addStatement(new Statement(childNodeString, parameters(
-                                "parentSkelNodeId", skelNode.getSkelNodeId(dataset),
-                                "skeletonId", dataset + ":" + associatedBodyId,
+                    for (SkelNode skelNode : skelNodeList) {
+
+                        batch.addStatement(new Statement(parentNodeString, parameters(
                                 "pLocation", skelNode.getLocationAsPoint(),
                                 "pRadius", skelNode.getRadius(),
+                                "skeletonId", dataset + ":" + associatedBodyId,
+                                "parentSkelNodeId", skelNode.getSkelNodeId(dataset),
                                 "pRowNumber", skelNode.getRowNumber(),
                                 "pType", skelNode.getType(),
-                                "timeStamp", timeStamp,
-                                "childNodeId", childNodeId,
-                                "childLocation", childSkelNode.getLocationAsPoint(),
-                                "childRadius", childSkelNode.getRadius(),
-                                "childRowNumber", childSkelNode.getRowNumber(),
-                                "childType", childSkelNode.getType()
-                        )));
+                                "timeStamp", timeStamp
+                        )), associatedBodyId);
+
+                        for (SkelNode childSkelNode : skelNode.getChildren()) {
+                            String childNodeId = childSkelNode.getSkelNodeId(dataset);
+                            batch.addStatement(new Statement(childNodeString, parameters(
+                                    "parentSkelNodeId", skelNode.getSkelNodeId(dataset),
+                                    "skeletonId", dataset + ":" + associatedBodyId,
+                                    "pLocation", skelNode.getLocationAsPoint(),
+                                    "pRadius", skelNode.getRadius(),
+                                    "pRowNumber", skelNode.getRowNumber(),
+                                    "pType", skelNode.getType(),
+                                    "timeStamp", timeStamp,
+                                    "childNodeId", childNodeId,
+                                    "childLocation", childSkelNode.getLocationAsPoint(),
+                                    "childRadius", childSkelNode.getRadius(),
+                                    "childRowNumber", childSkelNode.getRowNumber(),
+                                    "childType", childSkelNode.getType()
+                            )), associatedBodyId);
+                        }
                     }
+                    LOG.info("Added full skeleton for bodyId: " + skeleton.getAssociatedBodyId());
                 }
-                LOG.info("Added full skeleton for bodyId: " + skeleton.getAssociatedBodyId());
             }
             batch.writeTransaction();
         }
         LOG.info("addSkeletonNodes: exit");
     }
 
+    /**
+     * Wraps a per-row query in an UNWIND over the provided rows. Within the query each row is available as "row".
+     *
+     * @param rowQueryText query applied to each row
+     * @param rows         list of row parameter maps
+     * @param timeStamp    time stamp for load
+     * @return {@link Statement} carrying all rows as a single list parameter
+     */
+    private static Statement unwindStatement(final String rowQueryText, final List<Map<String, Object>> rows, final LocalDateTime timeStamp) {
+        return new Statement("UNWIND $rows AS row " + rowQueryText, parameters("rows", rows, "timeStamp", timeStamp));
+    }
+
+    private void addSynapseUnwindStatements(final TransactionBatch batch,
+                                            final String dataset,
+                                            final List<Synapse> synapseList,
+                                            final Set<String> datasetSuperLevelRois,
+                                            final RoiInfo datasetRoiInfo,
+                                            final LocalDateTime timeStamp) {
+
+        final String synapseRowText = "MERGE (s:`" + dataset + "-Synapse`{location:row.location}) " +
+                " ON CREATE SET s.location=row.location, " +
+                "s:`" + dataset + "-%s`," +
+                "s:Synapse," +
+                "s:%s," +
+                "s:" + dataset + "," +
+                " s.confidence=row.confidence, " +
+                " s.type=row.type, " +
+                " s += row.roiProps, " +
+                " s.timeStamp=$timeStamp";
+        final String preSynapseRowText = String.format(synapseRowText, "PreSyn", "PreSyn");
+        final String postSynapseRowText = String.format(synapseRowText, "PostSyn", "PostSyn");
+
+        for (final List<Synapse> synapseChunk : unwindChunks(synapseList, Synapse::getLocation)) {
+            final Object partitionKey = synapseChunk.get(0).getLocation();
+            final List<Map<String, Object>> preRows = new ArrayList<>();
+            final List<Map<String, Object>> postRows = new ArrayList<>();
+            for (final Synapse synapse : synapseChunk) {
+                // accumulates super level rois and roi info data
+                final Map<String, Object> roiProperties = updateSuperRoisRoiInfoAndCreateRoiPropertyMap(datasetSuperLevelRois, datasetRoiInfo, synapse.getRois(), synapse.getType());
+
+                final Map<String, Object> row = new HashMap<>();
+                row.put("location", synapse.getLocationAsPoint());
+                row.put("confidence", synapse.getConfidence());
+                row.put("type", synapse.getType());
+                row.put("roiProps", roiProperties);
+
+                if (synapse.getType().equals("pre")) {
+                    preRows.add(row);
+                } else if (synapse.getType().equals("post")) {
+                    postRows.add(row);
+                }
+            }
+            if (preRows.size() > 0) {
+                batch.addStatement(unwindStatement(preSynapseRowText, preRows, timeStamp), partitionKey);
+            }
+            if (postRows.size() > 0) {
+                batch.addStatement(unwindStatement(postSynapseRowText, postRows, timeStamp), partitionKey);
+            }
+            batch.writeTransaction(partitionKey);
+        }
+    }
+
+    private void addSynapsesToUnwindStatements(final TransactionBatch batch,
+                                               final String dataset,
+                                               final List<SynapticConnection> synapticConnectionList,
+                                               final LocalDateTime timeStamp) {
+
+        final String preSynapseRowText = "MERGE (s:`" + dataset + "-PreSyn`{location:row.prelocation}) ON CREATE SET s.location = row.prelocation, s.type=\"pre\", s.confidence=0.0, s.timeStamp=$timeStamp, s:Synapse, s:" + dataset + ", s:PreSyn, s:`" + dataset + "-PreSyn`, s:`" + dataset + "-Synapse`";
+        final String postSynapseRowText = "MERGE (t:`" + dataset + "-PostSyn`{location:row.postlocation}) ON CREATE SET t.location = row.postlocation, t.timeStamp=$timeStamp, t.type=\"post\", t.confidence=0.0, t:Synapse, t:" + dataset + ", t:PostSyn, t:`" + dataset + "-PostSyn`, t:`" + dataset + "-Synapse`";
+        final String synapseRelationsRowText = "MERGE (s:`" + dataset + "-PreSyn`{location:row.prelocation}) SET s.timeStamp=$timeStamp \n" +
+                "MERGE (t:`" + dataset + "-PostSyn`{location:row.postlocation}) SET t.timeStamp=$timeStamp \n" +
+                "MERGE (s)-[:SynapsesTo]->(t)";
+
+        for (final List<SynapticConnection> connectionChunk : unwindChunks(synapticConnectionList, SynapticConnection::getPreLocation)) {
+            final Object partitionKey = connectionChunk.get(0).getPreLocation();
+            final List<Map<String, Object>> preRows = new ArrayList<>();
+            final List<Map<String, Object>> postRows = new ArrayList<>();
+            final List<Map<String, Object>> relationRows = new ArrayList<>();
+            for (final SynapticConnection connection : connectionChunk) {
+                final Map<String, Object> preRow = new HashMap<>();
+                preRow.put("prelocation", connection.getPreLocation().getAsPoint());
+                preRows.add(preRow);
+
+                final Map<String, Object> postRow = new HashMap<>();
+                postRow.put("postlocation", connection.getPostLocation().getAsPoint());
+                postRows.add(postRow);
+
+                final Map<String, Object> relationRow = new HashMap<>();
+                relationRow.put("prelocation", preRow.get("prelocation"));
+                relationRow.put("postlocation", postRow.get("postlocation"));
+                relationRows.add(relationRow);
+            }
+            // synapse nodes must exist with all labels before the relationship statement merges on them
+            batch.addStatement(unwindStatement(preSynapseRowText, preRows, timeStamp), partitionKey);
+            batch.addStatement(unwindStatement(postSynapseRowText, postRows, timeStamp), partitionKey);
+            batch.addStatement(unwindStatement(synapseRelationsRowText, relationRows, timeStamp), partitionKey);
+            batch.writeTransaction(partitionKey);
+        }
+    }
+
+    private void addSegmentUnwindStatements(final TransactionBatch batch,
+                                            final String dataset,
+                                            final List<Neuron> neuronList,
+                                            final LocalDateTime timeStamp) {
+
+        final String segmentRowText = "MERGE (n:`" + dataset + "-Segment`{bodyId:row.bodyId}) " +
+                "ON CREATE SET n.bodyId = row.bodyId," +
+                " n:Segment," +
+                " n:" + dataset + "," +
+                " n.name = row.name," +
+                " n.type = row.type," +
+                " n.instance = row.instance," +
+                " n.primaryNeurite = row.primaryNeurite," +
+                " n.majorInput = row.majorInput," +
+                " n.majorOutput = row.majorOutput," +
+                " n.clonalUnit = row.clonalUnit," +
+                " n.neurotransmitter = row.neurotransmitter," +
+                " n.property = row.property," +
+                " n.status = row.status," +
+                " n.size = row.size," +
+                " n.somaLocation = row.somaLocation," +
+                " n.somaRadius = row.somaRadius, " +
+                " n += row.roiProps, " +
+                " n.timeStamp = $timeStamp";
+
+        final String synapseSetRowText = "MERGE (s:`" + dataset + "-SynapseSet`{datasetBodyId:row.datasetBodyId}) ON CREATE SET s.datasetBodyId=row.datasetBodyId, s.timeStamp=$timeStamp, s:SynapseSet, s:" + dataset + " \n" +
+                "MERGE (n:`" + dataset + "-Segment`{bodyId:row.bodyId}) \n" +
+                "MERGE (n)-[:Contains]->(s)";
+
+        final String synapseSetContainsSynapseRowText = "MERGE (s:`" + dataset + "-Synapse`{location:row.location}) \n" +
+                "MERGE (t:`" + dataset + "-SynapseSet`{datasetBodyId:row.datasetBodyId}) \n" +
+                "MERGE (t)-[:Contains]->(s) \n";
+
+        for (final List<Neuron> neuronChunk : unwindChunks(neuronList, Neuron::getId)) {
+            final Object partitionKey = neuronChunk.get(0).getId();
+            final List<Map<String, Object>> segmentRows = new ArrayList<>();
+            final List<Map<String, Object>> synapseSetRows = new ArrayList<>();
+            final List<Map<String, Object>> containsRows = new ArrayList<>();
+            for (final Neuron neuron : neuronChunk) {
+                final Map<String, Object> segmentRow = new HashMap<>();
+                segmentRow.put("bodyId", neuron.getId());
+                segmentRow.put("name", neuron.getName());
+                segmentRow.put("type", neuron.getType());
+                segmentRow.put("instance", neuron.getInstance());
+                segmentRow.put("primaryNeurite", neuron.getPrimaryNeurite());
+                segmentRow.put("majorInput", neuron.getMajorInput());
+                segmentRow.put("majorOutput", neuron.getMajorOutput());
+                segmentRow.put("clonalUnit", neuron.getClonalUnit());
+                segmentRow.put("neurotransmitter", neuron.getNeurotransmitter());
+                segmentRow.put("property", neuron.getProperty());
+                segmentRow.put("status", neuron.getStatus());
+                segmentRow.put("size", neuron.getSize());
+                segmentRow.put("somaLocation", neuron.getSomaLocation());
+                segmentRow.put("somaRadius", neuron.getSomaRadius());
+                segmentRow.put("roiProps", updateSuperRoisRoiInfoAndCreateRoiPropertyMap(new HashSet<>(), new RoiInfo(), neuron.getRois(), "none"));
+                segmentRows.add(segmentRow);
+
+                if (neuron.getSynapseLocationSet().size() > 0) {
+                    final String datasetBodyId = dataset + ":" + neuron.getId();
+
+                    final Map<String, Object> synapseSetRow = new HashMap<>();
+                    synapseSetRow.put("bodyId", neuron.getId());
+                    synapseSetRow.put("datasetBodyId", datasetBodyId);
+                    synapseSetRows.add(synapseSetRow);
+
+                    for (final Location synapseLocation : neuron.getSynapseLocationSet()) {
+                        final Map<String, Object> containsRow = new HashMap<>();
+                        containsRow.put("location", synapseLocation.getAsPoint());
+                        containsRow.put("datasetBodyId", datasetBodyId);
+                        containsRows.add(containsRow);
+                    }
+                }
+            }
+            batch.addStatement(unwindStatement(segmentRowText, segmentRows, timeStamp), partitionKey);
+            if (synapseSetRows.size() > 0) {
+                batch.addStatement(unwindStatement(synapseSetRowText, synapseSetRows, timeStamp), partitionKey);
+            }
+            batch.writeTransaction(partitionKey);
+            // a handful of neurons can carry many synapses, so synapse set membership is split separately
+            for (final List<Map<String, Object>> containsChunk : Lists.partition(containsRows, rowsPerUnwindStatement)) {
+                batch.addStatement(unwindStatement(synapseSetContainsSynapseRowText, containsChunk, timeStamp), partitionKey);
+                batch.writeTransaction(partitionKey);
+            }
+        }
+    }
+
+    /**
+     * Adds Skeleton and SkelNode nodes to database with a few UNWIND statements per chunk of skeletons, each row of
+     * which carries a whole skeleton. SkelNode ids are derived from the skeleton, so a skeleton that is not yet in
+     * the database is written with CREATE: its Skeleton node, SkelNodes and LinksTo relationships are created by a
+     * single statement, without looking up any SkelNode. Skeletons that already exist (e.g. when a load is repeated)
+     * are completed with MERGE as in {@link #addSkeletonNodes}.
+     *
+     * @param dataset      dataset name
+     * @param skeletonList list of {@link Skeleton} objects
+     * @param timeStamp    time of data load
+     */
+    public void addSkeletons(final String dataset, final List<Skeleton> skeletonList, final LocalDateTime timeStamp) {
+
+        LOG.info("addSkeletons: entry");
+
+        try (final TransactionBatch batch = getPartitionedBatch()) {
+            addSkeletonUnwindStatements(batch, dataset, skeletonList, timeStamp);
+            batch.writeTransaction();
+        }
+
+        LOG.info("addSkeletons: exit");
+    }
+
+    private void addSkeletonUnwindStatements(final TransactionBatch batch,
+                                             final String dataset,
+                                             final List<Skeleton> skeletonList,
+                                             final LocalDateTime timeStamp) {
+
+        // statements for skeletons that are already in the database; they match nothing for new skeletons
+        final String existingSkelNodeRowText = "MATCH (r:`" + dataset + "-Skeleton`{skeletonId:row.skeletonId}) \n" +
+                "UNWIND row.skelNodes AS node \n" +
+                "MERGE (p:`" + dataset + "-SkelNode`{skelNodeId:node.skelNodeId}) ON CREATE SET p.skelNodeId=node.skelNodeId, p.location=node.location, p.radius=node.radius, p.rowNumber=node.rowNumber, p.type=node.type, p.timeStamp=$timeStamp, p:SkelNode, p:" + dataset + " \n" +
+                "MERGE (r)-[:Contains]->(p) ";
+
+        final String existingLinksToRowText = "MATCH (:`" + dataset + "-Skeleton`{skeletonId:row.skeletonId}) \n" +
+                "UNWIND row.links AS link \n" +
+                "MATCH (p:`" + dataset + "-SkelNode`{skelNodeId:row.skelNodes[link[0]].skelNodeId}), (c:`" + dataset + "-SkelNode`{skelNodeId:row.skelNodes[link[1]].skelNodeId}) \n" +
+                "MERGE (p)-[:LinksTo]-(c)";
+
+        // rows are addressed by index so that the created SkelNodes can be collected per skeleton without grouping on the row map
+        final String newSkeletonText = "UNWIND range(0, size($rows) - 1) AS rowIndex \n" +
+                "WITH rowIndex, $rows[rowIndex] AS row \n" +
+                "OPTIONAL MATCH (existing:`" + dataset + "-Skeleton`{skeletonId:row.skeletonId}) \n" +
+                "WITH rowIndex, row WHERE existing IS NULL \n" +
+                "MERGE (n:`" + dataset + "-Segment`{bodyId:row.bodyId}) ON CREATE SET " +
+                "n.bodyId=row.bodyId, " +
+                "n.timeStamp=$timeStamp, " +
+                "n:Segment, " +
+                "n:" + dataset + " \n" +
+                "CREATE (n)-[:Contains]->(r:Skeleton:" + dataset + ":`" + dataset + "-Skeleton`{skeletonId:row.skeletonId, timeStamp:$timeStamp}) \n" +
+                "WITH rowIndex, r, row.skelNodes AS skelNodes \n" +
+                "UNWIND range(0, size(skelNodes) - 1) AS i \n" +
+                "CREATE (r)-[:Contains]->(p:SkelNode:" + dataset + ":`" + dataset + "-SkelNode`{skelNodeId:skelNodes[i].skelNodeId, location:skelNodes[i].location, radius:skelNodes[i].radius, rowNumber:skelNodes[i].rowNumber, type:skelNodes[i].type, timeStamp:$timeStamp}) \n" +
+                "WITH rowIndex, i, p ORDER BY rowIndex, i \n" +
+                "WITH rowIndex, collect(p) AS created \n" +
+                "UNWIND $rows[rowIndex].links AS link \n" +
+                "WITH created[link[0]] AS parent, created[link[1]] AS child \n" +
+                "CREATE (parent)-[:LinksTo]->(child)";
+
+        for (final List<Skeleton> skeletonChunk : skeletonChunks(dataset, skeletonList)) {
+            final List<Map<String, Object>> skeletonRows = new ArrayList<>(skeletonChunk.size());
+            for (final Skeleton skeleton : skeletonChunk) {
+                final String[] skelNodeIds = new String[skeleton.getNodeCount()];
+                final List<Map<String, Object>> skelNodeRows = new ArrayList<>(skeleton.getNodeCount());
+                final List<List<Integer>> links = new ArrayList<>(skeleton.getNodeCount());
+                for (int i = 0; i < skeleton.getNodeCount(); i++) {
+                    skelNodeIds[i] = skeleton.getSkelNodeId(dataset, i);
+
+                    final Map<String, Object> skelNodeRow = new HashMap<>();
+                    skelNodeRow.put("skelNodeId", skelNodeIds[i]);
+                    skelNodeRow.put("location", skeleton.getLocationAsPoint(i));
+                    skelNodeRow.put("radius", skeleton.getRadius(i));
+                    skelNodeRow.put("rowNumber", skeleton.getRowNumber(i));
+                    skelNodeRow.put("type", skeleton.getType(i));
+                    skelNodeRows.add(skelNodeRow);
+
+                    if (skeleton.getParentIndex(i) >= 0) {
+                        links.add(Arrays.asList(skeleton.getParentIndex(i), i));
+                    }
+                }
+
+                final Map<String, Object> skeletonRow = new HashMap<>();
+                skeletonRow.put("bodyId", skeleton.getAssociatedBodyId());
+                skeletonRow.put("skeletonId", skeletonId(dataset, skeleton));
+                skeletonRow.put("skelNodes", skelNodeRows);
+                skeletonRow.put("links", links);
+                skeletonRows.add(skeletonRow);
+            }
+
+            // all statements for a chunk share a partition, so existing skeletons are completed before new ones are created
+            final Object partitionKey = skeletonId(dataset, skeletonChunk.get(0));
+            batch.addStatement(unwindStatement(existingSkelNodeRowText, skeletonRows, timeStamp), partitionKey);
+            batch.addStatement(unwindStatement(existingLinksToRowText, skeletonRows, timeStamp), partitionKey);
+            batch.addStatement(new Statement(newSkeletonText, parameters("rows", skeletonRows, "timeStamp", timeStamp)), partitionKey);
+            batch.writeTransaction(partitionKey);
+        }
+    }
+
+    private static String skeletonId(final String dataset, final Skeleton skeleton) {
+        return dataset + ":" + skeleton.getAssociatedBodyId();
+    }
+
+    /**
+     * Splits skeletons into chunks of whole skeletons carrying about rowsPerUnwindStatement SkelNodes each, such that
+     * all skeletons in a chunk are in the same writer partition. When a skeleton appears more than once in the list,
+     * only the first is kept, since a new skeleton is created once per statement.
+     *
+     * @param dataset      dataset name
+     * @param skeletonList list of {@link Skeleton} objects
+     * @return list of chunks
+     */
+    private List<List<Skeleton>> skeletonChunks(final String dataset, final List<Skeleton> skeletonList) {
+        final int partitions = Math.max(1, writerThreads);
+        final List<List<Skeleton>> chunks = new ArrayList<>();
+        final List<List<Skeleton>> openChunks = new ArrayList<>();
+        final int[] openSkelNodeCounts = new int[partitions];
+        for (int i = 0; i < partitions; i++) {
+            openChunks.add(new ArrayList<>());
+        }
+
+        final Set<String> skeletonIds = new HashSet<>();
+        for (final Skeleton skeleton : skeletonList) {
+            final String skeletonId = skeletonId(dataset, skeleton);
+            if (!skeletonIds.add(skeletonId)) {
+                LOG.warn("Skipping duplicate skeleton for bodyId: " + skeleton.getAssociatedBodyId());
+                continue;
+            }
+            final int partition = ParallelDbTransactionBatch.partitionOf(skeletonId, partitions);
+            openChunks.get(partition).add(skeleton);
+            openSkelNodeCounts[partition] += skeleton.getNodeCount();
+            if (openSkelNodeCounts[partition] >= rowsPerUnwindStatement) {
+                chunks.add(openChunks.get(partition));
+                openChunks.set(partition, new ArrayList<>());
+                openSkelNodeCounts[partition] = 0;
+            }
+        }
+        for (final List<Skeleton> openChunk : openChunks) {
+            if (!openChunk.isEmpty()) {
+                chunks.add(openChunk);
+            }
+        }
+        return chunks;
+    }
+
     /**
      * Adds meta information to the Meta node for the provided dataset. Meta information is stored as a MetaInfo object, which is loaded from a json provided during the load.
      *
@@ -806,6 +1726,311 @@ public class Neo4jImporter implements AutoCloseable {
         LOG.info("addMetaInfo: exit");
     }
 
+    /**
+     * Creates the uniqueness constraint on the load digests stored by a diff load (see {@link ContentDigests}).
+     *
+     * @param dataset dataset name
+     */
+    public void prepDatabaseForDiffLoad(final String dataset) {
+
+        LOG.info("prepDatabaseForDiffLoad: entry");
+
+        try (final TransactionBatch batch = getBatch()) {
+            batch.addStatement(new Statement("CREATE CONSTRAINT ON (d:`" + dataset + "-LoadDigest`) ASSERT d.digestId IS UNIQUE"));
+            batch.writeTransaction();
+        }
+
+        LOG.info("prepDatabaseForDiffLoad: exit");
+    }
+
+    /**
+     * @param dataset dataset name
+     * @param kind    kind of digest, e.g. "synapses"
+     * @return hash of each stored block digest of the kind, by block key (empty for a dry run)
+     */
+    public Map<Long, Long> getLoadDigestHashes(final String dataset, final String kind) {
+        if (driver == null) {
+            return new HashMap<>();
+        }
+        try (Session session = driver.session()) {
+            return session.readTransaction(tx -> getLoadDigestHashes(tx, dataset, kind));
+        }
+    }
+
+    /**
+     * @param dataset dataset name
+     * @param kind    kind of digest
+     * @param blocks  keys of blocks to read
+     * @return stored digest of each of the blocks that has one, by block key (empty for a dry run)
+     */
+    public Map<Long, ContentDigests.BlockDigest> getLoadDigests(final String dataset, final String kind, final Collection<Long> blocks) {
+        final Map<Long, ContentDigests.BlockDigest> digests = new HashMap<>();
+        if (driver == null) {
+            return digests;
+        }
+        try (Session session = driver.session()) {
+            for (final List<Long> blockChunk : Lists.partition(new ArrayList<>(blocks), rowsPerUnwindStatement)) {
+                final List<String> digestIds = new ArrayList<>();
+                for (final Long block : blockChunk) {
+                    digestIds.add(digestId(kind, block));
+                }
+                session.readTransaction(tx -> getLoadDigests(tx, dataset, digestIds, digests));
+            }
+        }
+        return digests;
+    }
+
+    /**
+     * Stores block digests, replacing any stored digests of the same blocks.
+     *
+     * @param dataset   dataset name
+     * @param kind      kind of digest
+     * @param digests   block digests
+     * @param timeStamp time stamp for load
+     */
+    public void writeLoadDigests(final String dataset, final String kind, final Collection<ContentDigests.BlockDigest> digests, final LocalDateTime timeStamp) {
+
+        final String digestText = "MERGE (d:`" + dataset + "-LoadDigest`{digestId:$digestId}) ON CREATE SET d.digestId=$digestId, d:LoadDigest " +
+                "SET d.kind=$kind, d.block=$block, d.hash=$hash, d.keys=$keys, d.values=$values, d.timeStamp=$timeStamp";
+
+        // one digest per statement, since a block may hold thousands of entries
+        try (final TransactionBatch batch = getBatch()) {
+            for (final ContentDigests.BlockDigest digest : digests) {
+                batch.addStatement(new Statement(digestText,
+                        parameters(
+                                "digestId", digestId(kind, digest.getBlock()),
+                                "kind", kind,
+                                "block", digest.getBlock(),
+                                "hash", digest.getHash(),
+                                "keys", digest.getKeys(),
+                                "values", digest.getValues(),
+                                "timeStamp", timeStamp)));
+            }
+            batch.writeTransaction();
+        }
+    }
+
+    /**
+     * @param dataset dataset name
+     * @param kind    kind of digest
+     * @param blocks  keys of blocks whose digests are deleted
+     */
+    public void deleteLoadDigests(final String dataset, final String kind, final Collection<Long> blocks) {
+        final List<Map<String, Object>> rows = new ArrayList<>();
+        for (final Long block : blocks) {
+            rows.add(Collections.singletonMap("digestId", digestId(kind, block)));
+        }
+        writeUnwindRows("MATCH (d:`" + dataset + "-LoadDigest`{digestId:row.digestId}) DELETE d", rows, null);
+    }
+
+    private static String digestId(final String kind, final long block) {
+        return kind + ":" + block;
+    }
+
+    /**
+     * Deletes Synapse nodes and their relationships. The segments containing them are left as they are.
+     *
+     * @param dataset         dataset name
+     * @param packedLocations packed locations of synapses
+     */
+    public void deleteSynapses(final String dataset, final long[] packedLocations) {
+        final List<Map<String, Object>> rows = new ArrayList<>();
+        for (final long packedLocation : packedLocations) {
+            rows.add(Collections.singletonMap("location", Location.fromPackedLocation(packedLocation).getAsPoint()));
+        }
+        writeUnwindRows("MATCH (s:`" + dataset + "-Synapse`{location:row.location}) DETACH DELETE s", rows, null);
+    }
+
+    /**
+     * Replaces the type, confidence and ROIs of existing Synapse nodes, keeping their relationships. The Meta node
+     * synapse counts should be corrected with {@link #reconcileSynapseCounts} afterwards.
+     *
+     * @param dataset     dataset name
+     * @param synapseList list of {@link Synapse} objects
+     * @param timeStamp   time stamp for load
+     */
+    public void updateSynapses(final String dataset, final List<Synapse> synapseList, final LocalDateTime timeStamp) {
+
+        final String synapseRowText = "MATCH (s:`" + dataset + "-Synapse`{location:row.location}) " +
+                "REMOVE s:PreSyn, s:PostSyn, s:`" + dataset + "-PreSyn`, s:`" + dataset + "-PostSyn` " +
+                "SET s = row.roiProps, " +
+                "s.location=row.location, " +
+                "s.confidence=row.confidence, " +
+                "s.type=row.type, " +
+                "s.timeStamp=$timeStamp, " +
+                "s:`" + dataset + "-%s`, " +
+                "s:%s";
+
+        // ROIs new to the dataset are added to the Meta node; their counts are corrected by reconcileSynapseCounts
+        final RoiInfo updatedRoiInfo = new RoiInfo();
+        final Set<String> updatedSuperLevelRois = new HashSet<>();
+        final List<Map<String, Object>> preRows = new ArrayList<>();
+        final List<Map<String, Object>> postRows = new ArrayList<>();
+        for (final Synapse synapse : synapseList) {
+            final Map<String, Object> row = new HashMap<>();
+            row.put("location", synapse.getLocationAsPoint());
+            row.put("confidence", synapse.getConfidence());
+            row.put("type", synapse.getType());
+            row.put("roiProps", updateSuperRoisRoiInfoAndCreateRoiPropertyMap(updatedSuperLevelRois, updatedRoiInfo, synapse.getRois(), synapse.getType()));
+            if (synapse.getType().equals("pre")) {
+                preRows.add(row);
+            } else if (synapse.getType().equals("post")) {
+                postRows.add(row);
+            }
+        }
+        writeUnwindRows(String.format(synapseRowText, "PreSyn", "PreSyn"), preRows, timeStamp);
+        writeUnwindRows(String.format(synapseRowText, "PostSyn", "PostSyn"), postRows, timeStamp);
+
+        updateMetaNodeSynapseTotals(dataset, updatedSuperLevelRois, updatedRoiInfo, 0, 0, timeStamp);
+    }
+
+    /**
+     * Deletes the SynapsesTo relationships of synaptic connections, keeping the Synapse nodes.
+     *
+     * @param dataset                dataset name
+     * @param synapticConnectionList list of {@link SynapticConnection} objects
+     */
+    public void deleteSynapsesTo(final String dataset, final List<SynapticConnection> synapticConnectionList) {
+        final List<Map<String, Object>> rows = new ArrayList<>();
+        for (final SynapticConnection connection : synapticConnectionList) {
+            final Map<String, Object> row = new HashMap<>();
+            row.put("prelocation", connection.getPreLocation().getAsPoint());
+            row.put("postlocation", connection.getPostLocation().getAsPoint());
+            rows.add(row);
+        }
+        writeUnwindRows("MATCH (:`" + dataset + "-PreSyn`{location:row.prelocation})-[r:SynapsesTo]->(:`" + dataset + "-PostSyn`{location:row.postlocation}) DELETE r", rows, null);
+    }
+
+    /**
+     * @param dataset dataset name
+     * @return content hash stored by a diff load for each Segment, by body id; null for Segments without one (empty for a dry run)
+     */
+    public Map<Long, Long> getSegmentContentHashes(final String dataset) {
+        if (driver == null) {
+            return new HashMap<>();
+        }
+        try (Session session = driver.session()) {
+            return session.readTransaction(tx -> getSegmentContentHashes(tx, dataset));
+        }
+    }
+
+    /**
+     * Deletes Segment nodes with their SynapseSets, the ConnectionSets from or to them and their ConnectsTo
+     * relationships, and optionally their Skeletons. The Synapse nodes they contained are kept.
+     *
+     * @param dataset         dataset name
+     * @param bodyIds         body ids of segments
+     * @param deleteSkeletons true to delete the skeletons of the segments, false to keep them for the segments added again
+     */
+    public void deleteSegments(final String dataset, final Collection<Long> bodyIds, final boolean deleteSkeletons) {
+
+        final String segmentRowText = "MATCH (n:`" + dataset + "-Segment`{bodyId:row.bodyId}) " +
+                "OPTIONAL MATCH (n)<-[:From|To]-(c:`" + dataset + "-ConnectionSet`) " +
+                "DETACH DELETE c " +
+                "WITH DISTINCT n " +
+                "OPTIONAL MATCH (n)-[:Contains]->(ss:`" + dataset + "-SynapseSet`) " +
+                "DETACH DELETE ss " +
+                "WITH DISTINCT n " +
+                (deleteSkeletons ?
+                        "OPTIONAL MATCH (n)-[:Contains]->(r:`" + dataset + "-Skeleton`) " +
+                                "OPTIONAL MATCH (r)-[:Contains]->(p:`" + dataset + "-SkelNode`) " +
+                                "DETACH DELETE p, r " +
+                                "WITH DISTINCT n " :
+                        "") +
+                "DETACH DELETE n";
+
+        final List<Map<String, Object>> rows = new ArrayList<>();
+        for (final Long bodyId : bodyIds) {
+            rows.add(Collections.singletonMap("bodyId", bodyId));
+        }
+        writeUnwindRows(segmentRowText, rows, null);
+    }
+
+    /**
+     * Stores the content hash of Segments and connects each to the Skeleton of its body, if one was kept by
+     * {@link #deleteSegments}.
+     *
+     * @param dataset       dataset name
+     * @param contentHashes content hash of each segment, by body id
+     */
+    public void setSegmentContentHashes(final String dataset, final Map<Long, Long> contentHashes) {
+
+        final String segmentRowText = "MATCH (n:`" + dataset + "-Segment`{bodyId:row.bodyId}) " +
+                "SET n.contentHash=row.contentHash " +
+                "WITH n, row " +
+                "MATCH (r:`" + dataset + "-Skeleton`{skeletonId:row.skeletonId}) " +
+                "MERGE (n)-[:Contains]->(r)";
+
+        final List<Map<String, Object>> rows = new ArrayList<>();
+        for (final Map.Entry<Long, Long> contentHash : contentHashes.entrySet()) {
+            final Map<String, Object> row = new HashMap<>();
+            row.put("bodyId", contentHash.getKey());
+            row.put("contentHash", contentHash.getValue());
+            row.put("skeletonId", dataset + ":" + contentHash.getKey());
+            rows.add(row);
+        }
+        writeUnwindRows(segmentRowText, rows, null);
+    }
+
+    /**
+     * Writes UNWIND statements of rowsPerUnwindStatement rows.
+     *
+     * @param rowQueryText query applied to each row
+     * @param rows         list of row parameter maps
+     * @param timeStamp    time stamp for load (null if the query has none)
+     */
+    private void writeUnwindRows(final String rowQueryText, final List<Map<String, Object>> rows, final LocalDateTime timeStamp) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        try (final TransactionBatch batch = getBatch()) {
+            for (final List<Map<String, Object>> chunk : Lists.partition(rows, rowsPerUnwindStatement)) {
+                batch.addStatement(unwindStatement(rowQueryText, chunk, timeStamp));
+            }
+            batch.writeTransaction();
+        }
+    }
+
+    private static Map<Long, Long> getLoadDigestHashes(final Transaction tx, final String dataset, final String kind) {
+        StatementResult result = tx.run("MATCH (d:`" + dataset + "-LoadDigest`{kind:$kind}) RETURN d.block AS block, d.hash AS hash", parameters("kind", kind));
+        Map<Long, Long> hashes = new HashMap<>();
+        while (result.hasNext()) {
+            Record record = result.next();
+            hashes.put(record.get("block").asLong(), record.get("hash").asLong());
+        }
+        return hashes;
+    }
+
+    private static Void getLoadDigests(final Transaction tx, final String dataset, final List<String> digestIds, final Map<Long, ContentDigests.BlockDigest> digests) {
+        StatementResult result = tx.run("UNWIND $digestIds AS digestId MATCH (d:`" + dataset + "-LoadDigest`{digestId:digestId}) RETURN d.block AS block, d.keys AS keys, d.values AS values",
+                parameters("digestIds", digestIds));
+        while (result.hasNext()) {
+            Record record = result.next();
+            long block = record.get("block").asLong();
+            digests.put(block, new ContentDigests.BlockDigest(block, toLongArray(record.get("keys")), toLongArray(record.get("values"))));
+        }
+        return null;
+    }
+
+    private static long[] toLongArray(final Value value) {
+        List<Long> list = value.asList(Value::asLong);
+        long[] array = new long[list.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = list.get(i);
+        }
+        return array;
+    }
+
+    private static Map<Long, Long> getSegmentContentHashes(final Transaction tx, final String dataset) {
+        StatementResult result = tx.run("MATCH (n:`" + dataset + "-Segment`) RETURN n.bodyId AS bodyId, n.contentHash AS contentHash");
+        Map<Long, Long> contentHashes = new HashMap<>();
+        while (result.hasNext()) {
+            Record record = result.next();
+            contentHashes.put(record.get("bodyId").asLong(), record.get("contentHash").isNull() ? null : record.get("contentHash").asLong());
+        }
+        return contentHashes;
+    }
+
     private static String getMaxInputRoi(final Transaction tx, final String dataset, Long bodyId) {
 
         Gson gson = new Gson();
@@ -875,6 +2100,14 @@ public class Neo4jImporter implements AutoCloseable {
         return RoiInfo.getRoiInfoFromString(roiInfoString);
     }
 
+    private static SynapseCounter getMetaNodeSynapseTotals(final Transaction tx, final String dataset) {
+        StatementResult result = tx.run("MATCH (m:Meta{dataset:\"" + dataset + "\"}) RETURN m.totalPreCount AS pre, m.totalPostCount AS post");
+        Map<String, Object> totals = result.next().asMap();
+        Object pre = totals.get("pre");
+        Object post = totals.get("post");
+        return new SynapseCounter(pre == null ? 0L : (long) pre, post == null ? 0L : (long) post);
+    }
+
     private static long getTotalPreCount(final Transaction tx, final String dataset) {
         StatementResult result = tx.run("MATCH (n:`" + dataset + "-PreSyn`) RETURN count(n)");
         return (long) result.next().asMap().get("count(n)");
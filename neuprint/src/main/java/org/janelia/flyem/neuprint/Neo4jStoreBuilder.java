@@ -0,0 +1,274 @@
+package org.janelia.flyem.neuprint;
+
+import org.janelia.flyem.neuprint.model.Location;
+import org.janelia.flyem.neuprint.model.Neuron;
+import org.janelia.flyem.neuprint.model.Skeleton;
+import org.janelia.flyem.neuprint.model.Synapse;
+import org.janelia.flyem.neuprint.model.SynapticConnection;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.RelationshipType;
+import org.neo4j.unsafe.batchinsert.BatchInserter;
+import org.neo4j.unsafe.batchinsert.BatchInserters;
+import org.neo4j.values.storable.CoordinateReferenceSystem;
+import org.neo4j.values.storable.Values;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Builds a new database store for a dataset in process with the Neo4j
+ * <a href="https://neo4j.com/docs/java-reference/3.5/tutorial-batchinsert/" target="_blank">batch inserter</a>,
+ * which writes nodes, relationships, labels and properties directly to the store files without transactions.
+ * The store holds the same graph as a standard load with {@link Neo4jImporter} (see {@link OfflineGraphWriter}),
+ * including the constraints and indices created by prepDatabase and indexBooleanRoiProperties, which are
+ * populated when the store is closed. Once built, the store directory can be copied to the databases
+ * directory of a server.
+ * <p>
+ * The batch inserter is not thread safe and must be the only process using the store directory.
+ */
+public class Neo4jStoreBuilder extends OfflineGraphWriter {
+
+    private static final Pattern CONSTRAINT_PATTERN = Pattern.compile("CREATE CONSTRAINT ON \\(\\w+:(`[^`]+`|\\w+)\\) ASSERT \\w+\\.(`[^`]+`|\\w+) IS UNIQUE");
+    private static final Pattern INDEX_PATTERN = Pattern.compile("CREATE INDEX ON :(`[^`]+`|\\w+)\\((`[^`]+`|\\w+)\\)");
+
+    private final File storeDirectory;
+
+    private BatchInserter inserter;
+    // store node id for each import id, by id space
+    private final Map<String, Map<String, Long>> nodeIdsByIdSpace = new HashMap<>();
+    private final Map<String, Label[]> labelsByColumnValue = new HashMap<>();
+
+    /**
+     * Class constructor.
+     *
+     * @param storeDirectory                     database directory to build (e.g. data/databases/graph.db), which must not already contain files
+     * @param dataset                            dataset name
+     * @param dataModelVersion                   version of data model
+     * @param preHPThreshold                     high-precision threshold for presynaptic densities
+     * @param postHPThreshold                    high-precision threshold for postsynaptic densities
+     * @param addConnectionSetRoiInfoAndWeightHP boolean indicating if ConnectionSet nodes should have roiInfo property and weightHP should be added to ConnectsTo relationships
+     * @param neuronThreshold                    Neuron must have greater than or equal to neuronThreshold/5 presynaptic densities or greater than or equal to neuronThreshold postsynaptic densities to be given a :Neuron label
+     * @param addClusterNames                    boolean indicating if the cluster name index should be created
+     * @param timeStamp                          time stamp for load
+     */
+    public Neo4jStoreBuilder(final File storeDirectory,
+                             final String dataset,
+                             final float dataModelVersion,
+                             final double preHPThreshold,
+                             final double postHPThreshold,
+                             final boolean addConnectionSetRoiInfoAndWeightHP,
+                             final long neuronThreshold,
+                             final boolean addClusterNames,
+                             final LocalDateTime timeStamp) {
+        super(dataset, dataModelVersion, preHPThreshold, postHPThreshold, addConnectionSetRoiInfoAndWeightHP, neuronThreshold, addClusterNames, timeStamp);
+        this.storeDirectory = storeDirectory;
+    }
+
+    /**
+     * Builds the store for the provided input. Any of the lists may be empty.
+     *
+     * @param synapseList     list of {@link Synapse} objects
+     * @param connectionsList list of {@link SynapticConnection} objects
+     * @param neuronList      list of {@link Neuron} objects
+     * @param skeletonList    list of {@link Skeleton} objects
+     * @throws IOException if the store directory already contains files or the store cannot be created
+     */
+    public void build(final List<Synapse> synapseList,
+                      final List<SynapticConnection> connectionsList,
+                      final List<Neuron> neuronList,
+                      final List<Skeleton> skeletonList) throws IOException {
+
+        LOG.info("build: entry");
+
+        final String[] existingFiles = storeDirectory.list();
+        if (existingFiles != null && existingFiles.length > 0) {
+            throw new IOException(storeDirectory + " is not empty; the store must be built in a new directory");
+        }
+
+        inserter = BatchInserters.inserter(storeDirectory);
+        try {
+            writeGraph(synapseList, connectionsList, neuronList, skeletonList);
+        } finally {
+            // builds the deferred indices and checks the deferred constraints
+            inserter.shutdown();
+            inserter = null;
+            nodeIdsByIdSpace.clear();
+            labelsByColumnValue.clear();
+        }
+
+        LOG.info(String.format("Built store in %s. Copy it to the databases directory of a server (stopped) to use it.", storeDirectory));
+        LOG.info("build: exit");
+    }
+
+    @Override
+    protected RowWriter nodeRows(final String name, final List<String> header) {
+        return new InserterRows(name, header);
+    }
+
+    @Override
+    protected RowWriter relationshipRows(final String name, final List<String> header) {
+        return new InserterRows(name, header);
+    }
+
+    @Override
+    protected void writeSchema(final List<String> schemaTexts) {
+        for (final String schemaText : schemaTexts) {
+            final Matcher constraintMatcher = CONSTRAINT_PATTERN.matcher(schemaText);
+            final Matcher indexMatcher = INDEX_PATTERN.matcher(schemaText);
+            if (constraintMatcher.matches()) {
+                inserter.createDeferredConstraint(Label.label(unquote(constraintMatcher.group(1))))
+                        .assertPropertyIsUnique(unquote(constraintMatcher.group(2)))
+                        .create();
+            } else if (indexMatcher.matches()) {
+                inserter.createDeferredSchemaIndex(Label.label(unquote(indexMatcher.group(1))))
+                        .on(unquote(indexMatcher.group(2)))
+                        .create();
+            } else {
+                throw new IllegalArgumentException("unsupported schema statement: " + schemaText);
+            }
+        }
+    }
+
+    private static String unquote(final String name) {
+        return name.startsWith("`") ? name.substring(1, name.length() - 1) : name;
+    }
+
+    private Map<String, Long> nodeIds(final String idSpace) {
+        return nodeIdsByIdSpace.computeIfAbsent(idSpace, k -> new HashMap<>());
+    }
+
+    private Label[] labels(final Object columnValue) {
+        return labelsByColumnValue.computeIfAbsent(columnValue.toString(), value -> {
+            final String[] names = value.split(";");
+            final Label[] labels = new Label[names.length];
+            for (int i = 0; i < names.length; i++) {
+                labels[i] = Label.label(names[i]);
+            }
+            return labels;
+        });
+    }
+
+    /**
+     * Creates a node or relationship for each row, using the header to find the id, label, type and property columns.
+     */
+    private class InserterRows implements RowWriter {
+
+        private final String name;
+        private final String[] propertyNames;
+        private final String[] propertyTypes;
+        private int idColumn = -1;
+        private int startIdColumn = -1;
+        private int endIdColumn = -1;
+        private int labelColumn = -1;
+        private int typeColumn = -1;
+        private String idSpace;
+        private String startIdSpace;
+        private String endIdSpace;
+        private int count = 0;
+
+        InserterRows(final String name, final List<String> header) {
+            this.name = name;
+            this.propertyNames = new String[header.size()];
+            this.propertyTypes = new String[header.size()];
+            for (int i = 0; i < header.size(); i++) {
+                final String column = header.get(i);
+                if (column.startsWith(":ID(")) {
+                    idColumn = i;
+                    idSpace = idSpaceOf(column);
+                } else if (column.startsWith(":START_ID(")) {
+                    startIdColumn = i;
+                    startIdSpace = idSpaceOf(column);
+                } else if (column.startsWith(":END_ID(")) {
+                    endIdColumn = i;
+                    endIdSpace = idSpaceOf(column);
+                } else if (column.equals(":LABEL")) {
+                    labelColumn = i;
+                } else if (column.equals(":TYPE")) {
+                    typeColumn = i;
+                } else {
+                    final int typeSeparator = column.indexOf(':');
+                    propertyNames[i] = typeSeparator < 0 ? column : column.substring(0, typeSeparator);
+                    propertyTypes[i] = typeSeparator < 0 ? "string" : column.substring(typeSeparator + 1);
+                }
+            }
+        }
+
+        private String idSpaceOf(final String column) {
+            return column.substring(column.indexOf('(') + 1, column.length() - 1);
+        }
+
+        @Override
+        public void writeRow(final Object... values) {
+            final Map<String, Object> properties = new HashMap<>();
+            for (int i = 0; i < values.length; i++) {
+                if (propertyNames[i] != null && values[i] != null) {
+                    properties.put(propertyNames[i], propertyValue(values[i], propertyTypes[i]));
+                }
+            }
+
+            if (idColumn >= 0) {
+                final long nodeId = inserter.createNode(properties, labels(values[labelColumn]));
+                if (nodeIds(idSpace).put(String.valueOf(values[idColumn]), nodeId) != null) {
+                    throw new IllegalStateException(String.format("repeated %s id in %s: %s", idSpace, name, values[idColumn]));
+                }
+            } else {
+                inserter.createRelationship(
+                        nodeId(startIdSpace, values[startIdColumn]),
+                        nodeId(endIdSpace, values[endIdColumn]),
+                        RelationshipType.withName(values[typeColumn].toString()),
+                        properties);
+            }
+            count++;
+        }
+
+        private long nodeId(final String idSpace, final Object id) {
+            final Long nodeId = nodeIds(idSpace).get(String.valueOf(id));
+            if (nodeId == null) {
+                throw new IllegalStateException(String.format("%s refers to %s id %s before its node was written", name, idSpace, id));
+            }
+            return nodeId;
+        }
+
+        @Override
+        public void close() {
+            LOG.info(String.format("Inserted %d %s.", count, name));
+        }
+    }
+
+    /**
+     * @return value stored for a column of the given neo4j-admin import type
+     */
+    private static Object propertyValue(final Object value, final String type) {
+        switch (type) {
+            case "long":
+                return ((Number) value).longValue();
+            case "int":
+                return ((Number) value).intValue();
+            case "double":
+                return ((Number) value).doubleValue();
+            case "boolean":
+            case "localdatetime":
+                return value;
+            case "string":
+                return value.toString();
+            case "string[]":
+                return ((List<?>) value).stream().map(String::valueOf).toArray(String[]::new);
+            case "point{crs:cartesian-3D}":
+                final Location location = (Location) value;
+                return Values.pointValue(CoordinateReferenceSystem.Cartesian_3D, location.getX(), location.getY(), location.getZ());
+            default:
+                throw new IllegalArgumentException("unsupported column type: " + type);
+        }
+    }
+
+    private static final Logger LOG = LoggerFactory.getLogger(Neo4jStoreBuilder.class);
+
+}
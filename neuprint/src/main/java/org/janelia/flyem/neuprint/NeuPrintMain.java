@@ -5,25 +5,52 @@ import com.beust.jcommander.Parameter;
 import com.beust.jcommander.ParameterException;
 import com.beust.jcommander.Parameters;
 import com.google.common.base.Stopwatch;
-import com.google.gson.stream.JsonReader;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import org.janelia.flyem.neuprint.columnar.ColumnarFile;
+import org.janelia.flyem.neuprint.columnar.ColumnarReader;
+import org.janelia.flyem.neuprint.columnar.ColumnarWriter;
+import org.janelia.flyem.neuprint.columnar.MortonOrderSorter;
 import org.janelia.flyem.neuprint.db.DbConfig;
+import org.janelia.flyem.neuprint.json.JsonArraySplitter;
+import org.janelia.flyem.neuprint.json.JsonByteReader;
+import org.janelia.flyem.neuprint.json.JsonInputFiles;
 import org.janelia.flyem.neuprint.json.JsonUtils;
+import org.janelia.flyem.neuprint.json.NeuPrintJsonDecoder;
+import org.janelia.flyem.neuprint.metrics.LoadMetrics;
+import org.janelia.flyem.neuprint.metrics.LoadProfile;
+import org.janelia.flyem.neuprint.metrics.LoadStatusServer;
 import org.janelia.flyem.neuprint.model.MetaInfo;
 import org.janelia.flyem.neuprint.model.Neuron;
 import org.janelia.flyem.neuprint.model.Skeleton;
+import org.janelia.flyem.neuprint.model.SwcParser;
 import org.janelia.flyem.neuprint.model.Synapse;
 import org.janelia.flyem.neuprint.model.SynapticConnection;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.BufferedReader;
+import java.io.Closeable;
 import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Field;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.time.LocalDateTime;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -35,6 +62,28 @@ import java.util.regex.Pattern;
  */
 public class NeuPrintMain {
 
+    // names of the load phases recorded in checkpoint journals
+    static final String SYNAPSE_PHASE = "synapses";
+    static final String CONNECTION_PHASE = "synaptic connections";
+    static final String NEURON_PHASE = "neurons";
+    static final String CONNECTION_INFO_PHASE = "neuron connection info";
+    static final String SKELETON_PHASE = "skeletons";
+    private static final String INITIALIZE_PHASE = "initializing database";
+    private static final String META_INFO_PHASE = "meta info";
+    private static final String INDEX_PHASE = "building indexes";
+
+    // objects decoded at a time per shard when whole shard inputs are read into one list
+    private static final int SHARD_READ_BATCH_SIZE = 100000;
+
+    // objects decoded at a time when input is read for sorting
+    private static final int SORT_READ_BATCH_SIZE = 100000;
+
+    // objects decoded at a time when input is compared for --diffLoad, unless the phase has a batch size
+    private static final int DIFF_READ_BATCH_SIZE = 100000;
+
+    // objects written at a time by --diffLoad
+    private static final int DIFF_WRITE_BATCH_SIZE = 1000;
+
     /**
      * Class containing {@link JCommander} parameters.
      */
@@ -43,23 +92,24 @@ public class NeuPrintMain {
 
         @Parameter(
                 names = "--dbProperties",
-                description = "Properties file containing database information (required)",
-                required = true)
+                description = "Properties file containing database information (required unless --adminImportCsvDirectory, --storeDirectory or --columnarOutputDirectory is specified)")
         String dbProperties;
 
         @Parameter(
                 names = "--synapseJson",
-                description = "JSON file containing body synapse data to import")
+                description = "JSON file containing body synapse data to import, a directory or glob pattern (e.g. 'synapses/*.json.gz') of shard files " +
+                        "whose arrays are loaded as one array in name order, or a columnar file converted from one. JSON files may be gzip compressed.")
         String synapseJson;
 
         @Parameter(
                 names = "--connectionJson",
-                description = "Path to JSON file containing synaptic connections.")
+                description = "Path to JSON file containing synaptic connections, a directory or glob pattern of shard files (as for --synapseJson), " +
+                        "or a columnar file converted from one. JSON files may be gzip compressed.")
         String connectionJson;
 
         @Parameter(
                 names = "--neuronJson",
-                description = "JSON file containing neuron data to import")
+                description = "JSON file containing neuron data to import, or a directory or glob pattern of shard files (as for --synapseJson). JSON files may be gzip compressed.")
         String neuronJson;
 
         @Parameter(
@@ -86,12 +136,48 @@ public class NeuPrintMain {
         )
         int skeletonBatchSize;
 
+        @Parameter(
+                names = "--skeletonReaderThreads",
+                description = "Number of threads parsing swc files when skeletons are loaded in batches (number of processors by default)."
+        )
+        int skeletonReaderThreads = Runtime.getRuntime().availableProcessors();
+
+        @Parameter(
+                names = "--jsonParserThreads",
+                description = "Number of threads decoding the synapse and connection JSON files. If > 1, the file is memory-mapped and split into chunks " +
+                        "of whole array elements that are decoded concurrently; if the input is sharded, this many shards are decompressed and decoded " +
+                        "concurrently (number of processors by default)."
+        )
+        int jsonParserThreads = Runtime.getRuntime().availableProcessors();
+
+        @Parameter(
+                names = "--pipelineQueueDepth",
+                description = "If > 0 and a JSON file or skeleton directory is loaded in batches, the input is parsed on a separate thread and up to this many parsed batches wait to be written. " +
+                        "(0 by default: each batch is written before the next is parsed)"
+        )
+        int pipelineQueueDepth;
+
+        @Parameter(
+                names = "--pipelineWriterThreads",
+                description = "Number of threads writing batches when --pipelineQueueDepth > 0 (1 by default). Neuron batches are always written by one thread " +
+                        "since adding connection info depends on the order in which segments are loaded."
+        )
+        int pipelineWriterThreads = 1;
+
         @Parameter(
                 names = "--datasetLabel",
-                description = "Dataset value for all nodes (required)",
-                required = true)
+                description = "Dataset value for all nodes (required unless --datasetManifest is specified)")
         String datasetLabel;
 
+        @Parameter(
+                names = "--datasetManifest",
+                description = "JSON file listing several datasets to load at the same time, as an array with an object for each dataset. The keys of an " +
+                        "object are the names of the options above without the leading dashes, e.g. {\"datasetLabel\": \"hemibrain-left\", \"synapseJson\": \"...\"}; " +
+                        "each object must have a datasetLabel and its options override those given on the command line. The phases of all datasets run " +
+                        "in one load and share the --maxPhaseWriters writer sessions; the phases of one dataset run one after another unless " +
+                        "--concurrentPhases is specified. Progress and statistics are reported per dataset. Cannot be used with --datasetLabel.")
+        String datasetManifest;
+
         @Parameter(
                 names = "--dataModelVersion",
                 description = "Data model version (required)")
@@ -145,6 +231,142 @@ public class NeuPrintMain {
                 arity = 1)
         boolean addClusterNames = true;
 
+        @Parameter(
+                names = "--unwindBatches",
+                description = "Write synapses, synaptic connections, neurons/segments and skeletons with one parameterized UNWIND statement per entity kind per transaction " +
+                        "(rows per statement set by rowsPerUnwindStatement in the properties file). (omit to write one statement per entity)",
+                arity = 0
+        )
+        boolean unwindBatches;
+
+        @Parameter(
+                names = "--roiPropertyMaps",
+                description = "Pass synapse and neuron/segment ROI membership as a map parameter so that the query text is the same for every entity " +
+                        "and its plan is reused from the query cache. (omit to write ROI names into the query text)",
+                arity = 0
+        )
+        boolean roiPropertyMaps;
+
+        @Parameter(
+                names = "--deferIndexes",
+                description = "Create only the uniqueness constraints and the Synapse location index needed for loading before the data is loaded, and create all other indexes " +
+                        "(including ROI and cluster name indexes) in one pass after the data is loaded, waiting until every index is online. " +
+                        "(omit to create indexes before and during the load)",
+                arity = 0
+        )
+        boolean deferIndexes;
+
+        @Parameter(
+                names = "--mortonSort",
+                description = "Before loading, sort synapses by the Morton (Z-order) code of their location and synaptic connections by the codes of their " +
+                        "pre and post locations, so that nodes close in space are written close together in the store. (omit to load in input order)",
+                arity = 0
+        )
+        boolean mortonSort;
+
+        @Parameter(
+                names = "--sortDirectory",
+                description = "Directory for the sorted runs and sorted files written by --mortonSort and the file of --locationIndex (system temporary directory by default).")
+        String sortDirectory = System.getProperty("java.io.tmpdir");
+
+        @Parameter(
+                names = "--sortRowsInMemory",
+                description = "Number of synapses or connections sorted in memory at a time by --mortonSort; larger inputs are sorted in runs that are merged.")
+        int sortRowsInMemory = 5000000;
+
+        @Parameter(
+                names = "--locationIndex",
+                description = "While loading neurons, build an index from synapse location to body id in a memory-mapped file in --sortDirectory, report " +
+                        "locations in the synapse sets of more than one body, and use the index for --clientSideConnectionInfo. Cannot be used with " +
+                        "--neuronBatchSize, since nothing reads the index of a batched neuron load. (omit to skip)",
+                arity = 0
+        )
+        boolean locationIndex;
+
+        @Parameter(
+                names = "--concurrentPhases",
+                description = "Run load phases that do not depend on each other at the same time, e.g. sorting synaptic connections while synapses are " +
+                        "loaded, or adding meta info while neurons are loaded. Only one phase that reads a whole input into memory runs at a time. " +
+                        "(omit to run phases one after another)",
+                arity = 0
+        )
+        boolean concurrentPhases;
+
+        @Parameter(
+                names = "--maxPhaseWriters",
+                description = "Number of database writer sessions that phases running at the same time with --concurrentPhases may use in total. A phase " +
+                        "using more (see --pipelineWriterThreads) runs alone.")
+        int maxPhaseWriters = 4;
+
+        @Parameter(
+                names = "--statusPort",
+                description = "Serve the load metrics (statements/s, rows/s and estimated time remaining per phase, commit latencies, retries, " +
+                        "reader/writer waiting times, heap usage) at http://localhost:<port>/ as text and at /status.json as JSON while the load runs. " +
+                        "The same metrics are always available over JMX as " + LoadMetrics.OBJECT_NAME + ". (omit or 0 for no status page)")
+        int statusPort = 0;
+
+        @Parameter(
+                names = "--dryRun",
+                description = "Run every load phase without a database: read and decode the input and generate the statements as a load would, but " +
+                        "count them instead of writing them, and log the statements, distinct query texts, parameter bytes and transactions of each " +
+                        "phase and the rate at which its input was read. Transaction sizes are taken from --dbProperties if given; no connection is " +
+                        "made and no checkpoint journals are written. (omit to load)",
+                arity = 0
+        )
+        boolean dryRun;
+
+        @Parameter(
+                names = "--dryRunSampleInterval",
+                description = "With --dryRun, estimate the parameter size of one in this many statements and extrapolate from that sample.")
+        int dryRunSampleInterval = 1;
+
+        @Parameter(
+                names = "--clientSideConnectionInfo",
+                description = "Compute connection info (ConnectsTo relationships, ConnectionSets, neuron/segment properties) in memory from the synapse, " +
+                        "synaptic connection and neuron JSON and write it in bulk, instead of calling a loading procedure for each neuron. Requires " +
+                        "--synapseJson, --connectionJson and --neuronJson, and keeps all three in memory. Cannot be used with --neuronBatchSize or --addConnectionInfoOnly. (omit to use the procedure)",
+                arity = 0
+        )
+        boolean clientSideConnectionInfo;
+
+        @Parameter(
+                names = "--resume",
+                description = "Continue a load that stopped partway. Each JSON input has a checkpoint journal next to it (<file, directory or pattern>.<datasetLabel>.checkpoint) " +
+                        "recording the committed batches; phases recorded as complete are skipped and batched phases continue after the last committed batch. " +
+                        "Use the same input files as the stopped load. (omit to start a new load and replace any journals)",
+                arity = 0
+        )
+        boolean resume;
+
+        @Parameter(
+                names = "--diffLoad",
+                description = "Apply a new export of a dataset that is already in the database. The synapse, synaptic connection and neuron JSON are " +
+                        "compared with the content hashes stored by the previous diff load, and only the synapses, connections and Segments that were " +
+                        "added, removed or changed are written; connection info is recomputed only for the Segments affected. The first diff load of a " +
+                        "dataset writes everything and stores the hashes. Requires --neuronJson. (omit to load everything)",
+                arity = 0
+        )
+        boolean diffLoad;
+
+        @Parameter(
+                names = "--adminImportCsvDirectory",
+                description = "Instead of loading into a database, write the synapse, connection, neuron and skeleton input as node and relationship CSV files " +
+                        "for neo4j-admin import to this directory. Batch sizes are ignored and no database connection is made.")
+        String adminImportCsvDirectory;
+
+        @Parameter(
+                names = "--storeDirectory",
+                description = "Instead of loading into a database, build a new database store in this directory (e.g. data/databases/graph.db) with the " +
+                        "embedded batch inserter. The directory must be empty and no server may use it during the build. Batch sizes are ignored and no database connection is made.")
+        String storeDirectory;
+
+        @Parameter(
+                names = "--columnarOutputDirectory",
+                description = "Instead of loading into a database, convert --synapseJson and --connectionJson to binary columnar files (see jsonspecs.md) " +
+                        "named after the JSON files with the extension .npcol in this directory. The columnar files can be given as --synapseJson and " +
+                        "--connectionJson in later loads.")
+        String columnarOutputDirectory;
+
         @Parameter(
                 names = "--help",
                 help = true)
@@ -174,8 +396,8 @@ public class NeuPrintMain {
      */
     public static List<Neuron> readNeuronsJson(String filepath) {
         List<Neuron> neuronList = new ArrayList<>();
-        try (BufferedReader reader = new BufferedReader(new FileReader(filepath))) {
-            neuronList = Neuron.fromJson(reader);
+        try {
+            neuronList = readJsonArray(filepath, NeuPrintJsonDecoder::readNeuron, null, 1);
             LOG.info(String.format("Loaded %d neurons/segments from JSON.", neuronList.size()));
         } catch (Exception e) {
             LOG.error("Error reading neurons JSON: " + e);
@@ -198,8 +420,48 @@ public class NeuPrintMain {
                                                boolean addConnectionSetRoiInfoAndWeightHP,
                                                boolean addClusterNames,
                                                LocalDateTime timeStamp) {
+        loadNeuronJsonInBatches(filepath, neuronBatchSize, neo4jImporter, dataset, databaseInitialized, dataModelVersion, preHPThreshold, postHPThreshold, neuronThreshold, addConnectionSetRoiInfoAndWeightHP, addClusterNames, timeStamp, 0, 1, LoadCheckpointJournal.none());
+    }
+
+    /**
+     * Loads a neuron JSON file in batches, adding Segment nodes and then connection information for each batch.
+     * If pipelineQueueDepth is greater than 0, the next batches are parsed while earlier batches are written.
+     *
+     * @param filepath                           path to neuron JSON file
+     * @param neuronBatchSize                    number of neurons per batch
+     * @param neo4jImporter                      importer used for writing
+     * @param dataset                            dataset name
+     * @param databaseInitialized                true if the database has already been initialized for this dataset
+     * @param dataModelVersion                   version of data model
+     * @param preHPThreshold                     high-precision threshold for presynaptic densities
+     * @param postHPThreshold                    high-precision threshold for postsynaptic densities
+     * @param neuronThreshold                    Neuron must have greater than or equal to neuronThreshold/5 presynaptic densities or greater than or equal to neuronThreshold postsynaptic densities to be given a :Neuron label
+     * @param addConnectionSetRoiInfoAndWeightHP boolean indicating if ConnectionSet nodes should have roiInfo property and weightHP should be added to ConnectsTo relationships
+     * @param addClusterNames                    boolean indicating if cluster names should be added to Neuron nodes
+     * @param timeStamp                          time stamp for load
+     * @param pipelineQueueDepth                 number of parsed batches that can wait to be written (0 to parse and write batches in turn)
+     * @param pipelineWriterThreads              number of threads writing batches when pipelined
+     * @param checkpointJournal                  journal recording committed batches, used to skip them when a load is resumed
+     */
+    public static void loadNeuronJsonInBatches(String filepath,
+                                               int neuronBatchSize,
+                                               Neo4jImporter neo4jImporter,
+                                               String dataset,
+                                               boolean databaseInitialized,
+                                               float dataModelVersion,
+                                               double preHPThreshold,
+                                               double postHPThreshold,
+                                               long neuronThreshold,
+                                               boolean addConnectionSetRoiInfoAndWeightHP,
+                                               boolean addClusterNames,
+                                               LocalDateTime timeStamp,
+                                               int pipelineQueueDepth,
+                                               int pipelineWriterThreads,
+                                               LoadCheckpointJournal checkpointJournal) {
 
-        Stopwatch timer = Stopwatch.createUnstarted();
+        if (isPhaseComplete(checkpointJournal, NEURON_PHASE, filepath)) {
+            return;
+        }
 
         if (!databaseInitialized) {
             initializeDatabase(neo4jImporter, dataset, dataModelVersion, preHPThreshold, postHPThreshold, addConnectionSetRoiInfoAndWeightHP, addClusterNames, timeStamp);
@@ -208,27 +470,19 @@ public class NeuPrintMain {
 
         LOG.info(String.format("Loading neurons in batches of size %d", neuronBatchSize));
 
-        try (JsonReader reader = new JsonReader(new FileReader(filepath))) {
-            reader.beginArray();
-            while (reader.hasNext()) {
-                List<Neuron> neuronList = new ArrayList<>();
-                int i = 0;
-                while (reader.hasNext() && i < neuronBatchSize) {
-                    Neuron neuron = Neuron.fromJsonSingleObject(reader);
-                    neuronList.add(neuron);
-                    i++;
-                }
-
-                timer.start();
-                neo4jImporter.addSegments(dataset, neuronList, timeStamp);
-                LOG.info(String.format("Loading batch of neurons took: %s", timer.stop()));
-                timer.reset();
+        try {
+            loadJsonArrayInBatches(filepath, NEURON_PHASE, dataset, neuronBatchSize, NeuPrintJsonDecoder::readNeuron, null, 1, pipelineQueueDepth, pipelineWriterThreads, checkpointJournal,
+                    neuronList -> {
+                        Stopwatch timer = Stopwatch.createStarted();
+                        neo4jImporter.addSegments(dataset, neuronList, timeStamp);
+                        LOG.info(String.format("Loading batch of neurons took: %s", timer.stop()));
+                        timer.reset();
 
-                timer.start();
-                neo4jImporter.addConnectionInfo(dataset, neuronList, addConnectionSetRoiInfoAndWeightHP, preHPThreshold, postHPThreshold, neuronThreshold);
-                LOG.info(String.format("Loading all connection info for batch took: %s", timer.stop()));
-                timer.reset();
-            }
+                        timer.start();
+                        neo4jImporter.addConnectionInfo(dataset, neuronList, addConnectionSetRoiInfoAndWeightHP, preHPThreshold, postHPThreshold, neuronThreshold);
+                        LOG.info(String.format("Loading all connection info for batch took: %s", timer.stop()));
+                    });
+            checkpointJournal.recordPhaseComplete(NEURON_PHASE);
 
         } catch (IOException e) {
             LOG.error("Error reading neurons JSON: " + e);
@@ -250,8 +504,49 @@ public class NeuPrintMain {
             boolean addConnectionSetRoiInfoAndWeightHP,
             boolean addClusterNames,
             LocalDateTime timeStamp) {
+        loadConnectionInfoInBatches(filepath, neuronBatchSize, neo4jImporter, dataset, databaseInitialized, dataModelVersion, preHPThreshold, postHPThreshold, neuronThreshold, addConnectionSetRoiInfoAndWeightHP, addClusterNames, timeStamp, 0, 1, LoadCheckpointJournal.none());
+    }
+
+    /**
+     * Loads connection information for the neurons in a neuron JSON file in batches. If pipelineQueueDepth is
+     * greater than 0, the next batches are parsed while earlier batches are written.
+     *
+     * @param filepath                           path to neuron JSON file
+     * @param neuronBatchSize                    number of neurons per batch
+     * @param neo4jImporter                      importer used for writing
+     * @param dataset                            dataset name
+     * @param databaseInitialized                true if the database has already been initialized for this dataset
+     * @param dataModelVersion                   version of data model
+     * @param preHPThreshold                     high-precision threshold for presynaptic densities
+     * @param postHPThreshold                    high-precision threshold for postsynaptic densities
+     * @param neuronThreshold                    Neuron must have greater than or equal to neuronThreshold/5 presynaptic densities or greater than or equal to neuronThreshold postsynaptic densities to be given a :Neuron label
+     * @param addConnectionSetRoiInfoAndWeightHP boolean indicating if ConnectionSet nodes should have roiInfo property and weightHP should be added to ConnectsTo relationships
+     * @param addClusterNames                    boolean indicating if cluster names should be added to Neuron nodes
+     * @param timeStamp                          time stamp for load
+     * @param pipelineQueueDepth                 number of parsed batches that can wait to be written (0 to parse and write batches in turn)
+     * @param pipelineWriterThreads              number of threads writing batches when pipelined
+     * @param checkpointJournal                  journal recording committed batches, used to skip them when a load is resumed
+     */
+    public static void loadConnectionInfoInBatches(
+            String filepath,
+            int neuronBatchSize,
+            Neo4jImporter neo4jImporter,
+            String dataset,
+            boolean databaseInitialized,
+            float dataModelVersion,
+            double preHPThreshold,
+            double postHPThreshold,
+            long neuronThreshold,
+            boolean addConnectionSetRoiInfoAndWeightHP,
+            boolean addClusterNames,
+            LocalDateTime timeStamp,
+            int pipelineQueueDepth,
+            int pipelineWriterThreads,
+            LoadCheckpointJournal checkpointJournal) {
 
-        Stopwatch timer = Stopwatch.createUnstarted();
+        if (isPhaseComplete(checkpointJournal, CONNECTION_INFO_PHASE, filepath)) {
+            return;
+        }
 
         if (!databaseInitialized) {
             initializeDatabase(neo4jImporter, dataset, dataModelVersion, preHPThreshold, postHPThreshold, addConnectionSetRoiInfoAndWeightHP, addClusterNames, timeStamp);
@@ -260,22 +555,14 @@ public class NeuPrintMain {
 
         LOG.info(String.format("Loading neuron json (connection info only) in batches of size %d", neuronBatchSize));
 
-        try (JsonReader reader = new JsonReader(new FileReader(filepath))) {
-            reader.beginArray();
-            while (reader.hasNext()) {
-                List<Neuron> neuronList = new ArrayList<>();
-                int i = 0;
-                while (reader.hasNext() && i < neuronBatchSize) {
-                    Neuron neuron = Neuron.fromJsonSingleObject(reader);
-                    neuronList.add(neuron);
-                    i++;
-                }
-
-                timer.start();
-                neo4jImporter.addConnectionInfo(dataset, neuronList, addConnectionSetRoiInfoAndWeightHP, preHPThreshold, postHPThreshold, neuronThreshold);
-                LOG.info(String.format("Loading all connection info for batch took: %s", timer.stop()));
-                timer.reset();
-            }
+        try {
+            loadJsonArrayInBatches(filepath, CONNECTION_INFO_PHASE, dataset, neuronBatchSize, NeuPrintJsonDecoder::readNeuron, null, 1, pipelineQueueDepth, pipelineWriterThreads, checkpointJournal,
+                    neuronList -> {
+                        Stopwatch timer = Stopwatch.createStarted();
+                        neo4jImporter.addConnectionInfo(dataset, neuronList, addConnectionSetRoiInfoAndWeightHP, preHPThreshold, postHPThreshold, neuronThreshold);
+                        LOG.info(String.format("Loading all connection info for batch took: %s", timer.stop()));
+                    });
+            checkpointJournal.recordPhaseComplete(CONNECTION_INFO_PHASE);
 
         } catch (IOException e) {
             LOG.error("Error reading neurons JSON: " + e);
@@ -292,9 +579,21 @@ public class NeuPrintMain {
      * @return list of {@link Synapse} objects
      */
     public static List<Synapse> readSynapsesJson(String filepath) {
+        return readSynapsesJson(filepath, 1);
+    }
+
+    /**
+     * Returns a list of {@link Synapse} objects read from a JSON file
+     * at the provided file path.
+     *
+     * @param filepath      path to synapses JSON file
+     * @param parserThreads number of threads decoding chunks of the file (1 to decode it as a stream)
+     * @return list of {@link Synapse} objects
+     */
+    public static List<Synapse> readSynapsesJson(String filepath, int parserThreads) {
         List<Synapse> synapseList = new ArrayList<>();
-        try (BufferedReader reader = new BufferedReader(new FileReader(filepath))) {
-            synapseList = Synapse.fromJson(reader);
+        try {
+            synapseList = readJsonArray(filepath, NeuPrintJsonDecoder::readSynapse, ColumnarReader::readSynapses, parserThreads);
             LOG.info(String.format("Loaded %d synapses from JSON.", synapseList.size()));
         } catch (Exception e) {
             LOG.error("Error reading synapse JSON: " + e);
@@ -314,8 +613,48 @@ public class NeuPrintMain {
                                                 boolean addConnectionSetRoiInfoAndWeightHP,
                                                 boolean addClusterNames,
                                                 LocalDateTime timeStamp) {
+        loadSynapseJsonInBatches(filepath, synapseBatchSize, neo4jImporter, dataset, databaseInitialized, dataModelVersion, preHPThreshold, postHPThreshold, addConnectionSetRoiInfoAndWeightHP, addClusterNames, timeStamp, 1, 0, 1, LoadCheckpointJournal.none());
+    }
 
-        Stopwatch timer = Stopwatch.createUnstarted();
+    /**
+     * Loads a synapse JSON file in batches. If pipelineQueueDepth is greater than 0, the next batches are parsed
+     * while earlier batches are written.
+     *
+     * @param filepath                           path to synapse JSON file
+     * @param synapseBatchSize                   number of synapses per batch
+     * @param neo4jImporter                      importer used for writing
+     * @param dataset                            dataset name
+     * @param databaseInitialized                true if the database has already been initialized for this dataset
+     * @param dataModelVersion                   version of data model
+     * @param preHPThreshold                     high-precision threshold for presynaptic densities
+     * @param postHPThreshold                    high-precision threshold for postsynaptic densities
+     * @param addConnectionSetRoiInfoAndWeightHP boolean indicating if ConnectionSet nodes should have roiInfo property and weightHP should be added to ConnectsTo relationships
+     * @param addClusterNames                    boolean indicating if cluster names should be added to Neuron nodes
+     * @param timeStamp                          time stamp for load
+     * @param jsonParserThreads                  number of threads decoding chunks of the file (1 to decode it as a stream)
+     * @param pipelineQueueDepth                 number of parsed batches that can wait to be written (0 to parse and write batches in turn)
+     * @param pipelineWriterThreads              number of threads writing batches when pipelined
+     * @param checkpointJournal                  journal recording committed batches, used to skip them when a load is resumed
+     */
+    public static void loadSynapseJsonInBatches(String filepath,
+                                                int synapseBatchSize,
+                                                Neo4jImporter neo4jImporter,
+                                                String dataset,
+                                                boolean databaseInitialized,
+                                                float dataModelVersion,
+                                                double preHPThreshold,
+                                                double postHPThreshold,
+                                                boolean addConnectionSetRoiInfoAndWeightHP,
+                                                boolean addClusterNames,
+                                                LocalDateTime timeStamp,
+                                                int jsonParserThreads,
+                                                int pipelineQueueDepth,
+                                                int pipelineWriterThreads,
+                                                LoadCheckpointJournal checkpointJournal) {
+
+        if (isPhaseComplete(checkpointJournal, SYNAPSE_PHASE, filepath)) {
+            return;
+        }
 
         if (!databaseInitialized) {
             initializeDatabase(neo4jImporter, dataset, dataModelVersion, preHPThreshold, postHPThreshold, addConnectionSetRoiInfoAndWeightHP, addClusterNames, timeStamp);
@@ -324,25 +663,16 @@ public class NeuPrintMain {
 
         LOG.info(String.format("Loading synapses in batches of size %d", synapseBatchSize));
 
-        try (JsonReader reader = new JsonReader(new FileReader(filepath))) {
-            reader.beginArray();
-            while (reader.hasNext()) {
-                List<Synapse> synapseList = new ArrayList<>();
-                int i = 0;
-                while (reader.hasNext() && i < synapseBatchSize) {
-                    Synapse synapse = Synapse.fromJsonSingleObject(reader);
-                    synapseList.add(synapse);
-                    i++;
-                }
-
-                timer.start();
-                neo4jImporter.addSynapsesWithRois(dataset, synapseList, timeStamp);
-                LOG.info(String.format("Loading batch of synapses took: %s", timer.stop()));
-                timer.reset();
-
-                neo4jImporter.indexBooleanRoiProperties(dataset);
+        try {
+            loadJsonArrayInBatches(filepath, SYNAPSE_PHASE, dataset, synapseBatchSize, NeuPrintJsonDecoder::readSynapse, ColumnarReader::readSynapses, jsonParserThreads, pipelineQueueDepth, pipelineWriterThreads, checkpointJournal,
+                    synapseList -> {
+                        Stopwatch timer = Stopwatch.createStarted();
+                        neo4jImporter.addSynapsesWithRois(dataset, synapseList, timeStamp);
+                        LOG.info(String.format("Loading batch of synapses took: %s", timer.stop()));
 
-            }
+                        neo4jImporter.indexBooleanRoiProperties(dataset);
+                    });
+            checkpointJournal.recordPhaseComplete(SYNAPSE_PHASE);
 
         } catch (IOException e) {
             LOG.error("Error reading synapse JSON: " + e);
@@ -359,9 +689,21 @@ public class NeuPrintMain {
      * @return list of {@link SynapticConnection} objects
      */
     public static List<SynapticConnection> readConnectionsJson(String filepath) {
+        return readConnectionsJson(filepath, 1);
+    }
+
+    /**
+     * Returns a list of {@link SynapticConnection} objects read from a JSON file
+     * at the provided file path.
+     *
+     * @param filepath      path to connections JSON file
+     * @param parserThreads number of threads decoding chunks of the file (1 to decode it as a stream)
+     * @return list of {@link SynapticConnection} objects
+     */
+    public static List<SynapticConnection> readConnectionsJson(String filepath, int parserThreads) {
         List<SynapticConnection> connectionList = new ArrayList<>();
-        try (BufferedReader reader = new BufferedReader(new FileReader(filepath))) {
-            connectionList = SynapticConnection.fromJson(reader);
+        try {
+            connectionList = readJsonArray(filepath, NeuPrintJsonDecoder::readConnection, ColumnarReader::readConnections, parserThreads);
             LOG.info(String.format("Loaded %d synaptic connections from JSON.", connectionList.size()));
         } catch (Exception e) {
             LOG.error("Error reading connections JSON: " + e);
@@ -381,8 +723,48 @@ public class NeuPrintMain {
                                                    boolean addConnectionSetRoiInfoAndWeightHP,
                                                    boolean addClusterNames,
                                                    LocalDateTime timeStamp) {
+        loadConnectionJsonInBatches(filepath, connectionBatchSize, neo4jImporter, dataset, databaseInitialized, dataModelVersion, preHPThreshold, postHPThreshold, addConnectionSetRoiInfoAndWeightHP, addClusterNames, timeStamp, 1, 0, 1, LoadCheckpointJournal.none());
+    }
 
-        Stopwatch timer = Stopwatch.createUnstarted();
+    /**
+     * Loads a synaptic connections JSON file in batches, then reconciles the synapse counts on the Meta node. If
+     * pipelineQueueDepth is greater than 0, the next batches are parsed while earlier batches are written.
+     *
+     * @param filepath                           path to connections JSON file
+     * @param connectionBatchSize                number of connections per batch
+     * @param neo4jImporter                      importer used for writing
+     * @param dataset                            dataset name
+     * @param databaseInitialized                true if the database has already been initialized for this dataset
+     * @param dataModelVersion                   version of data model
+     * @param preHPThreshold                     high-precision threshold for presynaptic densities
+     * @param postHPThreshold                    high-precision threshold for postsynaptic densities
+     * @param addConnectionSetRoiInfoAndWeightHP boolean indicating if ConnectionSet nodes should have roiInfo property and weightHP should be added to ConnectsTo relationships
+     * @param addClusterNames                    boolean indicating if cluster names should be added to Neuron nodes
+     * @param timeStamp                          time stamp for load
+     * @param jsonParserThreads                  number of threads decoding chunks of the file (1 to decode it as a stream)
+     * @param pipelineQueueDepth                 number of parsed batches that can wait to be written (0 to parse and write batches in turn)
+     * @param pipelineWriterThreads              number of threads writing batches when pipelined
+     * @param checkpointJournal                  journal recording committed batches, used to skip them when a load is resumed
+     */
+    public static void loadConnectionJsonInBatches(String filepath,
+                                                   int connectionBatchSize,
+                                                   Neo4jImporter neo4jImporter,
+                                                   String dataset,
+                                                   boolean databaseInitialized,
+                                                   float dataModelVersion,
+                                                   double preHPThreshold,
+                                                   double postHPThreshold,
+                                                   boolean addConnectionSetRoiInfoAndWeightHP,
+                                                   boolean addClusterNames,
+                                                   LocalDateTime timeStamp,
+                                                   int jsonParserThreads,
+                                                   int pipelineQueueDepth,
+                                                   int pipelineWriterThreads,
+                                                   LoadCheckpointJournal checkpointJournal) {
+
+        if (isPhaseComplete(checkpointJournal, CONNECTION_PHASE, filepath)) {
+            return;
+        }
 
         if (!databaseInitialized) {
             initializeDatabase(neo4jImporter, dataset, dataModelVersion, preHPThreshold, postHPThreshold, addConnectionSetRoiInfoAndWeightHP, addClusterNames, timeStamp);
@@ -390,25 +772,16 @@ public class NeuPrintMain {
 
         LOG.info(String.format("Loading connections in batches of size %d", connectionBatchSize));
 
-        try (JsonReader reader = new JsonReader(new FileReader(filepath))) {
-            reader.beginArray();
-            while (reader.hasNext()) {
-                List<SynapticConnection> connectionsList = new ArrayList<>();
-                int i = 0;
-                // get to start
-
-                while (reader.hasNext() && i < connectionBatchSize) {
-                    SynapticConnection synapticConnection = SynapticConnection.fromJsonSingleObject(reader);
-                    connectionsList.add(synapticConnection);
-                    i++;
-                }
-
-                timer.start();
-                neo4jImporter.addSynapsesTo(dataset, connectionsList, timeStamp);
-                LOG.info(String.format("Loading batch of synaptic connections took: %s", timer.stop()));
-                timer.reset();
+        try {
+            loadJsonArrayInBatches(filepath, CONNECTION_PHASE, dataset, connectionBatchSize, NeuPrintJsonDecoder::readConnection, ColumnarReader::readConnections, jsonParserThreads, pipelineQueueDepth, pipelineWriterThreads, checkpointJournal,
+                    connectionsList -> {
+                        Stopwatch timer = Stopwatch.createStarted();
+                        neo4jImporter.addSynapsesTo(dataset, connectionsList, timeStamp);
+                        LOG.info(String.format("Loading batch of synaptic connections took: %s", timer.stop()));
+                    });
 
-            }
+            neo4jImporter.reconcileSynapseCounts(dataset, timeStamp);
+            checkpointJournal.recordPhaseComplete(CONNECTION_PHASE);
 
         } catch (IOException e) {
             LOG.error("Error reading connection JSON: " + e);
@@ -417,6 +790,192 @@ public class NeuPrintMain {
 
     }
 
+    /**
+     * @param checkpointJournal journal recording committed batches
+     * @param phase             name of load phase
+     * @param filepath          path to input file
+     * @return true (after logging that the phase is skipped) if the journal records that the phase is complete
+     */
+    private static boolean isPhaseComplete(final LoadCheckpointJournal checkpointJournal,
+                                           final String phase,
+                                           final String filepath) {
+        if (checkpointJournal.isPhaseComplete(phase)) {
+            LOG.info(String.format("Skipping %s: already loaded from %s", phase, filepath));
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Loads a JSON array or columnar file in batches, recording each written batch in the checkpoint journal. If the journal
+     * records batches from an earlier load, the array elements up to the first batch that was not written
+     * are skipped without being parsed (or, for shards, without being written). An input of several shards is
+     * loaded as if their arrays were one array, in the order of the shard names.
+     *
+     * @param filepath              path to JSON file containing an array, to a columnar file, or to a directory or glob pattern of
+     *                              JSON shard files (see {@link JsonInputFiles#resolve(String)}); JSON files may be gzip compressed
+     * @param phase                 name of load phase, used in log messages and in the journal
+     * @param dataset               dataset name, which qualifies the phase in the load metrics
+     * @param batchSize             maximum number of objects per batch
+     * @param parser                decodes one object
+     * @param rowReader             reads rows of a columnar file (null if the objects have no columnar format)
+     * @param parserThreads         number of threads decoding chunks of the file or shards (1 to decode it as a stream)
+     * @param pipelineQueueDepth    number of parsed batches that can wait to be written (0 to parse and write batches in turn)
+     * @param pipelineWriterThreads number of threads writing batches when pipelined
+     * @param checkpointJournal     journal recording committed batches
+     * @param writer                writes a batch to the database
+     * @param <T>                   type of parsed object
+     * @throws IOException if the file cannot be read or the journal cannot be written
+     */
+    private static <T> void loadJsonArrayInBatches(final String filepath,
+                                                   final String phase,
+                                                   final String dataset,
+                                                   final int batchSize,
+                                                   final NeuPrintJsonDecoder.ElementDecoder<T> parser,
+                                                   final ColumnarReader.RowReader<T> rowReader,
+                                                   final int parserThreads,
+                                                   final int pipelineQueueDepth,
+                                                   final int pipelineWriterThreads,
+                                                   final LoadCheckpointJournal checkpointJournal,
+                                                   final PipelinedBatchLoader.BatchWriter<T> writer) throws IOException {
+
+        final long firstIndex = checkpointJournal.getCommittedCount(phase);
+        final long firstBatchNumber = checkpointJournal.getNextBatchNumber(phase);
+        if (firstIndex > 0) {
+            LOG.info(String.format("Resuming %s after %d committed objects", phase, firstIndex));
+        }
+
+        final List<Path> files = JsonInputFiles.resolve(filepath);
+        // the bytes read from the input give the progress of the phase and its estimated time remaining
+        final LoadMetrics.PhaseMetrics metrics = LoadMetrics.getInstance().getPhase(datasetPhase(dataset, phase));
+        long inputBytes = 0;
+        for (final Path file : files) {
+            inputBytes += Files.size(file);
+        }
+        metrics.setInputBytes(inputBytes);
+
+        if (files.size() > 1) {
+            LOG.info(String.format("Reading %d shards of %s with %d parser threads", files.size(), filepath, parserThreads));
+            try (ShardedJsonArrayBatchReader<T> reader = new ShardedJsonArrayBatchReader<>(files, batchSize, parserThreads, parser, firstIndex, metrics::addBytesRead)) {
+                new PipelinedBatchLoader<T>(metrics.getName(), pipelineQueueDepth, pipelineWriterThreads).load(
+                        reader,
+                        writer,
+                        (batchNumber, batch) -> checkpointJournal.recordBatch(phase, firstBatchNumber + batchNumber, firstIndex + batchNumber * batchSize, batch.size()));
+            }
+            return;
+        }
+
+        final Path path = files.get(0);
+        if (rowReader != null && ColumnarFile.isColumnarFile(path)) {
+            try (ColumnarReader reader = ColumnarReader.open(path)) {
+                final long[] nextRow = {firstIndex};
+                final double bytesPerRow = reader.getRowCount() == 0 ? 0 : (double) inputBytes / reader.getRowCount();
+                metrics.addBytesRead((long) (firstIndex * bytesPerRow));
+                new PipelinedBatchLoader<T>(metrics.getName(), pipelineQueueDepth, pipelineWriterThreads).load(
+                        () -> {
+                            final List<T> batch = rowReader.read(reader, nextRow[0], batchSize);
+                            nextRow[0] += batch.size();
+                            metrics.addBytesRead((long) (batch.size() * bytesPerRow));
+                            return batch;
+                        },
+                        writer,
+                        (batchNumber, batch) -> checkpointJournal.recordBatch(phase, firstBatchNumber + batchNumber, firstIndex + batchNumber * batchSize, batch.size()));
+            }
+            return;
+        }
+
+        // a compressed file cannot be split without decompressing it, so it is decoded as a stream
+        if (parserThreads > 1 && !JsonInputFiles.isCompressed(path)) {
+            try (ParallelJsonArrayBatchReader<T> reader = new ParallelJsonArrayBatchReader<>(path, batchSize, parserThreads, parser, firstIndex,
+                                                                                                  JsonArraySplitter.DEFAULT_CHUNK_BYTES, metrics::addBytesRead)) {
+                new PipelinedBatchLoader<T>(metrics.getName(), pipelineQueueDepth, pipelineWriterThreads).load(
+                        reader,
+                        writer,
+                        (batchNumber, batch) -> checkpointJournal.recordBatch(phase, firstBatchNumber + batchNumber, firstIndex + batchNumber * batchSize, batch.size()));
+            }
+            return;
+        }
+
+        try (NeuPrintJsonDecoder decoder = NeuPrintJsonDecoder.forFile(path.toString(), metrics::addBytesRead)) {
+            final JsonByteReader reader = decoder.getReader();
+            reader.beginArray();
+            for (long i = 0; i < firstIndex && reader.hasNext(); i++) {
+                reader.skipValue();
+            }
+            new PipelinedBatchLoader<T>(metrics.getName(), pipelineQueueDepth, pipelineWriterThreads).load(
+                    jsonArrayBatchReader(decoder, batchSize, parser),
+                    writer,
+                    (batchNumber, batch) -> checkpointJournal.recordBatch(phase, firstBatchNumber + batchNumber, firstIndex + batchNumber * batchSize, batch.size()));
+        }
+    }
+
+    /**
+     * Returns a {@link PipelinedBatchLoader.BatchReader} that parses up to batchSize objects at a time
+     * from a JSON array whose beginning has already been read.
+     *
+     * @param decoder   JSON decoder positioned inside an array
+     * @param batchSize maximum number of objects per batch
+     * @param parser    decodes one object
+     * @param <T>       type of parsed object
+     * @return batch reader
+     */
+    private static <T> PipelinedBatchLoader.BatchReader<T> jsonArrayBatchReader(final NeuPrintJsonDecoder decoder,
+                                                                                final int batchSize,
+                                                                                final NeuPrintJsonDecoder.ElementDecoder<T> parser) {
+        return () -> {
+            final List<T> batch = new ArrayList<>();
+            while (decoder.getReader().hasNext() && batch.size() < batchSize) {
+                batch.add(parser.decode(decoder));
+            }
+            return batch;
+        };
+    }
+
+    /**
+     * Decodes a whole JSON array, either as a stream or in chunks decoded concurrently, or reads a whole columnar file.
+     * The arrays of several shards are decoded concurrently and concatenated in the order of the shard names.
+     *
+     * @param filepath      path to JSON file containing an array, to a columnar file, or to a directory or glob pattern of
+     *                      JSON shard files (see {@link JsonInputFiles#resolve(String)}); JSON files may be gzip compressed
+     * @param parser        decodes one object
+     * @param rowReader     reads rows of a columnar file (null if the objects have no columnar format)
+     * @param parserThreads number of threads decoding chunks of the file or shards (1 to decode it as a stream)
+     * @param <T>           type of parsed object
+     * @return decoded objects in file order
+     * @throws IOException if the file cannot be read
+     */
+    private static <T> List<T> readJsonArray(final String filepath,
+                                             final NeuPrintJsonDecoder.ElementDecoder<T> parser,
+                                             final ColumnarReader.RowReader<T> rowReader,
+                                             final int parserThreads) throws IOException {
+        final List<Path> files = JsonInputFiles.resolve(filepath);
+        if (files.size() > 1) {
+            final List<T> objects = new ArrayList<>();
+            try (ShardedJsonArrayBatchReader<T> reader = new ShardedJsonArrayBatchReader<>(files, SHARD_READ_BATCH_SIZE, parserThreads, parser, 0)) {
+                for (List<T> batch = reader.readBatch(); !batch.isEmpty(); batch = reader.readBatch()) {
+                    objects.addAll(batch);
+                }
+            }
+            return objects;
+        }
+
+        final Path path = files.get(0);
+        if (rowReader != null && ColumnarFile.isColumnarFile(path)) {
+            try (ColumnarReader reader = ColumnarReader.open(path)) {
+                if (reader.getRowCount() > Integer.MAX_VALUE) {
+                    throw new IOException(filepath + " has too many rows to read into one list; load it in batches");
+                }
+                return rowReader.read(reader, 0, (int) reader.getRowCount());
+            }
+        }
+        if (parserThreads > 1 && !JsonInputFiles.isCompressed(path)) {
+            return JsonArraySplitter.decodeInParallel(path, parser, parserThreads);
+        }
+        try (NeuPrintJsonDecoder decoder = NeuPrintJsonDecoder.forFile(path.toString())) {
+            return decoder.readArray(parser);
+        }
+    }
+
     public static MetaInfo readMetaInfoJson(String filepath) {
         try (BufferedReader reader = new BufferedReader(new FileReader(filepath))) {
             MetaInfo metaInfo = MetaInfo.fromJson(reader);
@@ -437,14 +996,13 @@ public class NeuPrintMain {
      */
     public static List<Skeleton> createSkeletonListFromSwcFileArray(File[] arrayOfSwcFiles) {
         List<Skeleton> skeletonList = new ArrayList<>();
+        SwcParser swcParser = new SwcParser();
         for (File swcFile : arrayOfSwcFiles) {
             String filepath = swcFile.getAbsolutePath();
             Long associatedBodyId = setSkeletonAssociatedBodyId(filepath);
-            Skeleton skeleton = new Skeleton();
 
-            try (BufferedReader reader = new BufferedReader(new FileReader(filepath))) {
-                skeleton.fromSwc(reader, associatedBodyId);
-                skeletonList.add(skeleton);
+            try {
+                skeletonList.add(swcParser.parse(swcFile.toPath(), associatedBodyId));
             } catch (Exception e) {
                 LOG.error("Error reading skeleton files: " + e);
                 System.exit(1);
@@ -464,43 +1022,87 @@ public class NeuPrintMain {
                                               boolean addConnectionSetRoiInfoAndWeightHP,
                                               boolean addClusterNames,
                                               LocalDateTime timeStamp) {
+        loadSkeletonsInBatches(arrayOfSwcFiles, skeletonBatchSize, databaseInitialized, neo4jImporter, dataset, dataModelVersion, preHPThreshold, postHPThreshold, addConnectionSetRoiInfoAndWeightHP, addClusterNames, timeStamp, Runtime.getRuntime().availableProcessors(), 0, 1);
+    }
 
-        Stopwatch timer = Stopwatch.createUnstarted();
-
-        if (!databaseInitialized) {
-            initializeDatabase(neo4jImporter, dataset, dataModelVersion, preHPThreshold, postHPThreshold, addConnectionSetRoiInfoAndWeightHP, addClusterNames, timeStamp);
-        }
-
-        LOG.info(String.format("Loading skeletons in batches of size %d", skeletonBatchSize));
-
-        int currentFileIndex = 0;
-        while (currentFileIndex < arrayOfSwcFiles.length) {
-            List<Skeleton> skeletonList = new ArrayList<>();
-            int i = 0;
-            while (currentFileIndex < arrayOfSwcFiles.length && i < skeletonBatchSize) {
-                String filepath = arrayOfSwcFiles[currentFileIndex].getAbsolutePath();
-                currentFileIndex++;
-                Long associatedBodyId = setSkeletonAssociatedBodyId(filepath);
-                Skeleton skeleton = new Skeleton();
-                try (BufferedReader reader = new BufferedReader(new FileReader(filepath))) {
-                    skeleton.fromSwc(reader, associatedBodyId);
-                    skeletonList.add(skeleton);
-                    i++;
-                } catch (Exception e) {
-                    LOG.error("Error reading skeleton files: " + e);
-                    System.exit(1);
-                }
-            }
-
-            timer.start();
-            neo4jImporter.addSkeletonNodes(dataset, skeletonList, timeStamp);
-            LOG.info("Loading all Skeleton nodes took: " + timer.stop());
-            timer.reset();
+    /**
+     * Loads skeletons from swc files in batches. The files are parsed on a pool of threads while earlier batches are
+     * written, and each batch is written with {@link Neo4jImporter#addSkeletons}. The number of skeletons and SkelNodes
+     * loaded per second is logged after each batch.
+     *
+     * @param arrayOfSwcFiles                    {@link File} array of swc files
+     * @param skeletonBatchSize                  number of skeletons per batch
+     * @param databaseInitialized                true if the database has already been initialized for this dataset
+     * @param neo4jImporter                      importer used for writing
+     * @param dataset                            dataset name
+     * @param dataModelVersion                   version of data model
+     * @param preHPThreshold                     high-precision threshold for presynaptic densities
+     * @param postHPThreshold                    high-precision threshold for postsynaptic densities
+     * @param addConnectionSetRoiInfoAndWeightHP boolean indicating if ConnectionSet nodes should have roiInfo property and weightHP should be added to ConnectsTo relationships
+     * @param addClusterNames                    boolean indicating if cluster names should be added to Neuron nodes
+     * @param timeStamp                          time stamp for load
+     * @param skeletonReaderThreads              number of threads parsing swc files
+     * @param pipelineQueueDepth                 number of parsed batches that can wait to be written (0 to write each batch before taking the next)
+     * @param pipelineWriterThreads              number of threads writing batches when pipelined
+     */
+    public static void loadSkeletonsInBatches(File[] arrayOfSwcFiles,
+                                              int skeletonBatchSize,
+                                              boolean databaseInitialized,
+                                              Neo4jImporter neo4jImporter,
+                                              String dataset,
+                                              float dataModelVersion,
+                                              double preHPThreshold,
+                                              double postHPThreshold,
+                                              boolean addConnectionSetRoiInfoAndWeightHP,
+                                              boolean addClusterNames,
+                                              LocalDateTime timeStamp,
+                                              int skeletonReaderThreads,
+                                              int pipelineQueueDepth,
+                                              int pipelineWriterThreads) {
+
+        if (!databaseInitialized) {
+            initializeDatabase(neo4jImporter, dataset, dataModelVersion, preHPThreshold, postHPThreshold, addConnectionSetRoiInfoAndWeightHP, addClusterNames, timeStamp);
+        }
+
+        LOG.info(String.format("Loading skeletons in batches of size %d, parsing swc files on %d thread(s)", skeletonBatchSize, skeletonReaderThreads));
+
+        final long start = System.nanoTime();
+        final AtomicLong skeletonCount = new AtomicLong();
+        final AtomicLong skelNodeCount = new AtomicLong();
+
+        try (SwcBatchReader reader = new SwcBatchReader(arrayOfSwcFiles, skeletonBatchSize, skeletonReaderThreads, swcFile -> setSkeletonAssociatedBodyId(swcFile.getAbsolutePath()))) {
+            new PipelinedBatchLoader<Skeleton>(datasetPhase(dataset, SKELETON_PHASE), pipelineQueueDepth, pipelineWriterThreads).load(
+                    reader,
+                    skeletonList -> {
+                        neo4jImporter.addSkeletons(dataset, skeletonList, timeStamp);
 
+                        final long skeletons = skeletonCount.addAndGet(skeletonList.size());
+                        final long skelNodes = skelNodeCount.addAndGet(skeletonList.stream().mapToLong(Skeleton::getNodeCount).sum());
+                        final double seconds = Math.max(System.nanoTime() - start, 1) / 1e9;
+                        LOG.info(String.format("Loaded %d of %d skeletons (%d SkelNodes): %.1f skeletons/s, %.1f SkelNodes/s",
+                                skeletons, arrayOfSwcFiles.length, skelNodes, skeletons / seconds, skelNodes / seconds));
+                    });
+        } catch (IOException e) {
+            LOG.error("Error reading skeleton files: " + e);
+            System.exit(1);
         }
 
     }
 
+    /**
+     * Selects the write mode chosen on the command line for a {@link Neo4jImporter}.
+     *
+     * @param neo4jImporter importer to configure
+     * @param parameters    command line parameters
+     * @return the importer
+     */
+    private static Neo4jImporter configureImporter(final Neo4jImporter neo4jImporter, final NeuPrintParameters parameters) {
+        neo4jImporter.setUseUnwindBatches(parameters.unwindBatches);
+        neo4jImporter.setUseRoiPropertyMaps(parameters.roiPropertyMaps);
+        neo4jImporter.setDeferIndexes(parameters.deferIndexes);
+        return neo4jImporter;
+    }
+
     /**
      * Returns the associated bodyId for the Skeleton read from the swc file name.
      *
@@ -617,6 +1219,7 @@ public class NeuPrintMain {
         neo4jImporter.addSynapsesWithRois("test", synapseList, timeStamp);
         neo4jImporter.indexBooleanRoiProperties(dataset);
         neo4jImporter.addSynapsesTo("test", connectionsList, timeStamp);
+        neo4jImporter.reconcileSynapseCounts("test", timeStamp);
         neo4jImporter.addSegments("test", neuronList, timeStamp);
         neo4jImporter.addConnectionInfo("test", neuronList, addConnectionSetRoiInfoAndWeightHP, preHPThreshold, postHPThreshold, neuronThreshold);
         neo4jImporter.addSkeletonNodes("test", skeletonList, timeStamp);
@@ -628,8 +1231,6 @@ public class NeuPrintMain {
         final JCommander jCommander = new JCommander(parameters);
         jCommander.setProgramName("java -jar neuprint.jar");
 
-        //TODO: add ability to pick up where it left off during load
-
         boolean parseFailed = true;
         try {
             jCommander.parse(args);
@@ -640,6 +1241,97 @@ public class NeuPrintMain {
             LOG.info("failed to parse command line arguments", t);
         }
 
+        if (!parseFailed && parameters.dbProperties == null && parameters.adminImportCsvDirectory == null && parameters.storeDirectory == null &&
+                parameters.columnarOutputDirectory == null && !parameters.dryRun) {
+            JCommander.getConsole().println("\nERROR: --dbProperties is required unless --adminImportCsvDirectory, --storeDirectory, --columnarOutputDirectory or --dryRun is specified");
+            parseFailed = true;
+        }
+
+        if (!parseFailed && parameters.dbProperties != null) {
+            // reported before loading rather than when the first phase opens the database
+            try {
+                parameters.getDbConfig();
+            } catch (final IllegalArgumentException e) {
+                JCommander.getConsole().println("\nERROR: " + e.getMessage() + (e.getCause() == null ? "" : ": " + e.getCause().getMessage()));
+                parseFailed = true;
+            }
+        }
+
+        if (!parseFailed && parameters.dryRun &&
+                (parameters.adminImportCsvDirectory != null || parameters.storeDirectory != null || parameters.columnarOutputDirectory != null)) {
+            JCommander.getConsole().println("\nERROR: --dryRun cannot be used with --adminImportCsvDirectory, --storeDirectory or --columnarOutputDirectory");
+            parseFailed = true;
+        }
+
+        if (!parseFailed && parameters.columnarOutputDirectory != null) {
+            if (parameters.adminImportCsvDirectory != null || parameters.storeDirectory != null) {
+                JCommander.getConsole().println("\nERROR: --columnarOutputDirectory cannot be used with --adminImportCsvDirectory or --storeDirectory");
+                parseFailed = true;
+            } else if (parameters.synapseJson == null && parameters.connectionJson == null) {
+                JCommander.getConsole().println("\nERROR: --columnarOutputDirectory requires --synapseJson or --connectionJson");
+                parseFailed = true;
+            }
+        }
+
+        if (!parseFailed && parameters.adminImportCsvDirectory != null && parameters.storeDirectory != null) {
+            JCommander.getConsole().println("\nERROR: --adminImportCsvDirectory and --storeDirectory cannot be used together");
+            parseFailed = true;
+        }
+
+        if (!parseFailed && parameters.clientSideConnectionInfo &&
+                (parameters.synapseJson == null || parameters.connectionJson == null || parameters.neuronJson == null)) {
+            JCommander.getConsole().println("\nERROR: --clientSideConnectionInfo requires --synapseJson, --connectionJson and --neuronJson");
+            parseFailed = true;
+        }
+
+        if (!parseFailed && parameters.locationIndex && parameters.neuronBatchSize > 0) {
+            JCommander.getConsole().println("\nERROR: --locationIndex cannot be used with --neuronBatchSize");
+            parseFailed = true;
+        }
+
+        if (!parseFailed && parameters.clientSideConnectionInfo && (parameters.neuronBatchSize > 0 || parameters.addConnectionInfoOnly)) {
+            JCommander.getConsole().println("\nERROR: --clientSideConnectionInfo cannot be used with --neuronBatchSize or --addConnectionInfoOnly");
+            parseFailed = true;
+        }
+
+        if (!parseFailed && parameters.diffLoad && parameters.neuronJson == null && parameters.datasetManifest == null) {
+            JCommander.getConsole().println("\nERROR: --diffLoad requires --neuronJson");
+            parseFailed = true;
+        }
+
+        if (!parseFailed && parameters.diffLoad &&
+                (parameters.clientSideConnectionInfo || parameters.locationIndex || parameters.addConnectionInfoOnly || parameters.resume)) {
+            JCommander.getConsole().println("\nERROR: --diffLoad cannot be used with --clientSideConnectionInfo, --locationIndex, --addConnectionInfoOnly or --resume");
+            parseFailed = true;
+        }
+
+        if (!parseFailed && parameters.diffLoad &&
+                (parameters.adminImportCsvDirectory != null || parameters.storeDirectory != null || parameters.columnarOutputDirectory != null)) {
+            JCommander.getConsole().println("\nERROR: --diffLoad cannot be used with --adminImportCsvDirectory, --storeDirectory or --columnarOutputDirectory");
+            parseFailed = true;
+        }
+
+        if (!parseFailed && (parameters.datasetLabel == null) == (parameters.datasetManifest == null)) {
+            JCommander.getConsole().println("\nERROR: either --datasetLabel or --datasetManifest is required");
+            parseFailed = true;
+        }
+
+        if (!parseFailed && parameters.datasetManifest != null &&
+                (parameters.adminImportCsvDirectory != null || parameters.storeDirectory != null || parameters.columnarOutputDirectory != null)) {
+            JCommander.getConsole().println("\nERROR: --datasetManifest cannot be used with --adminImportCsvDirectory, --storeDirectory or --columnarOutputDirectory");
+            parseFailed = true;
+        }
+
+        List<NeuPrintParameters> datasetParameters = Collections.singletonList(parameters);
+        if (!parseFailed && parameters.datasetManifest != null) {
+            try {
+                datasetParameters = readDatasetManifest(parameters.datasetManifest, parameters);
+            } catch (final IOException | IllegalArgumentException e) {
+                JCommander.getConsole().println("\nERROR: failed to read --datasetManifest " + parameters.datasetManifest + "\n\n" + e.getMessage());
+                parseFailed = true;
+            }
+        }
+
         if (parameters.help || parseFailed) {
             JCommander.getConsole().println("");
             jCommander.usage();
@@ -648,194 +1340,888 @@ public class NeuPrintMain {
 
         LOG.info("running with parameters: " + parameters);
 
-        final String dataset = parameters.datasetLabel;
-        final float dataModelVersion = parameters.dataModelVersion;
-        final float preHPThreshold = parameters.preHPThreshold;
-        final float postHPThreshold = parameters.postHPThreshold;
-        final long neuronThreshold = parameters.neuronThreshold;
         final LocalDateTime timeStamp = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS);
 
-        boolean databaseInitialized = false;
+        for (final NeuPrintParameters datasetParameter : datasetParameters) {
+            LOG.info("Dataset is: " + datasetParameter.datasetLabel);
+        }
+
+        if (parameters.columnarOutputDirectory != null) {
+            convertToColumnar(parameters);
+            return;
+        }
+
+        if (parameters.adminImportCsvDirectory != null || parameters.storeDirectory != null) {
+            writeOffline(parameters, timeStamp);
+            return;
+        }
 
-        LOG.info("Dataset is: " + dataset);
+        LoadProfile profile = null;
+        if (parameters.dryRun) {
+            final DbConfig dbConfig = parameters.getDbConfig();
+            profile = new LoadProfile(parameters.dryRunSampleInterval, dbConfig == null ? 1000 : dbConfig.getQueryCacheSize());
+        }
+        LoadMetrics.registerMBean();
+        LoadStatusServer statusServer = null;
+        boolean loadFailed = false;
 
         try {
 
-            Stopwatch timer = Stopwatch.createUnstarted();
+            if (parameters.statusPort > 0) {
+                statusServer = LoadStatusServer.start(parameters.statusPort, LoadMetrics.getInstance());
+            }
 
-            if (parameters.synapseJson != null) {
+            loadDatasets(parameters, datasetParameters, profile, timeStamp);
 
-                if (parameters.synapseBatchSize > 0) {
-                    try (Neo4jImporter neo4jImporter = new Neo4jImporter(parameters.getDbConfig())) {
-                        loadSynapseJsonInBatches(parameters.synapseJson, parameters.synapseBatchSize, neo4jImporter, dataset, false, dataModelVersion, preHPThreshold, postHPThreshold, parameters.addConnectionSetRoiInfoAndWeightHP, parameters.addClusterNames, timeStamp);
-                        databaseInitialized = true;
-                    }
-                } else {
+        } catch (Exception e) {
+            LOG.error("Error loading data: " + e);
+            // exit after the report of the failed load is logged
+            loadFailed = true;
+        } finally {
+            LOG.info(LoadMetrics.getInstance().getStatusReport());
+            if (profile != null) {
+                LOG.info(profile.getReport(LoadMetrics.getInstance()));
+            }
+            if (statusServer != null) {
+                statusServer.close();
+            }
+        }
 
-                    timer.start();
-                    List<Synapse> synapseList = readSynapsesJson(parameters.synapseJson);
-                    LOG.info(String.format("Reading in synapse JSON took: %s", timer.stop()));
-                    timer.reset();
+        if (loadFailed) {
+            System.exit(1);
+        }
 
-                    try (Neo4jImporter neo4jImporter = new Neo4jImporter(parameters.getDbConfig())) {
+    }
 
-                        initializeDatabase(neo4jImporter, dataset, dataModelVersion, preHPThreshold, postHPThreshold, parameters.addConnectionSetRoiInfoAndWeightHP, parameters.addClusterNames, timeStamp);
-                        databaseInitialized = true;
-                        timer.start();
-                        neo4jImporter.addSynapsesWithRois(dataset, synapseList, timeStamp);
-                        LOG.info(String.format("Loading all synapses took: %s", timer.stop()));
-                        timer.reset();
+    /**
+     * Reads a dataset manifest (see --datasetManifest): a JSON array with an object for each dataset, whose keys are
+     * the names of dataset options without the leading dashes. Options a dataset does not set are taken from the
+     * command line.
+     *
+     * @param filepath   path to manifest
+     * @param parameters command line parameters
+     * @return parameters of each dataset, in manifest order
+     * @throws IOException              if the manifest cannot be read
+     * @throws IllegalArgumentException if the manifest is not an array of objects, names an unknown option or an
+     *                                  option shared by all datasets, or does not name each dataset exactly once
+     */
+    static List<NeuPrintParameters> readDatasetManifest(final String filepath,
+                                                        final NeuPrintParameters parameters) throws IOException {
 
-                        neo4jImporter.indexBooleanRoiProperties(dataset);
+        final JsonElement manifest;
+        try (BufferedReader reader = new BufferedReader(new FileReader(filepath))) {
+            manifest = new JsonParser().parse(reader);
+        } catch (final JsonParseException e) {
+            throw new IllegalArgumentException("manifest is not valid JSON: " + e.getMessage());
+        }
+        if (!manifest.isJsonArray() || manifest.getAsJsonArray().size() == 0) {
+            throw new IllegalArgumentException("manifest must be a non-empty array with an object for each dataset");
+        }
 
-                    }
+        final Set<String> options = new HashSet<>();
+        for (final Field field : NeuPrintParameters.class.getDeclaredFields()) {
+            if (field.isAnnotationPresent(Parameter.class)) {
+                options.add(field.getName());
+            }
+        }
+
+        final JsonObject commandLine = JsonUtils.GSON.toJsonTree(parameters).getAsJsonObject();
+        final List<NeuPrintParameters> datasetParameters = new ArrayList<>();
+        final Set<String> datasets = new HashSet<>();
+        for (final JsonElement element : manifest.getAsJsonArray()) {
+            if (!element.isJsonObject()) {
+                throw new IllegalArgumentException("manifest entry is not an object: " + element);
+            }
+            final JsonObject merged = commandLine.deepCopy();
+            for (final Map.Entry<String, JsonElement> option : element.getAsJsonObject().entrySet()) {
+                if (!options.contains(option.getKey())) {
+                    throw new IllegalArgumentException("unknown option in manifest: " + option.getKey());
+                } else if (SHARED_OPTIONS.contains(option.getKey())) {
+                    throw new IllegalArgumentException("option applies to all datasets and can only be given on the command line: " + option.getKey());
                 }
+                merged.add(option.getKey(), option.getValue());
+            }
 
+            final NeuPrintParameters dataset;
+            try {
+                dataset = JsonUtils.GSON.fromJson(merged, NeuPrintParameters.class);
+            } catch (final JsonParseException e) {
+                throw new IllegalArgumentException("invalid option value in manifest entry " + element + ": " + e.getMessage());
+            }
+            if (dataset.datasetLabel == null) {
+                throw new IllegalArgumentException("manifest entry has no datasetLabel: " + element);
+            } else if (!datasets.add(dataset.datasetLabel)) {
+                throw new IllegalArgumentException("dataset is listed more than once in manifest: " + dataset.datasetLabel);
+            } else if (dataset.clientSideConnectionInfo && (dataset.synapseJson == null || dataset.connectionJson == null || dataset.neuronJson == null)) {
+                throw new IllegalArgumentException("clientSideConnectionInfo requires synapseJson, connectionJson and neuronJson: " + dataset.datasetLabel);
+            } else if (dataset.clientSideConnectionInfo && (dataset.neuronBatchSize > 0 || dataset.addConnectionInfoOnly)) {
+                throw new IllegalArgumentException("clientSideConnectionInfo cannot be used with neuronBatchSize or addConnectionInfoOnly: " + dataset.datasetLabel);
+            } else if (dataset.locationIndex && dataset.neuronBatchSize > 0) {
+                throw new IllegalArgumentException("locationIndex cannot be used with neuronBatchSize: " + dataset.datasetLabel);
+            } else if (dataset.diffLoad && dataset.neuronJson == null) {
+                throw new IllegalArgumentException("diffLoad requires neuronJson: " + dataset.datasetLabel);
+            } else if (dataset.diffLoad && (dataset.clientSideConnectionInfo || dataset.locationIndex || dataset.addConnectionInfoOnly || dataset.resume)) {
+                throw new IllegalArgumentException("diffLoad cannot be used with clientSideConnectionInfo, locationIndex, addConnectionInfoOnly or resume: " + dataset.datasetLabel);
             }
+            datasetParameters.add(dataset);
+        }
+        return datasetParameters;
+    }
 
-            if (parameters.connectionJson != null) {
+    /**
+     * Loads one or more datasets into the database in one load. The phases of all datasets are added to one
+     * {@link LoadPhaseScheduler}, so that phases of different datasets run at the same time within the writer
+     * budget, while the phases of each dataset wait for the data they need from earlier phases of the same
+     * dataset. As each dataset has its own labels, their phases only share the schema, and the databases are
+     * initialized one after another. Phases, load metrics and dry run profiles are named after their dataset.
+     *
+     * @param parameters        command line parameters, for the options shared by all datasets
+     * @param datasetParameters parameters of each dataset
+     * @param profile           profile recording the statements of a dry run (null to load)
+     * @param timeStamp         time stamp for load
+     * @return scheduler that ran the load
+     * @throws Exception the first failure of a phase
+     */
+    static LoadPhaseScheduler loadDatasets(final NeuPrintParameters parameters,
+                                           final List<NeuPrintParameters> datasetParameters,
+                                           final LoadProfile profile,
+                                           final LocalDateTime timeStamp) throws Exception {
 
-                if (parameters.connectionBatchSize > 0) {
-                    try (Neo4jImporter neo4jImporter = new Neo4jImporter(parameters.getDbConfig())) {
-                        loadConnectionJsonInBatches(parameters.connectionJson, parameters.connectionBatchSize, neo4jImporter, dataset, databaseInitialized, dataModelVersion, preHPThreshold, postHPThreshold, parameters.addConnectionSetRoiInfoAndWeightHP, parameters.addClusterNames, timeStamp);
-                        databaseInitialized = true;
-                    }
-                } else {
-                    timer.start();
-                    List<SynapticConnection> connectionsList = readConnectionsJson(parameters.connectionJson);
-                    LOG.info(String.format("Reading in synaptic connections JSON took: %s", timer.stop()));
-                    timer.reset();
+        final List<LoadState> states = new ArrayList<>();
+        final LoadPhaseScheduler scheduler = new LoadPhaseScheduler(parameters.concurrentPhases || datasetParameters.size() > 1, parameters.maxPhaseWriters);
+        try {
+            for (final NeuPrintParameters datasetParameter : datasetParameters) {
+                final LoadState state = new LoadState(datasetParameter, timeStamp, profile);
+                states.add(state);
+                addLoadPhases(scheduler, state);
+            }
+            scheduler.run();
+        } finally {
+            if (states.size() > 1) {
+                for (final LoadState state : states) {
+                    LOG.info(state.getProgress());
+                }
+            }
+            for (final LoadState state : states) {
+                state.close();
+            }
+        }
+        return scheduler;
+    }
 
-                    try (Neo4jImporter neo4jImporter = new Neo4jImporter(parameters.getDbConfig())) {
+    /**
+     * @param dataset dataset name
+     * @param name    name of a load phase or of the data it uses
+     * @return name qualified with the dataset, so that the phases and data of datasets loaded together are told apart
+     */
+    private static String datasetPhase(final String dataset, final String name) {
+        return dataset + ": " + name;
+    }
 
-                        if (!databaseInitialized) {
-                            initializeDatabase(neo4jImporter, dataset, dataModelVersion, preHPThreshold, postHPThreshold, parameters.addConnectionSetRoiInfoAndWeightHP, parameters.addClusterNames, timeStamp);
-                            databaseInitialized = true;
-                        }
-                        timer.start();
-                        neo4jImporter.addSynapsesTo(dataset, connectionsList, timeStamp);
-                        LOG.info(String.format("Loading all synaptic connections took: %s", timer.stop()));
-                        timer.reset();
+    /**
+     * Input, checkpoint journals and intermediate results shared by the phases of a load.
+     */
+    private static class LoadState implements Closeable {
+
+        final NeuPrintParameters parameters;
+        final String dataset;
+        final LocalDateTime timeStamp;
+
+        LoadCheckpointJournal synapseJournal;
+        LoadCheckpointJournal connectionJournal;
+        LoadCheckpointJournal neuronJournal;
+
+        // sorted copies when --mortonSort is specified
+        String synapseInput;
+        String connectionInput;
+
+        // kept for computing connection info client side
+        List<Synapse> loadedSynapseList;
+        List<SynapticConnection> loadedConnectionsList;
+
+        // filled while loading neurons when --locationIndex is specified
+        LocationBodyIdIndex locationIndex;
+
+        // statements counted instead of written when --dryRun is specified
+        final LoadProfile profile;
+
+        // compares the input with the stored content hashes when --diffLoad is specified
+        final DiffLoader diffLoader;
+
+        // phases of this dataset in the scheduler
+        final List<LoadPhaseScheduler.Phase> phases = new ArrayList<>();
+
+        LoadState(final NeuPrintParameters parameters, final LocalDateTime timeStamp, final LoadProfile profile) {
+            this.parameters = parameters;
+            this.dataset = parameters.datasetLabel;
+            this.timeStamp = timeStamp;
+            this.synapseInput = parameters.synapseJson;
+            this.connectionInput = parameters.connectionJson;
+            this.profile = profile;
+            this.diffLoader = parameters.diffLoad ? new DiffLoader(dataset, timeStamp, DIFF_WRITE_BATCH_SIZE) : null;
+        }
+
+        /**
+         * Adds a phase of this dataset to the scheduler, qualifying its name and data with the dataset (except the
+         * data shared by all datasets). Unless --concurrentPhases is specified, the phase also waits for the
+         * previously added phase of the dataset, so that the phases of a dataset run in order even when the
+         * phases of other datasets run at the same time.
+         */
+        void addPhase(final LoadPhaseScheduler scheduler,
+                      final String name,
+                      final List<String> inputs,
+                      final List<String> outputs,
+                      final int writerSessions,
+                      final boolean holdsInputInMemory,
+                      final LoadPhaseScheduler.PhaseAction action) {
+            final List<String> phaseInputs = new ArrayList<>();
+            final List<String> phaseOutputs = new ArrayList<>();
+            for (final String input : inputs) {
+                phaseInputs.add(SHARED_DATA.contains(input) ? input : datasetPhase(dataset, input));
+            }
+            for (final String output : outputs) {
+                phaseOutputs.add(SHARED_DATA.contains(output) ? output : datasetPhase(dataset, output));
+            }
+            final String phaseName = datasetPhase(dataset, name);
+            if (!parameters.concurrentPhases) {
+                if (!phases.isEmpty()) {
+                    phaseInputs.add("after " + phases.get(phases.size() - 1).getName());
+                }
+                phaseOutputs.add("after " + phaseName);
+            }
+            phases.add(scheduler.addPhase(phaseName, phaseInputs, phaseOutputs, writerSessions, holdsInputInMemory, action));
+        }
+
+        /**
+         * @return line reporting how many phases of this dataset have completed or failed
+         */
+        String getProgress() {
+            long complete = 0;
+            long failed = 0;
+            for (final LoadPhaseScheduler.Phase phase : phases) {
+                if (phase.getStatus() == LoadPhaseScheduler.Status.COMPLETE) {
+                    complete++;
+                } else if (phase.getStatus() == LoadPhaseScheduler.Status.FAILED) {
+                    failed++;
+                }
+            }
+            return String.format("Dataset %s: %d of %d phases complete, %d failed", dataset, complete, phases.size(), failed);
+        }
+
+        /**
+         * @param phase name of the load phase using the importer
+         * @return importer writing to the database, or recording statements in the phase's profile for a dry run
+         */
+        Neo4jImporter createImporter(final String phase) {
+            final Neo4jImporter neo4jImporter = profile == null ?
+                    new Neo4jImporter(parameters.getDbConfig()) :
+                    new Neo4jImporter(parameters.getDbConfig(), profile.getPhase(datasetPhase(dataset, phase)));
+            return configureImporter(neo4jImporter, parameters);
+        }
 
+        LoadCheckpointJournal openJournal(final String filepath) throws IOException {
+            // a dry run commits nothing, so it records nothing a later load could resume from
+            return profile == null ? LoadCheckpointJournal.open(filepath, dataset, parameters.resume) : LoadCheckpointJournal.none();
+        }
+
+        void initializeDatabase(final Neo4jImporter neo4jImporter) {
+            NeuPrintMain.initializeDatabase(neo4jImporter, dataset, parameters.dataModelVersion, parameters.preHPThreshold, parameters.postHPThreshold,
+                    parameters.addConnectionSetRoiInfoAndWeightHP, parameters.addClusterNames, timeStamp);
+            if (diffLoader != null) {
+                neo4jImporter.prepDatabaseForDiffLoad(dataset);
+            }
+        }
+
+        @Override
+        public void close() {
+            for (final LoadCheckpointJournal checkpointJournal : Arrays.asList(synapseJournal, connectionJournal, neuronJournal)) {
+                if (checkpointJournal != null) {
+                    try {
+                        checkpointJournal.close();
+                    } catch (IOException e) {
+                        LOG.warn("Could not close checkpoint journal: " + e);
                     }
                 }
             }
+            if (locationIndex != null) {
+                try {
+                    locationIndex.close();
+                } catch (IOException e) {
+                    LOG.warn("Could not delete location index: " + e);
+                }
+            }
+        }
+    }
 
-            if (parameters.neuronJson != null) {
+    // data produced and used by the phases of a load
+    private static final String META_NODE = "Meta node";
+    private static final String SORTED_SYNAPSES = "sorted synapses";
+    private static final String SORTED_CONNECTIONS = "sorted synaptic connections";
+    private static final String SYNAPSE_NODES = "Synapse nodes";
+    private static final String SYNAPSES_TO = "SynapsesTo relationships";
+    private static final String SEGMENT_NODES = "Segment nodes";
+    private static final String CONNECTION_INFO = "connection info";
+    private static final String SKELETON_NODES = "Skeleton nodes";
+    private static final String META_INFO = "meta info";
+    // constraints and indexes, some of which are on labels shared by all datasets
+    private static final String DATABASE_SCHEMA = "database schema";
+    private static final Set<String> SHARED_DATA = Collections.singleton(DATABASE_SCHEMA);
+
+    // options that apply to all datasets of a --datasetManifest
+    private static final Set<String> SHARED_OPTIONS = new HashSet<>(Arrays.asList(
+            "dbProperties", "datasetManifest", "concurrentPhases", "maxPhaseWriters", "statusPort", "dryRun", "dryRunSampleInterval",
+            "adminImportCsvDirectory", "storeDirectory", "columnarOutputDirectory", "help"));
 
-                if (parameters.addConnectionInfoOnly) {
+    /**
+     * Adds a phase to the scheduler for each part of the load named in the parameters. Sorting an input only
+     * waits for the checkpoint journals, meta info only waits for the Meta node, and skeletons wait for the
+     * Segment nodes, whose properties are only set when the neuron phase creates them. The database is initialized
+     * after any dataset added earlier, since creating the same constraints at the same time can fail.
+     *
+     * @param scheduler scheduler running the load
+     * @param state     state shared by the phases
+     * @throws IOException if a checkpoint journal cannot be opened
+     */
+    private static void addLoadPhases(final LoadPhaseScheduler scheduler, final LoadState state) throws IOException {
 
-                    if (parameters.neuronBatchSize > 0) {
-                        try (Neo4jImporter neo4jImporter = new Neo4jImporter(parameters.getDbConfig())) {
-                            loadConnectionInfoInBatches(parameters.neuronJson, parameters.neuronBatchSize, neo4jImporter, dataset, databaseInitialized, dataModelVersion, preHPThreshold, postHPThreshold, neuronThreshold, parameters.addConnectionSetRoiInfoAndWeightHP, parameters.addClusterNames, timeStamp);
-                            databaseInitialized = true;
-                        }
-                    } else {
-                        timer.start();
-                        List<Neuron> neuronList = readNeuronsJson(parameters.neuronJson);
-                        LOG.info(String.format("Reading in neurons JSON took: %s", timer.stop()));
-                        timer.reset();
+        final NeuPrintParameters parameters = state.parameters;
+        final String dataset = state.dataset;
 
-                        try (Neo4jImporter neo4jImporter = new Neo4jImporter(parameters.getDbConfig())) {
+        if (parameters.synapseJson != null) {
+            state.synapseJournal = state.openJournal(parameters.synapseJson);
+        }
+        if (parameters.connectionJson != null) {
+            state.connectionJournal = state.openJournal(parameters.connectionJson);
+        }
+        if (parameters.neuronJson != null) {
+            state.neuronJournal = state.openJournal(parameters.neuronJson);
+        }
 
-                            if (!databaseInitialized) {
-                                initializeDatabase(neo4jImporter, dataset, dataModelVersion, preHPThreshold, postHPThreshold, parameters.addConnectionSetRoiInfoAndWeightHP, parameters.addClusterNames, timeStamp);
-                                databaseInitialized = true;
-                            }
+        final List<String> none = Collections.emptyList();
+        final boolean loadsData = parameters.synapseJson != null || parameters.connectionJson != null || parameters.neuronJson != null ||
+                parameters.skeletonDirectory != null || parameters.metaInfoJson != null;
 
-                            timer.start();
-                            neo4jImporter.addConnectionInfo(dataset, neuronList, parameters.addConnectionSetRoiInfoAndWeightHP, preHPThreshold, postHPThreshold, neuronThreshold);
-                            LOG.info(String.format("Loading all connection info took: %s", timer.stop()));
-                            timer.reset();
+        if (loadsData) {
+            state.addPhase(scheduler, INITIALIZE_PHASE, Collections.singletonList(DATABASE_SCHEMA), Arrays.asList(META_NODE, DATABASE_SCHEMA), 1, false,
+                    () -> {
+                        try (Neo4jImporter neo4jImporter = state.createImporter(INITIALIZE_PHASE)) {
+                            state.initializeDatabase(neo4jImporter);
                         }
-                    }
+                    });
+        }
 
-                } else {
+        if (parameters.synapseJson != null) {
+            if (parameters.mortonSort && !state.synapseJournal.isPhaseComplete(SYNAPSE_PHASE)) {
+                state.addPhase(scheduler, "sorting " + SYNAPSE_PHASE, none, Collections.singletonList(SORTED_SYNAPSES), 0, true,
+                        () -> state.synapseInput = sortByMortonCode(parameters.synapseJson, SYNAPSE_PHASE, MortonOrderSorter.forSynapses(Paths.get(parameters.sortDirectory), parameters.sortRowsInMemory),
+                                NeuPrintJsonDecoder::readSynapse, ColumnarReader::readSynapses, parameters));
+            }
+            // a diff load reads the input in batches and writes with one session
+            final boolean batched = parameters.synapseBatchSize > 0 && !parameters.diffLoad;
+            state.addPhase(scheduler, SYNAPSE_PHASE, Arrays.asList(META_NODE, SORTED_SYNAPSES), Collections.singletonList(SYNAPSE_NODES),
+                    batched ? parameters.pipelineWriterThreads : 1, !batched && !parameters.diffLoad,
+                    () -> loadSynapses(state));
+        }
 
-                    if (parameters.neuronBatchSize > 0) {
-                        try (Neo4jImporter neo4jImporter = new Neo4jImporter(parameters.getDbConfig())) {
-                            loadNeuronJsonInBatches(parameters.neuronJson, parameters.neuronBatchSize, neo4jImporter, dataset, databaseInitialized, dataModelVersion, preHPThreshold, postHPThreshold, neuronThreshold, parameters.addConnectionSetRoiInfoAndWeightHP, parameters.addClusterNames, timeStamp);
-                            databaseInitialized = true;
-                        }
-                    } else {
-                        timer.start();
-                        List<Neuron> neuronList = readNeuronsJson(parameters.neuronJson);
-                        LOG.info(String.format("Reading in neurons JSON took: %s", timer.stop()));
-                        timer.reset();
+        if (parameters.connectionJson != null) {
+            if (parameters.mortonSort && !state.connectionJournal.isPhaseComplete(CONNECTION_PHASE)) {
+                state.addPhase(scheduler, "sorting " + CONNECTION_PHASE, none, Collections.singletonList(SORTED_CONNECTIONS), 0, true,
+                        () -> state.connectionInput = sortByMortonCode(parameters.connectionJson, CONNECTION_PHASE, MortonOrderSorter.forConnections(Paths.get(parameters.sortDirectory), parameters.sortRowsInMemory),
+                                NeuPrintJsonDecoder::readConnection, ColumnarReader::readConnections, parameters));
+            }
+            // a diff load reads the input in batches and writes with one session
+            final boolean batched = parameters.connectionBatchSize > 0 && !parameters.diffLoad;
+            state.addPhase(scheduler, CONNECTION_PHASE, Arrays.asList(META_NODE, SYNAPSE_NODES, SORTED_CONNECTIONS), Collections.singletonList(SYNAPSES_TO),
+                    batched ? parameters.pipelineWriterThreads : 1, !batched && !parameters.diffLoad,
+                    () -> loadConnections(state));
+        }
+
+        if (parameters.neuronJson != null) {
+            if (parameters.addConnectionInfoOnly) {
+                state.addPhase(scheduler, CONNECTION_INFO_PHASE, Arrays.asList(META_NODE, SYNAPSE_NODES, SYNAPSES_TO, SEGMENT_NODES), Collections.singletonList(CONNECTION_INFO),
+                        1, parameters.neuronBatchSize <= 0,
+                        () -> loadConnectionInfo(state));
+            } else {
+                state.addPhase(scheduler, NEURON_PHASE, Arrays.asList(META_NODE, SYNAPSE_NODES, SYNAPSES_TO), Arrays.asList(SEGMENT_NODES, CONNECTION_INFO),
+                        1, parameters.neuronBatchSize <= 0,
+                        () -> loadNeurons(state));
+            }
+        }
+
+        if (parameters.skeletonDirectory != null) {
+            final boolean batched = parameters.skeletonBatchSize > 0;
+            state.addPhase(scheduler, SKELETON_PHASE, Arrays.asList(META_NODE, SEGMENT_NODES), Collections.singletonList(SKELETON_NODES),
+                    batched ? parameters.pipelineWriterThreads : 1, !batched,
+                    () -> loadSkeletons(state));
+        }
 
-                        try (Neo4jImporter neo4jImporter = new Neo4jImporter(parameters.getDbConfig())) {
-
-                            if (!databaseInitialized) {
-                                initializeDatabase(neo4jImporter, dataset, dataModelVersion, preHPThreshold, postHPThreshold, parameters.addConnectionSetRoiInfoAndWeightHP, parameters.addClusterNames, timeStamp);
-                                databaseInitialized = true;
-                            }
-                            timer.start();
-                            neo4jImporter.addSegments(dataset, neuronList, timeStamp);
-                            LOG.info(String.format("Loading all neurons took: %s", timer.stop()));
-                            timer.reset();
-
-                            timer.start();
-                            neo4jImporter.addConnectionInfo(dataset, neuronList, parameters.addConnectionSetRoiInfoAndWeightHP, preHPThreshold, postHPThreshold, neuronThreshold);
-                            LOG.info(String.format("Loading all connection info took: %s", timer.stop()));
-                            timer.reset();
+        if (parameters.metaInfoJson != null) {
+            state.addPhase(scheduler, META_INFO_PHASE, Collections.singletonList(META_NODE), Collections.singletonList(META_INFO), 1, false,
+                    () -> loadMetaInfo(state));
+        }
+
+        if (parameters.deferIndexes) {
+            state.addPhase(scheduler, INDEX_PHASE, Arrays.asList(SYNAPSE_NODES, SYNAPSES_TO, SEGMENT_NODES, CONNECTION_INFO, SKELETON_NODES, META_INFO), none, 1, false,
+                    () -> {
+                        try (Neo4jImporter neo4jImporter = state.createImporter(INDEX_PHASE)) {
+                            Stopwatch timer = Stopwatch.createStarted();
+                            neo4jImporter.createDeferredIndexes(dataset, parameters.addClusterNames);
+                            LOG.info(String.format("Building all indexes took: %s", timer.stop()));
                         }
-                    }
-                }
+                    });
+        }
+
+    }
+
+    private static void loadSynapses(final LoadState state) throws IOException {
+
+        final NeuPrintParameters parameters = state.parameters;
+        final String dataset = state.dataset;
+        final LocalDateTime timeStamp = state.timeStamp;
+        final LoadCheckpointJournal checkpointJournal = state.synapseJournal;
+        final Stopwatch timer = Stopwatch.createUnstarted();
+
+        if (parameters.diffLoad) {
+            try (Neo4jImporter neo4jImporter = state.createImporter(SYNAPSE_PHASE)) {
+                timer.start();
+                state.diffLoader.diffSynapses(neo4jImporter, diffInput(state, state.synapseInput, SYNAPSE_PHASE, parameters.synapseBatchSize,
+                        NeuPrintJsonDecoder::readSynapse, ColumnarReader::readSynapses, parameters.jsonParserThreads));
+                LOG.info(String.format("Loading synapse changes took: %s", timer.stop()));
+                timer.reset();
+
+                neo4jImporter.indexBooleanRoiProperties(dataset);
             }
+        } else if (parameters.synapseBatchSize > 0) {
+            try (Neo4jImporter neo4jImporter = state.createImporter(SYNAPSE_PHASE)) {
+                loadSynapseJsonInBatches(state.synapseInput, parameters.synapseBatchSize, neo4jImporter, dataset, true, parameters.dataModelVersion, parameters.preHPThreshold, parameters.postHPThreshold, parameters.addConnectionSetRoiInfoAndWeightHP, parameters.addClusterNames, timeStamp, parameters.jsonParserThreads, parameters.pipelineQueueDepth, parameters.pipelineWriterThreads, checkpointJournal);
+            }
+        } else if (!isPhaseComplete(checkpointJournal, SYNAPSE_PHASE, parameters.synapseJson)) {
+
+            timer.start();
+            List<Synapse> synapseList = readSynapsesJson(state.synapseInput, parameters.jsonParserThreads);
+            LOG.info(String.format("Reading in synapse JSON took: %s", timer.stop()));
+            timer.reset();
 
-            if (parameters.skeletonDirectory != null) {
+            try (Neo4jImporter neo4jImporter = state.createImporter(SYNAPSE_PHASE)) {
 
-                final File folder = new File(parameters.skeletonDirectory);
-                final File[] arrayOfSwcFiles = folder.listFiles((dir, name) -> name.toLowerCase().endsWith(".swc"));
+                timer.start();
+                neo4jImporter.addSynapsesWithRois(dataset, synapseList, timeStamp);
+                LOG.info(String.format("Loading all synapses took: %s", timer.stop()));
+                timer.reset();
 
-                assert arrayOfSwcFiles != null : "No swc files found.";
-                LOG.info("Reading in " + arrayOfSwcFiles.length + " swc files.");
+                neo4jImporter.indexBooleanRoiProperties(dataset);
 
-                if (parameters.skeletonBatchSize > 0) {
-                    try (Neo4jImporter neo4jImporter = new Neo4jImporter(parameters.getDbConfig())) {
-                        loadSkeletonsInBatches(arrayOfSwcFiles, parameters.skeletonBatchSize, databaseInitialized, neo4jImporter, dataset, dataModelVersion, preHPThreshold, postHPThreshold, parameters.addConnectionSetRoiInfoAndWeightHP, parameters.addClusterNames, timeStamp);
-                        databaseInitialized = true;
-                    }
-                } else {
+            }
+            checkpointJournal.recordPhaseComplete(SYNAPSE_PHASE);
+
+            if (parameters.clientSideConnectionInfo) {
+                state.loadedSynapseList = synapseList;
+            }
+        }
+        deleteSortedInput(state.synapseInput, parameters.synapseJson);
 
-                    final List<Skeleton> skeletonList = createSkeletonListFromSwcFileArray(arrayOfSwcFiles);
+        if (parameters.connectionJson == null) {
+            // otherwise counted once the synaptic connections are loaded
+            try (Neo4jImporter neo4jImporter = state.createImporter(SYNAPSE_PHASE)) {
+                neo4jImporter.reconcileSynapseCounts(dataset, timeStamp);
+            }
+        }
 
-                    try (Neo4jImporter neo4jImporter = new Neo4jImporter(parameters.getDbConfig())) {
+    }
 
-                        if (!databaseInitialized) {
-                            initializeDatabase(neo4jImporter, dataset, dataModelVersion, preHPThreshold, postHPThreshold, parameters.addConnectionSetRoiInfoAndWeightHP, parameters.addClusterNames, timeStamp);
-                        }
+    private static void loadConnections(final LoadState state) throws IOException {
 
-                        timer.start();
-                        neo4jImporter.addSkeletonNodes(dataset, skeletonList, timeStamp);
-                        LOG.info("Loading all Skeleton nodes took: " + timer.stop());
-                        timer.reset();
-                    }
-                }
+        final NeuPrintParameters parameters = state.parameters;
+        final String dataset = state.dataset;
+        final LocalDateTime timeStamp = state.timeStamp;
+        final LoadCheckpointJournal checkpointJournal = state.connectionJournal;
+        final Stopwatch timer = Stopwatch.createUnstarted();
+
+        if (parameters.diffLoad) {
+            try (Neo4jImporter neo4jImporter = state.createImporter(CONNECTION_PHASE)) {
+                timer.start();
+                state.diffLoader.diffConnections(neo4jImporter, diffInput(state, state.connectionInput, CONNECTION_PHASE, parameters.connectionBatchSize,
+                        NeuPrintJsonDecoder::readConnection, ColumnarReader::readConnections, parameters.jsonParserThreads));
+                LOG.info(String.format("Loading synaptic connection changes took: %s", timer.stop()));
+                timer.reset();
 
+                neo4jImporter.reconcileSynapseCounts(dataset, timeStamp);
+            }
+        } else if (parameters.connectionBatchSize > 0) {
+            try (Neo4jImporter neo4jImporter = state.createImporter(CONNECTION_PHASE)) {
+                loadConnectionJsonInBatches(state.connectionInput, parameters.connectionBatchSize, neo4jImporter, dataset, true, parameters.dataModelVersion, parameters.preHPThreshold, parameters.postHPThreshold, parameters.addConnectionSetRoiInfoAndWeightHP, parameters.addClusterNames, timeStamp, parameters.jsonParserThreads, parameters.pipelineQueueDepth, parameters.pipelineWriterThreads, checkpointJournal);
             }
+        } else if (!isPhaseComplete(checkpointJournal, CONNECTION_PHASE, parameters.connectionJson)) {
+            timer.start();
+            List<SynapticConnection> connectionsList = readConnectionsJson(state.connectionInput, parameters.jsonParserThreads);
+            LOG.info(String.format("Reading in synaptic connections JSON took: %s", timer.stop()));
+            timer.reset();
 
-            if (parameters.metaInfoJson != null) {
+            try (Neo4jImporter neo4jImporter = state.createImporter(CONNECTION_PHASE)) {
 
-                // read meta info data
-                MetaInfo metaInfo = readMetaInfoJson(parameters.metaInfoJson);
-                if (metaInfo != null) {
-                    try (Neo4jImporter neo4jImporter = new Neo4jImporter(parameters.getDbConfig())) {
-                        if (!databaseInitialized) {
-                            initializeDatabase(neo4jImporter, dataset, dataModelVersion, preHPThreshold, postHPThreshold, parameters.addConnectionSetRoiInfoAndWeightHP, parameters.addClusterNames, timeStamp);
-                        }
-                        neo4jImporter.addMetaInfo(dataset, metaInfo, timeStamp);
-                        LOG.info("Finished adding meta info.");
-                    }
+                timer.start();
+                neo4jImporter.addSynapsesTo(dataset, connectionsList, timeStamp);
+                LOG.info(String.format("Loading all synaptic connections took: %s", timer.stop()));
+                timer.reset();
+
+                neo4jImporter.reconcileSynapseCounts(dataset, timeStamp);
+
+            }
+            checkpointJournal.recordPhaseComplete(CONNECTION_PHASE);
+
+            if (parameters.clientSideConnectionInfo) {
+                state.loadedConnectionsList = connectionsList;
+            }
+        }
+        deleteSortedInput(state.connectionInput, parameters.connectionJson);
+
+    }
+
+    private static void loadConnectionInfo(final LoadState state) throws IOException {
+
+        final NeuPrintParameters parameters = state.parameters;
+        final String dataset = state.dataset;
+        final LoadCheckpointJournal checkpointJournal = state.neuronJournal;
+        final Stopwatch timer = Stopwatch.createUnstarted();
+
+        if (parameters.neuronBatchSize > 0) {
+            try (Neo4jImporter neo4jImporter = state.createImporter(CONNECTION_INFO_PHASE)) {
+                loadConnectionInfoInBatches(parameters.neuronJson, parameters.neuronBatchSize, neo4jImporter, dataset, true, parameters.dataModelVersion, parameters.preHPThreshold, parameters.postHPThreshold, parameters.neuronThreshold, parameters.addConnectionSetRoiInfoAndWeightHP, parameters.addClusterNames, state.timeStamp, parameters.pipelineQueueDepth, 1, checkpointJournal);
+            }
+        } else if (!isPhaseComplete(checkpointJournal, CONNECTION_INFO_PHASE, parameters.neuronJson)) {
+            timer.start();
+            List<Neuron> neuronList = readNeuronsJson(parameters.neuronJson);
+            LOG.info(String.format("Reading in neurons JSON took: %s", timer.stop()));
+            timer.reset();
+
+            try (Neo4jImporter neo4jImporter = state.createImporter(CONNECTION_INFO_PHASE)) {
+
+                timer.start();
+                neo4jImporter.addConnectionInfo(dataset, neuronList, parameters.addConnectionSetRoiInfoAndWeightHP, parameters.preHPThreshold, parameters.postHPThreshold, parameters.neuronThreshold);
+                LOG.info(String.format("Loading all connection info took: %s", timer.stop()));
+                timer.reset();
+            }
+            checkpointJournal.recordPhaseComplete(CONNECTION_INFO_PHASE);
+        }
+
+    }
+
+    private static void loadNeurons(final LoadState state) throws IOException {
+
+        final NeuPrintParameters parameters = state.parameters;
+        final String dataset = state.dataset;
+        final LocalDateTime timeStamp = state.timeStamp;
+        final LoadCheckpointJournal checkpointJournal = state.neuronJournal;
+        final Stopwatch timer = Stopwatch.createUnstarted();
+
+        if (parameters.locationIndex) {
+            state.locationIndex = LocationBodyIdIndex.create(Paths.get(parameters.sortDirectory));
+        }
+
+        if (parameters.diffLoad) {
+            try (Neo4jImporter neo4jImporter = state.createImporter(NEURON_PHASE)) {
+                timer.start();
+                state.diffLoader.diffNeurons(neo4jImporter,
+                        diffInput(state, parameters.neuronJson, NEURON_PHASE, parameters.neuronBatchSize, NeuPrintJsonDecoder::readNeuron, null, 1),
+                        parameters.addConnectionSetRoiInfoAndWeightHP, parameters.preHPThreshold, parameters.postHPThreshold, parameters.neuronThreshold);
+                LOG.info(String.format("Loading neuron changes took: %s", timer.stop()));
+                timer.reset();
+            }
+        } else if (parameters.neuronBatchSize > 0) {
+            try (Neo4jImporter neo4jImporter = state.createImporter(NEURON_PHASE)) {
+                loadNeuronJsonInBatches(parameters.neuronJson, parameters.neuronBatchSize, neo4jImporter, dataset, true, parameters.dataModelVersion, parameters.preHPThreshold, parameters.postHPThreshold, parameters.neuronThreshold, parameters.addConnectionSetRoiInfoAndWeightHP, parameters.addClusterNames, timeStamp, parameters.pipelineQueueDepth, 1, checkpointJournal);
+            }
+        } else if (!isPhaseComplete(checkpointJournal, NEURON_PHASE, parameters.neuronJson)) {
+            timer.start();
+            List<Neuron> neuronList = readNeuronsJson(parameters.neuronJson);
+            LOG.info(String.format("Reading in neurons JSON took: %s", timer.stop()));
+            timer.reset();
+
+            if (state.locationIndex != null) {
+                state.locationIndex.addNeurons(neuronList);
+            }
+
+            try (Neo4jImporter neo4jImporter = state.createImporter(NEURON_PHASE)) {
+
+                timer.start();
+                neo4jImporter.addSegments(dataset, neuronList, timeStamp);
+                LOG.info(String.format("Loading all neurons took: %s", timer.stop()));
+                timer.reset();
+
+                timer.start();
+                if (parameters.clientSideConnectionInfo) {
+                    // synapses and connections loaded in batches were not kept, so they are read again
+                    final ConnectivitySummary summary = new ConnectivitySummary(
+                            state.loadedSynapseList == null ? readSynapsesJson(parameters.synapseJson) : state.loadedSynapseList,
+                            state.loadedConnectionsList == null ? readConnectionsJson(parameters.connectionJson) : state.loadedConnectionsList,
+                            neuronList,
+                            state.locationIndex,
+                            parameters.preHPThreshold,
+                            parameters.postHPThreshold,
+                            parameters.neuronThreshold);
+                    neo4jImporter.addConnectionInfo(dataset, summary, parameters.addConnectionSetRoiInfoAndWeightHP, timeStamp);
+                } else {
+                    neo4jImporter.addConnectionInfo(dataset, neuronList, parameters.addConnectionSetRoiInfoAndWeightHP, parameters.preHPThreshold, parameters.postHPThreshold, parameters.neuronThreshold);
                 }
+                LOG.info(String.format("Loading all connection info took: %s", timer.stop()));
+                timer.reset();
+            }
+            checkpointJournal.recordPhaseComplete(NEURON_PHASE);
+        }
+
+        if (state.locationIndex != null) {
+            LOG.info(String.format("Indexed %d synapse locations of neurons/segments.", state.locationIndex.size()));
+            if (state.locationIndex.getConflictCount() > 0) {
+                LOG.warn(String.format("%d synapse locations are in the synapse sets of more than one body; each is indexed with the last body listed.", state.locationIndex.getConflictCount()));
+            }
+        }
+
+    }
+
+    private static void loadSkeletons(final LoadState state) {
+
+        final NeuPrintParameters parameters = state.parameters;
+
+        final File folder = new File(parameters.skeletonDirectory);
+        final File[] arrayOfSwcFiles = folder.listFiles((dir, name) -> name.toLowerCase().endsWith(".swc"));
+
+        assert arrayOfSwcFiles != null : "No swc files found.";
+        LOG.info("Reading in " + arrayOfSwcFiles.length + " swc files.");
+
+        if (parameters.skeletonBatchSize > 0) {
+            try (Neo4jImporter neo4jImporter = state.createImporter(SKELETON_PHASE)) {
+                loadSkeletonsInBatches(arrayOfSwcFiles, parameters.skeletonBatchSize, true, neo4jImporter, state.dataset, parameters.dataModelVersion, parameters.preHPThreshold, parameters.postHPThreshold, parameters.addConnectionSetRoiInfoAndWeightHP, parameters.addClusterNames, state.timeStamp,
+                        parameters.skeletonReaderThreads, parameters.pipelineQueueDepth, parameters.pipelineWriterThreads);
+            }
+        } else {
 
+            final List<Skeleton> skeletonList = createSkeletonListFromSwcFileArray(arrayOfSwcFiles);
+
+            try (Neo4jImporter neo4jImporter = state.createImporter(SKELETON_PHASE)) {
+                Stopwatch timer = Stopwatch.createStarted();
+                neo4jImporter.addSkeletonNodes(state.dataset, skeletonList, state.timeStamp);
+                LOG.info("Loading all Skeleton nodes took: " + timer.stop());
+            }
+        }
+
+    }
+
+    private static void loadMetaInfo(final LoadState state) {
+
+        // read meta info data
+        MetaInfo metaInfo = readMetaInfoJson(state.parameters.metaInfoJson);
+        if (metaInfo != null) {
+            try (Neo4jImporter neo4jImporter = state.createImporter(META_INFO_PHASE)) {
+                neo4jImporter.addMetaInfo(state.dataset, metaInfo, state.timeStamp);
+                LOG.info("Finished adding meta info.");
+            }
+        }
+
+    }
+
+    /**
+     * Sorts the input of a load phase in Morton order (see {@link MortonOrderSorter}) into a columnar file in the sort
+     * directory, named after the input. When a load is resumed, a sorted file left by the stopped load is used
+     * instead, so that the rows are loaded in the same order.
+     *
+     * @param filepath   path to input (see {@link #loadJsonArrayInBatches})
+     * @param phase      name of load phase, used in log messages
+     * @param sorter     sorter for the objects of the phase
+     * @param parser     decodes one object
+     * @param rowReader  reads rows of a columnar file
+     * @param parameters command line parameters
+     * @param <T>        type of sorted object
+     * @return path to sorted columnar file
+     * @throws IOException if a file cannot be read or written
+     */
+    private static <T> String sortByMortonCode(final String filepath,
+                                               final String phase,
+                                               final MortonOrderSorter<T> sorter,
+                                               final NeuPrintJsonDecoder.ElementDecoder<T> parser,
+                                               final ColumnarReader.RowReader<T> rowReader,
+                                               final NeuPrintParameters parameters) throws IOException {
+        final Path sortedPath = columnarPath(Paths.get(parameters.sortDirectory), filepath, "-morton");
+        try (MortonOrderSorter<T> s = sorter) {
+            if (parameters.resume && ColumnarFile.isColumnarFile(sortedPath)) {
+                LOG.info(String.format("Resuming %s with rows sorted in %s", phase, sortedPath));
+                return sortedPath.toString();
             }
 
+            final Stopwatch timer = Stopwatch.createStarted();
+            loadJsonArrayInBatches(filepath, "sorting " + phase, parameters.datasetLabel, SORT_READ_BATCH_SIZE, parser, rowReader, parameters.jsonParserThreads,
+                    parameters.pipelineQueueDepth, 1, LoadCheckpointJournal.none(),
+                    batch -> {
+                        try {
+                            s.addAll(batch);
+                        } catch (final IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    });
+            final long rowCount = s.sortTo(sortedPath);
+            LOG.info(String.format("Sorting %d %s in Morton order to %s took: %s", rowCount, phase, sortedPath, timer.stop()));
+        }
+        return sortedPath.toString();
+    }
+
+    /**
+     * Reads an input of a --diffLoad phase in batches for the {@link DiffLoader}, which reads it twice: the first
+     * pass is recorded in the load metrics as "comparing &lt;phase&gt;" and the second as the phase. Nothing is
+     * recorded in the checkpoint journal, since a diff load that stops is run again from the start.
+     *
+     * @param state         state shared by the phases
+     * @param filepath      path to the input
+     * @param phase         name of the load phase
+     * @param batchSize     objects decoded at a time, or 0 for the default
+     * @param parser        decodes one object of the JSON array
+     * @param rowReader     reads one object of a columnar file, or null if the input is never columnar
+     * @param parserThreads number of threads parsing shards of the input
+     * @return source of the input batches
+     */
+    private static <T> DiffLoader.BatchSource<T> diffInput(final LoadState state,
+                                                           final String filepath,
+                                                           final String phase,
+                                                           final int batchSize,
+                                                           final NeuPrintJsonDecoder.ElementDecoder<T> parser,
+                                                           final ColumnarReader.RowReader<T> rowReader,
+                                                           final int parserThreads) {
+        final int[] passCount = {0};
+        return writer -> loadJsonArrayInBatches(filepath, passCount[0]++ == 0 ? "comparing " + phase : phase, state.dataset,
+                batchSize > 0 ? batchSize : DIFF_READ_BATCH_SIZE, parser, rowReader, parserThreads,
+                state.parameters.pipelineQueueDepth, 1, LoadCheckpointJournal.none(), writer);
+    }
+
+    /**
+     * Deletes a sorted copy of an input once its phase has been loaded.
+     *
+     * @param loadedFilepath path to the loaded input
+     * @param inputFilepath  path to the input given on the command line
+     * @throws IOException if the file cannot be deleted
+     */
+    private static void deleteSortedInput(final String loadedFilepath, final String inputFilepath) throws IOException {
+        if (!loadedFilepath.equals(inputFilepath)) {
+            Files.deleteIfExists(Paths.get(loadedFilepath));
+        }
+    }
+
+    /**
+     * Converts the synapse and connection JSON files named in the parameters to columnar files.
+     *
+     * @param parameters command line parameters
+     */
+    private static void convertToColumnar(final NeuPrintParameters parameters) {
+        try {
+            final Path outputDirectory = Paths.get(parameters.columnarOutputDirectory);
+            Files.createDirectories(outputDirectory);
+            if (parameters.synapseJson != null) {
+                final Path columnarPath = columnarPath(outputDirectory, parameters.synapseJson);
+                Stopwatch timer = Stopwatch.createStarted();
+                final long synapseCount = ColumnarWriter.convertSynapseJson(Paths.get(parameters.synapseJson), columnarPath);
+                LOG.info(String.format("Converted %d synapses to %s in %s", synapseCount, columnarPath, timer.stop()));
+            }
+            if (parameters.connectionJson != null) {
+                final Path columnarPath = columnarPath(outputDirectory, parameters.connectionJson);
+                Stopwatch timer = Stopwatch.createStarted();
+                final long connectionCount = ColumnarWriter.convertConnectionJson(Paths.get(parameters.connectionJson), columnarPath);
+                LOG.info(String.format("Converted %d synaptic connections to %s in %s", connectionCount, columnarPath, timer.stop()));
+            }
         } catch (Exception e) {
-            LOG.error("Error loading data: " + e);
+            LOG.error("Error converting JSON to columnar files: " + e);
             System.exit(1);
         }
+    }
+
+    /**
+     * Names a columnar file after a JSON file without its extensions, or after the directory of shard files.
+     */
+    private static Path columnarPath(final Path outputDirectory, final String jsonFilepath) {
+        return columnarPath(outputDirectory, jsonFilepath, "");
+    }
 
+    private static Path columnarPath(final Path outputDirectory, final String jsonFilepath, final String suffix) {
+        Path jsonPath = Paths.get(jsonFilepath).toAbsolutePath().normalize();
+        if (!Files.isRegularFile(jsonPath) && !Files.isDirectory(jsonPath) && jsonPath.getParent() != null) {
+            // a glob pattern
+            jsonPath = jsonPath.getParent();
+        }
+        String name = jsonPath.getFileName() == null ? "input" : jsonPath.getFileName().toString();
+        if (Files.isRegularFile(jsonPath)) {
+            if (name.endsWith(".gz")) {
+                name = name.substring(0, name.length() - 3);
+            }
+            final int extension = name.lastIndexOf('.');
+            if (extension > 0) {
+                name = name.substring(0, extension);
+            }
+        }
+        return outputDirectory.resolve(name + suffix + ".npcol");
+    }
+
+    /**
+     * Reads all input files named in the parameters and writes them as CSV files for neo4j-admin import or
+     * builds a new store with the batch inserter.
+     *
+     * @param parameters command line parameters
+     * @param timeStamp  time stamp for load
+     */
+    private static void writeOffline(final NeuPrintParameters parameters, final LocalDateTime timeStamp) {
+
+        final List<Synapse> synapseList = parameters.synapseJson == null ? new ArrayList<>() : readSynapsesJson(parameters.synapseJson);
+        final List<SynapticConnection> connectionsList = parameters.connectionJson == null ? new ArrayList<>() : readConnectionsJson(parameters.connectionJson);
+        final List<Neuron> neuronList = parameters.neuronJson == null ? new ArrayList<>() : readNeuronsJson(parameters.neuronJson);
+
+        List<Skeleton> skeletonList = new ArrayList<>();
+        if (parameters.skeletonDirectory != null) {
+            final File[] arrayOfSwcFiles = new File(parameters.skeletonDirectory).listFiles((dir, name) -> name.toLowerCase().endsWith(".swc"));
+            assert arrayOfSwcFiles != null : "No swc files found.";
+            LOG.info("Reading in " + arrayOfSwcFiles.length + " swc files.");
+            skeletonList = createSkeletonListFromSwcFileArray(arrayOfSwcFiles);
+        }
+
+        if (parameters.adminImportCsvDirectory != null) {
+            final Neo4jAdminImportExporter exporter = new Neo4jAdminImportExporter(
+                    new File(parameters.adminImportCsvDirectory),
+                    parameters.datasetLabel,
+                    parameters.dataModelVersion,
+                    parameters.preHPThreshold,
+                    parameters.postHPThreshold,
+                    parameters.addConnectionSetRoiInfoAndWeightHP,
+                    parameters.neuronThreshold,
+                    parameters.addClusterNames,
+                    timeStamp);
+
+            try {
+                final Stopwatch timer = Stopwatch.createStarted();
+                exporter.export(synapseList, connectionsList, neuronList, skeletonList);
+                LOG.info(String.format("Writing neo4j-admin import files took: %s", timer.stop()));
+            } catch (IOException e) {
+                LOG.error("Error writing neo4j-admin import files: " + e);
+                System.exit(1);
+            }
+        } else {
+            final Neo4jStoreBuilder storeBuilder = new Neo4jStoreBuilder(
+                    new File(parameters.storeDirectory),
+                    parameters.datasetLabel,
+                    parameters.dataModelVersion,
+                    parameters.preHPThreshold,
+                    parameters.postHPThreshold,
+                    parameters.addConnectionSetRoiInfoAndWeightHP,
+                    parameters.neuronThreshold,
+                    parameters.addClusterNames,
+                    timeStamp);
+
+            try {
+                final Stopwatch timer = Stopwatch.createStarted();
+                storeBuilder.build(synapseList, connectionsList, neuronList, skeletonList);
+                LOG.info(String.format("Building store took: %s", timer.stop()));
+            } catch (IOException e) {
+                LOG.error("Error building store: " + e);
+                System.exit(1);
+            }
+        }
+
+        if (parameters.metaInfoJson != null) {
+            LOG.info("Meta info is not written offline; load it with --metaInfoJson once the database is running.");
+        }
     }
 
     private static final Logger LOG = LoggerFactory.getLogger(NeuPrintMain.class);
@@ -0,0 +1,438 @@
+package org.janelia.flyem.neuprint;
+
+import org.janelia.flyem.neuprint.model.Location;
+import org.janelia.flyem.neuprint.model.Neuron;
+import org.janelia.flyem.neuprint.model.Skeleton;
+import org.janelia.flyem.neuprint.model.Synapse;
+import org.janelia.flyem.neuprint.model.SynapticConnection;
+import org.janelia.flyem.neuprintloadprocedures.model.RoiInfo;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Computes the graph of a standard load with {@link Neo4jImporter} from the synapse, connection, neuron and
+ * skeleton input, and writes it as rows of nodes and relationships: Meta and DataModel nodes, Synapses with ROI
+ * properties, Segments and Neurons with pre/post counts, roiInfo and cluster names, SynapseSets, ConnectionSets,
+ * ConnectsTo relationships with weights, Skeletons and SkelNodes. Since ConnectsTo relationships and Segment
+ * counts are usually added by the loader.addPropsAndConnectionInfoToSegment procedure, they are computed from
+ * the input with a {@link ConnectivitySummary} instead.
+ * <p>
+ * Rows use the column headers of <a href="https://neo4j.com/docs/operations-manual/3.5/tools/import/" target="_blank">neo4j-admin import</a>:
+ * a node row has an {@code :ID(idSpace)} column and a {@code :LABEL} column, a relationship row has
+ * {@code :START_ID(idSpace)}, {@code :END_ID(idSpace)} and {@code :TYPE} columns, and the other columns are
+ * {@code property:type} (or just {@code property} for strings). Subclasses decide where the rows go.
+ */
+public abstract class OfflineGraphWriter {
+
+    private static final String PRE = "pre";
+    private static final String POST = "post";
+
+    // ID spaces used to resolve relationship start and end nodes
+    private static final String META_ID = "Meta";
+    private static final String DATA_MODEL_ID = "DataModel";
+    private static final String SYNAPSE_ID = "Synapse";
+    private static final String SEGMENT_ID = "Segment";
+    private static final String SYNAPSE_SET_ID = "SynapseSet";
+    private static final String CONNECTION_SET_ID = "ConnectionSet";
+    private static final String SKELETON_ID = "Skeleton";
+    private static final String SKEL_NODE_ID = "SkelNode";
+
+    private final String dataset;
+    private final float dataModelVersion;
+    private final double preHPThreshold;
+    private final double postHPThreshold;
+    private final boolean addConnectionSetRoiInfoAndWeightHP;
+    private final long neuronThreshold;
+    private final boolean addClusterNames;
+    private final LocalDateTime timeStamp;
+
+    /**
+     * Class constructor.
+     *
+     * @param dataset                            dataset name
+     * @param dataModelVersion                   version of data model
+     * @param preHPThreshold                     high-precision threshold for presynaptic densities
+     * @param postHPThreshold                    high-precision threshold for postsynaptic densities
+     * @param addConnectionSetRoiInfoAndWeightHP boolean indicating if ConnectionSet nodes should have roiInfo property and weightHP should be added to ConnectsTo relationships
+     * @param neuronThreshold                    Neuron must have greater than or equal to neuronThreshold/5 presynaptic densities or greater than or equal to neuronThreshold postsynaptic densities to be given a :Neuron label
+     * @param addClusterNames                    boolean indicating if the cluster name index should be created
+     * @param timeStamp                          time stamp for load
+     */
+    protected OfflineGraphWriter(final String dataset,
+                                 final float dataModelVersion,
+                                 final double preHPThreshold,
+                                 final double postHPThreshold,
+                                 final boolean addConnectionSetRoiInfoAndWeightHP,
+                                 final long neuronThreshold,
+                                 final boolean addClusterNames,
+                                 final LocalDateTime timeStamp) {
+        this.dataset = dataset;
+        this.dataModelVersion = dataModelVersion;
+        this.preHPThreshold = preHPThreshold;
+        this.postHPThreshold = postHPThreshold;
+        this.addConnectionSetRoiInfoAndWeightHP = addConnectionSetRoiInfoAndWeightHP;
+        this.neuronThreshold = neuronThreshold;
+        this.addClusterNames = addClusterNames;
+        this.timeStamp = timeStamp;
+    }
+
+    /**
+     * Writes the nodes, relationships and schema for the provided input. Any of the lists may be empty.
+     *
+     * @param synapseList     list of {@link Synapse} objects
+     * @param connectionsList list of {@link SynapticConnection} objects
+     * @param neuronList      list of {@link Neuron} objects
+     * @param skeletonList    list of {@link Skeleton} objects
+     * @throws IOException if the rows cannot be written
+     */
+    protected void writeGraph(final List<Synapse> synapseList,
+                              final List<SynapticConnection> connectionsList,
+                              final List<Neuron> neuronList,
+                              final List<Skeleton> skeletonList) throws IOException {
+
+        final ConnectivitySummary summary = new ConnectivitySummary(synapseList, connectionsList, neuronList, preHPThreshold, postHPThreshold, neuronThreshold);
+        final Set<String> datasetRois = summary.getDatasetRoiInfo().getSetOfRois();
+
+        writeMetaNodes(summary.getDatasetRoiInfo(), summary.getSuperLevelRois(), summary.getTotalPreCount(), summary.getTotalPostCount());
+        writeSynapses(summary.getSynapses(), datasetRois, connectionsList);
+        writeSegments(neuronList, skeletonList, summary, datasetRois);
+        writeConnectionSets(summary);
+        writeSkeletons(skeletonList);
+        writeSchema(schemaTexts(datasetRois));
+    }
+
+    /**
+     * Returns a writer for the rows of one kind of node.
+     *
+     * @param name   name of the node rows (e.g. synapses)
+     * @param header column headers
+     * @return row writer, closed once all rows are written
+     * @throws IOException if the writer cannot be opened
+     */
+    protected abstract RowWriter nodeRows(String name, List<String> header) throws IOException;
+
+    /**
+     * Returns a writer for the rows of one kind of relationship. Relationship rows are written after the node
+     * rows of their start and end nodes.
+     *
+     * @param name   name of the relationship rows (e.g. synapses_to)
+     * @param header column headers
+     * @return row writer, closed once all rows are written
+     * @throws IOException if the writer cannot be opened
+     */
+    protected abstract RowWriter relationshipRows(String name, List<String> header) throws IOException;
+
+    /**
+     * Writes the constraints and indices of the graph, once all rows have been written.
+     *
+     * @param schemaTexts cypher statements creating the constraints and indices
+     * @throws IOException if the schema cannot be written
+     */
+    protected abstract void writeSchema(List<String> schemaTexts) throws IOException;
+
+    /**
+     * @return import id of a synapse; a pre and a post synapse may share a location, so the id includes the type
+     */
+    private static String synapseId(final Location location,
+                                    final String type) {
+        return location + ":" + type;
+    }
+
+    private void writeMetaNodes(final RoiInfo datasetRoiInfo,
+                                final Set<String> superLevelRois,
+                                final long totalPreCount,
+                                final long totalPostCount) throws IOException {
+
+        final List<String> metaHeader = new ArrayList<>(Arrays.asList(
+                idColumn(META_ID), "dataset", "lastDatabaseEdit:localdatetime", "roiInfo", "superLevelRois:string[]", "totalPreCount:long", "totalPostCount:long"));
+        if (addConnectionSetRoiInfoAndWeightHP) {
+            metaHeader.add("preHPThreshold:double");
+            metaHeader.add("postHPThreshold:double");
+        }
+        metaHeader.add(":LABEL");
+
+        try (RowWriter meta = nodeRows("meta", metaHeader)) {
+            final List<Object> row = new ArrayList<>(Arrays.asList(
+                    dataset, dataset, timeStamp, datasetRoiInfo.getAsJsonString(), new ArrayList<>(superLevelRois), totalPreCount, totalPostCount));
+            if (addConnectionSetRoiInfoAndWeightHP) {
+                row.add(preHPThreshold);
+                row.add(postHPThreshold);
+            }
+            row.add(labels("Meta", dataset));
+            meta.writeRow(row.toArray());
+        }
+
+        try (RowWriter dataModel = nodeRows("datamodel", Arrays.asList(idColumn(DATA_MODEL_ID), "dataModelVersion:double", "timeStamp:localdatetime", ":LABEL"))) {
+            dataModel.writeRow(dataModelVersion, dataModelVersion, timeStamp, "DataModel");
+        }
+
+        try (RowWriter is = relationshipRows("meta_is_datamodel", META_ID, DATA_MODEL_ID)) {
+            is.writeRow(dataset, dataModelVersion, "Is");
+        }
+    }
+
+    private void writeSynapses(final Iterable<Synapse> synapses,
+                               final Set<String> datasetRois,
+                               final List<SynapticConnection> connectionsList) throws IOException {
+
+        final List<String> header = new ArrayList<>(Arrays.asList(
+                idColumn(SYNAPSE_ID), "location:point{crs:cartesian-3D}", "type", "confidence:double", "timeStamp:localdatetime"));
+        final List<String> roiColumns = new ArrayList<>(datasetRois);
+        for (final String roi : roiColumns) {
+            header.add(roi + ":boolean");
+        }
+        header.add(":LABEL");
+
+        try (RowWriter synapseRows = nodeRows("synapses", header)) {
+            for (final Synapse synapse : synapses) {
+                final Set<String> rois = synapse.getRois();
+                final Object[] row = new Object[header.size()];
+                row[0] = synapseId(synapse.getLocation(), synapse.getType());
+                row[1] = synapse.getLocation();
+                row[2] = synapse.getType();
+                row[3] = synapse.getConfidence();
+                row[4] = timeStamp;
+                for (int i = 0; i < roiColumns.size(); i++) {
+                    row[5 + i] = rois.contains(roiColumns.get(i)) ? Boolean.TRUE : null;
+                }
+                final String typeLabel = synapse.getType().equals(PRE) ? "PreSyn" : "PostSyn";
+                row[row.length - 1] = labels("Synapse", typeLabel, dataset, dataset + "-Synapse", dataset + "-" + typeLabel);
+                synapseRows.writeRow(row);
+            }
+        }
+
+        try (RowWriter synapsesTo = relationshipRows("synapses_to", SYNAPSE_ID, SYNAPSE_ID)) {
+            final Set<SynapticConnection> written = new HashSet<>();
+            for (final SynapticConnection connection : connectionsList) {
+                // MERGE in addSynapsesTo writes a repeated connection once
+                if (written.add(connection)) {
+                    synapsesTo.writeRow(synapseId(connection.getPreLocation(), PRE), synapseId(connection.getPostLocation(), POST), "SynapsesTo");
+                }
+            }
+        }
+    }
+
+    private void writeSegments(final List<Neuron> neuronList,
+                               final List<Skeleton> skeletonList,
+                               final ConnectivitySummary summary,
+                               final Set<String> datasetRois) throws IOException {
+
+        // roi columns cover the synapse rois and any roi only listed on a neuron
+        final Set<String> segmentRois = new TreeSet<>(datasetRois);
+        for (final Neuron neuron : neuronList) {
+            segmentRois.addAll(neuron.getRois());
+        }
+        final List<String> roiColumns = new ArrayList<>(segmentRois);
+
+        final List<String> header = new ArrayList<>(Arrays.asList(
+                idColumn(SEGMENT_ID), "bodyId:long", "name", "type", "instance", "primaryNeurite", "majorInput", "majorOutput", "clonalUnit",
+                "neurotransmitter", "property", "status", "size:long", "somaLocation:point{crs:cartesian-3D}", "somaRadius:double",
+                "pre:long", "post:long", "roiInfo", "clusterName", "timeStamp:localdatetime"));
+        final int firstRoiColumn = header.size();
+        for (final String roi : roiColumns) {
+            header.add(roi + ":boolean");
+        }
+        header.add(":LABEL");
+
+        final Set<Long> writtenBodyIds = new HashSet<>();
+
+        try (RowWriter segments = nodeRows("segments", header);
+             RowWriter synapseSets = nodeRows("synapsesets", Arrays.asList(idColumn(SYNAPSE_SET_ID), "datasetBodyId", "timeStamp:localdatetime", ":LABEL"));
+             RowWriter segmentContainsSynapseSet = relationshipRows("segment_contains_synapseset", SEGMENT_ID, SYNAPSE_SET_ID);
+             RowWriter synapseSetContainsSynapse = relationshipRows("synapseset_contains_synapse", SYNAPSE_SET_ID, SYNAPSE_ID)) {
+
+            for (final Neuron neuron : neuronList) {
+                if (!writtenBodyIds.add(neuron.getId())) {
+                    LOG.warn("Skipping repeated bodyId in neuron input: " + neuron.getId());
+                    continue;
+                }
+
+                final Set<String> rois = new LinkedHashSet<>(neuron.getRois());
+                final Object[] row = new Object[header.size()];
+                row[0] = neuron.getId();
+                row[1] = neuron.getId();
+                row[2] = neuron.getName();
+                row[3] = neuron.getType();
+                row[4] = neuron.getInstance();
+                row[5] = neuron.getPrimaryNeurite();
+                row[6] = neuron.getMajorInput();
+                row[7] = neuron.getMajorOutput();
+                row[8] = neuron.getClonalUnit();
+                row[9] = neuron.getNeurotransmitter();
+                row[10] = neuron.getProperty();
+                row[11] = neuron.getStatus();
+                row[12] = neuron.getSize();
+                row[13] = neuron.getSoma() == null ? null : neuron.getSoma().getLocation();
+                row[14] = neuron.getSomaRadius();
+                row[19] = timeStamp;
+
+                final String datasetBodyId = dataset + ":" + neuron.getId();
+                final ConnectivitySummary.SegmentSummary segment = summary.getSegmentSummary(neuron.getId());
+                if (segment != null) {
+                    synapseSets.writeRow(datasetBodyId, datasetBodyId, timeStamp, labels("SynapseSet", dataset, dataset + "-SynapseSet"));
+                    for (final Synapse synapse : segment.getSynapses()) {
+                        synapseSetContainsSynapse.writeRow(datasetBodyId, synapseId(synapse.getLocation(), synapse.getType()), "Contains");
+                    }
+
+                    // pre/post counts, roiInfo and rois from the synapses, as set by loader.addPropsAndConnectionInfoToSegment
+                    if (segment.hasSynapses()) {
+                        row[15] = segment.getPre();
+                        row[16] = segment.getPost();
+                        row[17] = segment.getRoiInfo().getAsJsonString();
+                        rois.addAll(segment.getRoiInfo().getSetOfRois());
+                    }
+                    row[18] = segment.getClusterName();
+                }
+
+                for (int i = 0; i < roiColumns.size(); i++) {
+                    row[firstRoiColumn + i] = rois.contains(roiColumns.get(i)) ? Boolean.TRUE : null;
+                }
+                row[row.length - 1] = segment != null && segment.isNeuron() ?
+                        labels("Segment", dataset, dataset + "-Segment", "Neuron", dataset + "-Neuron") :
+                        labels("Segment", dataset, dataset + "-Segment");
+                segments.writeRow(row);
+                if (segment != null) {
+                    segmentContainsSynapseSet.writeRow(neuron.getId(), datasetBodyId, "Contains");
+                }
+            }
+
+            // bodies that only have a skeleton
+            for (final Skeleton skeleton : skeletonList) {
+                if (writtenBodyIds.add(skeleton.getAssociatedBodyId())) {
+                    final Object[] row = new Object[header.size()];
+                    row[0] = skeleton.getAssociatedBodyId();
+                    row[1] = skeleton.getAssociatedBodyId();
+                    row[19] = timeStamp;
+                    row[row.length - 1] = labels("Segment", dataset, dataset + "-Segment");
+                    segments.writeRow(row);
+                }
+            }
+        }
+    }
+
+    private void writeConnectionSets(final ConnectivitySummary summary) throws IOException {
+
+        final List<String> connectionSetHeader = addConnectionSetRoiInfoAndWeightHP ?
+                Arrays.asList(idColumn(CONNECTION_SET_ID), "datasetBodyIds", "roiInfo", "timeStamp:localdatetime", ":LABEL") :
+                Arrays.asList(idColumn(CONNECTION_SET_ID), "datasetBodyIds", "timeStamp:localdatetime", ":LABEL");
+        final List<String> connectsToHeader = addConnectionSetRoiInfoAndWeightHP ?
+                Arrays.asList(startIdColumn(SEGMENT_ID), endIdColumn(SEGMENT_ID), "weight:int", "weightHP:int", ":TYPE") :
+                Arrays.asList(startIdColumn(SEGMENT_ID), endIdColumn(SEGMENT_ID), "weight:int", ":TYPE");
+
+        try (RowWriter connectionSets = nodeRows("connectionsets", connectionSetHeader);
+             RowWriter connectionSetContains = relationshipRows("connectionset_contains_synapse", CONNECTION_SET_ID, SYNAPSE_ID);
+             RowWriter connectionSetFrom = relationshipRows("connectionset_from", CONNECTION_SET_ID, SEGMENT_ID);
+             RowWriter connectionSetTo = relationshipRows("connectionset_to", CONNECTION_SET_ID, SEGMENT_ID);
+             RowWriter connectsTo = relationshipRows("connects_to", connectsToHeader)) {
+
+            for (final ConnectivitySummary.ConnectionSetSummary connectionSet : summary.getConnectionSets()) {
+                final long preBodyId = connectionSet.getPreBodyId();
+                final long postBodyId = connectionSet.getPostBodyId();
+                final String datasetBodyIds = dataset + ":" + preBodyId + ":" + postBodyId;
+
+                final String connectionSetLabels = labels("ConnectionSet", dataset, dataset + "-ConnectionSet");
+                if (addConnectionSetRoiInfoAndWeightHP) {
+                    connectionSets.writeRow(datasetBodyIds, datasetBodyIds, connectionSet.getRoiInfo().getAsJsonString(), timeStamp, connectionSetLabels);
+                    connectsTo.writeRow(preBodyId, postBodyId, connectionSet.getWeight(), connectionSet.getWeightHP(), "ConnectsTo");
+                } else {
+                    connectionSets.writeRow(datasetBodyIds, datasetBodyIds, timeStamp, connectionSetLabels);
+                    connectsTo.writeRow(preBodyId, postBodyId, connectionSet.getWeight(), "ConnectsTo");
+                }
+                for (final Synapse synapse : connectionSet.getSynapses()) {
+                    connectionSetContains.writeRow(datasetBodyIds, synapseId(synapse.getLocation(), synapse.getType()), "Contains");
+                }
+                connectionSetFrom.writeRow(datasetBodyIds, preBodyId, "From");
+                connectionSetTo.writeRow(datasetBodyIds, postBodyId, "To");
+            }
+        }
+    }
+
+    private void writeSkeletons(final List<Skeleton> skeletonList) throws IOException {
+
+        try (RowWriter skeletons = nodeRows("skeletons", Arrays.asList(idColumn(SKELETON_ID), "skeletonId", "timeStamp:localdatetime", ":LABEL"));
+             RowWriter skelNodes = nodeRows("skelnodes", Arrays.asList(idColumn(SKEL_NODE_ID), "skelNodeId", "location:point{crs:cartesian-3D}", "radius:double", "rowNumber:int", "type:int", "timeStamp:localdatetime", ":LABEL"));
+             RowWriter segmentContainsSkeleton = relationshipRows("segment_contains_skeleton", SEGMENT_ID, SKELETON_ID);
+             RowWriter skeletonContainsSkelNode = relationshipRows("skeleton_contains_skelnode", SKELETON_ID, SKEL_NODE_ID);
+             RowWriter linksTo = relationshipRows("links_to", SKEL_NODE_ID, SKEL_NODE_ID)) {
+
+            final String skeletonLabels = labels("Skeleton", dataset, dataset + "-Skeleton");
+            final String skelNodeLabels = labels("SkelNode", dataset, dataset + "-SkelNode");
+            for (final Skeleton skeleton : skeletonList) {
+                final String skeletonId = dataset + ":" + skeleton.getAssociatedBodyId();
+                skeletons.writeRow(skeletonId, skeletonId, timeStamp, skeletonLabels);
+                segmentContainsSkeleton.writeRow(skeleton.getAssociatedBodyId(), skeletonId, "Contains");
+
+                final String[] skelNodeIds = new String[skeleton.getNodeCount()];
+                for (int i = 0; i < skeleton.getNodeCount(); i++) {
+                    skelNodeIds[i] = skeleton.getSkelNodeId(dataset, i);
+                    skelNodes.writeRow(skelNodeIds[i], skelNodeIds[i], new Location((long) skeleton.getX(i), (long) skeleton.getY(i), (long) skeleton.getZ(i)), skeleton.getRadius(i), skeleton.getRowNumber(i), skeleton.getType(i), timeStamp, skelNodeLabels);
+                    skeletonContainsSkelNode.writeRow(skeletonId, skelNodeIds[i], "Contains");
+                }
+                // parents may come later in the node list, so links are written once all nodes of the skeleton are
+                for (int i = 0; i < skeleton.getNodeCount(); i++) {
+                    if (skeleton.getParentIndex(i) >= 0) {
+                        linksTo.writeRow(skelNodeIds[skeleton.getParentIndex(i)], skelNodeIds[i], "LinksTo");
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @return constraints and indices created by a standard load: those of prepDatabase, the cluster name index
+     * (if cluster names are added) and those of indexBooleanRoiProperties
+     */
+    private List<String> schemaTexts(final Set<String> datasetRois) {
+        final List<String> schemaTexts = new ArrayList<>(Arrays.asList(Neo4jImporter.prepDatabaseTexts(dataset)));
+        if (addClusterNames) {
+            schemaTexts.add(Neo4jImporter.clusterNameIndexText(dataset));
+        }
+        schemaTexts.addAll(Arrays.asList(Neo4jImporter.roiIndexTexts(dataset, datasetRois)));
+        return schemaTexts;
+    }
+
+    private RowWriter relationshipRows(final String name, final String startIdSpace, final String endIdSpace) throws IOException {
+        return relationshipRows(name, Arrays.asList(startIdColumn(startIdSpace), endIdColumn(endIdSpace), ":TYPE"));
+    }
+
+    private static String idColumn(final String idSpace) {
+        return ":ID(" + idSpace + ")";
+    }
+
+    private static String startIdColumn(final String idSpace) {
+        return ":START_ID(" + idSpace + ")";
+    }
+
+    private static String endIdColumn(final String idSpace) {
+        return ":END_ID(" + idSpace + ")";
+    }
+
+    private static String labels(final String... labels) {
+        return String.join(";", labels);
+    }
+
+    /**
+     * Receives the rows of one kind of node or relationship. Values are in header order; a null value means the
+     * property is not set.
+     */
+    protected interface RowWriter extends AutoCloseable {
+
+        void writeRow(Object... values) throws IOException;
+
+        @Override
+        void close() throws IOException;
+    }
+
+    private static final Logger LOG = LoggerFactory.getLogger(OfflineGraphWriter.class);
+
+}
@@ -0,0 +1,168 @@
+package org.janelia.flyem.neuprint;
+
+import org.janelia.flyem.neuprint.json.JsonArraySplitter;
+import org.janelia.flyem.neuprint.json.NeuPrintJsonDecoder;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.LongConsumer;
+
+/**
+ * Reads batches of objects from a JSON file containing an array, decoding chunks of the array (see
+ * {@link JsonArraySplitter}) on a fork-join pool. Chunks following the current batch are decoded while it is
+ * being written, and objects are returned in the order of the file.
+ *
+ * @param <T> type of decoded object
+ */
+public class ParallelJsonArrayBatchReader<T> implements PipelinedBatchLoader.BatchReader<T>, Closeable {
+
+    private final FileChannel channel;
+    private final List<JsonArraySplitter.Chunk> chunks;
+    private final int batchSize;
+    private final int parserThreads;
+    private final NeuPrintJsonDecoder.ElementDecoder<T> elementDecoder;
+    private final ForkJoinPool parserPool;
+    private final LongConsumer bytesRead;
+    private final Deque<Future<List<T>>> pendingChunks = new ArrayDeque<>();
+    private final Deque<Long> pendingChunkBytes = new ArrayDeque<>();
+    private final Deque<T> decoded = new ArrayDeque<>();
+    private int nextChunkIndex;
+    private long elementsToSkip;
+
+    /**
+     * Class constructor.
+     *
+     * @param path           path to a file containing a JSON array
+     * @param batchSize      number of objects per batch
+     * @param parserThreads  number of threads decoding chunks
+     * @param elementDecoder decodes each object
+     * @param firstIndex     index of the first array element to return (elements before it are skipped, e.g. when a load is resumed)
+     * @throws IOException if the file cannot be read
+     */
+    public ParallelJsonArrayBatchReader(final Path path,
+                                        final int batchSize,
+                                        final int parserThreads,
+                                        final NeuPrintJsonDecoder.ElementDecoder<T> elementDecoder,
+                                        final long firstIndex) throws IOException {
+        this(path, batchSize, parserThreads, elementDecoder, firstIndex, JsonArraySplitter.DEFAULT_CHUNK_BYTES);
+    }
+
+    /**
+     * Class constructor.
+     *
+     * @param path           path to a file containing a JSON array
+     * @param batchSize      number of objects per batch
+     * @param parserThreads  number of threads decoding chunks
+     * @param elementDecoder decodes each object
+     * @param firstIndex     index of the first array element to return (elements before it are skipped, e.g. when a load is resumed)
+     * @param chunkBytes     approximate number of bytes per chunk
+     * @throws IOException if the file cannot be read
+     */
+    public ParallelJsonArrayBatchReader(final Path path,
+                                        final int batchSize,
+                                        final int parserThreads,
+                                        final NeuPrintJsonDecoder.ElementDecoder<T> elementDecoder,
+                                        final long firstIndex,
+                                        final long chunkBytes) throws IOException {
+        this(path, batchSize, parserThreads, elementDecoder, firstIndex, chunkBytes, null);
+    }
+
+    /**
+     * Class constructor.
+     *
+     * @param path           path to a file containing a JSON array
+     * @param batchSize      number of objects per batch
+     * @param parserThreads  number of threads decoding chunks
+     * @param elementDecoder decodes each object
+     * @param firstIndex     index of the first array element to return (elements before it are skipped, e.g. when a load is resumed)
+     * @param chunkBytes     approximate number of bytes per chunk
+     * @param bytesRead      called with the number of file bytes in each chunk as its objects are taken (null if not needed)
+     * @throws IOException if the file cannot be read
+     */
+    public ParallelJsonArrayBatchReader(final Path path,
+                                        final int batchSize,
+                                        final int parserThreads,
+                                        final NeuPrintJsonDecoder.ElementDecoder<T> elementDecoder,
+                                        final long firstIndex,
+                                        final long chunkBytes,
+                                        final LongConsumer bytesRead) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        this.chunks = JsonArraySplitter.split(channel, chunkBytes);
+        this.batchSize = Math.max(1, batchSize);
+        this.parserThreads = Math.max(1, parserThreads);
+        this.elementDecoder = elementDecoder;
+        this.parserPool = new ForkJoinPool(this.parserThreads);
+        this.bytesRead = bytesRead == null ? bytes -> { } : bytesRead;
+
+        // whole chunks before the first element are never decoded
+        long skipped = 0;
+        while (nextChunkIndex < chunks.size() && skipped + chunks.get(nextChunkIndex).getElementCount() <= firstIndex) {
+            skipped += chunks.get(nextChunkIndex).getElementCount();
+            this.bytesRead.accept(chunks.get(nextChunkIndex).getEnd() - chunks.get(nextChunkIndex).getStart());
+            nextChunkIndex++;
+        }
+        this.elementsToSkip = firstIndex - skipped;
+    }
+
+    @Override
+    public List<T> readBatch() throws IOException {
+        final List<T> batch = new ArrayList<>(batchSize);
+        while (batch.size() < batchSize) {
+            // keep two chunks per thread in progress so that decoding continues while this batch is written
+            while (nextChunkIndex < chunks.size() && pendingChunks.size() < 2 * parserThreads) {
+                final JsonArraySplitter.Chunk chunk = chunks.get(nextChunkIndex++);
+                pendingChunks.add(parserPool.submit(() -> JsonArraySplitter.decodeChunk(channel, chunk, elementDecoder)));
+                pendingChunkBytes.add(chunk.getEnd() - chunk.getStart());
+            }
+            if (decoded.isEmpty()) {
+                if (pendingChunks.isEmpty()) {
+                    break;
+                }
+                decoded.addAll(nextDecodedChunk());
+                while (elementsToSkip > 0 && !decoded.isEmpty()) {
+                    decoded.removeFirst();
+                    elementsToSkip--;
+                }
+            }
+            while (!decoded.isEmpty() && batch.size() < batchSize) {
+                batch.add(decoded.removeFirst());
+            }
+        }
+        return batch;
+    }
+
+    private List<T> nextDecodedChunk() throws IOException {
+        try {
+            bytesRead.accept(pendingChunkBytes.remove());
+            return pendingChunks.remove().get();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted while decoding JSON", e);
+        } catch (final ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IOException("failed to decode JSON", e.getCause());
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        parserPool.shutdownNow();
+        channel.close();
+    }
+
+}
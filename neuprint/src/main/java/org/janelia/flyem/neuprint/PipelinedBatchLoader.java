@@ -0,0 +1,259 @@
+package org.janelia.flyem.neuprint;
+
+import com.google.common.base.Stopwatch;
+import org.janelia.flyem.neuprint.metrics.LoadMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Loads batches read from an input file so that reading the next batch overlaps writing the previous ones.
+ * The calling thread reads batches and puts them on a bounded queue; writer threads take batches from the
+ * queue and write them. When the load completes, the time the reader spent waiting for room on the queue
+ * (writing is the bottleneck) and the time the writers spent waiting for a batch (reading is the bottleneck)
+ * are logged. Written rows and waiting times are also recorded as they happen in the {@link LoadMetrics}
+ * of the phase with the load's name.
+ *
+ * @param <T> type of object in each batch
+ */
+public class PipelinedBatchLoader<T> {
+
+    /**
+     * Reads the next batch from the input.
+     *
+     * @param <T> type of object in each batch
+     */
+    @FunctionalInterface
+    public interface BatchReader<T> {
+        /**
+         * @return the next batch, or an empty list if there are no batches remaining
+         * @throws IOException if the input cannot be read
+         */
+        List<T> readBatch() throws IOException;
+    }
+
+    /**
+     * Writes a batch to the database.
+     *
+     * @param <T> type of object in each batch
+     */
+    @FunctionalInterface
+    public interface BatchWriter<T> {
+        /**
+         * @param batch batch to write
+         */
+        void writeBatch(List<T> batch);
+    }
+
+    /**
+     * Called after a batch has been written, e.g. to record that it was committed.
+     *
+     * @param <T> type of object in each batch
+     */
+    @FunctionalInterface
+    public interface BatchWrittenListener<T> {
+        /**
+         * @param batchNumber number of the batch in the order batches were read, starting with 0
+         * @param batch       batch that was written
+         * @throws IOException if the listener cannot record the batch
+         */
+        void batchWritten(long batchNumber, List<T> batch) throws IOException;
+    }
+
+    /**
+     * A batch with its number in the order batches were read.
+     */
+    private static class NumberedBatch<T> {
+        private final long number;
+        private final List<T> batch;
+
+        private NumberedBatch(final long number,
+                              final List<T> batch) {
+            this.number = number;
+            this.batch = batch;
+        }
+    }
+
+    // marks the end of the input for one writer thread
+    private final NumberedBatch<T> endOfInput = new NumberedBatch<>(-1, Collections.emptyList());
+
+    private final String name;
+    private final int queueDepth;
+    private final int writerThreads;
+
+    /**
+     * Class constructor.
+     *
+     * @param name          name of the load used in log messages
+     * @param queueDepth    number of read batches that can wait to be written. If less than 1, each batch is
+     *                      written on the calling thread before the next one is read.
+     * @param writerThreads number of threads writing batches (ignored when queueDepth is less than 1)
+     */
+    public PipelinedBatchLoader(final String name,
+                                final int queueDepth,
+                                final int writerThreads) {
+        this.name = name;
+        this.queueDepth = queueDepth;
+        this.writerThreads = Math.max(1, writerThreads);
+    }
+
+    /**
+     * Reads all batches from the reader and writes them with the writer.
+     *
+     * @param reader reads batches from the input
+     * @param writer writes batches to the database
+     * @throws IOException if the input cannot be read
+     */
+    public void load(final BatchReader<T> reader,
+                     final BatchWriter<T> writer) throws IOException {
+        load(reader, writer, (batchNumber, batch) -> {
+        });
+    }
+
+    /**
+     * Reads all batches from the reader and writes them with the writer, calling the listener after each
+     * batch is written. When there are several writer threads, batches may be written out of order. Once a
+     * writer fails, no further batch is read, written or passed to the listener, so a batch written after
+     * one that failed is never recorded as committed.
+     *
+     * @param reader   reads batches from the input
+     * @param writer   writes batches to the database
+     * @param listener called on the writing thread after each batch is written
+     * @throws IOException if the input cannot be read or the listener fails
+     */
+    public void load(final BatchReader<T> reader,
+                     final BatchWriter<T> writer,
+                     final BatchWrittenListener<T> listener) throws IOException {
+
+        final LoadMetrics.PhaseMetrics metrics = LoadMetrics.getInstance().getPhase(name);
+        metrics.start();
+
+        if (queueDepth < 1) {
+            long batchNumber = 0;
+            List<T> batch = reader.readBatch();
+            while (!batch.isEmpty()) {
+                writer.writeBatch(batch);
+                metrics.addRows(batch.size());
+                listener.batchWritten(batchNumber++, batch);
+                batch = reader.readBatch();
+            }
+            metrics.finish();
+            return;
+        }
+
+        LOG.info(String.format("Loading %s with a queue of %d batches and %d writer thread(s)", name, queueDepth, writerThreads));
+
+        final Stopwatch timer = Stopwatch.createStarted();
+        final BlockingQueue<NumberedBatch<T>> queue = new ArrayBlockingQueue<>(queueDepth);
+        final AtomicLong writerBlockedNanos = new AtomicLong();
+        final ExecutorService writerService = Executors.newFixedThreadPool(writerThreads);
+        final List<Future<Void>> writerFutures = new ArrayList<>();
+
+        // first failure of any writer; once set, no further batch is written or passed to the listener
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        for (int i = 0; i < writerThreads; i++) {
+            writerFutures.add(writerService.submit(() -> {
+                try {
+                    while (true) {
+                        final long start = System.nanoTime();
+                        final NumberedBatch<T> numberedBatch = queue.take();
+                        final long blockedNanos = System.nanoTime() - start;
+                        writerBlockedNanos.addAndGet(blockedNanos);
+                        metrics.addWriterBlockedNanos(blockedNanos);
+                        if (numberedBatch == endOfInput || failure.get() != null) {
+                            return null;
+                        }
+                        writer.writeBatch(numberedBatch.batch);
+                        metrics.addRows(numberedBatch.batch.size());
+                        if (failure.get() != null) {
+                            return null;
+                        }
+                        listener.batchWritten(numberedBatch.number, numberedBatch.batch);
+                    }
+                } catch (final Throwable t) {
+                    failure.compareAndSet(null, t);
+                    throw t;
+                }
+            }));
+        }
+        writerService.shutdown();
+
+        long readerBlockedNanos = 0;
+        int batchCount = 0;
+        try {
+            List<T> batch = reader.readBatch();
+            while (!batch.isEmpty()) {
+                final long blockedNanos = put(queue, new NumberedBatch<>(batchCount, batch), failure);
+                readerBlockedNanos += blockedNanos;
+                metrics.addReaderBlockedNanos(blockedNanos);
+                batchCount++;
+                batch = reader.readBatch();
+            }
+            for (int i = 0; i < writerThreads; i++) {
+                final long blockedNanos = put(queue, endOfInput, failure);
+                readerBlockedNanos += blockedNanos;
+                metrics.addReaderBlockedNanos(blockedNanos);
+            }
+            for (final Future<Void> writerFuture : writerFutures) {
+                writerFuture.get();
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("interrupted while loading " + name, e);
+        } catch (final ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new RuntimeException("failed to write " + name, e.getCause());
+        } finally {
+            writerService.shutdownNow();
+        }
+
+        metrics.finish();
+        LOG.info(String.format("Loading %d batches of %s took %s; reader waited %d ms for writers, writers waited %d ms for reader",
+                batchCount,
+                name,
+                timer.stop(),
+                TimeUnit.NANOSECONDS.toMillis(readerBlockedNanos),
+                TimeUnit.NANOSECONDS.toMillis(writerBlockedNanos.get())));
+    }
+
+    /**
+     * Puts the batch on the queue, waiting for room if necessary. Fails instead once a writer has failed, so
+     * that no more input is read.
+     *
+     * @return nanoseconds spent waiting
+     * @throws ExecutionException with the first writer failure as its cause
+     */
+    private long put(final BlockingQueue<NumberedBatch<T>> queue,
+                     final NumberedBatch<T> batch,
+                     final AtomicReference<Throwable> failure) throws InterruptedException, ExecutionException {
+        final long start = System.nanoTime();
+        do {
+            if (failure.get() != null) {
+                throw new ExecutionException(failure.get());
+            }
+        } while (!queue.offer(batch, 100, TimeUnit.MILLISECONDS));
+        return System.nanoTime() - start;
+    }
+
+    private static final Logger LOG = LoggerFactory.getLogger(PipelinedBatchLoader.class);
+
+}
@@ -0,0 +1,180 @@
+package org.janelia.flyem.neuprint;
+
+import org.janelia.flyem.neuprint.json.JsonByteReader;
+import org.janelia.flyem.neuprint.json.NeuPrintJsonDecoder;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.LongConsumer;
+
+/**
+ * Reads batches of objects from shard files that each contain a JSON array (and may be gzip compressed, see
+ * {@link org.janelia.flyem.neuprint.json.JsonInputFiles}), as if the arrays were one array. Each shard is
+ * decompressed and decoded as a stream on its own thread, up to parserThreads shards at a time, and hands
+ * decoded objects to the batches in shard order through a short queue, so memory does not grow with shard size.
+ *
+ * @param <T> type of decoded object
+ */
+public class ShardedJsonArrayBatchReader<T> implements PipelinedBatchLoader.BatchReader<T>, Closeable {
+
+    private static final int QUEUED_PIECES_PER_SHARD = 2;
+
+    private final List<Shard<T>> shards = new ArrayList<>();
+    private final int batchSize;
+    private final ExecutorService parserService;
+    private final Deque<T> decoded = new ArrayDeque<>();
+    private int currentShardIndex;
+    private long elementsToSkip;
+
+    /**
+     * Decoded objects of one shard, in pieces of up to a batch, ended by {@link #END}.
+     */
+    private static class Shard<T> {
+
+        @SuppressWarnings("rawtypes")
+        private static final List END = Collections.emptyList();
+
+        private final Path path;
+        private final BlockingQueue<List<T>> pieces = new ArrayBlockingQueue<>(QUEUED_PIECES_PER_SHARD);
+        private volatile Throwable failure;
+
+        Shard(final Path path) {
+            this.path = path;
+        }
+
+        @SuppressWarnings("unchecked")
+        void decode(final NeuPrintJsonDecoder.ElementDecoder<T> elementDecoder, final int pieceSize, final LongConsumer bytesRead) {
+            try (NeuPrintJsonDecoder decoder = NeuPrintJsonDecoder.forFile(path.toString(), bytesRead)) {
+                final JsonByteReader reader = decoder.getReader();
+                reader.beginArray();
+                List<T> piece = new ArrayList<>(pieceSize);
+                while (reader.hasNext()) {
+                    piece.add(elementDecoder.decode(decoder));
+                    if (piece.size() == pieceSize) {
+                        pieces.put(piece);
+                        piece = new ArrayList<>(pieceSize);
+                    }
+                }
+                reader.endArray();
+                if (!piece.isEmpty()) {
+                    pieces.put(piece);
+                }
+                pieces.put(END);
+            } catch (final InterruptedException e) {
+                // the reader was closed
+                Thread.currentThread().interrupt();
+            } catch (final Throwable t) {
+                failure = t;
+                pieces.clear();
+                pieces.offer(END);
+            }
+        }
+
+        List<T> nextPiece() throws IOException {
+            final List<T> piece;
+            try {
+                piece = pieces.take();
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("interrupted while decoding " + path, e);
+            }
+            if (piece == END && failure != null) {
+                if (failure instanceof IOException) {
+                    throw new IOException("failed to decode " + path + ": " + failure.getMessage(), failure);
+                }
+                if (failure instanceof RuntimeException) {
+                    throw (RuntimeException) failure;
+                }
+                throw new IOException("failed to decode " + path, failure);
+            }
+            return piece;
+        }
+    }
+
+    /**
+     * Class constructor. Decoding starts right away.
+     *
+     * @param shardPaths     paths to shard files, in the order their objects are returned
+     * @param batchSize      number of objects per batch
+     * @param parserThreads  number of shards decoded at a time
+     * @param elementDecoder decodes each object
+     * @param firstIndex     index of the first object to return (objects before it are decoded and discarded, e.g. when a load is resumed)
+     */
+    public ShardedJsonArrayBatchReader(final List<Path> shardPaths,
+                                       final int batchSize,
+                                       final int parserThreads,
+                                       final NeuPrintJsonDecoder.ElementDecoder<T> elementDecoder,
+                                       final long firstIndex) {
+        this(shardPaths, batchSize, parserThreads, elementDecoder, firstIndex, null);
+    }
+
+    /**
+     * Class constructor. Decoding starts right away.
+     *
+     * @param shardPaths     paths to shard files, in the order their objects are returned
+     * @param batchSize      number of objects per batch
+     * @param parserThreads  number of shards decoded at a time
+     * @param elementDecoder decodes each object
+     * @param firstIndex     index of the first object to return (objects before it are decoded and discarded, e.g. when a load is resumed)
+     * @param bytesRead      called from the decoding threads with the number of file bytes read (null if not needed)
+     */
+    public ShardedJsonArrayBatchReader(final List<Path> shardPaths,
+                                       final int batchSize,
+                                       final int parserThreads,
+                                       final NeuPrintJsonDecoder.ElementDecoder<T> elementDecoder,
+                                       final long firstIndex,
+                                       final LongConsumer bytesRead) {
+        this.batchSize = Math.max(1, batchSize);
+        this.parserService = Executors.newFixedThreadPool(Math.max(1, Math.min(parserThreads, shardPaths.size())));
+        this.elementsToSkip = firstIndex;
+        // shards start in order, so the shard being read is always decoding
+        for (final Path shardPath : shardPaths) {
+            final Shard<T> shard = new Shard<>(shardPath);
+            shards.add(shard);
+            parserService.submit(() -> shard.decode(elementDecoder, this.batchSize, bytesRead));
+        }
+    }
+
+    @Override
+    public List<T> readBatch() throws IOException {
+        final List<T> batch = new ArrayList<>(batchSize);
+        while (batch.size() < batchSize) {
+            if (decoded.isEmpty()) {
+                if (currentShardIndex == shards.size()) {
+                    break;
+                }
+                final List<T> piece = shards.get(currentShardIndex).nextPiece();
+                if (piece == Shard.END) {
+                    currentShardIndex++;
+                    continue;
+                }
+                if (elementsToSkip >= piece.size()) {
+                    elementsToSkip -= piece.size();
+                    continue;
+                }
+                decoded.addAll(piece.subList((int) elementsToSkip, piece.size()));
+                elementsToSkip = 0;
+            }
+            while (!decoded.isEmpty() && batch.size() < batchSize) {
+                batch.add(decoded.removeFirst());
+            }
+        }
+        return batch;
+    }
+
+    @Override
+    public void close() {
+        parserService.shutdownNow();
+    }
+
+}
@@ -0,0 +1,82 @@
+package org.janelia.flyem.neuprint;
+
+import org.janelia.flyem.neuprint.model.Skeleton;
+import org.janelia.flyem.neuprint.model.SwcParser;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.ToLongFunction;
+
+/**
+ * Reads batches of skeletons from swc files, parsing the files on a pool of threads. Each thread reuses its own
+ * {@link SwcParser}. Files for the next batch are parsed while the current batch is being written, and batches
+ * are returned in the order of the files.
+ */
+public class SwcBatchReader implements PipelinedBatchLoader.BatchReader<Skeleton>, Closeable {
+
+    private final File[] swcFiles;
+    private final int batchSize;
+    private final ToLongFunction<File> bodyIdForFile;
+    private final ExecutorService parserService;
+    private final ThreadLocal<SwcParser> parsers = ThreadLocal.withInitial(SwcParser::new);
+    private final Deque<Future<Skeleton>> pendingSkeletons = new ArrayDeque<>();
+    private int nextFileIndex;
+
+    /**
+     * Class constructor.
+     *
+     * @param swcFiles      swc files to read
+     * @param batchSize     number of skeletons per batch
+     * @param parserThreads number of threads parsing files
+     * @param bodyIdForFile returns the bodyId of the skeleton in a file
+     */
+    public SwcBatchReader(final File[] swcFiles,
+                          final int batchSize,
+                          final int parserThreads,
+                          final ToLongFunction<File> bodyIdForFile) {
+        this.swcFiles = swcFiles;
+        this.batchSize = Math.max(1, batchSize);
+        this.bodyIdForFile = bodyIdForFile;
+        this.parserService = Executors.newFixedThreadPool(Math.max(1, parserThreads));
+    }
+
+    @Override
+    public List<Skeleton> readBatch() throws IOException {
+        // keep the files of the following batch in progress so that parsing continues while this batch is written
+        while (nextFileIndex < swcFiles.length && pendingSkeletons.size() < 2 * batchSize) {
+            final File swcFile = swcFiles[nextFileIndex++];
+            pendingSkeletons.add(parserService.submit(() -> parsers.get().parse(swcFile.toPath(), bodyIdForFile.applyAsLong(swcFile))));
+        }
+
+        final List<Skeleton> batch = new ArrayList<>(batchSize);
+        while (!pendingSkeletons.isEmpty() && batch.size() < batchSize) {
+            try {
+                batch.add(pendingSkeletons.remove().get());
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("interrupted while reading skeleton files", e);
+            } catch (final ExecutionException e) {
+                if (e.getCause() instanceof IOException) {
+                    throw (IOException) e.getCause();
+                }
+                throw new IOException("failed to read skeleton file", e.getCause());
+            }
+        }
+        return batch;
+    }
+
+    @Override
+    public void close() {
+        parserService.shutdownNow();
+    }
+
+}
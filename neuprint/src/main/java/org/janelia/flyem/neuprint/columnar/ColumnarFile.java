@@ -0,0 +1,112 @@
+package org.janelia.flyem.neuprint.columnar;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Constants of the binary columnar format for synapses and synaptic connections, an alternative to the synapse
+ * and connection JSON formats that can be read without tokenizing. All numbers are little-endian.
+ * <pre>
+ * header   magic "NPCOLUMN" (8 bytes), version (int32), kind (int32: 1 = synapses, 2 = connections)
+ * blocks   rowCount (int32), reserved (int32), then one column after another:
+ *            synapses:    location (int64[rowCount]), confidence (float64[rowCount]), roi list (int32[rowCount]),
+ *                         type (int8[rowCount]: 0 = pre, 1 = post), zero padding to a multiple of 8 bytes
+ *            connections: pre location (int64[rowCount]), post location (int64[rowCount])
+ * footer   roiCount (int32), then for each roi: byte length (int32) and UTF-8 bytes
+ *          roiListCount (int32), then for each list: length (int32) and roi indexes (int32[length]) in listed order
+ *          blockCount (int32), then for each block: offset in file (int64) and index of its first row (int64)
+ *          rowCount (int64)
+ * trailer  footer offset (int64), magic "NPCOLEND" (8 bytes)
+ * </pre>
+ * Locations are packed as by {@link org.janelia.flyem.neuprint.model.Location#pack(long, long, long)}: x, y and z
+ * as 21-bit two's complement integers in bits 42-62, 21-41 and 0-20. The roi column of a synapse is an index into
+ * the roi lists, each of which is the synapse's rois in the order they are listed in JSON.
+ */
+public final class ColumnarFile {
+
+    static final byte[] MAGIC = "NPCOLUMN".getBytes(StandardCharsets.US_ASCII);
+    static final byte[] END_MAGIC = "NPCOLEND".getBytes(StandardCharsets.US_ASCII);
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 16;
+    static final int TRAILER_BYTES = 16;
+    static final int BLOCK_HEADER_BYTES = 8;
+    static final int DEFAULT_BLOCK_ROWS = 1 << 20;
+
+    static final byte PRE_TYPE = 0;
+    static final byte POST_TYPE = 1;
+
+    /**
+     * Kind of rows in a columnar file.
+     */
+    public enum Kind {
+        SYNAPSES(1),
+        CONNECTIONS(2);
+
+        private final int code;
+
+        Kind(final int code) {
+            this.code = code;
+        }
+
+        int getCode() {
+            return code;
+        }
+
+        static Kind fromCode(final int code) throws IOException {
+            for (final Kind kind : values()) {
+                if (kind.code == code) {
+                    return kind;
+                }
+            }
+            throw new IOException("unknown columnar file kind " + code);
+        }
+    }
+
+    private ColumnarFile() {
+    }
+
+    /**
+     * @param path path to a file
+     * @return true if the file starts with the columnar format's magic bytes
+     * @throws IOException if the file cannot be read
+     */
+    public static boolean isColumnarFile(final Path path) throws IOException {
+        if (!Files.isRegularFile(path) || Files.size(path) < HEADER_BYTES + TRAILER_BYTES) {
+            return false;
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            final ByteBuffer magic = ByteBuffer.allocate(MAGIC.length);
+            while (magic.hasRemaining() && channel.read(magic) >= 0) {
+                // keep reading until the magic bytes are read or the file ends
+            }
+            return !magic.hasRemaining() && ByteBuffer.wrap(MAGIC).equals(magic.flip());
+        }
+    }
+
+    /**
+     * @param rowCount number of rows in a block
+     * @param kind     kind of rows
+     * @return number of bytes of the block, including its header and padding
+     */
+    static long blockBytes(final int rowCount, final Kind kind) {
+        if (kind == Kind.SYNAPSES) {
+            return BLOCK_HEADER_BYTES + padToLong(21L * rowCount);
+        }
+        return BLOCK_HEADER_BYTES + 16L * rowCount;
+    }
+
+    static long padToLong(final long bytes) {
+        return (bytes + 7) & ~7L;
+    }
+
+    static ByteBuffer littleEndian(final ByteBuffer buffer) {
+        return buffer.order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+}
@@ -0,0 +1,225 @@
+package org.janelia.flyem.neuprint.columnar;
+
+import org.janelia.flyem.neuprint.json.SynapseAdapter;
+import org.janelia.flyem.neuprint.model.Synapse;
+import org.janelia.flyem.neuprint.model.SynapticConnection;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Reads synapses or synaptic connections from a file in the columnar format described by {@link ColumnarFile}.
+ * The footer is read when the file is opened; blocks are memory-mapped one at a time as rows are read, so any
+ * range of rows can be read without reading the rows before it. Synapses listing the same rois share one roi set.
+ * Not thread safe.
+ */
+public class ColumnarReader implements Closeable {
+
+    /**
+     * Reads a range of rows of a columnar file.
+     *
+     * @param <T> type of row
+     */
+    @FunctionalInterface
+    public interface RowReader<T> {
+        List<T> read(ColumnarReader reader, long firstRow, int maxRows) throws IOException;
+    }
+
+    private static final String PRE = "pre";
+    private static final String POST = "post";
+
+    private final Path path;
+    private final FileChannel channel;
+    private final ColumnarFile.Kind kind;
+    private final long rowCount;
+    private final long[] blockOffsets;
+    private final long[] blockFirstRows;
+    private final List<Set<String>> roiSets;
+
+    private int mappedBlockIndex = -1;
+    private ByteBuffer mappedBlock;
+    private int mappedBlockRowCount;
+
+    private ColumnarReader(final Path path) throws IOException {
+        this.path = path;
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            final long size = channel.size();
+            if (size < ColumnarFile.HEADER_BYTES + ColumnarFile.TRAILER_BYTES) {
+                throw new IOException(path + " is too short to be a columnar file");
+            }
+
+            final ByteBuffer header = map(0, ColumnarFile.HEADER_BYTES);
+            final byte[] magic = new byte[ColumnarFile.MAGIC.length];
+            header.get(magic);
+            if (!Arrays.equals(ColumnarFile.MAGIC, magic)) {
+                throw new IOException(path + " is not a columnar file");
+            }
+            final int version = header.getInt();
+            if (version != ColumnarFile.VERSION) {
+                throw new IOException(path + " has unsupported columnar format version " + version);
+            }
+            this.kind = ColumnarFile.Kind.fromCode(header.getInt());
+
+            final ByteBuffer trailer = map(size - ColumnarFile.TRAILER_BYTES, ColumnarFile.TRAILER_BYTES);
+            final long footerOffset = trailer.getLong();
+            final byte[] endMagic = new byte[ColumnarFile.END_MAGIC.length];
+            trailer.get(endMagic);
+            if (!Arrays.equals(ColumnarFile.END_MAGIC, endMagic) || footerOffset < ColumnarFile.HEADER_BYTES || footerOffset > size - ColumnarFile.TRAILER_BYTES) {
+                throw new IOException(path + " is incomplete: the columnar file footer is missing");
+            }
+
+            final ByteBuffer footer = map(footerOffset, size - ColumnarFile.TRAILER_BYTES - footerOffset);
+            final String[] rois = new String[footer.getInt()];
+            for (int i = 0; i < rois.length; i++) {
+                final byte[] bytes = new byte[footer.getInt()];
+                footer.get(bytes);
+                rois[i] = new String(bytes, StandardCharsets.UTF_8);
+            }
+            final int roiListCount = footer.getInt();
+            this.roiSets = new ArrayList<>(roiListCount);
+            final List<String> roiList = new ArrayList<>();
+            for (int i = 0; i < roiListCount; i++) {
+                roiList.clear();
+                final int length = footer.getInt();
+                for (int j = 0; j < length; j++) {
+                    roiList.add(rois[footer.getInt()]);
+                }
+                roiSets.add(SynapseAdapter.sharedRoiSet(roiList));
+            }
+            final int blockCount = footer.getInt();
+            this.blockOffsets = new long[blockCount];
+            this.blockFirstRows = new long[blockCount];
+            for (int i = 0; i < blockCount; i++) {
+                blockOffsets[i] = footer.getLong();
+                blockFirstRows[i] = footer.getLong();
+            }
+            this.rowCount = footer.getLong();
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @param path path to a columnar file
+     * @return reader for the file
+     * @throws IOException if the file cannot be read or is not a complete columnar file
+     */
+    public static ColumnarReader open(final Path path) throws IOException {
+        return new ColumnarReader(path);
+    }
+
+    /**
+     * @return kind of rows in the file
+     */
+    public ColumnarFile.Kind getKind() {
+        return kind;
+    }
+
+    /**
+     * @return number of rows in the file
+     */
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * @param firstRow index of first row to read
+     * @param maxRows  maximum number of rows to read
+     * @return synapses in file order (empty if firstRow is past the last row)
+     * @throws IOException if the file cannot be read or does not contain synapses
+     */
+    public List<Synapse> readSynapses(final long firstRow, final int maxRows) throws IOException {
+        checkKind(ColumnarFile.Kind.SYNAPSES);
+        final int count = (int) Math.max(0, Math.min(maxRows, rowCount - firstRow));
+        final List<Synapse> synapses = new ArrayList<>(count);
+        long row = firstRow;
+        while (synapses.size() < count) {
+            final int r = mapBlockOf(row);
+            final int n = mappedBlockRowCount;
+            final int end = Math.min(n, r + count - synapses.size());
+            final int confidenceColumn = ColumnarFile.BLOCK_HEADER_BYTES + 8 * n;
+            final int roiColumn = confidenceColumn + 8 * n;
+            final int typeColumn = roiColumn + 4 * n;
+            for (int i = r; i < end; i++) {
+                synapses.add(new Synapse(mappedBlock.get(typeColumn + i) == ColumnarFile.PRE_TYPE ? PRE : POST,
+                                         mappedBlock.getDouble(confidenceColumn + 8 * i),
+                                         mappedBlock.getLong(ColumnarFile.BLOCK_HEADER_BYTES + 8 * i),
+                                         roiSets.get(mappedBlock.getInt(roiColumn + 4 * i))));
+            }
+            row += end - r;
+        }
+        return synapses;
+    }
+
+    /**
+     * @param firstRow index of first row to read
+     * @param maxRows  maximum number of rows to read
+     * @return synaptic connections in file order (empty if firstRow is past the last row)
+     * @throws IOException if the file cannot be read or does not contain synaptic connections
+     */
+    public List<SynapticConnection> readConnections(final long firstRow, final int maxRows) throws IOException {
+        checkKind(ColumnarFile.Kind.CONNECTIONS);
+        final int count = (int) Math.max(0, Math.min(maxRows, rowCount - firstRow));
+        final List<SynapticConnection> connections = new ArrayList<>(count);
+        long row = firstRow;
+        while (connections.size() < count) {
+            final int r = mapBlockOf(row);
+            final int n = mappedBlockRowCount;
+            final int end = Math.min(n, r + count - connections.size());
+            final int postColumn = ColumnarFile.BLOCK_HEADER_BYTES + 8 * n;
+            for (int i = r; i < end; i++) {
+                connections.add(new SynapticConnection(mappedBlock.getLong(ColumnarFile.BLOCK_HEADER_BYTES + 8 * i),
+                                                       mappedBlock.getLong(postColumn + 8 * i)));
+            }
+            row += end - r;
+        }
+        return connections;
+    }
+
+    private void checkKind(final ColumnarFile.Kind expected) throws IOException {
+        if (kind != expected) {
+            throw new IOException(path + " contains " + kind.name().toLowerCase() + ", not " + expected.name().toLowerCase());
+        }
+    }
+
+    /**
+     * Maps the block containing a row.
+     *
+     * @return index of the row within the block
+     */
+    private int mapBlockOf(final long row) throws IOException {
+        if (mappedBlockIndex < 0 || row < blockFirstRows[mappedBlockIndex] || row >= blockFirstRows[mappedBlockIndex] + mappedBlockRowCount) {
+            int blockIndex = Arrays.binarySearch(blockFirstRows, row);
+            if (blockIndex < 0) {
+                blockIndex = -blockIndex - 2;
+            }
+            final ByteBuffer blockHeader = map(blockOffsets[blockIndex], ColumnarFile.BLOCK_HEADER_BYTES);
+            final int blockRowCount = blockHeader.getInt();
+            mappedBlock = map(blockOffsets[blockIndex], ColumnarFile.blockBytes(blockRowCount, kind));
+            mappedBlockRowCount = blockRowCount;
+            mappedBlockIndex = blockIndex;
+        }
+        return (int) (row - blockFirstRows[mappedBlockIndex]);
+    }
+
+    private ByteBuffer map(final long position, final long size) throws IOException {
+        return ColumnarFile.littleEndian(channel.map(FileChannel.MapMode.READ_ONLY, position, size));
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+}
@@ -0,0 +1,299 @@
+package org.janelia.flyem.neuprint.columnar;
+
+import org.janelia.flyem.neuprint.json.JsonByteReader;
+import org.janelia.flyem.neuprint.json.JsonInputFiles;
+import org.janelia.flyem.neuprint.json.NeuPrintJsonDecoder;
+import org.janelia.flyem.neuprint.model.Synapse;
+import org.janelia.flyem.neuprint.model.SynapticConnection;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Writes synapses or synaptic connections to a file in the columnar format described by {@link ColumnarFile}.
+ * Rows are buffered one block at a time, so files of any size can be written with constant memory apart from the
+ * roi dictionary. Not thread safe.
+ */
+public class ColumnarWriter implements Closeable {
+
+    private static final int MAX_CACHED_ROI_SETS = 1 << 16;
+
+    private final FileChannel channel;
+    private final ColumnarFile.Kind kind;
+    private final int blockRows;
+
+    private final long[] firstColumn;
+    private final long[] secondColumn;
+    private final double[] confidences;
+    private final int[] roiLists;
+    private final byte[] types;
+    private int blockRowCount;
+
+    private final List<Long> blockOffsets = new ArrayList<>();
+    private final List<Long> blockFirstRows = new ArrayList<>();
+    private long rowCount;
+
+    private final Map<String, Integer> roiIndexes = new HashMap<>();
+    private final List<String> rois = new ArrayList<>();
+    private final Map<List<Integer>, Integer> roiListIndexes = new HashMap<>();
+    private final List<List<Integer>> roiListsInOrder = new ArrayList<>();
+    // synapses usually share roi sets (see SynapseAdapter#sharedRoiSet), so most lookups stop here
+    private final Map<Set<String>, Integer> roiListIndexBySet = new IdentityHashMap<>();
+
+    private ColumnarWriter(final Path path, final ColumnarFile.Kind kind, final int blockRows) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        this.kind = kind;
+        this.blockRows = blockRows;
+        this.firstColumn = new long[blockRows];
+        if (kind == ColumnarFile.Kind.SYNAPSES) {
+            this.secondColumn = null;
+            this.confidences = new double[blockRows];
+            this.roiLists = new int[blockRows];
+            this.types = new byte[blockRows];
+        } else {
+            this.secondColumn = new long[blockRows];
+            this.confidences = null;
+            this.roiLists = null;
+            this.types = null;
+        }
+
+        final ByteBuffer header = ColumnarFile.littleEndian(ByteBuffer.allocate(ColumnarFile.HEADER_BYTES));
+        header.put(ColumnarFile.MAGIC).putInt(ColumnarFile.VERSION).putInt(kind.getCode());
+        header.flip();
+        write(header);
+    }
+
+    /**
+     * @param path path of file to write
+     * @return writer for synapses
+     * @throws IOException if the file cannot be created
+     */
+    public static ColumnarWriter forSynapses(final Path path) throws IOException {
+        return new ColumnarWriter(path, ColumnarFile.Kind.SYNAPSES, ColumnarFile.DEFAULT_BLOCK_ROWS);
+    }
+
+    /**
+     * @param path path of file to write
+     * @return writer for synaptic connections
+     * @throws IOException if the file cannot be created
+     */
+    public static ColumnarWriter forConnections(final Path path) throws IOException {
+        return new ColumnarWriter(path, ColumnarFile.Kind.CONNECTIONS, ColumnarFile.DEFAULT_BLOCK_ROWS);
+    }
+
+    /**
+     * Returns a writer with a custom block size, used for testing.
+     *
+     * @param path      path of file to write
+     * @param kind      kind of rows
+     * @param blockRows number of rows per block
+     * @return writer
+     * @throws IOException if the file cannot be created
+     */
+    static ColumnarWriter create(final Path path, final ColumnarFile.Kind kind, final int blockRows) throws IOException {
+        return new ColumnarWriter(path, kind, blockRows);
+    }
+
+    /**
+     * Converts a synapse JSON file, or shards of one, to a columnar file, decoding the JSON as a stream.
+     *
+     * @param jsonPath     path to synapse JSON file, or to a directory or glob pattern of shard files (see {@link JsonInputFiles#resolve(String)})
+     * @param columnarPath path of columnar file to write
+     * @return number of synapses converted
+     * @throws IOException if a file cannot be read or written
+     */
+    public static long convertSynapseJson(final Path jsonPath, final Path columnarPath) throws IOException {
+        try (ColumnarWriter writer = forSynapses(columnarPath)) {
+            for (final Path shardPath : JsonInputFiles.resolve(jsonPath.toString())) {
+                try (NeuPrintJsonDecoder decoder = NeuPrintJsonDecoder.forFile(shardPath.toString())) {
+                    final JsonByteReader reader = decoder.getReader();
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        writer.addSynapse(decoder.readSynapse());
+                    }
+                    reader.endArray();
+                }
+            }
+            return writer.rowCount + writer.blockRowCount;
+        }
+    }
+
+    /**
+     * Converts a synaptic connection JSON file, or shards of one, to a columnar file, decoding the JSON as a stream.
+     *
+     * @param jsonPath     path to connection JSON file, or to a directory or glob pattern of shard files (see {@link JsonInputFiles#resolve(String)})
+     * @param columnarPath path of columnar file to write
+     * @return number of connections converted
+     * @throws IOException if a file cannot be read or written
+     */
+    public static long convertConnectionJson(final Path jsonPath, final Path columnarPath) throws IOException {
+        try (ColumnarWriter writer = forConnections(columnarPath)) {
+            for (final Path shardPath : JsonInputFiles.resolve(jsonPath.toString())) {
+                try (NeuPrintJsonDecoder decoder = NeuPrintJsonDecoder.forFile(shardPath.toString())) {
+                    final JsonByteReader reader = decoder.getReader();
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        writer.addConnection(decoder.readConnection());
+                    }
+                    reader.endArray();
+                }
+            }
+            return writer.rowCount + writer.blockRowCount;
+        }
+    }
+
+    /**
+     * @param synapse synapse to write
+     * @throws IOException if the file cannot be written
+     */
+    public void addSynapse(final Synapse synapse) throws IOException {
+        if (kind != ColumnarFile.Kind.SYNAPSES) {
+            throw new IllegalStateException("cannot add a synapse to a columnar file of " + kind);
+        }
+        firstColumn[blockRowCount] = synapse.getPackedLocation();
+        confidences[blockRowCount] = synapse.getConfidence();
+        roiLists[blockRowCount] = roiListIndex(synapse.rois);
+        types[blockRowCount] = "pre".equals(synapse.getType()) ? ColumnarFile.PRE_TYPE : ColumnarFile.POST_TYPE;
+        rowAdded();
+    }
+
+    /**
+     * @param connection synaptic connection to write
+     * @throws IOException if the file cannot be written
+     */
+    public void addConnection(final SynapticConnection connection) throws IOException {
+        if (kind != ColumnarFile.Kind.CONNECTIONS) {
+            throw new IllegalStateException("cannot add a connection to a columnar file of " + kind);
+        }
+        firstColumn[blockRowCount] = connection.getPackedPreLocation();
+        secondColumn[blockRowCount] = connection.getPackedPostLocation();
+        rowAdded();
+    }
+
+    private void rowAdded() throws IOException {
+        blockRowCount++;
+        if (blockRowCount == blockRows) {
+            writeBlock();
+        }
+    }
+
+    private int roiListIndex(final Set<String> roiSet) {
+        final Set<String> rois = roiSet == null ? Collections.emptySet() : roiSet;
+        final Integer cached = roiListIndexBySet.get(rois);
+        if (cached != null) {
+            return cached;
+        }
+        final List<Integer> roiList = new ArrayList<>(rois.size());
+        for (final String roi : rois) {
+            roiList.add(roiIndexes.computeIfAbsent(roi, r -> {
+                this.rois.add(r);
+                return this.rois.size() - 1;
+            }));
+        }
+        final Integer index = roiListIndexes.computeIfAbsent(roiList, l -> {
+            roiListsInOrder.add(l);
+            return roiListsInOrder.size() - 1;
+        });
+        if (roiListIndexBySet.size() == MAX_CACHED_ROI_SETS) {
+            // sets that are not shared would otherwise all be kept
+            roiListIndexBySet.clear();
+        }
+        roiListIndexBySet.put(rois, index);
+        return index;
+    }
+
+    private void writeBlock() throws IOException {
+        if (blockRowCount == 0) {
+            return;
+        }
+        blockOffsets.add(channel.position());
+        blockFirstRows.add(rowCount);
+
+        final ByteBuffer block = ColumnarFile.littleEndian(ByteBuffer.allocate((int) ColumnarFile.blockBytes(blockRowCount, kind)));
+        block.putInt(blockRowCount).putInt(0);
+        for (int i = 0; i < blockRowCount; i++) {
+            block.putLong(firstColumn[i]);
+        }
+        if (kind == ColumnarFile.Kind.SYNAPSES) {
+            for (int i = 0; i < blockRowCount; i++) {
+                block.putDouble(confidences[i]);
+            }
+            for (int i = 0; i < blockRowCount; i++) {
+                block.putInt(roiLists[i]);
+            }
+            block.put(types, 0, blockRowCount);
+        } else {
+            for (int i = 0; i < blockRowCount; i++) {
+                block.putLong(secondColumn[i]);
+            }
+        }
+        // the rest of the block is zero padding
+        block.position(block.capacity());
+        block.flip();
+        write(block);
+
+        rowCount += blockRowCount;
+        blockRowCount = 0;
+    }
+
+    private void write(final ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            writeBlock();
+
+            final long footerOffset = channel.position();
+            final List<byte[]> roiBytes = new ArrayList<>(rois.size());
+            int footerBytes = 4 + 4 + 4 + 8 + 16 * blockOffsets.size();
+            for (final String roi : rois) {
+                final byte[] bytes = roi.getBytes(StandardCharsets.UTF_8);
+                roiBytes.add(bytes);
+                footerBytes += 4 + bytes.length;
+            }
+            for (final List<Integer> roiList : roiListsInOrder) {
+                footerBytes += 4 + 4 * roiList.size();
+            }
+
+            final ByteBuffer footer = ColumnarFile.littleEndian(ByteBuffer.allocate(footerBytes + ColumnarFile.TRAILER_BYTES));
+            footer.putInt(roiBytes.size());
+            for (final byte[] bytes : roiBytes) {
+                footer.putInt(bytes.length).put(bytes);
+            }
+            footer.putInt(roiListsInOrder.size());
+            for (final List<Integer> roiList : roiListsInOrder) {
+                footer.putInt(roiList.size());
+                for (final int roiIndex : roiList) {
+                    footer.putInt(roiIndex);
+                }
+            }
+            footer.putInt(blockOffsets.size());
+            for (int i = 0; i < blockOffsets.size(); i++) {
+                footer.putLong(blockOffsets.get(i)).putLong(blockFirstRows.get(i));
+            }
+            footer.putLong(rowCount);
+            footer.putLong(footerOffset).put(ColumnarFile.END_MAGIC);
+            footer.flip();
+            write(footer);
+        } finally {
+            channel.close();
+        }
+    }
+
+}
@@ -0,0 +1,226 @@
+package org.janelia.flyem.neuprint.columnar;
+
+import org.janelia.flyem.neuprint.model.Location;
+import org.janelia.flyem.neuprint.model.Synapse;
+import org.janelia.flyem.neuprint.model.SynapticConnection;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Sorts synapses by the Morton (Z-order) code of their location, or synaptic connections by the Morton code of
+ * their pre location and then of their post location (see {@link Location#mortonCode(long)}), into a columnar
+ * file. Loading rows in this order writes nodes that are close in space close together in the store files.
+ * <p>
+ * Rows are sorted in memory up to maxRowsInMemory at a time. Each sorted run is written to a columnar file in a
+ * temporary directory and the runs are merged at the end, so memory does not grow with the number of rows.
+ * Not thread safe.
+ *
+ * @param <T> type of row
+ */
+public class MortonOrderSorter<T> implements Closeable {
+
+    private static final int MERGE_READ_ROWS = 1 << 14;
+
+    /**
+     * Adds a row to a columnar file.
+     */
+    @FunctionalInterface
+    private interface RowWriter<T> {
+        void write(ColumnarWriter writer, T row) throws IOException;
+    }
+
+    private final ColumnarFile.Kind kind;
+    private final Comparator<T> order;
+    private final RowWriter<T> rowWriter;
+    private final ColumnarReader.RowReader<T> rowReader;
+    private final int maxRowsInMemory;
+    private final Path runDirectory;
+    private final List<T> rows = new ArrayList<>();
+    private final List<Path> runs = new ArrayList<>();
+
+    private MortonOrderSorter(final ColumnarFile.Kind kind,
+                              final Comparator<T> order,
+                              final RowWriter<T> rowWriter,
+                              final ColumnarReader.RowReader<T> rowReader,
+                              final Path temporaryDirectory,
+                              final int maxRowsInMemory) throws IOException {
+        this.kind = kind;
+        this.order = order;
+        this.rowWriter = rowWriter;
+        this.rowReader = rowReader;
+        this.maxRowsInMemory = Math.max(1, maxRowsInMemory);
+        Files.createDirectories(temporaryDirectory);
+        this.runDirectory = Files.createTempDirectory(temporaryDirectory, "morton-sort");
+    }
+
+    /**
+     * @param temporaryDirectory directory in which sorted runs are written
+     * @param maxRowsInMemory    number of rows sorted in memory at a time
+     * @return sorter for synapses
+     * @throws IOException if the directory for sorted runs cannot be created
+     */
+    public static MortonOrderSorter<Synapse> forSynapses(final Path temporaryDirectory, final int maxRowsInMemory) throws IOException {
+        final Comparator<Synapse> order = Comparator.comparingLong((Synapse synapse) -> Location.mortonCode(synapse.getPackedLocation()))
+                .thenComparing(Synapse::getType);
+        return new MortonOrderSorter<>(ColumnarFile.Kind.SYNAPSES, order, ColumnarWriter::addSynapse, ColumnarReader::readSynapses,
+                                       temporaryDirectory, maxRowsInMemory);
+    }
+
+    /**
+     * @param temporaryDirectory directory in which sorted runs are written
+     * @param maxRowsInMemory    number of rows sorted in memory at a time
+     * @return sorter for synaptic connections
+     * @throws IOException if the directory for sorted runs cannot be created
+     */
+    public static MortonOrderSorter<SynapticConnection> forConnections(final Path temporaryDirectory, final int maxRowsInMemory) throws IOException {
+        final Comparator<SynapticConnection> order = Comparator.comparingLong((SynapticConnection connection) -> Location.mortonCode(connection.getPackedPreLocation()))
+                .thenComparingLong(connection -> Location.mortonCode(connection.getPackedPostLocation()));
+        return new MortonOrderSorter<>(ColumnarFile.Kind.CONNECTIONS, order, ColumnarWriter::addConnection, ColumnarReader::readConnections,
+                                       temporaryDirectory, maxRowsInMemory);
+    }
+
+    /**
+     * @param batch rows to sort
+     * @throws IOException if a sorted run cannot be written
+     */
+    public void addAll(final List<T> batch) throws IOException {
+        for (final T row : batch) {
+            rows.add(row);
+            if (rows.size() == maxRowsInMemory) {
+                writeRun();
+            }
+        }
+    }
+
+    private void writeRun() throws IOException {
+        final Path run = runDirectory.resolve("run-" + runs.size() + ".npcol");
+        runs.add(run);
+        writeSorted(run);
+    }
+
+    private void writeSorted(final Path path) throws IOException {
+        rows.sort(order);
+        try (ColumnarWriter writer = createWriter(path)) {
+            for (final T row : rows) {
+                rowWriter.write(writer, row);
+            }
+        }
+        rows.clear();
+    }
+
+    private ColumnarWriter createWriter(final Path path) throws IOException {
+        return kind == ColumnarFile.Kind.SYNAPSES ? ColumnarWriter.forSynapses(path) : ColumnarWriter.forConnections(path);
+    }
+
+    /**
+     * Writes all added rows in order to a columnar file. The file is written under a temporary name and renamed
+     * when complete, so an existing file at the path is either a complete sorted file or absent.
+     *
+     * @param path path of columnar file to write
+     * @return number of rows written
+     * @throws IOException if a file cannot be read or written
+     */
+    public long sortTo(final Path path) throws IOException {
+        final Path partialPath = path.resolveSibling(path.getFileName() + ".partial");
+        final long rowCount;
+        if (runs.isEmpty()) {
+            // everything fit in memory
+            rowCount = rows.size();
+            writeSorted(partialPath);
+        } else {
+            if (!rows.isEmpty()) {
+                writeRun();
+            }
+            rowCount = merge(partialPath);
+        }
+        Files.move(partialPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return rowCount;
+    }
+
+    /**
+     * The next rows of a sorted run.
+     */
+    private class RunCursor implements Closeable {
+
+        private final ColumnarReader reader;
+        private List<T> buffer = new ArrayList<>();
+        private int bufferIndex;
+        private long nextRow;
+
+        RunCursor(final Path run) throws IOException {
+            this.reader = ColumnarReader.open(run);
+        }
+
+        /**
+         * @return true if there is a current row
+         */
+        boolean advance() throws IOException {
+            bufferIndex++;
+            if (bufferIndex >= buffer.size()) {
+                buffer = rowReader.read(reader, nextRow, MERGE_READ_ROWS);
+                nextRow += buffer.size();
+                bufferIndex = 0;
+            }
+            return bufferIndex < buffer.size();
+        }
+
+        T current() {
+            return buffer.get(bufferIndex);
+        }
+
+        @Override
+        public void close() throws IOException {
+            reader.close();
+        }
+    }
+
+    private long merge(final Path path) throws IOException {
+        final List<RunCursor> cursors = new ArrayList<>(runs.size());
+        final PriorityQueue<RunCursor> heads = new PriorityQueue<>(runs.size(), (a, b) -> order.compare(a.current(), b.current()));
+        long rowCount = 0;
+        try (ColumnarWriter writer = createWriter(path)) {
+            for (final Path run : runs) {
+                final RunCursor cursor = new RunCursor(run);
+                cursors.add(cursor);
+                if (cursor.advance()) {
+                    heads.add(cursor);
+                }
+            }
+            while (!heads.isEmpty()) {
+                final RunCursor cursor = heads.poll();
+                rowWriter.write(writer, cursor.current());
+                rowCount++;
+                if (cursor.advance()) {
+                    heads.add(cursor);
+                }
+            }
+        } finally {
+            for (final RunCursor cursor : cursors) {
+                cursor.close();
+            }
+        }
+        return rowCount;
+    }
+
+    /**
+     * Deletes the sorted runs.
+     */
+    @Override
+    public void close() throws IOException {
+        for (final Path run : runs) {
+            Files.deleteIfExists(run);
+        }
+        runs.clear();
+        rows.clear();
+        Files.deleteIfExists(runDirectory);
+    }
+
+}
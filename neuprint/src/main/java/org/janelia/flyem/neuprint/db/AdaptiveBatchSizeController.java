@@ -0,0 +1,148 @@
+package org.janelia.flyem.neuprint.db;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Chooses the number of statements per transaction from the measured commit latency. After each commit
+ * the batch size is moved toward the size that would have committed in the target time (assuming the
+ * time per statement stays the same), by at most a factor of two per commit. A failed commit halves the
+ * batch size. The size stays between one and the provided maximum.
+ * <p>
+ * A controller can be shared by several batches (e.g. all batches of an importer), so that the size chosen
+ * for one phase of a load is the starting size of the next. The summary logged by {@link #logSummary()} can
+ * be used to choose the statementsPerTransaction or connectionInfoStatementsPerTransaction values in the
+ * properties file.
+ */
+public class AdaptiveBatchSizeController {
+
+    private final String name;
+    private final int maxBatchSize;
+    private final long targetCommitNanos;
+
+    private int batchSize;
+    private int smallestBatchSize;
+    private int largestBatchSize;
+    private long commitCount;
+    private long failureCount;
+    private long committedStatementCount;
+    private long commitNanos;
+
+    /**
+     * Class constructor.
+     *
+     * @param name               name used when logging (e.g. the properties file setting it tunes)
+     * @param initialBatchSize   number of statements per transaction before any commit is measured
+     * @param maxBatchSize       largest number of statements per transaction
+     * @param targetCommitMillis commit latency the batch size is adjusted toward
+     */
+    public AdaptiveBatchSizeController(final String name,
+                                       final int initialBatchSize,
+                                       final int maxBatchSize,
+                                       final long targetCommitMillis) {
+        if (targetCommitMillis < 1) {
+            throw new IllegalArgumentException("targetCommitMillis must be at least 1");
+        }
+        this.name = name;
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        this.targetCommitNanos = TimeUnit.MILLISECONDS.toNanos(targetCommitMillis);
+        this.batchSize = clamp(initialBatchSize, 1, this.maxBatchSize);
+        this.smallestBatchSize = batchSize;
+        this.largestBatchSize = batchSize;
+    }
+
+    /**
+     * @return number of statements that should be committed in the next transaction
+     */
+    public synchronized int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Records a successful commit and adjusts the batch size toward the target latency.
+     *
+     * @param statementCount number of statements committed
+     * @param elapsedNanos   time taken to run and commit the statements
+     */
+    public synchronized void recordCommit(final int statementCount,
+                                          final long elapsedNanos) {
+        commitCount++;
+        committedStatementCount += statementCount;
+        commitNanos += elapsedNanos;
+
+        if (statementCount < 1) {
+            return;
+        }
+        final long sizeForTarget = elapsedNanos <= 0 ?
+                (long) batchSize * 2 :
+                Math.round((double) statementCount * targetCommitNanos / elapsedNanos);
+        final int damped = (int) clamp(sizeForTarget, batchSize / 2, (long) batchSize * 2);
+        setBatchSize(clamp(damped, 1, maxBatchSize), elapsedNanos);
+    }
+
+    /**
+     * Records a commit that failed (e.g. with a transient lock or memory error) and halves the batch size.
+     */
+    public synchronized void recordFailure() {
+        failureCount++;
+        setBatchSize(Math.max(1, batchSize / 2), -1);
+    }
+
+    /**
+     * @return number of successful commits recorded
+     */
+    public synchronized long getCommitCount() {
+        return commitCount;
+    }
+
+    /**
+     * @return number of failed commits recorded
+     */
+    public synchronized long getFailureCount() {
+        return failureCount;
+    }
+
+    /**
+     * Logs the number of commits and failures, the mean commit latency and the range of chosen batch sizes.
+     */
+    public synchronized void logSummary() {
+        if (commitCount > 0 || failureCount > 0) {
+            LOG.info(toString());
+        }
+    }
+
+    private void setBatchSize(final int newBatchSize,
+                              final long elapsedNanos) {
+        if (newBatchSize != batchSize) {
+            if (elapsedNanos >= 0) {
+                LOG.debug("{}: commit took {} ms, batch size {} -> {}", name, TimeUnit.NANOSECONDS.toMillis(elapsedNanos), batchSize, newBatchSize);
+            } else {
+                LOG.info("{}: commit failed, batch size {} -> {}", name, batchSize, newBatchSize);
+            }
+            batchSize = newBatchSize;
+            smallestBatchSize = Math.min(smallestBatchSize, batchSize);
+            largestBatchSize = Math.max(largestBatchSize, batchSize);
+        }
+    }
+
+    private static long clamp(final long value, final long min, final long max) {
+        return Math.max(min, Math.min(max, value));
+    }
+
+    private static int clamp(final int value, final int min, final int max) {
+        return Math.max(min, Math.min(max, value));
+    }
+
+    @Override
+    public synchronized String toString() {
+        final long meanCommitMillis = commitCount == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(commitNanos / commitCount);
+        return String.format("%s: %d commits of %d statements (%d failed), mean commit %d ms (target %d ms), batch size %d (range %d-%d)",
+                name, commitCount, committedStatementCount, failureCount, meanCommitMillis,
+                TimeUnit.NANOSECONDS.toMillis(targetCommitNanos), batchSize, smallestBatchSize, largestBatchSize);
+    }
+
+    private static final Logger LOG = LoggerFactory.getLogger(AdaptiveBatchSizeController.class);
+
+}
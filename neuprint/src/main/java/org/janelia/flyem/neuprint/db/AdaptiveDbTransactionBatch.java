@@ -0,0 +1,112 @@
+package org.janelia.flyem.neuprint.db;
+
+import org.janelia.flyem.neuprint.metrics.LoadMetrics;
+import org.neo4j.driver.v1.Session;
+import org.neo4j.driver.v1.Statement;
+import org.neo4j.driver.v1.TransactionWork;
+import org.neo4j.driver.v1.exceptions.TransientException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Collects statements into transaction batches whose size is chosen by an {@link AdaptiveBatchSizeController}
+ * from the measured commit latency. Commits are synchronous, so a slow server slows the caller down directly.
+ * When a commit fails with a transient error (e.g. a deadlock or a transaction that ran out of memory), the
+ * statements are committed again in two smaller transactions; a single statement that keeps failing is
+ * retried with an increasing delay before giving up.
+ */
+public class AdaptiveDbTransactionBatch implements TransactionBatch {
+
+    private static final int MAX_COMMIT_ATTEMPTS = 5;
+
+    private final Session session;
+    private final AdaptiveBatchSizeController controller;
+    private final List<Statement> statementsToWrite;
+
+    /**
+     * Class constructor.
+     *
+     * @param session    session in which transactions occur
+     * @param controller controller choosing the number of statements per transaction
+     */
+    public AdaptiveDbTransactionBatch(final Session session,
+                                      final AdaptiveBatchSizeController controller) {
+        this.session = session;
+        this.controller = controller;
+        this.statementsToWrite = new ArrayList<>(controller.getBatchSize());
+    }
+
+    public void addStatement(final Statement statement) {
+        statementsToWrite.add(statement);
+        if (statementsToWrite.size() >= controller.getBatchSize()) {
+            writeTransaction();
+        }
+    }
+
+    public void writeTransaction() {
+        if (statementsToWrite.isEmpty()) {
+            return;
+        }
+        final int statementCount = statementsToWrite.size();
+        write(new ArrayList<>(statementsToWrite), 1);
+        statementsToWrite.clear();
+
+        LOG.info("writeTransaction: exit, committed {} statements", statementCount);
+    }
+
+    private void write(final List<Statement> statements,
+                       final int attempt) {
+        // see https://neo4j.com/docs/developer-manual/current/drivers/sessions-transactions/#driver-transactions-transaction-functions
+        // the driver calls the work again when it retries a transaction
+        final AtomicInteger attempts = new AtomicInteger();
+        final TransactionWork<Void> work = tx -> {
+            attempts.incrementAndGet();
+            statements.forEach(tx::run);
+            return null;
+        };
+        final long start = System.nanoTime();
+        try {
+            session.writeTransaction(work);
+        } catch (final TransientException e) {
+            LoadMetrics.getInstance().recordRetries(attempts.get());
+            // the driver has already retried the transaction within its retry time
+            controller.recordFailure();
+            if (statements.size() > 1) {
+                LOG.warn("writeTransaction: commit of {} statements failed, committing in two halves: {}", statements.size(), e.getMessage());
+                final int half = statements.size() / 2;
+                write(new ArrayList<>(statements.subList(0, half)), 1);
+                write(new ArrayList<>(statements.subList(half, statements.size())), 1);
+                return;
+            }
+            if (attempt == MAX_COMMIT_ATTEMPTS) {
+                throw e;
+            }
+            LOG.warn("writeTransaction: attempt {} failed, retrying: {}", attempt, e.getMessage());
+            try {
+                TimeUnit.MILLISECONDS.sleep(100L << attempt);
+            } catch (final InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                throw e;
+            }
+            write(statements, attempt + 1);
+            return;
+        }
+        final long nanos = System.nanoTime() - start;
+        controller.recordCommit(statements.size(), nanos);
+        LoadMetrics.getInstance().recordCommit(statements.size(), nanos);
+        LoadMetrics.getInstance().recordRetries(attempts.get() - 1);
+    }
+
+    @Override
+    public void close() {
+        session.close();
+    }
+
+    private static final Logger LOG = LoggerFactory.getLogger(AdaptiveDbTransactionBatch.class);
+
+}
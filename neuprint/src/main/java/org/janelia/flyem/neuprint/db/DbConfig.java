@@ -19,6 +19,10 @@ public class DbConfig {
     private final String password;
     private final int statementsPerTransaction;
     private final int connectionInfoStatementsPerTransaction;
+    private final int rowsPerUnwindStatement;
+    private final int queryCacheSize;
+    private final int writerThreads;
+    private final long targetCommitMillis;
 
     /**
      * Class constructor.
@@ -28,17 +32,29 @@ public class DbConfig {
      * @param password                 password for database
      * @param statementsPerTransaction number of statements per database transaction
      * @param connectionInfoStatementsPerTransaction number of connection info statements per database transaction
+     * @param rowsPerUnwindStatement number of rows carried by each UNWIND statement when loading in unwind batches
+     * @param queryCacheSize number of query plans cached by the database (dbms.query_cache_size)
+     * @param writerThreads number of sessions writing synapses, connections, segments and skeletons concurrently
+     * @param targetCommitMillis commit latency that transaction sizes are adjusted toward, or 0 for fixed transaction sizes
      */
     private DbConfig(final String uri,
                      final String user,
                      final String password,
                      final int statementsPerTransaction,
-                     final int connectionInfoStatementsPerTransaction) {
+                     final int connectionInfoStatementsPerTransaction,
+                     final int rowsPerUnwindStatement,
+                     final int queryCacheSize,
+                     final int writerThreads,
+                     final long targetCommitMillis) {
         this.uri = uri;
         this.user = user;
         this.password = password;
         this.statementsPerTransaction = statementsPerTransaction;
         this.connectionInfoStatementsPerTransaction = connectionInfoStatementsPerTransaction;
+        this.rowsPerUnwindStatement = rowsPerUnwindStatement;
+        this.queryCacheSize = queryCacheSize;
+        this.writerThreads = writerThreads;
+        this.targetCommitMillis = targetCommitMillis;
     }
 
     /**
@@ -77,11 +93,52 @@ public class DbConfig {
         return connectionInfoStatementsPerTransaction;
     }
 
+    /**
+     * @return the number of rows (synapses, connections, segments, skeleton nodes) sent as the list parameter of a single UNWIND statement when loading in unwind batches
+     */
+    public int getRowsPerUnwindStatement() {
+        return rowsPerUnwindStatement;
+    }
+
+    /**
+     * @return the number of query plans cached by the database, used to estimate plan cache hit rates during a load
+     */
+    public int getQueryCacheSize() {
+        return queryCacheSize;
+    }
+
+    /**
+     * @return the number of sessions writing synapses, synaptic connections, segments and skeletons concurrently
+     */
+    public int getWriterThreads() {
+        return writerThreads;
+    }
+
+    /**
+     * @return the commit latency in milliseconds that the number of statements per transaction is adjusted toward, starting from
+     * statementsPerTransaction (or connectionInfoStatementsPerTransaction when adding connection information); 0 if transaction sizes are fixed
+     */
+    public long getTargetCommitMillis() {
+        return targetCommitMillis;
+    }
+
     /**
      * Returns a DbConfig object based on a java {@link Properties} file. The
      * properties file must contain uri, username, and password properties.
      * Optionally, a statementsPerTransaction property can be used to specify
      * the number of statements per transaction. The default value is 100.
+     * A rowsPerUnwindStatement property can be used to specify the number of
+     * rows written by each UNWIND statement when loading in unwind batches.
+     * The default value is 1000. A queryCacheSize property should match the
+     * dbms.query_cache_size setting of the database and is used when reporting
+     * plan cache hit rates. The default value is 1000. A writerThreads property
+     * can be used to specify the number of sessions that write synapses, synaptic
+     * connections, segments and skeletons concurrently. The default value is 1.
+     * A targetCommitMillis property turns on adjusting the number of statements
+     * per transaction during a load toward that commit latency, starting from
+     * statementsPerTransaction or connectionInfoStatementsPerTransaction and
+     * growing to at most 10 times those sizes. The default value is 0, which
+     * keeps the configured sizes fixed.
      *
      * @param file a {@link File} object representing the properties file
      * @return a {@link DbConfig} object
@@ -121,6 +178,7 @@ public class DbConfig {
             final String connectionInfoStatementsPerTransactionString = properties.getProperty("connectionInfoStatementsPerTransaction");
             final int connectionInfoStatementsPerTransaction;
             if (connectionInfoStatementsPerTransactionString == null) {
+                // the starting size instead of a fixed size when targetCommitMillis is set
                 connectionInfoStatementsPerTransaction = Math.max(1, statementsPerTransaction/40);
             } else {
                 try {
@@ -132,6 +190,78 @@ public class DbConfig {
                 }
             }
 
+            final String rowsPerUnwindStatementString = properties.getProperty("rowsPerUnwindStatement");
+            final int rowsPerUnwindStatement;
+            if (rowsPerUnwindStatementString == null) {
+                rowsPerUnwindStatement = 1000;
+            } else {
+                try {
+                    rowsPerUnwindStatement = Integer.parseInt(rowsPerUnwindStatementString);
+                } catch (final NumberFormatException nfe) {
+                    throw new IllegalArgumentException(
+                            "invalid rowsPerUnwindStatement value '" + rowsPerUnwindStatementString +
+                                    "' specified in " + file, nfe);
+                }
+                if (rowsPerUnwindStatement < 1) {
+                    throw new IllegalArgumentException(
+                            "invalid rowsPerUnwindStatement value '" + rowsPerUnwindStatementString +
+                                    "' specified in " + file + ", must be at least 1");
+                }
+            }
+
+            final String queryCacheSizeString = properties.getProperty("queryCacheSize");
+            final int queryCacheSize;
+            if (queryCacheSizeString == null) {
+                queryCacheSize = 1000;
+            } else {
+                try {
+                    queryCacheSize = Integer.parseInt(queryCacheSizeString);
+                } catch (final NumberFormatException nfe) {
+                    throw new IllegalArgumentException(
+                            "invalid queryCacheSize value '" + queryCacheSizeString +
+                                    "' specified in " + file, nfe);
+                }
+            }
+
+            final String writerThreadsString = properties.getProperty("writerThreads");
+            final int writerThreads;
+            if (writerThreadsString == null) {
+                writerThreads = 1;
+            } else {
+                try {
+                    writerThreads = Integer.parseInt(writerThreadsString);
+                } catch (final NumberFormatException nfe) {
+                    throw new IllegalArgumentException(
+                            "invalid writerThreads value '" + writerThreadsString +
+                                    "' specified in " + file, nfe);
+                }
+                if (writerThreads < 1) {
+                    throw new IllegalArgumentException(
+                            "invalid writerThreads value '" + writerThreadsString +
+                                    "' specified in " + file + ", must be at least 1");
+                }
+            }
+
+            final String targetCommitMillisString = properties.getProperty("targetCommitMillis");
+            final long targetCommitMillis;
+            if (targetCommitMillisString == null) {
+                // fixed transaction sizes unless adaptive sizing is requested
+                targetCommitMillis = 0;
+            } else {
+                try {
+                    targetCommitMillis = Long.parseLong(targetCommitMillisString);
+                } catch (final NumberFormatException nfe) {
+                    throw new IllegalArgumentException(
+                            "invalid targetCommitMillis value '" + targetCommitMillisString +
+                                    "' specified in " + file, nfe);
+                }
+                if (targetCommitMillis < 0) {
+                    throw new IllegalArgumentException(
+                            "invalid targetCommitMillis value '" + targetCommitMillisString +
+                                    "' specified in " + file + ", must not be negative");
+                }
+            }
+
             if (uri == null) {
                 throw new IllegalArgumentException("failed to read uri from " + file);
             }
@@ -142,7 +272,7 @@ public class DbConfig {
                 throw new IllegalArgumentException("failed to read username from " + file);
             }
 
-            dbConfig = new DbConfig(uri, user, password, statementsPerTransaction, connectionInfoStatementsPerTransaction);
+            dbConfig = new DbConfig(uri, user, password, statementsPerTransaction, connectionInfoStatementsPerTransaction, rowsPerUnwindStatement, queryCacheSize, writerThreads, targetCommitMillis);
 
         } catch (final Exception e) {
             throw new IllegalArgumentException("failed to load properties from " + path, e);
@@ -2,7 +2,9 @@ package org.janelia.flyem.neuprint.db;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import org.janelia.flyem.neuprint.metrics.LoadMetrics;
 import org.neo4j.driver.v1.Session;
 import org.neo4j.driver.v1.Statement;
 import org.neo4j.driver.v1.TransactionWork;
@@ -41,14 +43,20 @@ public class DbTransactionBatch implements TransactionBatch {
 
     public void writeTransaction() {
         // see https://neo4j.com/docs/developer-manual/current/drivers/sessions-transactions/#driver-transactions-transaction-functions
+        // the driver calls the work again when it retries a transaction
+        final AtomicInteger attempts = new AtomicInteger();
         final TransactionWork<Void> work = tx -> {
+            attempts.incrementAndGet();
             statementsToWrite.forEach(tx::run);
             return null;
         };
+        final long start = System.nanoTime();
         session.writeTransaction(work);
 
         final int statementCount = statementsToWrite.size();
         statementsToWrite.clear();
+        LoadMetrics.getInstance().recordCommit(statementCount, System.nanoTime() - start);
+        LoadMetrics.getInstance().recordRetries(attempts.get() - 1);
 
         LOG.info("writeTransaction: exit, committed {} statements", statementCount);
     }
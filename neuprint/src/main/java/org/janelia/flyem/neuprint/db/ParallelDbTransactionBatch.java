@@ -0,0 +1,197 @@
+package org.janelia.flyem.neuprint.db;
+
+import org.janelia.flyem.neuprint.metrics.LoadMetrics;
+import org.neo4j.driver.v1.Driver;
+import org.neo4j.driver.v1.Session;
+import org.neo4j.driver.v1.Statement;
+import org.neo4j.driver.v1.TransactionWork;
+import org.neo4j.driver.v1.exceptions.TransientException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Collects statements into transaction batches that are committed concurrently on several
+ * sessions. Each statement is assigned to a partition by the hash of its partition key, and
+ * each partition has its own session and commit thread, so statements with equal keys are
+ * committed in order while statements in different partitions are committed in parallel.
+ * Statements added without a key are written to the first partition.
+ */
+public class ParallelDbTransactionBatch implements TransactionBatch {
+
+    private static final int MAX_COMMIT_ATTEMPTS = 5;
+
+    private final int statementsPerBatch;
+    private final Partition[] partitions;
+
+    /**
+     * Class constructor.
+     *
+     * @param driver             driver used to open one session per partition
+     * @param statementsPerBatch number of statements per transaction batch in each partition
+     * @param writerThreads      number of partitions (sessions committing concurrently)
+     */
+    public ParallelDbTransactionBatch(final Driver driver,
+                                      final int statementsPerBatch,
+                                      final int writerThreads) {
+        this.statementsPerBatch = statementsPerBatch;
+        this.partitions = new Partition[writerThreads];
+        for (int i = 0; i < writerThreads; i++) {
+            this.partitions[i] = new Partition(i, driver.session(), statementsPerBatch);
+        }
+    }
+
+    /**
+     * @param partitionKey key identifying the entity a statement writes
+     * @param partitions   number of partitions
+     * @return the partition for the key, the same one used by {@link ParallelDbTransactionBatch} with that many writer threads
+     */
+    public static int partitionOf(final Object partitionKey, final int partitions) {
+        return partitionKey == null ? 0 : Math.floorMod(partitionKey.hashCode(), partitions);
+    }
+
+    @Override
+    public void addStatement(final Statement statement) {
+        addStatement(statement, null);
+    }
+
+    @Override
+    public void addStatement(final Statement statement, final Object partitionKey) {
+        final Partition partition = partitions[partitionOf(partitionKey, partitions.length)];
+        partition.statementsToWrite.add(statement);
+        if (partition.statementsToWrite.size() >= statementsPerBatch) {
+            partition.commit();
+        }
+    }
+
+    @Override
+    public void writeTransaction() {
+        for (final Partition partition : partitions) {
+            partition.commit();
+        }
+        for (final Partition partition : partitions) {
+            partition.awaitCommit();
+        }
+    }
+
+    @Override
+    public void writeTransaction(final Object partitionKey) {
+        partitions[partitionOf(partitionKey, partitions.length)].commit();
+    }
+
+    @Override
+    public void close() {
+        try {
+            for (final Partition partition : partitions) {
+                partition.awaitCommit();
+            }
+        } finally {
+            for (final Partition partition : partitions) {
+                partition.close();
+            }
+        }
+    }
+
+    /**
+     * Statements, session and commit thread for one partition. Statements are added on the caller's
+     * thread; the session is only used on the commit thread, one transaction at a time.
+     */
+    private static class Partition {
+
+        private final int index;
+        private final Session session;
+        private final ExecutorService commitService;
+        private List<Statement> statementsToWrite;
+        private Future<?> commitInProgress;
+
+        Partition(final int index,
+                  final Session session,
+                  final int statementsPerBatch) {
+            this.index = index;
+            this.session = session;
+            this.commitService = Executors.newSingleThreadExecutor();
+            this.statementsToWrite = new ArrayList<>(statementsPerBatch);
+        }
+
+        /**
+         * Starts committing the batched statements once the previous commit of this partition has completed.
+         */
+        void commit() {
+            if (statementsToWrite.isEmpty()) {
+                return;
+            }
+            awaitCommit();
+            final List<Statement> statements = statementsToWrite;
+            statementsToWrite = new ArrayList<>(statements.size());
+            commitInProgress = commitService.submit(() -> write(statements));
+        }
+
+        void awaitCommit() {
+            if (commitInProgress != null) {
+                try {
+                    commitInProgress.get();
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException("interrupted while committing partition " + index, e);
+                } catch (final ExecutionException e) {
+                    if (e.getCause() instanceof RuntimeException) {
+                        throw (RuntimeException) e.getCause();
+                    }
+                    throw new RuntimeException("failed to commit partition " + index, e.getCause());
+                } finally {
+                    commitInProgress = null;
+                }
+            }
+        }
+
+        private void write(final List<Statement> statements) {
+            // the driver calls the work again when it retries a transaction
+            final AtomicInteger attempts = new AtomicInteger();
+            final TransactionWork<Void> work = tx -> {
+                attempts.incrementAndGet();
+                statements.forEach(tx::run);
+                return null;
+            };
+            final long start = System.nanoTime();
+            // the driver retries transient errors (e.g. deadlocks between partitions) within its retry time;
+            // a batch that is still deadlocked after that is retried here before giving up
+            for (int attempt = 1; ; attempt++) {
+                try {
+                    session.writeTransaction(work);
+                    break;
+                } catch (final TransientException e) {
+                    if (attempt == MAX_COMMIT_ATTEMPTS) {
+                        LoadMetrics.getInstance().recordRetries(attempts.get() - 1);
+                        throw e;
+                    }
+                    LOG.warn("writeTransaction: partition {} attempt {} failed, retrying: {}", index, attempt, e.getMessage());
+                    try {
+                        TimeUnit.MILLISECONDS.sleep(100L << attempt);
+                    } catch (final InterruptedException ie) {
+                        Thread.currentThread().interrupt();
+                        throw e;
+                    }
+                }
+            }
+            LoadMetrics.getInstance().recordCommit(statements.size(), System.nanoTime() - start);
+            LoadMetrics.getInstance().recordRetries(attempts.get() - 1);
+            LOG.info("writeTransaction: exit, partition {} committed {} statements", index, statements.size());
+        }
+
+        void close() {
+            commitService.shutdownNow();
+            session.close();
+        }
+    }
+
+    private static final Logger LOG = LoggerFactory.getLogger(ParallelDbTransactionBatch.class);
+
+}
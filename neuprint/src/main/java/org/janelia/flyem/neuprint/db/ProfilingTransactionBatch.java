@@ -0,0 +1,50 @@
+package org.janelia.flyem.neuprint.db;
+
+import org.neo4j.driver.v1.Statement;
+
+/**
+ * Records statements in a {@link StatementProfile} instead of writing them, counting a transaction each time
+ * the batch would have been committed, for dry runs of a load without a database.
+ */
+public class ProfilingTransactionBatch
+        implements TransactionBatch {
+
+    private final StatementProfile profile;
+    private final int statementsPerBatch;
+    private int uncommittedCount;
+
+    /**
+     * Class constructor.
+     *
+     * @param profile            profile in which statements and transactions are recorded
+     * @param statementsPerBatch number of statements per transaction batch
+     */
+    public ProfilingTransactionBatch(final StatementProfile profile,
+                                     final int statementsPerBatch) {
+        this.profile = profile;
+        this.statementsPerBatch = Math.max(1, statementsPerBatch);
+    }
+
+    @Override
+    public void addStatement(final Statement statement) {
+        profile.recordStatement(statement);
+        uncommittedCount++;
+        if (uncommittedCount >= statementsPerBatch) {
+            writeTransaction();
+        }
+    }
+
+    @Override
+    public void writeTransaction() {
+        if (uncommittedCount > 0) {
+            profile.recordTransaction();
+            uncommittedCount = 0;
+        }
+    }
+
+    @Override
+    public void close() {
+        // no-op
+    }
+
+}
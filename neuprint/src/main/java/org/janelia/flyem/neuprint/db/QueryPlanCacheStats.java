@@ -0,0 +1,114 @@
+package org.janelia.flyem.neuprint.db;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Estimates the hit rate of the server's query plan cache for the statements sent during a load.
+ * Neo4j caches execution plans keyed by query text in a least recently used cache holding
+ * dbms.query_cache_size plans, so every statement whose text is not among the most recently
+ * planned texts must be planned again. This class replays the statement texts against a cache of
+ * the same size and counts hits and misses. Only the texts held by that cache are kept; distinct texts are
+ * counted by a 64-bit hash of each text, and counting stops at {@link #MAX_DISTINCT_QUERY_COUNT}, so statements
+ * with values inlined in their text (e.g. ROI names) do not grow memory without bound during a load.
+ */
+public class QueryPlanCacheStats {
+
+    /**
+     * Number of distinct query texts after which no more are counted.
+     */
+    public static final int MAX_DISTINCT_QUERY_COUNT = 1 << 20;
+
+    private static final HashFunction HASH_FUNCTION = Hashing.murmur3_128();
+
+    private final LinkedHashMap<String, Boolean> cachedQueryTexts;
+    private final Set<Long> distinctQueryHashes = new HashSet<>();
+    private long statementCount;
+    private long hitCount;
+
+    /**
+     * Class constructor.
+     *
+     * @param cacheSize number of plans held by the server query cache (dbms.query_cache_size)
+     */
+    public QueryPlanCacheStats(final int cacheSize) {
+        this.cachedQueryTexts = new LinkedHashMap<String, Boolean>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String, Boolean> eldest) {
+                return size() > cacheSize;
+            }
+        };
+    }
+
+    /**
+     * Records that a statement with the provided query text was sent to the server.
+     *
+     * @param queryText cypher text of the statement
+     */
+    public synchronized void record(final String queryText) {
+        statementCount++;
+        if (cachedQueryTexts.get(queryText) != null) {
+            hitCount++;
+        } else {
+            cachedQueryTexts.put(queryText, Boolean.TRUE);
+            if (distinctQueryHashes.size() < MAX_DISTINCT_QUERY_COUNT) {
+                distinctQueryHashes.add(HASH_FUNCTION.hashString(queryText, StandardCharsets.UTF_8).asLong());
+            }
+        }
+    }
+
+    /**
+     * @return number of statements recorded
+     */
+    public synchronized long getStatementCount() {
+        return statementCount;
+    }
+
+    /**
+     * @return number of statements whose plan would have been found in the cache
+     */
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * @return number of statements that would have required planning
+     */
+    public synchronized long getMissCount() {
+        return statementCount - hitCount;
+    }
+
+    /**
+     * @return number of distinct query texts recorded (at most {@link #MAX_DISTINCT_QUERY_COUNT})
+     */
+    public synchronized long getDistinctQueryCount() {
+        return distinctQueryHashes.size();
+    }
+
+    /**
+     * @return number of distinct query texts in the cache, i.e. among the most recently planned (at most the cache size)
+     */
+    public synchronized long getCachedQueryCount() {
+        return cachedQueryTexts.size();
+    }
+
+    /**
+     * @return fraction of recorded statements whose plan would have been found in the cache (0 if nothing was recorded)
+     */
+    public synchronized double getHitRate() {
+        return statementCount == 0 ? 0.0 : (double) hitCount / statementCount;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("plan cache hit rate %.4f (%d hits, %d misses, %d distinct queries, %d statements)",
+                getHitRate(), hitCount, getMissCount(), distinctQueryHashes.size(), statementCount);
+    }
+
+}
@@ -0,0 +1,54 @@
+package org.janelia.flyem.neuprint.db;
+
+import org.neo4j.driver.v1.Statement;
+
+/**
+ * Records the text of every added statement in a {@link QueryPlanCacheStats} object
+ * before passing the statement on to another transaction batch.
+ */
+public class QueryPlanCacheTrackingTransactionBatch
+        implements TransactionBatch {
+
+    private final TransactionBatch batch;
+    private final QueryPlanCacheStats queryPlanCacheStats;
+
+    /**
+     * Class constructor.
+     *
+     * @param batch               batch that stores and writes the statements
+     * @param queryPlanCacheStats stats in which statement texts are recorded
+     */
+    public QueryPlanCacheTrackingTransactionBatch(final TransactionBatch batch,
+                                                  final QueryPlanCacheStats queryPlanCacheStats) {
+        this.batch = batch;
+        this.queryPlanCacheStats = queryPlanCacheStats;
+    }
+
+    @Override
+    public void addStatement(final Statement statement) {
+        queryPlanCacheStats.record(statement.text());
+        batch.addStatement(statement);
+    }
+
+    @Override
+    public void addStatement(final Statement statement, final Object partitionKey) {
+        queryPlanCacheStats.record(statement.text());
+        batch.addStatement(statement, partitionKey);
+    }
+
+    @Override
+    public void writeTransaction() {
+        batch.writeTransaction();
+    }
+
+    @Override
+    public void writeTransaction(final Object partitionKey) {
+        batch.writeTransaction(partitionKey);
+    }
+
+    @Override
+    public void close() {
+        batch.close();
+    }
+
+}
@@ -0,0 +1,141 @@
+package org.janelia.flyem.neuprint.db;
+
+import org.neo4j.driver.v1.Statement;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts the statements and transactions a load phase would send to the database, for a dry run that writes
+ * nothing (see {@link ProfilingTransactionBatch}). The size of the parameters of every sampleInterval-th
+ * statement is estimated, roughly as they would be encoded by the driver, and the payload of all statements is
+ * extrapolated from that sample. Query texts are recorded in a {@link QueryPlanCacheStats} object, which counts
+ * the distinct texts and the plan cache hit rate. Thread safe.
+ */
+public class StatementProfile {
+
+    // encoded size of a number, date, point, etc. including its marker
+    private static final int SCALAR_BYTES = 9;
+    // marker and size of a string, list or map
+    private static final int HEADER_BYTES = 3;
+
+    private final String name;
+    private final int sampleInterval;
+    private final QueryPlanCacheStats queryPlanCacheStats;
+    private final AtomicLong statementCount = new AtomicLong();
+    private final LongAdder transactionCount = new LongAdder();
+    private final LongAdder sampledStatementCount = new LongAdder();
+    private final LongAdder sampledParameterBytes = new LongAdder();
+    private final LongAdder queryTextBytes = new LongAdder();
+
+    /**
+     * Class constructor.
+     *
+     * @param name           name of the load phase
+     * @param sampleInterval parameter sizes of one in this many statements are estimated
+     * @param queryCacheSize number of plans held by the server query cache (dbms.query_cache_size)
+     */
+    public StatementProfile(final String name,
+                            final int sampleInterval,
+                            final int queryCacheSize) {
+        this.name = name;
+        this.sampleInterval = Math.max(1, sampleInterval);
+        this.queryPlanCacheStats = new QueryPlanCacheStats(queryCacheSize);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return stats in which the query texts of the phase are recorded
+     */
+    public QueryPlanCacheStats getQueryPlanCacheStats() {
+        return queryPlanCacheStats;
+    }
+
+    /**
+     * Records a statement that would be sent to the database.
+     *
+     * @param statement statement containing query
+     */
+    public void recordStatement(final Statement statement) {
+        queryTextBytes.add(statement.text().length());
+        if (statementCount.getAndIncrement() % sampleInterval == 0) {
+            sampledStatementCount.increment();
+            sampledParameterBytes.add(estimateBytes(statement.parameters().asMap()));
+        }
+    }
+
+    /**
+     * Records a transaction that would be committed.
+     */
+    public void recordTransaction() {
+        transactionCount.increment();
+    }
+
+    /**
+     * @return number of statements recorded
+     */
+    public long getStatementCount() {
+        return statementCount.get();
+    }
+
+    /**
+     * @return number of transactions recorded
+     */
+    public long getTransactionCount() {
+        return transactionCount.sum();
+    }
+
+    /**
+     * @return number of distinct query texts recorded
+     */
+    public long getDistinctQueryCount() {
+        return queryPlanCacheStats.getDistinctQueryCount();
+    }
+
+    /**
+     * @return total number of characters in the query texts
+     */
+    public long getQueryTextBytes() {
+        return queryTextBytes.sum();
+    }
+
+    /**
+     * @return estimated number of bytes of the parameters of all statements
+     */
+    public long getEstimatedParameterBytes() {
+        final long sampled = sampledStatementCount.sum();
+        return sampled == 0 ? 0 : (long) ((double) sampledParameterBytes.sum() * getStatementCount() / sampled);
+    }
+
+    /**
+     * @param value parameter value (as returned by {@link org.neo4j.driver.v1.Value#asMap()})
+     * @return estimated number of bytes of the encoded value
+     */
+    static long estimateBytes(final Object value) {
+        if (value instanceof String) {
+            return HEADER_BYTES + ((String) value).getBytes(StandardCharsets.UTF_8).length;
+        } else if (value instanceof Map) {
+            long bytes = HEADER_BYTES;
+            for (final Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                bytes += estimateBytes(String.valueOf(entry.getKey())) + estimateBytes(entry.getValue());
+            }
+            return bytes;
+        } else if (value instanceof Collection) {
+            long bytes = HEADER_BYTES;
+            for (final Object element : (Collection<?>) value) {
+                bytes += estimateBytes(element);
+            }
+            return bytes;
+        } else if (value == null || value instanceof Boolean) {
+            return 1;
+        }
+        return SCALAR_BYTES;
+    }
+
+}
@@ -16,11 +16,36 @@ public interface TransactionBatch
      */
     void addStatement(final Statement statement);
 
+    /**
+     * Adds the specified statement to the batch for the provided partition key. Statements added with
+     * equal keys are committed in the order they were added. Implementations that write on several
+     * sessions may commit statements whose keys fall in different partitions concurrently, so callers
+     * should choose keys such that those statements do not touch the same nodes.
+     *
+     * @param statement    statement containing query
+     * @param partitionKey key identifying the entity the statement writes
+     */
+    default void addStatement(final Statement statement, final Object partitionKey) {
+        addStatement(statement);
+    }
+
     /**
      * Writes (commits) any remaining uncommitted previously batched statements.
+     * Waits for all commits to complete.
      */
     void writeTransaction();
 
+    /**
+     * Writes (commits) the uncommitted previously batched statements in the partition of the
+     * provided key. Implementations that write on several sessions may return before the commit
+     * completes; later statements with the same key are still committed after it.
+     *
+     * @param partitionKey key identifying the partition to commit
+     */
+    default void writeTransaction(final Object partitionKey) {
+        writeTransaction();
+    }
+
     /**
      * Closes the transactional parent resource (e.g. session) if one exists.
      */
@@ -0,0 +1,295 @@
+package org.janelia.flyem.neuprint.json;
+
+import com.google.gson.JsonSyntaxException;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Splits a JSON file containing a single top-level array into chunks of whole elements, so that the chunks can
+ * be decoded concurrently. The file is memory-mapped and scanned once for the commas that separate top-level
+ * elements, keeping track of strings (including escaped quotes) and nesting; no element is decoded during the
+ * scan. Each chunk covers roughly the requested number of bytes and records how many elements it holds.
+ */
+public class JsonArraySplitter {
+
+    /**
+     * Default size of a chunk in bytes.
+     */
+    public static final long DEFAULT_CHUNK_BYTES = 8L << 20;
+
+    // size of each mapped window while scanning, well below the 2 GB limit of a mapping
+    private static final long SCAN_WINDOW_BYTES = 256L << 20;
+
+    /**
+     * A range of bytes holding whole, comma-separated elements of the top-level array.
+     */
+    public static class Chunk {
+
+        private final long start;
+        private final long end;
+        private final int elementCount;
+
+        Chunk(final long start, final long end, final int elementCount) {
+            this.start = start;
+            this.end = end;
+            this.elementCount = elementCount;
+        }
+
+        /**
+         * @return offset of the first byte of the chunk
+         */
+        public long getStart() {
+            return start;
+        }
+
+        /**
+         * @return offset just past the last byte of the chunk
+         */
+        public long getEnd() {
+            return end;
+        }
+
+        /**
+         * @return number of array elements in the chunk
+         */
+        public int getElementCount() {
+            return elementCount;
+        }
+
+        @Override
+        public String toString() {
+            return "Chunk{start=" + start + ", end=" + end + ", elementCount=" + elementCount + "}";
+        }
+    }
+
+    /**
+     * Scans a file for the boundaries between the elements of its top-level array.
+     *
+     * @param channel    channel of a file containing a JSON array
+     * @param chunkBytes approximate number of bytes per chunk
+     * @return chunks in file order covering every element of the array
+     * @throws IOException if the file cannot be read
+     * @throws JsonSyntaxException if the file does not contain a single array
+     */
+    public static List<Chunk> split(final FileChannel channel, final long chunkBytes) throws IOException {
+
+        final List<Chunk> chunks = new ArrayList<>();
+        final long size = channel.size();
+
+        boolean inString = false;
+        boolean escaped = false;
+        boolean expectingElement = false;
+        boolean arrayClosed = false;
+        int depth = 0;
+        long chunkStart = -1;
+        int chunkElements = 0;
+
+        for (long windowStart = 0; windowStart < size && !arrayClosed; windowStart += SCAN_WINDOW_BYTES) {
+            final int windowSize = (int) Math.min(SCAN_WINDOW_BYTES, size - windowStart);
+            final MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, windowSize);
+
+            for (int i = 0; i < windowSize; i++) {
+                final byte b = window.get(i);
+                if (inString) {
+                    if (escaped) {
+                        escaped = false;
+                    } else if (b == '\\') {
+                        escaped = true;
+                    } else if (b == '"') {
+                        inString = false;
+                    }
+                    continue;
+                }
+                if (b == ' ' || b == '\n' || b == '\r' || b == '\t') {
+                    continue;
+                }
+                final long offset = windowStart + i;
+                if (depth == 0) {
+                    if (b != '[' || chunkStart >= 0) {
+                        throw new JsonSyntaxException("expected a single top-level array but found '" + (char) b + "' at offset " + offset);
+                    }
+                    depth = 1;
+                    chunkStart = offset + 1;
+                    expectingElement = true;
+                    continue;
+                }
+                if (depth == 1) {
+                    if (b == ',') {
+                        if (expectingElement) {
+                            throw new JsonSyntaxException("expected an array element but found ',' at offset " + offset);
+                        }
+                        expectingElement = true;
+                        if (offset - chunkStart >= chunkBytes) {
+                            chunks.add(new Chunk(chunkStart, offset, chunkElements));
+                            chunkStart = offset + 1;
+                            chunkElements = 0;
+                        }
+                        continue;
+                    }
+                    if (b == ']') {
+                        if (expectingElement && (chunkElements > 0 || !chunks.isEmpty())) {
+                            throw new JsonSyntaxException("expected an array element but found ']' at offset " + offset);
+                        }
+                        if (chunkElements > 0) {
+                            chunks.add(new Chunk(chunkStart, offset, chunkElements));
+                        }
+                        depth = 0;
+                        arrayClosed = true;
+                        break;
+                    }
+                    if (expectingElement) {
+                        chunkElements++;
+                        expectingElement = false;
+                    }
+                }
+                if (b == '"') {
+                    inString = true;
+                } else if (b == '[' || b == '{') {
+                    depth++;
+                } else if (b == ']' || b == '}') {
+                    depth--;
+                }
+            }
+        }
+
+        if (!arrayClosed) {
+            throw new JsonSyntaxException("unexpected end of input: top-level array is not closed");
+        }
+        return chunks;
+    }
+
+    /**
+     * Decodes the elements of a chunk.
+     *
+     * @param channel        channel of the file that was split
+     * @param chunk          chunk to decode
+     * @param elementDecoder decodes each element
+     * @param <T>            type of decoded element
+     * @return decoded elements in file order
+     * @throws IOException if the file cannot be read
+     */
+    public static <T> List<T> decodeChunk(final FileChannel channel,
+                                          final Chunk chunk,
+                                          final NeuPrintJsonDecoder.ElementDecoder<T> elementDecoder) throws IOException {
+        final NeuPrintJsonDecoder decoder = new NeuPrintJsonDecoder(channel.map(FileChannel.MapMode.READ_ONLY, chunk.getStart(), chunk.getEnd() - chunk.getStart()));
+        final List<T> elements = new ArrayList<>(chunk.getElementCount());
+        decoder.getReader().beginArrayElements();
+        while (decoder.getReader().hasNext()) {
+            elements.add(elementDecoder.decode(decoder));
+        }
+        return elements;
+    }
+
+    /**
+     * Decodes a JSON file containing an array, decoding chunks of the array concurrently on a fork-join pool.
+     *
+     * @param path           path to a file containing a JSON array
+     * @param elementDecoder decodes each element
+     * @param parallelism    number of threads decoding chunks
+     * @param <T>            type of decoded element
+     * @return decoded elements in file order
+     * @throws IOException if the file cannot be read
+     */
+    public static <T> List<T> decodeInParallel(final Path path,
+                                               final NeuPrintJsonDecoder.ElementDecoder<T> elementDecoder,
+                                               final int parallelism) throws IOException {
+        return decodeInParallel(path, elementDecoder, parallelism, DEFAULT_CHUNK_BYTES);
+    }
+
+    /**
+     * Decodes a JSON file containing an array, decoding chunks of the array concurrently on a fork-join pool.
+     *
+     * @param path           path to a file containing a JSON array
+     * @param elementDecoder decodes each element
+     * @param parallelism    number of threads decoding chunks
+     * @param chunkBytes     approximate number of bytes per chunk
+     * @param <T>            type of decoded element
+     * @return decoded elements in file order
+     * @throws IOException if the file cannot be read
+     */
+    public static <T> List<T> decodeInParallel(final Path path,
+                                               final NeuPrintJsonDecoder.ElementDecoder<T> elementDecoder,
+                                               final int parallelism,
+                                               final long chunkBytes) throws IOException {
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+
+            final List<Chunk> chunks = split(channel, chunkBytes);
+            final List<List<T>> decodedChunks = new ArrayList<>(chunks.size());
+            for (int i = 0; i < chunks.size(); i++) {
+                decodedChunks.add(null);
+            }
+
+            final ForkJoinPool pool = new ForkJoinPool(Math.max(1, parallelism));
+            try {
+                pool.invoke(new DecodeChunksAction<>(channel, chunks, decodedChunks, elementDecoder, 0, chunks.size()));
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            } finally {
+                pool.shutdown();
+            }
+
+            int elementCount = 0;
+            for (final Chunk chunk : chunks) {
+                elementCount += chunk.getElementCount();
+            }
+            final List<T> elements = new ArrayList<>(elementCount);
+            for (final List<T> decodedChunk : decodedChunks) {
+                elements.addAll(decodedChunk);
+            }
+            return elements;
+        }
+    }
+
+    /**
+     * Decodes a range of chunks, splitting the range in half until it holds a single chunk.
+     */
+    private static class DecodeChunksAction<T> extends RecursiveAction {
+
+        private final FileChannel channel;
+        private final List<Chunk> chunks;
+        private final List<List<T>> decodedChunks;
+        private final NeuPrintJsonDecoder.ElementDecoder<T> elementDecoder;
+        private final int from;
+        private final int to;
+
+        DecodeChunksAction(final FileChannel channel,
+                           final List<Chunk> chunks,
+                           final List<List<T>> decodedChunks,
+                           final NeuPrintJsonDecoder.ElementDecoder<T> elementDecoder,
+                           final int from,
+                           final int to) {
+            this.channel = channel;
+            this.chunks = chunks;
+            this.decodedChunks = decodedChunks;
+            this.elementDecoder = elementDecoder;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                final int middle = (from + to) >>> 1;
+                invokeAll(new DecodeChunksAction<>(channel, chunks, decodedChunks, elementDecoder, from, middle),
+                          new DecodeChunksAction<>(channel, chunks, decodedChunks, elementDecoder, middle, to));
+            } else if (to > from) {
+                try {
+                    decodedChunks.set(from, decodeChunk(channel, chunks.get(from), elementDecoder));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        }
+    }
+
+}
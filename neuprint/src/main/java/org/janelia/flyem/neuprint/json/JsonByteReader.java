@@ -0,0 +1,708 @@
+package org.janelia.flyem.neuprint.json;
+
+import com.google.gson.JsonSyntaxException;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Reads JSON tokens directly from UTF-8 bytes, without building JSON elements. The input is read from an
+ * {@link InputStream} or a {@link ByteBuffer} through a fixed size buffer, so it can be larger than memory.
+ * Strings that repeat throughout a file (property names, roi names, status values) can be read from a pool
+ * so that each distinct value is decoded and allocated once. Numbers are parsed from the bytes without
+ * creating strings except in uncommon cases (exponents, very long mantissas).
+ * <p>
+ * Malformed JSON causes a {@link JsonSyntaxException} that includes the byte offset in the input.
+ * Not thread safe.
+ */
+public class JsonByteReader implements Closeable {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int MAX_POOLED_STRINGS = 1 << 16;
+    private static final int MAX_POOLED_STRING_BYTES = 256;
+    private static final int MAX_FAST_DIGITS = 15;
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15
+    };
+
+    private final InputStream inputStream;
+    private final ByteBuffer byteBuffer;
+    private final byte[] buffer;
+    private int pos;
+    private int limit;
+    private long bufferOffset;
+
+    // bytes of the current string or number when it cannot be read in place
+    private byte[] scratch = new byte[256];
+    private int scratchLength;
+
+    // true for each open array or object until its first element has been read
+    private boolean[] firstInContainer = new boolean[32];
+    private int depth;
+    private boolean afterName;
+    // depth of the array begun by beginArrayElements, which ends with the input (0 if none)
+    private int elementsDepth;
+
+    private byte[][] poolKeys = new byte[1024][];
+    private String[] poolValues = new String[1024];
+    private int[] poolHashes = new int[1024];
+    private int poolSize;
+
+    /**
+     * Class constructor.
+     *
+     * @param inputStream stream of UTF-8 JSON
+     */
+    public JsonByteReader(final InputStream inputStream) {
+        this(inputStream, null);
+    }
+
+    /**
+     * Class constructor.
+     *
+     * @param byteBuffer UTF-8 JSON between the buffer's position and limit (e.g. a memory-mapped file region)
+     */
+    public JsonByteReader(final ByteBuffer byteBuffer) {
+        this(null, byteBuffer.slice());
+    }
+
+    private JsonByteReader(final InputStream inputStream, final ByteBuffer byteBuffer) {
+        this.inputStream = inputStream;
+        this.byteBuffer = byteBuffer;
+        this.buffer = new byte[BUFFER_SIZE];
+    }
+
+    /**
+     * @return offset in the input of the next byte to be read
+     */
+    public long getPosition() {
+        return bufferOffset + pos;
+    }
+
+    // --- structure ---
+
+    /**
+     * Consumes the start of an array.
+     *
+     * @throws IOException if the input cannot be read
+     */
+    public void beginArray() throws IOException {
+        beforeValue();
+        expect('[');
+        push();
+    }
+
+    /**
+     * Starts reading comma-separated array elements whose enclosing brackets are not part of the input, e.g. a
+     * chunk of a larger array (see {@link JsonArraySplitter}). {@link #hasNext()} returns false at the end of
+     * the input.
+     */
+    public void beginArrayElements() {
+        push();
+        elementsDepth = depth;
+    }
+
+    /**
+     * Consumes the end of the current array.
+     *
+     * @throws IOException if the input cannot be read
+     */
+    public void endArray() throws IOException {
+        expect(']');
+        depth--;
+    }
+
+    /**
+     * Consumes the start of an object.
+     *
+     * @throws IOException if the input cannot be read
+     */
+    public void beginObject() throws IOException {
+        beforeValue();
+        expect('{');
+        push();
+    }
+
+    /**
+     * Consumes the end of the current object.
+     *
+     * @throws IOException if the input cannot be read
+     */
+    public void endObject() throws IOException {
+        expect('}');
+        depth--;
+    }
+
+    /**
+     * @return true if the current array or object has another element
+     * @throws IOException if the input cannot be read
+     */
+    public boolean hasNext() throws IOException {
+        final int c = peek();
+        if (c == ']' || c == '}') {
+            return false;
+        }
+        if (c == -1) {
+            if (depth > 0 && depth == elementsDepth) {
+                return false;
+            }
+            throw syntaxError("unexpected end of input");
+        }
+        if (depth > 0 && !firstInContainer[depth - 1] && c != ',') {
+            throw syntaxError("expected ',' but found '" + (char) c + "'");
+        }
+        return true;
+    }
+
+    /**
+     * Reads the name of the next property of the current object.
+     *
+     * @return property name, from the string pool
+     * @throws IOException if the input cannot be read
+     */
+    public String nextName() throws IOException {
+        beforeValue();
+        expect('"');
+        final String name = readString(true);
+        expect(':');
+        afterName = true;
+        return name;
+    }
+
+    /**
+     * @return true if the next value is null
+     * @throws IOException if the input cannot be read
+     */
+    public boolean peekNull() throws IOException {
+        return peekValue() == 'n';
+    }
+
+    /**
+     * Consumes a null value.
+     *
+     * @throws IOException if the input cannot be read
+     */
+    public void nextNull() throws IOException {
+        beforeValue();
+        expectLiteral("null");
+    }
+
+    // --- values ---
+
+    /**
+     * @return the next string value
+     * @throws IOException if the input cannot be read
+     */
+    public String nextString() throws IOException {
+        beforeValue();
+        expect('"');
+        return readString(false);
+    }
+
+    /**
+     * Returns the next string value from the string pool, for values that repeat throughout the input. Up to
+     * {@value #MAX_POOLED_STRINGS} distinct strings of at most {@value #MAX_POOLED_STRING_BYTES} bytes are
+     * pooled.
+     *
+     * @return the next string value
+     * @throws IOException if the input cannot be read
+     */
+    public String nextPooledString() throws IOException {
+        beforeValue();
+        expect('"');
+        return readString(true);
+    }
+
+    /**
+     * Returns the next value as a long. As with Gson, a number written with a fraction or exponent is accepted
+     * if its value is integral, and a string containing a number is accepted.
+     *
+     * @return the next integer value
+     * @throws NumberFormatException if the value is not a number
+     * @throws ArithmeticException   if the value is a number that is not integral
+     * @throws IOException           if the input cannot be read
+     */
+    public long nextLong() throws IOException {
+        beforeValue();
+        readNumberToken();
+        boolean negative = false;
+        int i = 0;
+        if (scratchLength > 0 && scratch[0] == '-') {
+            negative = true;
+            i = 1;
+        }
+        // fast path: up to 18 digits without fraction or exponent
+        if (scratchLength > i && scratchLength - i <= 18) {
+            long value = 0;
+            for (; i < scratchLength; i++) {
+                final int digit = scratch[i] - '0';
+                if (digit < 0 || digit > 9) {
+                    break;
+                }
+                value = value * 10 + digit;
+            }
+            if (i == scratchLength) {
+                return negative ? -value : value;
+            }
+        }
+        final String token = scratchString();
+        final BigDecimal decimal;
+        try {
+            decimal = new BigDecimal(token);
+        } catch (NumberFormatException e) {
+            throw new NumberFormatException("not a number: " + token);
+        }
+        return decimal.longValueExact();
+    }
+
+    /**
+     * Returns the next value as a double. A string containing a number is accepted.
+     *
+     * @return the next number value
+     * @throws NumberFormatException if the value is not a number
+     * @throws IOException           if the input cannot be read
+     */
+    public double nextDouble() throws IOException {
+        beforeValue();
+        readNumberToken();
+        int i = 0;
+        final boolean negative = scratchLength > 0 && scratch[0] == '-';
+        if (negative) {
+            i = 1;
+        }
+        // fast path: up to 15 significant digits with an optional fraction, exactly representable before scaling
+        long mantissa = 0;
+        int digits = 0;
+        int fractionDigits = -1;
+        for (; i < scratchLength; i++) {
+            final byte b = scratch[i];
+            if (b >= '0' && b <= '9') {
+                mantissa = mantissa * 10 + (b - '0');
+                digits++;
+                if (fractionDigits >= 0) {
+                    fractionDigits++;
+                }
+            } else if (b == '.' && fractionDigits < 0) {
+                fractionDigits = 0;
+            } else {
+                break;
+            }
+        }
+        if (i == scratchLength && digits > 0 && digits <= MAX_FAST_DIGITS && fractionDigits != 0) {
+            final double value = fractionDigits > 0 ? mantissa / POWERS_OF_TEN[fractionDigits] : mantissa;
+            return negative ? -value : value;
+        }
+        return Double.parseDouble(scratchString());
+    }
+
+    /**
+     * Skips the next value, including any nested arrays and objects.
+     *
+     * @throws IOException if the input cannot be read
+     */
+    public void skipValue() throws IOException {
+        beforeValue();
+        int nesting = 0;
+        do {
+            final int c = peek();
+            switch (c) {
+                case '[':
+                case '{':
+                    pos++;
+                    nesting++;
+                    break;
+                case ']':
+                case '}':
+                    if (nesting == 0) {
+                        throw syntaxError("expected a value but found '" + (char) c + "'");
+                    }
+                    pos++;
+                    nesting--;
+                    break;
+                case '"':
+                    pos++;
+                    skipString();
+                    break;
+                case ',':
+                case ':':
+                    if (nesting == 0) {
+                        throw syntaxError("expected a value but found '" + (char) c + "'");
+                    }
+                    pos++;
+                    break;
+                case -1:
+                    throw syntaxError("unexpected end of input");
+                default:
+                    skipLiteral();
+                    break;
+            }
+        } while (nesting > 0);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (inputStream != null) {
+            inputStream.close();
+        }
+    }
+
+    // --- internals ---
+
+    private void push() {
+        if (depth == firstInContainer.length) {
+            firstInContainer = Arrays.copyOf(firstInContainer, depth * 2);
+        }
+        firstInContainer[depth++] = true;
+    }
+
+    /**
+     * @return the first byte of the next value, consuming the comma before it if there is one
+     */
+    private int peekValue() throws IOException {
+        if (!afterName && depth > 0 && !firstInContainer[depth - 1]) {
+            expect(',');
+            // the comma has been read, so the next value is read as if it were the first
+            firstInContainer[depth - 1] = true;
+        }
+        return peek();
+    }
+
+    /**
+     * Consumes the comma before an element that is not the first of its array or object.
+     */
+    private void beforeValue() throws IOException {
+        if (afterName) {
+            afterName = false;
+            return;
+        }
+        if (depth > 0) {
+            if (firstInContainer[depth - 1]) {
+                firstInContainer[depth - 1] = false;
+            } else {
+                expect(',');
+            }
+        }
+    }
+
+    private boolean fill() throws IOException {
+        bufferOffset += limit;
+        pos = 0;
+        limit = 0;
+        if (inputStream != null) {
+            final int n = inputStream.read(buffer, 0, buffer.length);
+            if (n > 0) {
+                limit = n;
+            }
+        } else if (byteBuffer.hasRemaining()) {
+            limit = Math.min(buffer.length, byteBuffer.remaining());
+            byteBuffer.get(buffer, 0, limit);
+        }
+        return limit > 0;
+    }
+
+    /**
+     * @return the next byte that is not whitespace, without consuming it, or -1 at the end of input
+     */
+    private int peek() throws IOException {
+        while (true) {
+            if (pos == limit && !fill()) {
+                return -1;
+            }
+            final byte b = buffer[pos];
+            if (b == ' ' || b == '\n' || b == '\r' || b == '\t') {
+                pos++;
+            } else {
+                return b & 0xff;
+            }
+        }
+    }
+
+    private int read() throws IOException {
+        if (pos == limit && !fill()) {
+            throw syntaxError("unexpected end of input");
+        }
+        return buffer[pos++] & 0xff;
+    }
+
+    private void expect(final char expected) throws IOException {
+        final int c = peek();
+        if (c != expected) {
+            throw syntaxError(c == -1 ?
+                    "expected '" + expected + "' but reached end of input" :
+                    "expected '" + expected + "' but found '" + (char) c + "'");
+        }
+        pos++;
+    }
+
+    private void expectLiteral(final String literal) throws IOException {
+        peek();
+        for (int i = 0; i < literal.length(); i++) {
+            if (read() != literal.charAt(i)) {
+                throw syntaxError("expected " + literal);
+            }
+        }
+    }
+
+    private void appendScratch(final int b) {
+        if (scratchLength == scratch.length) {
+            scratch = Arrays.copyOf(scratch, scratchLength * 2);
+        }
+        scratch[scratchLength++] = (byte) b;
+    }
+
+    private void appendScratch(final byte[] bytes, final int offset, final int length) {
+        if (scratchLength + length > scratch.length) {
+            scratch = Arrays.copyOf(scratch, Math.max(scratch.length * 2, scratchLength + length));
+        }
+        System.arraycopy(bytes, offset, scratch, scratchLength, length);
+        scratchLength += length;
+    }
+
+    private String scratchString() {
+        return new String(scratch, 0, scratchLength, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Reads the rest of a string whose opening quote has been consumed.
+     */
+    private String readString(final boolean pooled) throws IOException {
+        // fast path: the whole string is in the buffer and has no escapes
+        final int start = pos;
+        while (pos < limit) {
+            final byte b = buffer[pos];
+            if (b == '"') {
+                pos++;
+                return pooled ? pooledString(buffer, start, pos - 1 - start) : new String(buffer, start, pos - 1 - start, StandardCharsets.UTF_8);
+            }
+            if (b == '\\') {
+                break;
+            }
+            pos++;
+        }
+        scratchLength = 0;
+        appendScratch(buffer, start, pos - start);
+        // a high surrogate escape waiting for the low surrogate escape that may follow it (-1 if none)
+        int highSurrogate = -1;
+        while (true) {
+            final int b = read();
+            if (b == '\\') {
+                highSurrogate = appendEscape(highSurrogate);
+                continue;
+            }
+            if (highSurrogate >= 0) {
+                appendCodeUnit(highSurrogate);
+                highSurrogate = -1;
+            }
+            if (b == '"') {
+                break;
+            }
+            appendScratch(b);
+        }
+        return pooled ? pooledString(scratch, 0, scratchLength) : scratchString();
+    }
+
+    /**
+     * Appends the character of an escape whose backslash has been consumed.
+     *
+     * @param highSurrogate high surrogate read from the preceding escape and not yet appended, or -1
+     * @return high surrogate read from this escape and not yet appended, or -1
+     */
+    private int appendEscape(final int highSurrogate) throws IOException {
+        final int escaped = read();
+        if (highSurrogate >= 0 && escaped != 'u') {
+            appendCodeUnit(highSurrogate);
+        }
+        switch (escaped) {
+            case '"':
+            case '\\':
+            case '/':
+                appendScratch(escaped);
+                break;
+            case 'b':
+                appendScratch('\b');
+                break;
+            case 'f':
+                appendScratch('\f');
+                break;
+            case 'n':
+                appendScratch('\n');
+                break;
+            case 'r':
+                appendScratch('\r');
+                break;
+            case 't':
+                appendScratch('\t');
+                break;
+            case 'u':
+                int codeUnit = 0;
+                for (int i = 0; i < 4; i++) {
+                    final int digit = Character.digit(read(), 16);
+                    if (digit < 0) {
+                        throw syntaxError("invalid unicode escape");
+                    }
+                    codeUnit = codeUnit * 16 + digit;
+                }
+                if (highSurrogate >= 0 && Character.isLowSurrogate((char) codeUnit)) {
+                    final int codePoint = Character.toCodePoint((char) highSurrogate, (char) codeUnit);
+                    appendScratch(0xF0 | (codePoint >> 18));
+                    appendScratch(0x80 | ((codePoint >> 12) & 0x3F));
+                    appendScratch(0x80 | ((codePoint >> 6) & 0x3F));
+                    appendScratch(0x80 | (codePoint & 0x3F));
+                    return -1;
+                }
+                if (highSurrogate >= 0) {
+                    appendCodeUnit(highSurrogate);
+                }
+                if (Character.isHighSurrogate((char) codeUnit)) {
+                    return codeUnit;
+                }
+                appendCodeUnit(codeUnit);
+                break;
+            default:
+                throw syntaxError("invalid escape '\\" + (char) escaped + "'");
+        }
+        return -1;
+    }
+
+    /**
+     * Appends a UTF-16 code unit that is not part of a surrogate pair; unpaired surrogates are encoded as by
+     * String(..., UTF_8).
+     */
+    private void appendCodeUnit(final int codeUnit) {
+        final byte[] encoded = String.valueOf((char) codeUnit).getBytes(StandardCharsets.UTF_8);
+        appendScratch(encoded, 0, encoded.length);
+    }
+
+    private void skipString() throws IOException {
+        while (true) {
+            final int b = read();
+            if (b == '"') {
+                return;
+            }
+            if (b == '\\') {
+                read();
+            }
+        }
+    }
+
+    private void skipLiteral() throws IOException {
+        while (true) {
+            if (pos == limit && !fill()) {
+                return;
+            }
+            final byte b = buffer[pos];
+            if (b == ',' || b == ']' || b == '}' || b == ':' || b == ' ' || b == '\n' || b == '\r' || b == '\t') {
+                return;
+            }
+            pos++;
+        }
+    }
+
+    /**
+     * Reads the characters of a number (or of a string containing a number) into the scratch buffer.
+     */
+    private void readNumberToken() throws IOException {
+        scratchLength = 0;
+        final int c = peek();
+        if (c == '"') {
+            pos++;
+            final String value = readString(false);
+            final byte[] bytes = value.trim().getBytes(StandardCharsets.UTF_8);
+            scratchLength = 0;
+            appendScratch(bytes, 0, bytes.length);
+            return;
+        }
+        while (true) {
+            if (pos == limit && !fill()) {
+                break;
+            }
+            final byte b = buffer[pos];
+            if ((b >= '0' && b <= '9') || b == '-' || b == '+' || b == '.' || b == 'e' || b == 'E') {
+                appendScratch(b);
+                pos++;
+            } else {
+                break;
+            }
+        }
+        if (scratchLength == 0) {
+            if (c == -1) {
+                throw syntaxError("unexpected end of input");
+            }
+            // e.g. true, false, null or an unquoted word
+            skipLiteral();
+            throw new NumberFormatException("not a number at offset " + getPosition());
+        }
+    }
+
+    private String pooledString(final byte[] bytes, final int offset, final int length) {
+        if (length > MAX_POOLED_STRING_BYTES) {
+            return new String(bytes, offset, length, StandardCharsets.UTF_8);
+        }
+        int hash = length;
+        for (int i = offset; i < offset + length; i++) {
+            hash = 31 * hash + bytes[i];
+        }
+        final int mask = poolKeys.length - 1;
+        int slot = (hash ^ (hash >>> 16)) & mask;
+        while (poolKeys[slot] != null) {
+            if (poolHashes[slot] == hash && equalBytes(poolKeys[slot], bytes, offset, length)) {
+                return poolValues[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        final String value = new String(bytes, offset, length, StandardCharsets.UTF_8);
+        if (poolSize < MAX_POOLED_STRINGS) {
+            poolKeys[slot] = Arrays.copyOfRange(bytes, offset, offset + length);
+            poolValues[slot] = value;
+            poolHashes[slot] = hash;
+            poolSize++;
+            if (poolSize * 2 > poolKeys.length) {
+                growPool();
+            }
+        }
+        return value;
+    }
+
+    private static boolean equalBytes(final byte[] key, final byte[] bytes, final int offset, final int length) {
+        if (key.length != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (key[i] != bytes[offset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void growPool() {
+        final byte[][] oldKeys = poolKeys;
+        final String[] oldValues = poolValues;
+        final int[] oldHashes = poolHashes;
+        poolKeys = new byte[oldKeys.length * 2][];
+        poolValues = new String[oldKeys.length * 2];
+        poolHashes = new int[oldKeys.length * 2];
+        final int mask = poolKeys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != null) {
+                int slot = (oldHashes[i] ^ (oldHashes[i] >>> 16)) & mask;
+                while (poolKeys[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                poolKeys[slot] = oldKeys[i];
+                poolValues[slot] = oldValues[i];
+                poolHashes[slot] = oldHashes[i];
+            }
+        }
+    }
+
+    private JsonSyntaxException syntaxError(final String message) {
+        return new JsonSyntaxException(message + " at offset " + getPosition());
+    }
+
+}
@@ -0,0 +1,190 @@
+package org.janelia.flyem.neuprint.json;
+
+import java.io.FileNotFoundException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.LongConsumer;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Resolves and opens JSON input. An input can be a single file, a directory of shard files or a glob pattern
+ * matching shard files (e.g. exports/synapses-*.json.gz), and each file can be gzip compressed. Compression is
+ * recognized by the first bytes of a file, not its name.
+ */
+public final class JsonInputFiles {
+
+    private static final int GZIP_MAGIC = 0x8b1f;
+    private static final int ZSTD_MAGIC = 0xfd2fb528;
+    private static final int GZIP_BUFFER_BYTES = 1 << 16;
+
+    private JsonInputFiles() {
+    }
+
+    /**
+     * Returns the files of an input. The files of a directory are its regular files that are not hidden, the
+     * files of a glob pattern are the matching files other than checkpoint journals, and both are sorted by
+     * name, so shards named in the order they were produced are read in that order.
+     *
+     * @param pathOrPattern path to a file or directory, or a glob pattern in the file name part of a path
+     * @return files of the input
+     * @throws IOException if the input does not exist or no files match it
+     */
+    public static List<Path> resolve(final String pathOrPattern) throws IOException {
+        final Path path = Paths.get(pathOrPattern);
+        if (Files.isRegularFile(path)) {
+            return Collections.singletonList(path);
+        }
+
+        final List<Path> files = new ArrayList<>();
+        if (Files.isDirectory(path)) {
+            try (DirectoryStream<Path> entries = Files.newDirectoryStream(path)) {
+                for (final Path entry : entries) {
+                    if (Files.isRegularFile(entry) && !entry.getFileName().toString().startsWith(".")) {
+                        files.add(entry);
+                    }
+                }
+            }
+        } else if (path.getFileName() != null && isGlob(path.getFileName().toString())) {
+            final Path directory = path.getParent() == null ? Paths.get(".") : path.getParent();
+            final PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + path.getFileName());
+            if (Files.isDirectory(directory)) {
+                try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory)) {
+                    for (final Path entry : entries) {
+                        if (Files.isRegularFile(entry) && matcher.matches(entry.getFileName()) && !isCheckpointJournal(entry)) {
+                            files.add(entry);
+                        }
+                    }
+                }
+            }
+        } else {
+            throw new FileNotFoundException(pathOrPattern + " does not exist");
+        }
+
+        if (files.isEmpty()) {
+            throw new FileNotFoundException("no files found for " + pathOrPattern);
+        }
+        Collections.sort(files);
+        return files;
+    }
+
+    // the checkpoint journal of a pattern input is written next to the shards and may match the pattern
+    private static boolean isCheckpointJournal(final Path path) {
+        return path.getFileName().toString().endsWith(".checkpoint");
+    }
+
+    private static boolean isGlob(final String fileName) {
+        return fileName.indexOf('*') >= 0 || fileName.indexOf('?') >= 0 || fileName.indexOf('[') >= 0 || fileName.indexOf('{') >= 0;
+    }
+
+    /**
+     * @param path path to a file
+     * @return true if the file is gzip compressed
+     * @throws IOException if the file cannot be read
+     */
+    public static boolean isCompressed(final Path path) throws IOException {
+        return (readMagic(path) & 0xffff) == GZIP_MAGIC;
+    }
+
+    /**
+     * Opens a file, decompressing it if it is gzip compressed.
+     *
+     * @param path path to a file
+     * @return stream of the (decompressed) file content
+     * @throws IOException if the file cannot be read or is compressed in an unsupported format
+     */
+    public static InputStream open(final Path path) throws IOException {
+        return open(path, null);
+    }
+
+    /**
+     * Opens a file, decompressing it if it is gzip compressed, and reports the bytes read from the file
+     * (before decompression), e.g. to measure the progress of a load.
+     *
+     * @param path      path to a file
+     * @param bytesRead called with the number of file bytes read by each read (null if not needed)
+     * @return stream of the (decompressed) file content
+     * @throws IOException if the file cannot be read or is compressed in an unsupported format
+     */
+    public static InputStream open(final Path path,
+                                   final LongConsumer bytesRead) throws IOException {
+        final int magic = readMagic(path);
+        if (magic == ZSTD_MAGIC) {
+            throw new IOException(path + " is zstd compressed, which is not supported; decompress it (zstd -d) or compress it with gzip instead");
+        }
+        InputStream in = Files.newInputStream(path);
+        if (bytesRead != null) {
+            in = new CountingInputStream(in, bytesRead);
+        }
+        if ((magic & 0xffff) == GZIP_MAGIC) {
+            return new GZIPInputStream(in, GZIP_BUFFER_BYTES);
+        }
+        return in;
+    }
+
+    /**
+     * Reports the number of bytes read from a stream.
+     */
+    private static class CountingInputStream extends FilterInputStream {
+
+        private final LongConsumer bytesRead;
+
+        CountingInputStream(final InputStream in,
+                            final LongConsumer bytesRead) {
+            super(in);
+            this.bytesRead = bytesRead;
+        }
+
+        @Override
+        public int read() throws IOException {
+            final int b = super.read();
+            if (b >= 0) {
+                bytesRead.accept(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) throws IOException {
+            final int count = super.read(b, off, len);
+            if (count > 0) {
+                bytesRead.accept(count);
+            }
+            return count;
+        }
+
+        @Override
+        public long skip(final long n) throws IOException {
+            final long count = super.skip(n);
+            bytesRead.accept(count);
+            return count;
+        }
+    }
+
+    /**
+     * @return first four bytes of a file as a little-endian int (missing bytes are zero)
+     */
+    private static int readMagic(final Path path) throws IOException {
+        try (InputStream in = Files.newInputStream(path)) {
+            int magic = 0;
+            for (int i = 0; i < 4; i++) {
+                final int b = in.read();
+                if (b < 0) {
+                    break;
+                }
+                magic |= b << (8 * i);
+            }
+            return magic;
+        }
+    }
+
+}
@@ -10,8 +10,6 @@ import com.google.gson.JsonSerializer;
 import org.janelia.flyem.neuprint.model.Location;
 
 import java.lang.reflect.Type;
-import java.util.ArrayList;
-import java.util.List;
 
 /**
  * Gson adapter for 3D locations.
@@ -23,15 +21,29 @@ public class LocationAdapter implements JsonDeserializer<Location>, JsonSerializ
                                 final Type typeOfT,
                                 final JsonDeserializationContext jsonDeserializationContext) throws JsonParseException {
 
+        return Location.fromPackedLocation(parsePackedLocation(jsonElement));
+
+    }
+
+    /**
+     * Parses a location array without creating a {@link Location}.
+     *
+     * @param jsonElement JSON array of three integer coordinates
+     * @return location packed into a long (see {@link Location#getPackedLocation()})
+     * @throws JsonParseException if the element is not a valid location
+     */
+    public static long parsePackedLocation(final JsonElement jsonElement) throws JsonParseException {
+
         final JsonArray jsonLocationArray = jsonElement.getAsJsonArray();
 
         if (jsonLocationArray == null || jsonLocationArray.size() != 3) {
             throw new JsonParseException("Location must be three-dimensional.");
         }
 
-        List<Long> location = new ArrayList<>();
+        final long[] location = new long[3];
 
-        for (JsonElement element : jsonLocationArray) {
+        for (int i = 0; i < 3; i++) {
+            final JsonElement element = jsonLocationArray.get(i);
             double d;
             long l;
             try {
@@ -41,13 +53,17 @@ public class LocationAdapter implements JsonDeserializer<Location>, JsonSerializ
                 throw new JsonParseException("Location coordinates must be a number.");
             }
             if (d == l) {
-                location.add(l);
+                location[i] = l;
             } else {
                 throw new JsonParseException("Location coordinates must be integer values.");
             }
         }
 
-        return new Location(location.get(0), location.get(1), location.get(2));
+        try {
+            return Location.pack(location[0], location[1], location[2]);
+        } catch (IllegalArgumentException e) {
+            throw new JsonParseException("Location coordinates must be between " + Location.MIN_COORDINATE + " and " + Location.MAX_COORDINATE + ".");
+        }
 
     }
 
@@ -0,0 +1,400 @@
+package org.janelia.flyem.neuprint.json;
+
+import com.google.gson.JsonParseException;
+import org.janelia.flyem.neuprint.model.Location;
+import org.janelia.flyem.neuprint.model.LocationSet;
+import org.janelia.flyem.neuprint.model.Neuron;
+import org.janelia.flyem.neuprint.model.Soma;
+import org.janelia.flyem.neuprint.model.Synapse;
+import org.janelia.flyem.neuprint.model.SynapticConnection;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.function.LongConsumer;
+
+/**
+ * Streaming decoder for the synapse, connection and neuron JSON formats
+ * (see <a href="http://github.com/janelia-flyem/neuPrint/blob/master/jsonspecs.md" target="_blank">JSON formats</a>).
+ * Objects are decoded straight from the bytes of the file by a {@link JsonByteReader}, with the same validation
+ * and error messages as {@link SynapseAdapter}, {@link ConnectionsAdapter} and {@link NeuronAdapter}. Locations
+ * are decoded as packed longs, roi sets are shared between objects listing the same rois (see
+ * {@link SynapseAdapter#sharedRoiSet(List)}) and property names, rois, status and type values come from the
+ * reader's string pool. Not thread safe.
+ */
+public class NeuPrintJsonDecoder implements Closeable {
+
+    /**
+     * Decodes one element of a JSON array.
+     *
+     * @param <T> type of decoded element
+     */
+    @FunctionalInterface
+    public interface ElementDecoder<T> {
+        T decode(NeuPrintJsonDecoder decoder) throws IOException;
+    }
+
+    private static final String PRE = "pre";
+    private static final String POST = "post";
+
+    private final JsonByteReader reader;
+    private final List<String> roiList = new ArrayList<>();
+    private final long[] coordinates = new long[3];
+
+    /**
+     * Class constructor.
+     *
+     * @param inputStream stream of UTF-8 JSON
+     */
+    public NeuPrintJsonDecoder(final InputStream inputStream) {
+        this.reader = new JsonByteReader(inputStream);
+    }
+
+    /**
+     * Class constructor.
+     *
+     * @param byteBuffer UTF-8 JSON between the buffer's position and limit
+     */
+    public NeuPrintJsonDecoder(final ByteBuffer byteBuffer) {
+        this.reader = new JsonByteReader(byteBuffer);
+    }
+
+    /**
+     * @param filepath path to JSON file, which may be gzip compressed
+     * @return decoder reading the file
+     * @throws IOException if the file cannot be opened
+     */
+    public static NeuPrintJsonDecoder forFile(final String filepath) throws IOException {
+        return forFile(filepath, null);
+    }
+
+    /**
+     * @param filepath  path to JSON file, which may be gzip compressed
+     * @param bytesRead called with the number of file bytes read (see {@link JsonInputFiles#open(java.nio.file.Path, LongConsumer)})
+     * @return decoder reading the file
+     * @throws IOException if the file cannot be opened
+     */
+    public static NeuPrintJsonDecoder forFile(final String filepath,
+                                              final LongConsumer bytesRead) throws IOException {
+        return new NeuPrintJsonDecoder(JsonInputFiles.open(Paths.get(filepath), bytesRead));
+    }
+
+    /**
+     * @return the underlying reader, e.g. to skip array elements
+     */
+    public JsonByteReader getReader() {
+        return reader;
+    }
+
+    /**
+     * Decodes a whole JSON array.
+     *
+     * @param elementDecoder decodes each element
+     * @param <T>            type of decoded element
+     * @return list of decoded elements
+     * @throws IOException if the input cannot be read
+     */
+    public <T> List<T> readArray(final ElementDecoder<T> elementDecoder) throws IOException {
+        final List<T> list = new ArrayList<>();
+        reader.beginArray();
+        while (reader.hasNext()) {
+            list.add(elementDecoder.decode(this));
+        }
+        reader.endArray();
+        return list;
+    }
+
+    /**
+     * @return the next synapse object
+     * @throws IOException if the input cannot be read
+     */
+    public Synapse readSynapse() throws IOException {
+        String type = null;
+        double confidence = 0.0D; // default is 0.0
+        boolean hasLocation = false;
+        long packedLocation = 0;
+        Set<String> rois = null;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            final String name = reader.nextName();
+            if (reader.peekNull()) {
+                reader.nextNull();
+                continue;
+            }
+            switch (name) {
+                case "type":
+                    type = reader.nextPooledString();
+                    break;
+                case "confidence":
+                    try {
+                        confidence = reader.nextDouble();
+                    } catch (NumberFormatException nfe) {
+                        throw new JsonParseException("Synapse confidence must be a number.");
+                    }
+                    if (confidence < 0 || confidence > 1) {
+                        throw new JsonParseException("Synapse confidence must be between 0.0 and 1.0.");
+                    }
+                    break;
+                case "location":
+                    packedLocation = readPackedLocation();
+                    hasLocation = true;
+                    break;
+                case "rois":
+                    rois = readRois();
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
+
+        if (type == null) {
+            throw new JsonParseException("Synapse type property missing.");
+        }
+        if (!PRE.equals(type) && !POST.equals(type)) {
+            throw new JsonParseException("Synapse type must be 'pre' or 'post'.");
+        }
+        if (!hasLocation) {
+            throw new JsonParseException("Synapse location property missing.");
+        }
+
+        return new Synapse(PRE.equals(type) ? PRE : POST,
+                           confidence,
+                           packedLocation,
+                           rois == null ? SynapseAdapter.sharedRoiSet(new ArrayList<>()) : rois);
+    }
+
+    /**
+     * @return the next connection object
+     * @throws IOException if the input cannot be read
+     */
+    public SynapticConnection readConnection() throws IOException {
+        boolean hasPre = false;
+        boolean hasPost = false;
+        long packedPre = 0;
+        long packedPost = 0;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            final String name = reader.nextName();
+            switch (name) {
+                case "pre":
+                    packedPre = readPackedLocation();
+                    hasPre = true;
+                    break;
+                case "post":
+                    packedPost = readPackedLocation();
+                    hasPost = true;
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
+
+        if (!hasPre) {
+            throw new JsonParseException("Connection must have 'pre' property.");
+        }
+        if (!hasPost) {
+            throw new JsonParseException("Connection must have 'post' property.");
+        }
+
+        return new SynapticConnection(packedPre, packedPost);
+    }
+
+    /**
+     * @return the next neuron object
+     * @throws IOException if the input cannot be read
+     */
+    public Neuron readNeuron() throws IOException {
+        Long id = null;
+        String status = null;
+        String name = null;
+        String type = null;
+        String instance = null;
+        String primaryNeurite = null;
+        String majorInput = null;
+        String majorOutput = null;
+        String clonalUnit = null;
+        String neurotransmitter = null;
+        String property = null;
+        Long size = null;
+        Set<String> rois = null;
+        Soma soma = null;
+        LocationSet synapseLocationSet = null;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            final String key = reader.nextName();
+            if (reader.peekNull()) {
+                reader.nextNull();
+                continue;
+            }
+            switch (key) {
+                case "id":
+                    try {
+                        id = reader.nextLong();
+                    } catch (NumberFormatException nfe) {
+                        throw new JsonParseException("Neuron ID must be a number.");
+                    } catch (ArithmeticException ae) {
+                        throw new JsonParseException("Neuron ID must be integer value.");
+                    }
+                    break;
+                case "status":
+                    status = reader.nextPooledString();
+                    break;
+                case "name":
+                    name = reader.nextString();
+                    break;
+                case "type":
+                    type = reader.nextPooledString();
+                    break;
+                case "instance":
+                    instance = reader.nextString();
+                    break;
+                case "primaryNeurite":
+                    primaryNeurite = reader.nextPooledString();
+                    break;
+                case "majorInput":
+                    majorInput = reader.nextPooledString();
+                    break;
+                case "majorOutput":
+                    majorOutput = reader.nextPooledString();
+                    break;
+                case "clonalUnit":
+                    clonalUnit = reader.nextPooledString();
+                    break;
+                case "neurotransmitter":
+                    neurotransmitter = reader.nextPooledString();
+                    break;
+                case "property":
+                    property = reader.nextPooledString();
+                    break;
+                case "size":
+                    try {
+                        size = reader.nextLong();
+                    } catch (NumberFormatException | ArithmeticException e) {
+                        throw new JsonParseException("Neuron size must be integer value.");
+                    }
+                    break;
+                case "rois":
+                    rois = readRois();
+                    break;
+                case "soma":
+                    soma = readSoma();
+                    break;
+                case "synapseSet":
+                    synapseLocationSet = new LocationSet();
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        synapseLocationSet.addPacked(readPackedLocation());
+                    }
+                    reader.endArray();
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
+
+        if (id == null) {
+            throw new JsonParseException("Neuron must have 'id' property.");
+        }
+
+        return new Neuron(id, status, name, type, instance,
+                          primaryNeurite, majorInput, majorOutput, clonalUnit, neurotransmitter, property,
+                          size,
+                          rois == null ? SynapseAdapter.sharedRoiSet(new ArrayList<>()) : rois,
+                          soma,
+                          synapseLocationSet == null ? new LocationSet() : synapseLocationSet);
+    }
+
+    private Soma readSoma() throws IOException {
+        Location location = null;
+        boolean hasRadius = false;
+        double radius = 0;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            final String name = reader.nextName();
+            switch (name) {
+                case "location":
+                    location = Location.fromPackedLocation(readPackedLocation());
+                    break;
+                case "radius":
+                    try {
+                        radius = reader.nextDouble();
+                    } catch (NumberFormatException nfe) {
+                        throw new JsonParseException("Radius must be a number.");
+                    }
+                    hasRadius = true;
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
+
+        if (location == null && !hasRadius) {
+            return null;
+        } else if (location == null) {
+            throw new JsonParseException("Soma must have 'location' property.");
+        } else if (!hasRadius) {
+            throw new JsonParseException("Soma must have 'radius' property.");
+        }
+        return new Soma(location, radius);
+    }
+
+    private Set<String> readRois() throws IOException {
+        // order of rois matters for figuring out super-level rois
+        roiList.clear();
+        reader.beginArray();
+        while (reader.hasNext()) {
+            roiList.add(reader.nextPooledString());
+        }
+        reader.endArray();
+        return SynapseAdapter.sharedRoiSet(roiList);
+    }
+
+    private long readPackedLocation() throws IOException {
+        int count = 0;
+        reader.beginArray();
+        while (reader.hasNext()) {
+            if (count == 3) {
+                throw new JsonParseException("Location must be three-dimensional.");
+            }
+            try {
+                coordinates[count++] = reader.nextLong();
+            } catch (NumberFormatException nfe) {
+                throw new JsonParseException("Location coordinates must be a number.");
+            } catch (ArithmeticException ae) {
+                throw new JsonParseException("Location coordinates must be integer values.");
+            }
+        }
+        reader.endArray();
+        if (count != 3) {
+            throw new JsonParseException("Location must be three-dimensional.");
+        }
+        try {
+            return Location.pack(coordinates[0], coordinates[1], coordinates[2]);
+        } catch (IllegalArgumentException e) {
+            throw new JsonParseException("Location coordinates must be between " + Location.MIN_COORDINATE + " and " + Location.MAX_COORDINATE + ".");
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+}
@@ -9,11 +9,11 @@ import com.google.gson.JsonParseException;
 import com.google.gson.JsonSerializationContext;
 import com.google.gson.JsonSerializer;
 import org.janelia.flyem.neuprint.model.Location;
+import org.janelia.flyem.neuprint.model.LocationSet;
 import org.janelia.flyem.neuprint.model.Neuron;
 import org.janelia.flyem.neuprint.model.Soma;
 
 import java.lang.reflect.Type;
-import java.util.HashSet;
 import java.util.Set;
 
 /**
@@ -125,12 +125,15 @@ public class NeuronAdapter implements JsonDeserializer<Neuron>, JsonSerializer<N
             soma = jsonDeserializationContext.deserialize(jsonObject.get(SOMA_KEY), Soma.class);
         }
 
-        final Set<Location> synapseLocationSet = new HashSet<>();
+        final LocationSet synapseLocationSet;
         if (jsonObject.has(SYNAPSE_SET_KEY)) {
             final JsonArray jsonLocationArray = jsonObject.get(SYNAPSE_SET_KEY).getAsJsonArray();
+            synapseLocationSet = new LocationSet(jsonLocationArray.size());
             for (JsonElement element : jsonLocationArray) {
-                synapseLocationSet.add(jsonDeserializationContext.deserialize(element, Location.class));
+                synapseLocationSet.addPacked(LocationAdapter.parsePackedLocation(element));
             }
+        } else {
+            synapseLocationSet = new LocationSet();
         }
 
         return new Neuron(id, status, name, type, instance,
@@ -12,8 +12,13 @@ import org.janelia.flyem.neuprint.model.Location;
 import org.janelia.flyem.neuprint.model.Synapse;
 
 import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Gson adapter for json files describing synapses.
@@ -24,6 +29,10 @@ public class SynapseAdapter implements JsonDeserializer<Synapse>, JsonSerializer
     private static final String CONFIDENCE_KEY = "confidence";
     private static final String LOCATION_KEY = "location";
     private static final String ROIS_KEY = "rois";
+    private static final String PRE = "pre";
+    private static final String POST = "post";
+
+    private static final Map<List<String>, Set<String>> SHARED_ROI_SETS = new ConcurrentHashMap<>();
 
     @Override
     public Synapse deserialize(final JsonElement jsonElement,
@@ -35,8 +44,13 @@ public class SynapseAdapter implements JsonDeserializer<Synapse>, JsonSerializer
         if (!jsonObject.has(TYPE_KEY)) {
             throw new JsonParseException("Synapse type property missing.");
         }
-        final String type = jsonObject.get(TYPE_KEY).getAsString();
-        if (type == null || !(type.equals("pre") || type.equals("post"))) {
+        final String jsonType = jsonObject.get(TYPE_KEY).getAsString();
+        final String type;
+        if (PRE.equals(jsonType)) {
+            type = PRE;
+        } else if (POST.equals(jsonType)) {
+            type = POST;
+        } else {
             throw new JsonParseException("Synapse type must be 'pre' or 'post'.");
         }
 
@@ -53,7 +67,7 @@ public class SynapseAdapter implements JsonDeserializer<Synapse>, JsonSerializer
         if (!jsonObject.has(LOCATION_KEY)) {
             throw new JsonParseException("Synapse location property missing.");
         }
-        final Location location = jsonDeserializationContext.deserialize(jsonObject.get(LOCATION_KEY), Location.class);
+        final Location location = Location.fromPackedLocation(LocationAdapter.parsePackedLocation(jsonObject.get(LOCATION_KEY)));
 
         final Set<String> rois = parseRoiJsonArray(jsonObject, ROIS_KEY);
 
@@ -84,16 +98,36 @@ public class SynapseAdapter implements JsonDeserializer<Synapse>, JsonSerializer
 
     }
 
+    /**
+     * Returns the rois listed in a JSON object. Objects listing the same rois in the same order share one
+     * unmodifiable set, so that millions of synapses do not each hold a set of roi name strings.
+     *
+     * @param jsonObject JSON object
+     * @param roisKey    key of roi array
+     * @return unmodifiable set of rois in the order they are listed
+     */
     public static Set<String> parseRoiJsonArray(JsonObject jsonObject, String roisKey) {
-        final Set<String> rois = new LinkedHashSet<>();
+        final List<String> roiList = new ArrayList<>();
         if (jsonObject.has(roisKey)) {
             final JsonArray jsonRoiArray = jsonObject.get(roisKey).getAsJsonArray();
             // order of rois matters for figuring out super-level rois
             for (JsonElement element : jsonRoiArray) {
-                rois.add(element.getAsString());
+                roiList.add(element.getAsString());
             }
         }
-        return rois;
+        return sharedRoiSet(roiList);
+    }
+
+    /**
+     * @param roiList rois in the order they are listed (not retained, so callers can reuse the list)
+     * @return unmodifiable set of the rois, shared with every other caller listing the same rois in the same order
+     */
+    public static Set<String> sharedRoiSet(List<String> roiList) {
+        final Set<String> roiSet = SHARED_ROI_SETS.get(roiList);
+        if (roiSet != null) {
+            return roiSet;
+        }
+        return SHARED_ROI_SETS.computeIfAbsent(new ArrayList<>(roiList), k -> Collections.unmodifiableSet(new LinkedHashSet<>(k)));
     }
 
 }
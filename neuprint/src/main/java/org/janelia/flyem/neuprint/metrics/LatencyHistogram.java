@@ -0,0 +1,78 @@
+package org.janelia.flyem.neuprint.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts latencies in buckets with fixed upper bounds from 1 ms to 1 minute, roughly doubling from one bucket to
+ * the next, plus one bucket for longer latencies. Thread safe.
+ */
+public class LatencyHistogram {
+
+    private static final long[] BUCKET_UPPER_MILLIS = {1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000, 5000, 10000, 30000, 60000};
+
+    /**
+     * Upper bound of the last bucket with a bound.
+     */
+    public static final long MAX_BUCKET_MILLIS = BUCKET_UPPER_MILLIS[BUCKET_UPPER_MILLIS.length - 1];
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_UPPER_MILLIS.length + 1);
+
+    /**
+     * @param nanos latency in nanoseconds
+     */
+    public void record(final long nanos) {
+        final long millis = TimeUnit.NANOSECONDS.toMillis(nanos);
+        int bucket = 0;
+        while (bucket < BUCKET_UPPER_MILLIS.length && millis >= BUCKET_UPPER_MILLIS[bucket]) {
+            bucket++;
+        }
+        counts.incrementAndGet(bucket);
+    }
+
+    /**
+     * @return number of recorded latencies
+     */
+    public long getCount() {
+        long count = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            count += counts.get(i);
+        }
+        return count;
+    }
+
+    /**
+     * @param fraction fraction of latencies, between 0 and 1
+     * @return upper bound in milliseconds of the bucket containing that fraction of the recorded latencies
+     * (-1 if nothing was recorded, {@link Long#MAX_VALUE} if it is in the last bucket)
+     */
+    public long getUpperBoundMillis(final double fraction) {
+        final long count = getCount();
+        if (count == 0) {
+            return -1;
+        }
+        long seen = 0;
+        for (int i = 0; i < BUCKET_UPPER_MILLIS.length; i++) {
+            seen += counts.get(i);
+            if (seen >= Math.ceil(fraction * count)) {
+                return BUCKET_UPPER_MILLIS[i];
+            }
+        }
+        return Long.MAX_VALUE;
+    }
+
+    /**
+     * @return count of each bucket, labelled with its upper bound (e.g. "&lt; 50 ms")
+     */
+    public Map<String, Long> getBucketCounts() {
+        final Map<String, Long> bucketCounts = new LinkedHashMap<>();
+        for (int i = 0; i < BUCKET_UPPER_MILLIS.length; i++) {
+            bucketCounts.put("< " + BUCKET_UPPER_MILLIS[i] + " ms", counts.get(i));
+        }
+        bucketCounts.put(">= " + MAX_BUCKET_MILLIS + " ms", counts.get(BUCKET_UPPER_MILLIS.length));
+        return bucketCounts;
+    }
+
+}
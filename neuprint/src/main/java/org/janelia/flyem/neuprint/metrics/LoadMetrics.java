@@ -0,0 +1,387 @@
+package org.janelia.flyem.neuprint.metrics;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Throughput of a load while it runs: statements and transactions committed, commit latencies and retries
+ * (recorded by the {@link org.janelia.flyem.neuprint.db.TransactionBatch} implementations), and for each
+ * load phase the rows written, the time its reader and writers spent waiting for each other (recorded by
+ * {@link org.janelia.flyem.neuprint.PipelinedBatchLoader}) and the input bytes read, from which the time
+ * remaining is estimated. Metrics are read over JMX (see {@link #registerMBean()}) or from
+ * {@link LoadStatusServer}. Thread safe.
+ */
+public class LoadMetrics implements LoadMetricsMXBean {
+
+    /**
+     * JMX name of the metrics.
+     */
+    public static final String OBJECT_NAME = "org.janelia.flyem.neuprint:type=LoadMetrics";
+
+    private static final LoadMetrics INSTANCE = new LoadMetrics();
+
+    /**
+     * Metrics of one load phase.
+     */
+    public static class PhaseMetrics {
+
+        private final String name;
+        private final LongAdder rows = new LongAdder();
+        private final LongAdder bytesRead = new LongAdder();
+        private final LongAdder readerBlockedNanos = new LongAdder();
+        private final LongAdder writerBlockedNanos = new LongAdder();
+        private volatile long inputBytes;
+        private volatile long startNanos;
+        private volatile long finishNanos;
+        private volatile boolean started;
+        private volatile boolean finished;
+
+        private PhaseMetrics(final String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Starts the phase clock, unless the phase has already started.
+         */
+        public synchronized void start() {
+            if (!started) {
+                startNanos = System.nanoTime();
+                started = true;
+            }
+        }
+
+        /**
+         * Stops the phase clock.
+         */
+        public void finish() {
+            finishNanos = System.nanoTime();
+            finished = true;
+        }
+
+        /**
+         * @param inputBytes size of the phase's input in bytes (as stored, i.e. compressed)
+         */
+        public void setInputBytes(final long inputBytes) {
+            this.inputBytes = inputBytes;
+        }
+
+        /**
+         * @param bytes number of input bytes read
+         */
+        public void addBytesRead(final long bytes) {
+            bytesRead.add(bytes);
+        }
+
+        /**
+         * @param count number of rows written
+         */
+        public void addRows(final long count) {
+            rows.add(count);
+        }
+
+        /**
+         * @param nanos time the reader waited for writers
+         */
+        public void addReaderBlockedNanos(final long nanos) {
+            readerBlockedNanos.add(nanos);
+        }
+
+        /**
+         * @param nanos time a writer waited for the reader
+         */
+        public void addWriterBlockedNanos(final long nanos) {
+            writerBlockedNanos.add(nanos);
+        }
+
+        public long getRows() {
+            return rows.sum();
+        }
+
+        public long getBytesRead() {
+            return bytesRead.sum();
+        }
+
+        public long getInputBytes() {
+            return inputBytes;
+        }
+
+        public long getReaderBlockedMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(readerBlockedNanos.sum());
+        }
+
+        public long getWriterBlockedMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(writerBlockedNanos.sum());
+        }
+
+        public boolean isFinished() {
+            return finished;
+        }
+
+        /**
+         * @return nanoseconds since the phase started, or that it took if it has finished
+         */
+        public long getElapsedNanos() {
+            if (!started) {
+                return 0;
+            }
+            return (finished ? finishNanos : System.nanoTime()) - startNanos;
+        }
+
+        /**
+         * @return rows written per second while the phase ran
+         */
+        public double getRowsPerSecond() {
+            return perSecond(getRows(), getElapsedNanos());
+        }
+
+        /**
+         * Estimates the time remaining from the rate at which the input has been read so far.
+         *
+         * @return estimated seconds until the whole input has been read, 0 if the phase has finished,
+         * or -1 if the input size is unknown or nothing has been read yet
+         */
+        public long getEtaSeconds() {
+            if (finished) {
+                return 0;
+            }
+            final long read = getBytesRead();
+            if (inputBytes <= 0 || read <= 0) {
+                return -1;
+            }
+            final double remainingNanos = (double) getElapsedNanos() * Math.max(0, inputBytes - read) / read;
+            return TimeUnit.NANOSECONDS.toSeconds((long) remainingNanos);
+        }
+    }
+
+    private final long createdNanos = System.nanoTime();
+    private final LongAdder statements = new LongAdder();
+    private final LongAdder transactions = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+    private final LatencyHistogram commitLatency = new LatencyHistogram();
+    private final Map<String, PhaseMetrics> phases = new LinkedHashMap<>();
+
+    /**
+     * Class constructor for metrics separate from the shared instance, e.g. in tests.
+     */
+    public LoadMetrics() {
+    }
+
+    /**
+     * @return metrics shared by the whole load
+     */
+    public static LoadMetrics getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Registers the shared metrics with the platform MBean server, unless they are registered already.
+     */
+    public static void registerMBean() {
+        try {
+            final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            final ObjectName name = new ObjectName(OBJECT_NAME);
+            if (!server.isRegistered(name)) {
+                server.registerMBean(INSTANCE, name);
+            }
+        } catch (final JMException e) {
+            LOG.warn("registerMBean: cannot register load metrics: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Records a committed transaction.
+     *
+     * @param statementCount number of statements in the transaction
+     * @param nanos          time the commit took, including retries
+     */
+    public void recordCommit(final int statementCount, final long nanos) {
+        statements.add(statementCount);
+        transactions.increment();
+        commitLatency.record(nanos);
+    }
+
+    /**
+     * @param count number of times a transaction was attempted again after a transient error
+     */
+    public void recordRetries(final int count) {
+        retries.add(count);
+    }
+
+    /**
+     * @param name name of load phase
+     * @return metrics of the phase, created if the phase has none yet
+     */
+    public synchronized PhaseMetrics getPhase(final String name) {
+        return phases.computeIfAbsent(name, PhaseMetrics::new);
+    }
+
+    /**
+     * @return metrics of each phase, in the order the phases were first seen
+     */
+    public synchronized List<PhaseMetrics> getPhases() {
+        return new ArrayList<>(phases.values());
+    }
+
+    private <V> Map<String, V> byPhase(final Function<PhaseMetrics, V> metric) {
+        final Map<String, V> values = new LinkedHashMap<>();
+        for (final PhaseMetrics phase : getPhases()) {
+            values.put(phase.name, metric.apply(phase));
+        }
+        return values;
+    }
+
+    private static double perSecond(final long count, final long nanos) {
+        return nanos <= 0 ? 0 : count * 1e9 / nanos;
+    }
+
+    @Override
+    public long getStatementCount() {
+        return statements.sum();
+    }
+
+    @Override
+    public double getStatementsPerSecond() {
+        return perSecond(getStatementCount(), System.nanoTime() - createdNanos);
+    }
+
+    @Override
+    public long getTransactionCount() {
+        return transactions.sum();
+    }
+
+    @Override
+    public long getRetryCount() {
+        return retries.sum();
+    }
+
+    @Override
+    public Map<String, Long> getCommitLatencyHistogram() {
+        return commitLatency.getBucketCounts();
+    }
+
+    @Override
+    public long getCommitLatencyMedianMillis() {
+        return commitLatency.getUpperBoundMillis(0.5);
+    }
+
+    @Override
+    public long getCommitLatency99thPercentileMillis() {
+        return commitLatency.getUpperBoundMillis(0.99);
+    }
+
+    @Override
+    public Map<String, Long> getRowsByPhase() {
+        return byPhase(PhaseMetrics::getRows);
+    }
+
+    @Override
+    public Map<String, Double> getRowsPerSecondByPhase() {
+        return byPhase(PhaseMetrics::getRowsPerSecond);
+    }
+
+    @Override
+    public Map<String, Long> getEtaSecondsByPhase() {
+        return byPhase(PhaseMetrics::getEtaSeconds);
+    }
+
+    @Override
+    public Map<String, Long> getReaderBlockedMillisByPhase() {
+        return byPhase(PhaseMetrics::getReaderBlockedMillis);
+    }
+
+    @Override
+    public Map<String, Long> getWriterBlockedMillisByPhase() {
+        return byPhase(PhaseMetrics::getWriterBlockedMillis);
+    }
+
+    @Override
+    public long getHeapUsedBytes() {
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    @Override
+    public long getHeapMaxBytes() {
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getMax();
+    }
+
+    /**
+     * @return all metrics, e.g. to be serialized as JSON
+     */
+    public Map<String, Object> getStatus() {
+        final Map<String, Object> status = new LinkedHashMap<>();
+        status.put("statements", getStatementCount());
+        status.put("statementsPerSecond", getStatementsPerSecond());
+        status.put("transactions", getTransactionCount());
+        status.put("retries", getRetryCount());
+        status.put("commitLatencyMedianMillis", getCommitLatencyMedianMillis());
+        status.put("commitLatency99thPercentileMillis", getCommitLatency99thPercentileMillis());
+        status.put("commitLatencyHistogram", getCommitLatencyHistogram());
+        status.put("heapUsedBytes", getHeapUsedBytes());
+        status.put("heapMaxBytes", getHeapMaxBytes());
+        final List<Map<String, Object>> phaseStatus = new ArrayList<>();
+        for (final PhaseMetrics phase : getPhases()) {
+            final Map<String, Object> values = new LinkedHashMap<>();
+            values.put("name", phase.name);
+            values.put("finished", phase.isFinished());
+            values.put("elapsedSeconds", TimeUnit.NANOSECONDS.toSeconds(phase.getElapsedNanos()));
+            values.put("rows", phase.getRows());
+            values.put("rowsPerSecond", phase.getRowsPerSecond());
+            values.put("inputBytes", phase.getInputBytes());
+            values.put("bytesRead", phase.getBytesRead());
+            values.put("etaSeconds", phase.getEtaSeconds());
+            values.put("readerBlockedMillis", phase.getReaderBlockedMillis());
+            values.put("writerBlockedMillis", phase.getWriterBlockedMillis());
+            phaseStatus.add(values);
+        }
+        status.put("phases", phaseStatus);
+        return status;
+    }
+
+    @Override
+    public String getStatusReport() {
+        final StringBuilder report = new StringBuilder("Load metrics:");
+        report.append(String.format("%n  %d statements in %d transactions (%.1f statements/s), %d retries",
+                getStatementCount(), getTransactionCount(), getStatementsPerSecond(), getRetryCount()));
+        report.append(String.format("%n  commit latency: median %s, 99th percentile %s",
+                formatMillis(getCommitLatencyMedianMillis()), formatMillis(getCommitLatency99thPercentileMillis())));
+        final MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+        report.append(String.format("%n  heap: %d MB used of %d MB", heap.getUsed() >> 20, heap.getMax() >> 20));
+        for (final PhaseMetrics phase : getPhases()) {
+            report.append(String.format("%n  %-32s %10d rows %10.1f rows/s, reader waited %d ms, writers waited %d ms",
+                    phase.name, phase.getRows(), phase.getRowsPerSecond(), phase.getReaderBlockedMillis(), phase.getWriterBlockedMillis()));
+            if (phase.isFinished()) {
+                report.append(", finished");
+            } else if (phase.getEtaSeconds() >= 0) {
+                report.append(String.format(", %d of %d bytes read, about %d s remaining", phase.getBytesRead(), phase.getInputBytes(), phase.getEtaSeconds()));
+            }
+        }
+        return report.toString();
+    }
+
+    private static String formatMillis(final long millis) {
+        if (millis < 0) {
+            return "n/a";
+        }
+        return millis == Long.MAX_VALUE ? ">= " + LatencyHistogram.MAX_BUCKET_MILLIS + " ms" : "< " + millis + " ms";
+    }
+
+    private static final Logger LOG = LoggerFactory.getLogger(LoadMetrics.class);
+
+}
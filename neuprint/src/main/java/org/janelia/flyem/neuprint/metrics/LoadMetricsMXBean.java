@@ -0,0 +1,86 @@
+package org.janelia.flyem.neuprint.metrics;
+
+import java.util.Map;
+
+/**
+ * Load throughput exposed over JMX (e.g. in jconsole or VisualVM) as
+ * {@value LoadMetrics#OBJECT_NAME}. Maps are keyed by load phase name.
+ */
+public interface LoadMetricsMXBean {
+
+    /**
+     * @return number of statements committed
+     */
+    long getStatementCount();
+
+    /**
+     * @return statements committed per second since the load started
+     */
+    double getStatementsPerSecond();
+
+    /**
+     * @return number of transactions committed
+     */
+    long getTransactionCount();
+
+    /**
+     * @return number of transactions attempted again after a transient error
+     */
+    long getRetryCount();
+
+    /**
+     * @return number of commits in each latency bucket
+     */
+    Map<String, Long> getCommitLatencyHistogram();
+
+    /**
+     * @return upper bound in milliseconds of the latency bucket holding the median commit
+     */
+    long getCommitLatencyMedianMillis();
+
+    /**
+     * @return upper bound in milliseconds of the latency bucket holding the 99th percentile commit
+     */
+    long getCommitLatency99thPercentileMillis();
+
+    /**
+     * @return rows (synapses, connections, neurons, ...) written by each phase
+     */
+    Map<String, Long> getRowsByPhase();
+
+    /**
+     * @return rows written per second by each phase
+     */
+    Map<String, Double> getRowsPerSecondByPhase();
+
+    /**
+     * @return estimated seconds until each phase has read all its input (-1 if unknown)
+     */
+    Map<String, Long> getEtaSecondsByPhase();
+
+    /**
+     * @return milliseconds the input reader of each phase waited for writers
+     */
+    Map<String, Long> getReaderBlockedMillisByPhase();
+
+    /**
+     * @return milliseconds the writers of each phase waited for the input reader
+     */
+    Map<String, Long> getWriterBlockedMillisByPhase();
+
+    /**
+     * @return bytes of heap in use
+     */
+    long getHeapUsedBytes();
+
+    /**
+     * @return maximum bytes of heap
+     */
+    long getHeapMaxBytes();
+
+    /**
+     * @return all metrics as text
+     */
+    String getStatusReport();
+
+}
@@ -0,0 +1,86 @@
+package org.janelia.flyem.neuprint.metrics;
+
+import org.janelia.flyem.neuprint.db.StatementProfile;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Profile of a dry run of a load: the {@link StatementProfile} of each load phase, reported together with the
+ * parse throughput of the phase recorded in {@link LoadMetrics}. As nothing is written in a dry run, the rows
+ * and input bytes per second of a batched phase are the rate at which its input can be read and turned into
+ * statements. Thread safe.
+ */
+public class LoadProfile {
+
+    private final int sampleInterval;
+    private final int queryCacheSize;
+    private final Map<String, StatementProfile> phases = new LinkedHashMap<>();
+
+    /**
+     * Class constructor.
+     *
+     * @param sampleInterval parameter sizes of one in this many statements are estimated
+     * @param queryCacheSize number of plans held by the server query cache (dbms.query_cache_size)
+     */
+    public LoadProfile(final int sampleInterval,
+                       final int queryCacheSize) {
+        this.sampleInterval = sampleInterval;
+        this.queryCacheSize = queryCacheSize;
+    }
+
+    /**
+     * @param name name of load phase
+     * @return statement profile of the phase, created if the phase has none yet
+     */
+    public synchronized StatementProfile getPhase(final String name) {
+        return phases.computeIfAbsent(name, phaseName -> new StatementProfile(phaseName, sampleInterval, queryCacheSize));
+    }
+
+    /**
+     * @return statement profile of each phase, in the order the phases were first seen
+     */
+    public synchronized List<StatementProfile> getPhases() {
+        return new ArrayList<>(phases.values());
+    }
+
+    /**
+     * @param metrics metrics of the load, for the parse throughput of each phase
+     * @return statement counts, payload and parse throughput of each phase
+     */
+    public String getReport(final LoadMetrics metrics) {
+        final StringBuilder report = new StringBuilder("Dry run profile:");
+        long statementCount = 0;
+        long transactionCount = 0;
+        long parameterBytes = 0;
+        for (final StatementProfile phase : getPhases()) {
+            report.append(String.format("%n  %-32s %10d statements, %6d distinct queries (%.1f%% plan cache hits), %8d transactions, %8.1f MB of parameters, %8.1f MB of query text",
+                    phase.getName(),
+                    phase.getStatementCount(),
+                    phase.getDistinctQueryCount(),
+                    100 * phase.getQueryPlanCacheStats().getHitRate(),
+                    phase.getTransactionCount(),
+                    phase.getEstimatedParameterBytes() / 1e6,
+                    phase.getQueryTextBytes() / 1e6));
+            statementCount += phase.getStatementCount();
+            transactionCount += phase.getTransactionCount();
+            parameterBytes += phase.getEstimatedParameterBytes();
+        }
+        for (final LoadMetrics.PhaseMetrics phase : metrics.getPhases()) {
+            final double seconds = phase.getElapsedNanos() / (double) TimeUnit.SECONDS.toNanos(1);
+            report.append(String.format("%n  %-32s %10d rows read in %.1f s (%.1f rows/s, %.1f MB/s of input)",
+                    phase.getName(),
+                    phase.getRows(),
+                    seconds,
+                    phase.getRowsPerSecond(),
+                    seconds > 0 ? phase.getBytesRead() / 1e6 / seconds : 0));
+        }
+        report.append(String.format("%n  total %d statements in %d transactions, %.1f MB of parameters",
+                statementCount, transactionCount, parameterBytes / 1e6));
+        return report.toString();
+    }
+
+}
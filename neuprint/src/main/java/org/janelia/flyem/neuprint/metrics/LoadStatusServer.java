@@ -0,0 +1,84 @@
+package org.janelia.flyem.neuprint.metrics;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.janelia.flyem.neuprint.json.JsonUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Serves the {@link LoadMetrics} of a running load on the loopback interface: http://localhost:port/ returns
+ * the status report as text and http://localhost:port/status.json returns the metrics as JSON.
+ */
+public class LoadStatusServer implements Closeable {
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    private LoadStatusServer(final HttpServer server,
+                             final ExecutorService executor) {
+        this.server = server;
+        this.executor = executor;
+    }
+
+    /**
+     * Starts serving metrics.
+     *
+     * @param port    port to listen on (0 for any free port)
+     * @param metrics metrics to serve
+     * @return running server
+     * @throws IOException if the port cannot be bound
+     */
+    public static LoadStatusServer start(final int port,
+                                         final LoadMetrics metrics) throws IOException {
+        final HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext("/status.json", exchange -> respond(exchange, "application/json", JsonUtils.GSON.toJson(metrics.getStatus())));
+        server.createContext("/", exchange -> respond(exchange, "text/plain", metrics.getStatusReport()));
+        // one daemon thread, so that a slow client cannot keep the load from exiting
+        final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "load-status-server");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(executor);
+        server.start();
+        LOG.info("Serving load status at http://localhost:{}/", server.getAddress().getPort());
+        return new LoadStatusServer(server, executor);
+    }
+
+    private static void respond(final HttpExchange exchange,
+                                final String contentType,
+                                final String body) throws IOException {
+        final byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType + "; charset=utf-8");
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * @return port the server listens on
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private static final Logger LOG = LoggerFactory.getLogger(LoadStatusServer.class);
+
+}
@@ -4,10 +4,30 @@ import org.neo4j.driver.v1.Values;
 import org.neo4j.driver.v1.types.Point;
 
 /**
- * A class representing a 3D location.
+ * A class representing a 3D location. The coordinates are packed into a single long with
+ * {@value #COORDINATE_BITS} bits per coordinate (see {@link #getPackedLocation()}), so each
+ * coordinate must be between {@value #MIN_COORDINATE} and {@value #MAX_COORDINATE}.
  */
 public class Location {
-    private Long[] location;
+
+    /**
+     * Number of bits used for each coordinate of a packed location.
+     */
+    public static final int COORDINATE_BITS = 21;
+
+    /**
+     * Smallest coordinate of a location.
+     */
+    public static final long MIN_COORDINATE = -(1L << (COORDINATE_BITS - 1));
+
+    /**
+     * Largest coordinate of a location.
+     */
+    public static final long MAX_COORDINATE = (1L << (COORDINATE_BITS - 1)) - 1;
+
+    private static final long COORDINATE_MASK = (1L << COORDINATE_BITS) - 1;
+
+    private final long packedLocation;
 
     /**
      * Class constructor
@@ -15,49 +35,140 @@ public class Location {
      * @param x x coordinate
      * @param y y coordinate
      * @param z z coordinate
+     * @throws IllegalArgumentException if a coordinate is outside of the supported range
      */
-    public Location(Long x, Long y, Long z) {
-        this.location = new Long[3];
-        this.location[0] = x;
-        this.location[1] = y;
-        this.location[2] = z;
+    public Location(long x, long y, long z) {
+        this.packedLocation = pack(x, y, z);
     }
 
     /**
      * Class constructor
      *
      * @param locationArray location as an array of longs
+     * @throws IllegalArgumentException if a coordinate is outside of the supported range
      */
     public Location(Long[] locationArray) {
-        this.location = locationArray;
+        this(locationArray[0], locationArray[1], locationArray[2]);
+    }
+
+    private Location(long packedLocation) {
+        this.packedLocation = packedLocation;
+    }
+
+    /**
+     * @param packedLocation location packed by {@link #pack(long, long, long)}
+     * @return the location
+     */
+    public static Location fromPackedLocation(long packedLocation) {
+        return new Location(packedLocation);
+    }
+
+    /**
+     * Packs coordinates into a long with {@value #COORDINATE_BITS} bits per coordinate. The highest bit of a
+     * packed location is always 0.
+     *
+     * @param x x coordinate
+     * @param y y coordinate
+     * @param z z coordinate
+     * @return packed location
+     * @throws IllegalArgumentException if a coordinate is outside of the supported range
+     */
+    public static long pack(long x, long y, long z) {
+        return (packCoordinate(x) << (2 * COORDINATE_BITS)) | (packCoordinate(y) << COORDINATE_BITS) | packCoordinate(z);
+    }
+
+    private static long packCoordinate(long coordinate) {
+        if (coordinate < MIN_COORDINATE || coordinate > MAX_COORDINATE) {
+            throw new IllegalArgumentException("coordinate " + coordinate + " is outside of the supported range [" + MIN_COORDINATE + ", " + MAX_COORDINATE + "]");
+        }
+        return coordinate & COORDINATE_MASK;
+    }
+
+    /**
+     * @param packedLocation packed location
+     * @return x coordinate of packed location
+     */
+    public static long unpackX(long packedLocation) {
+        return (packedLocation << (64 - 3 * COORDINATE_BITS)) >> (64 - COORDINATE_BITS);
+    }
+
+    /**
+     * @param packedLocation packed location
+     * @return y coordinate of packed location
+     */
+    public static long unpackY(long packedLocation) {
+        return (packedLocation << (64 - 2 * COORDINATE_BITS)) >> (64 - COORDINATE_BITS);
+    }
+
+    /**
+     * @param packedLocation packed location
+     * @return z coordinate of packed location
+     */
+    public static long unpackZ(long packedLocation) {
+        return (packedLocation << (64 - COORDINATE_BITS)) >> (64 - COORDINATE_BITS);
+    }
+
+    /**
+     * Returns the Morton (Z-order) code of a packed location: the bits of its x, y and z coordinates interleaved,
+     * with each coordinate offset by {@value #COORDINATE_BITS} - 1 bits so that codes order negative coordinates
+     * before positive ones. Locations close in space usually have close codes.
+     *
+     * @param packedLocation packed location
+     * @return non-negative Morton code
+     */
+    public static long mortonCode(long packedLocation) {
+        final long offset = 1L << (COORDINATE_BITS - 1);
+        return (spreadBits(unpackX(packedLocation) + offset) << 2) |
+                (spreadBits(unpackY(packedLocation) + offset) << 1) |
+                spreadBits(unpackZ(packedLocation) + offset);
+    }
+
+    /**
+     * Moves bit i of a {@value #COORDINATE_BITS}-bit value to bit 3 * i.
+     */
+    private static long spreadBits(long value) {
+        long bits = value & COORDINATE_MASK;
+        bits = (bits | (bits << 32)) & 0x1f00000000ffffL;
+        bits = (bits | (bits << 16)) & 0x1f0000ff0000ffL;
+        bits = (bits | (bits << 8)) & 0x100f00f00f00f00fL;
+        bits = (bits | (bits << 4)) & 0x10c30c30c30c30c3L;
+        bits = (bits | (bits << 2)) & 0x1249249249249249L;
+        return bits;
     }
 
     /**
      * @return x coordinate of location
      */
-    public Long getX() {
-        return location[0];
+    public long getX() {
+        return unpackX(packedLocation);
     }
 
     /**
      * @return y coordinate of location
      */
-    public Long getY() {
-        return location[1];
+    public long getY() {
+        return unpackY(packedLocation);
     }
 
     /**
      * @return z coordinate of location
      */
-    public Long getZ() {
-        return location[2];
+    public long getZ() {
+        return unpackZ(packedLocation);
+    }
+
+    /**
+     * @return location packed into a long, e.g. for use as a key in primitive collections
+     */
+    public long getPackedLocation() {
+        return packedLocation;
     }
 
     /**
-     * @return location as array of longs
+     * @return location as a new array of longs
      */
     public Long[] getLocation() {
-        return location;
+        return new Long[]{getX(), getY(), getZ()};
     }
 
     /**
@@ -65,7 +176,7 @@ public class Location {
      * @return location as neo4j driver Point type for importing data
      */
     public Point getAsPoint() {
-        return Values.point(9157, location[0], location[1], location[2]).asPoint();
+        return Values.point(9157, getX(), getY(), getZ()).asPoint();
     }
 
     @Override
@@ -80,17 +191,13 @@ public class Location {
             isEqual = true;
         } else if (o instanceof Location) {
             final Location that = (Location) o;
-            isEqual = this.location[0].equals(that.location[0]) && this.location[1].equals(that.location[1]) && this.location[2].equals(that.location[2]);
+            isEqual = this.packedLocation == that.packedLocation;
         }
         return isEqual;
     }
 
     @Override
     public int hashCode() {
-        int result = 17;
-        result = 31 * result + this.location[0].hashCode();
-        result = 31 * result + this.location[1].hashCode();
-        result = 31 * result + this.location[2].hashCode();
-        return result;
+        return Long.hashCode(packedLocation);
     }
 }
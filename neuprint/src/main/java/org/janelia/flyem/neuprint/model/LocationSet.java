@@ -0,0 +1,234 @@
+package org.janelia.flyem.neuprint.model;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+/**
+ * A set of locations stored as packed longs (see {@link Location#getPackedLocation()}) in an open-addressing
+ * hash table with linear probing. Each location takes 12 to 24 bytes of table instead of the entry, boxed
+ * location and coordinate array of a HashSet. Iterating over the set creates a new {@link Location} for each
+ * element; {@link #packedIterator()} avoids this. Not thread safe.
+ */
+public class LocationSet extends AbstractSet<Location> {
+
+    // the highest bit of a packed location is always 0
+    private static final long EMPTY = Long.MIN_VALUE;
+    private static final int MIN_CAPACITY = 4;
+
+    private long[] table;
+    private int size;
+    private int modCount;
+
+    /**
+     * Class constructor.
+     */
+    public LocationSet() {
+        this(0);
+    }
+
+    /**
+     * Class constructor.
+     *
+     * @param expectedSize number of locations the set will hold without resizing
+     */
+    public LocationSet(final int expectedSize) {
+        this.table = newTable(capacityFor(expectedSize));
+    }
+
+    /**
+     * Class constructor.
+     *
+     * @param locations locations to add to the set
+     */
+    public LocationSet(final Collection<Location> locations) {
+        this(locations.size());
+        addAll(locations);
+    }
+
+    private static int capacityFor(final int expectedSize) {
+        // keep the table at most two thirds full
+        int capacity = MIN_CAPACITY;
+        while (capacity < expectedSize + expectedSize / 2 + 1) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    private static long[] newTable(final int capacity) {
+        final long[] newTable = new long[capacity];
+        Arrays.fill(newTable, EMPTY);
+        return newTable;
+    }
+
+    private static int slot(final long packedLocation, final int mask) {
+        final long h = packedLocation * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+
+    /**
+     * @param packedLocation packed location to add
+     * @return true if the location was not already in the set
+     */
+    public boolean addPacked(final long packedLocation) {
+        final int mask = table.length - 1;
+        int i = slot(packedLocation, mask);
+        while (table[i] != EMPTY) {
+            if (table[i] == packedLocation) {
+                return false;
+            }
+            i = (i + 1) & mask;
+        }
+        table[i] = packedLocation;
+        size++;
+        modCount++;
+        if (size > table.length - table.length / 3) {
+            resize(table.length << 1);
+        }
+        return true;
+    }
+
+    /**
+     * @param packedLocation packed location
+     * @return true if the location is in the set
+     */
+    public boolean containsPacked(final long packedLocation) {
+        return indexOf(packedLocation) >= 0;
+    }
+
+    /**
+     * @param packedLocation packed location to remove
+     * @return true if the location was in the set
+     */
+    public boolean removePacked(final long packedLocation) {
+        int i = indexOf(packedLocation);
+        if (i < 0) {
+            return false;
+        }
+        // shift later entries of the probe sequence back so that no lookup stops at the emptied slot
+        final int mask = table.length - 1;
+        int next = (i + 1) & mask;
+        while (table[next] != EMPTY) {
+            final int home = slot(table[next], mask);
+            if (((next - home) & mask) >= ((next - i) & mask)) {
+                table[i] = table[next];
+                i = next;
+            }
+            next = (next + 1) & mask;
+        }
+        table[i] = EMPTY;
+        size--;
+        modCount++;
+        return true;
+    }
+
+    private int indexOf(final long packedLocation) {
+        final int mask = table.length - 1;
+        int i = slot(packedLocation, mask);
+        while (table[i] != EMPTY) {
+            if (table[i] == packedLocation) {
+                return i;
+            }
+            i = (i + 1) & mask;
+        }
+        return -1;
+    }
+
+    private void resize(final int capacity) {
+        final long[] oldTable = table;
+        table = newTable(capacity);
+        final int mask = capacity - 1;
+        for (final long packedLocation : oldTable) {
+            if (packedLocation != EMPTY) {
+                int i = slot(packedLocation, mask);
+                while (table[i] != EMPTY) {
+                    i = (i + 1) & mask;
+                }
+                table[i] = packedLocation;
+            }
+        }
+    }
+
+    @Override
+    public boolean add(final Location location) {
+        return addPacked(location.getPackedLocation());
+    }
+
+    @Override
+    public boolean contains(final Object o) {
+        return o instanceof Location && containsPacked(((Location) o).getPackedLocation());
+    }
+
+    @Override
+    public boolean remove(final Object o) {
+        return o instanceof Location && removePacked(((Location) o).getPackedLocation());
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(table, EMPTY);
+        size = 0;
+        modCount++;
+    }
+
+    /**
+     * @return iterator over the packed locations in the set
+     */
+    public PrimitiveIterator.OfLong packedIterator() {
+        return new PrimitiveIterator.OfLong() {
+            private final int expectedModCount = modCount;
+            private int index = advance(0);
+
+            private int advance(int i) {
+                while (i < table.length && table[i] == EMPTY) {
+                    i++;
+                }
+                return i;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return index < table.length;
+            }
+
+            @Override
+            public long nextLong() {
+                if (modCount != expectedModCount) {
+                    throw new ConcurrentModificationException();
+                }
+                if (index >= table.length) {
+                    throw new NoSuchElementException();
+                }
+                final long packedLocation = table[index];
+                index = advance(index + 1);
+                return packedLocation;
+            }
+        };
+    }
+
+    @Override
+    public Iterator<Location> iterator() {
+        final PrimitiveIterator.OfLong packedIterator = packedIterator();
+        return new Iterator<Location>() {
+            @Override
+            public boolean hasNext() {
+                return packedIterator.hasNext();
+            }
+
+            @Override
+            public Location next() {
+                return Location.fromPackedLocation(packedIterator.nextLong());
+            }
+        };
+    }
+
+}
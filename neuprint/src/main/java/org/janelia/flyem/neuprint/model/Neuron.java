@@ -79,7 +79,7 @@ public class Neuron {
      * @param size               size (in voxels)
      * @param rois               rois associated with this neuron
      * @param soma               soma for this neuron
-     * @param synapseLocationSet set of synaptic locations on this neuron
+     * @param synapseLocationSet set of synaptic locations on this neuron (copied into a {@link LocationSet} if it is not one)
      */
     public Neuron(final Long id,
                   final String status,
@@ -110,7 +110,9 @@ public class Neuron {
         this.size = size;
         this.rois = rois;
         this.soma = soma;
-        this.synapseLocationSet = synapseLocationSet;
+        this.synapseLocationSet = synapseLocationSet == null || synapseLocationSet instanceof LocationSet ?
+                synapseLocationSet :
+                new LocationSet(synapseLocationSet);
     }
 
     /**
@@ -207,6 +207,15 @@ public class SkelNode {
         return this.associatedBodyId;
     }
 
+    /**
+     * Set the parent of this SkelNode.
+     *
+     * @param parent {@link SkelNode}
+     */
+    void setParent(SkelNode parent) {
+        this.parent = parent;
+    }
+
     /**
      * Add a child to this SkelNode.
      *
@@ -1,23 +1,41 @@
 package org.janelia.flyem.neuprint.model;
 
+import org.neo4j.driver.v1.Values;
+import org.neo4j.driver.v1.types.Point;
+
 import java.io.BufferedReader;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
 
 /**
  * A class representing a skeleton read from an swc file. A skeleton contains
- * a list of {@link SkelNode} instances and the bodyId of the neuron associated
- * with this skeleton.
+ * the nodes of the swc file and the bodyId of the neuron associated with this skeleton.
+ * Nodes are stored in columns (one primitive array per swc column) and are accessed by their
+ * index, which is the position of their row in the swc file. The list of {@link SkelNode}
+ * instances returned by {@link #getSkelNodeList()} is created from the columns when it is first requested.
  */
 public class Skeleton {
 
-    private List<SkelNode> skelNodeList;
     private Long associatedBodyId;
     private Optional<Long> mutationId = Optional.empty();
     private Optional<String> mutationUuid = Optional.empty();
 
+    private int nodeCount;
+    private int[] rowNumbers = new int[0];
+    private int[] types = new int[0];
+    private int[] xs = new int[0];
+    private int[] ys = new int[0];
+    private int[] zs = new int[0];
+    private double[] radii = new double[0];
+    private int[] parentIndices = new int[0];
+
+    private List<SkelNode> skelNodeList;
+
     /**
      * Class constructor.
      */
@@ -25,13 +43,138 @@ public class Skeleton {
     }
 
     /**
+     * Class constructor used by {@link SwcParser}. The arrays are used as they are, without copying.
+     */
+    Skeleton(final Long associatedBodyId,
+             final int nodeCount,
+             final int[] rowNumbers,
+             final int[] types,
+             final int[] xs,
+             final int[] ys,
+             final int[] zs,
+             final double[] radii,
+             final int[] parentIndices,
+             final Long mutationId,
+             final String mutationUuid) {
+        this.associatedBodyId = associatedBodyId;
+        this.nodeCount = nodeCount;
+        this.rowNumbers = rowNumbers;
+        this.types = types;
+        this.xs = xs;
+        this.ys = ys;
+        this.zs = zs;
+        this.radii = radii;
+        this.parentIndices = parentIndices;
+        this.mutationId = Optional.ofNullable(mutationId);
+        this.mutationUuid = Optional.ofNullable(mutationUuid);
+    }
+
+    /**
+     * Returns the nodes of this skeleton as {@link SkelNode} objects linked to their parent and children.
+     * The list is created from the columns the first time it is requested.
      *
      * @return list of {@link SkelNode} objects making up this skeleton
      */
     public List<SkelNode> getSkelNodeList() {
+        if (this.skelNodeList == null && this.associatedBodyId != null) {
+            final List<SkelNode> nodes = new ArrayList<>(nodeCount);
+            for (int i = 0; i < nodeCount; i++) {
+                nodes.add(new SkelNode(associatedBodyId, Arrays.asList(xs[i], ys[i], zs[i]), radii[i], types[i], null, rowNumbers[i]));
+            }
+            for (int i = 0; i < nodeCount; i++) {
+                if (parentIndices[i] >= 0) {
+                    final SkelNode parent = nodes.get(parentIndices[i]);
+                    nodes.get(i).setParent(parent);
+                    parent.addChild(nodes.get(i));
+                }
+            }
+            this.skelNodeList = nodes;
+        }
         return this.skelNodeList;
     }
 
+    /**
+     * @return number of nodes in this skeleton
+     */
+    public int getNodeCount() {
+        return this.nodeCount;
+    }
+
+    /**
+     * @param index index of node
+     * @return row number of node within the swc file
+     */
+    public int getRowNumber(final int index) {
+        return this.rowNumbers[index];
+    }
+
+    /**
+     * @param index index of node
+     * @return type of node
+     */
+    public int getType(final int index) {
+        return this.types[index];
+    }
+
+    /**
+     * @param index index of node
+     * @return x coordinate of node center
+     */
+    public int getX(final int index) {
+        return this.xs[index];
+    }
+
+    /**
+     * @param index index of node
+     * @return y coordinate of node center
+     */
+    public int getY(final int index) {
+        return this.ys[index];
+    }
+
+    /**
+     * @param index index of node
+     * @return z coordinate of node center
+     */
+    public int getZ(final int index) {
+        return this.zs[index];
+    }
+
+    /**
+     * @param index index of node
+     * @return radius of node
+     */
+    public double getRadius(final int index) {
+        return this.radii[index];
+    }
+
+    /**
+     * @param index index of node
+     * @return index of the node's parent, or -1 if the node is a root
+     */
+    public int getParentIndex(final int index) {
+        return this.parentIndices[index];
+    }
+
+    /**
+     * @param index index of node
+     * @return location of node center as a neo4j {@link Point}
+     */
+    public Point getLocationAsPoint(final int index) {
+        return Values.point(9157, this.xs[index], this.ys[index], this.zs[index]).asPoint();
+    }
+
+    /**
+     * Returns the skelNodeId of a node for use in neo4j (the same id as {@link SkelNode#getSkelNodeId(String)}).
+     *
+     * @param dataset relevant dataset
+     * @param index   index of node
+     * @return skelNodeId
+     */
+    public String getSkelNodeId(final String dataset, final int index) {
+        return dataset + ":" + this.associatedBodyId + ":" + this.xs[index] + ":" + this.ys[index] + ":" + this.zs[index] + ":" + this.rowNumbers[index];
+    }
+
     /**
      *
      * @return bodyId of neuron associated with this skeleton
@@ -51,7 +194,7 @@ public class Skeleton {
     @Override
     public String toString() {
         return "Skeleton{ " + "associatedBodyId = " + associatedBodyId +
-                " skelTree = " + skelNodeList +
+                " skelTree = " + getSkelNodeList() +
                 "}";
 
     }
@@ -76,8 +219,8 @@ public class Skeleton {
     }
 
     /**
-     * Acquires a list of SkelNodes from a {@link BufferedReader} reading from an swc file.
-     * The SkelNodes and bodyId of the neuron are added to the Skeleton object.
+     * Reads the nodes of an swc file from a {@link BufferedReader} with a {@link SwcParser}.
+     * The nodes and bodyId of the neuron are added to the Skeleton object.
      *
      * @param reader {@link BufferedReader}
      * @param associatedBodyId bodyId of neuron
@@ -88,8 +231,9 @@ public class Skeleton {
     }
 
     /**
-     * Acquires a list of SkelNodes from a {@link BufferedReader} reading from an swc file.
-     * The SkelNodes and bodyId of the neuron are added to the Skeleton object.
+     * Reads the nodes of an swc file from a {@link BufferedReader} with a {@link SwcParser}.
+     * The nodes and bodyId of the neuron are added to the Skeleton object.
+     * Files on disk are read faster with {@link SwcParser#parse(java.nio.file.Path, Long)}.
      *
      * @param reader {@link BufferedReader}
      * @param associatedBodyId bodyId of neuron
@@ -97,59 +241,27 @@ public class Skeleton {
      * @throws IOException when swc file is not readable
      */
     public void fromSwc(final BufferedReader reader, final Long associatedBodyId, final String uuid) throws IOException {
-        String swcLine;
-        List<SkelNode> skelNodeList = new ArrayList<>();
-        List<Integer> location;
-        Double radius;
-        int type;
-        SkelNode parent;
-
-        while ((swcLine = reader.readLine()) != null) {
-
-            if (!swcLine.startsWith("#")) {
-
-                String[] lineComponents = swcLine.split(" ");
-
-                location = new ArrayList<>();
-                for (int i = 2; i < 5; i++) {
-                    int coordinate;
-                    try {
-                        coordinate = Integer.parseInt(lineComponents[i]);
-                    } catch (NumberFormatException nfe) {
-                        coordinate = Math.round(Float.parseFloat(lineComponents[i]));
-                    }
-                    location.add(coordinate);
-                }
-
-                radius = Double.parseDouble(lineComponents[5]);
-
-                type = Integer.parseInt(lineComponents[1]);
-
-                int parentIndex = Integer.parseInt(lineComponents[6]);
-
-                int rowNumber = Integer.parseInt(lineComponents[0]);
-
-                SkelNode skelNode;
-                if (parentIndex != -1) {
-                    parent = skelNodeList.get(parentIndex - 1);
-                    skelNode = new SkelNode(associatedBodyId, location, radius, type, parent, rowNumber);
-                    parent.addChild(skelNode);
-
-                } else {
-                    skelNode = new SkelNode(associatedBodyId, location, radius, type, null, rowNumber);
-                }
-
-                skelNodeList.add(skelNode);
-
-            } else if (swcLine.startsWith("#${\"mutation id\"")) {
-                this.mutationId = Optional.of(Long.parseLong(swcLine.replaceAll("[^0-9]", "")));
-            }
-
+        final StringBuilder swc = new StringBuilder();
+        final char[] chars = new char[8192];
+        int charCount;
+        while ((charCount = reader.read(chars)) != -1) {
+            swc.append(chars, 0, charCount);
         }
 
-        this.skelNodeList = skelNodeList;
-        this.associatedBodyId = associatedBodyId;
-        this.mutationUuid = Optional.ofNullable(uuid);
+        final Skeleton skeleton = new SwcParser().parse(ByteBuffer.wrap(swc.toString().getBytes(StandardCharsets.UTF_8)), associatedBodyId, uuid);
+
+        this.associatedBodyId = skeleton.associatedBodyId;
+        this.mutationId = skeleton.mutationId.isPresent() ? skeleton.mutationId : this.mutationId;
+        this.mutationUuid = skeleton.mutationUuid;
+        this.nodeCount = skeleton.nodeCount;
+        this.rowNumbers = skeleton.rowNumbers;
+        this.types = skeleton.types;
+        this.xs = skeleton.xs;
+        this.ys = skeleton.ys;
+        this.zs = skeleton.zs;
+        this.radii = skeleton.radii;
+        this.parentIndices = skeleton.parentIndices;
+        this.skelNodeList = null;
 
     }
 
@@ -0,0 +1,389 @@
+package org.janelia.flyem.neuprint.model;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Parses swc files into columnar {@link Skeleton} objects. The parser reads the bytes of the file directly:
+ * no String is created for a line or value (except for the rare number that cannot be converted exactly without
+ * one), and parsed values are collected in primitive arrays that are reused from one file to the next. Files
+ * larger than {@link #MAP_THRESHOLD_BYTES} are memory-mapped; smaller files are read into a reused buffer.
+ * <p>
+ * Values are converted as {@link Skeleton#fromSwc(java.io.BufferedReader, Long)} always has: coordinates that are
+ * not integers are rounded from their float value, radii are parsed as doubles, and the parent column holds the
+ * (1-based) position of the parent row in the file, or -1 for a root. Values may be separated by any number of
+ * spaces or tabs.
+ * <p>
+ * A parser is not thread safe; use one parser per thread.
+ */
+public class SwcParser {
+
+    /**
+     * Files larger than this are memory-mapped instead of read into the reused buffer.
+     */
+    public static final long MAP_THRESHOLD_BYTES = 1 << 20;
+
+    private static final byte[] MUTATION_ID_PREFIX = "#${\"mutation id\"".getBytes(StandardCharsets.US_ASCII);
+
+    // largest number of digits that is always exactly representable in a float or double mantissa
+    private static final int MAX_FLOAT_DIGITS = 7;
+    private static final int MAX_DOUBLE_DIGITS = 15;
+
+    // powers of ten that are exactly representable, so that dividing by them rounds correctly
+    private static final float[] FLOAT_POWERS_OF_TEN = {
+            1e0f, 1e1f, 1e2f, 1e3f, 1e4f, 1e5f, 1e6f, 1e7f, 1e8f, 1e9f, 1e10f
+    };
+    private static final double[] DOUBLE_POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private ByteBuffer readBuffer = ByteBuffer.allocate(64 * 1024);
+
+    private int[] rowNumbers = new int[1024];
+    private int[] types = new int[1024];
+    private int[] xs = new int[1024];
+    private int[] ys = new int[1024];
+    private int[] zs = new int[1024];
+    private double[] radii = new double[1024];
+    private int[] parentIndices = new int[1024];
+    private int nodeCount;
+    private Long mutationId;
+
+    // current input, line and token
+    private ByteBuffer buffer;
+    private int lineNumber;
+    private int lineEnd;
+    private int tokenStart;
+    private int tokenEnd;
+
+    // plain decimal read by parseDecimal
+    private long decimalMantissa;
+    private int decimalFractionDigits;
+    private boolean decimalNegative;
+
+    /**
+     * Parses an swc file, memory-mapping it if it is larger than {@link #MAP_THRESHOLD_BYTES}.
+     *
+     * @param swcFile          path to swc file
+     * @param associatedBodyId bodyId of neuron
+     * @return the skeleton
+     * @throws IOException if the file cannot be read or is not a valid swc file
+     */
+    public Skeleton parse(final Path swcFile,
+                          final Long associatedBodyId) throws IOException {
+        try (FileChannel channel = FileChannel.open(swcFile, StandardOpenOption.READ)) {
+            final long size = channel.size();
+            if (size > MAP_THRESHOLD_BYTES) {
+                return parse(channel.map(FileChannel.MapMode.READ_ONLY, 0, size), associatedBodyId, null);
+            }
+            if (readBuffer.capacity() < size) {
+                readBuffer = ByteBuffer.allocate((int) size);
+            }
+            readBuffer.clear();
+            while (readBuffer.position() < size && channel.read(readBuffer) >= 0) {
+                // keep reading until the whole file is in the buffer
+            }
+            readBuffer.flip();
+            return parse(readBuffer, associatedBodyId, null);
+        } catch (final NumberFormatException e) {
+            throw new IOException("invalid value in " + swcFile + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Parses the swc content between the position and limit of a buffer. The buffer's position is not changed.
+     *
+     * @param swcBuffer        buffer containing swc content
+     * @param associatedBodyId bodyId of neuron
+     * @param uuid             dvid uuid associated with skeleton (may be null)
+     * @return the skeleton
+     * @throws IOException           if a row has too few values or refers to a parent row that does not exist
+     * @throws NumberFormatException if a value cannot be parsed
+     */
+    public Skeleton parse(final ByteBuffer swcBuffer,
+                          final Long associatedBodyId,
+                          final String uuid) throws IOException {
+
+        this.buffer = swcBuffer;
+        this.nodeCount = 0;
+        this.mutationId = null;
+        this.lineNumber = 0;
+
+        try {
+            final int limit = swcBuffer.limit();
+            int lineStart = swcBuffer.position();
+            while (lineStart < limit) {
+                lineEnd = lineStart;
+                while (lineEnd < limit && swcBuffer.get(lineEnd) != '\n') {
+                    lineEnd++;
+                }
+                lineNumber++;
+                parseLine(lineStart);
+                lineStart = lineEnd + 1;
+            }
+        } finally {
+            this.buffer = null;
+        }
+
+        // parents usually precede their children, but only have to be somewhere in the file
+        for (int i = 0; i < nodeCount; i++) {
+            if (parentIndices[i] >= nodeCount) {
+                throw new IOException("row " + rowNumbers[i] + " of skeleton for body " + associatedBodyId + " refers to parent row " + (parentIndices[i] + 1) + " that does not exist");
+            }
+        }
+
+        return new Skeleton(associatedBodyId,
+                nodeCount,
+                Arrays.copyOf(rowNumbers, nodeCount),
+                Arrays.copyOf(types, nodeCount),
+                Arrays.copyOf(xs, nodeCount),
+                Arrays.copyOf(ys, nodeCount),
+                Arrays.copyOf(zs, nodeCount),
+                Arrays.copyOf(radii, nodeCount),
+                Arrays.copyOf(parentIndices, nodeCount),
+                mutationId,
+                uuid);
+    }
+
+    private void parseLine(final int lineStart) throws IOException {
+
+        tokenEnd = lineStart;
+        if (lineStart < lineEnd && buffer.get(lineStart) == '#') {
+            if (startsWith(lineStart, MUTATION_ID_PREFIX)) {
+                mutationId = digitsOfLine(lineStart);
+            }
+            return;
+        }
+        if (!nextToken()) {
+            // blank line
+            return;
+        }
+
+        ensureCapacity();
+        final int rowNumber = parseInt();
+        nextRequiredToken();
+        final int type = parseInt();
+        nextRequiredToken();
+        final int x = parseCoordinate();
+        nextRequiredToken();
+        final int y = parseCoordinate();
+        nextRequiredToken();
+        final int z = parseCoordinate();
+        nextRequiredToken();
+        final double radius = parseDouble();
+        nextRequiredToken();
+        final int parent = parseInt();
+        if (parent != -1 && parent < 1) {
+            throw new IOException("line " + lineNumber + " of swc has invalid parent " + parent);
+        }
+
+        rowNumbers[nodeCount] = rowNumber;
+        types[nodeCount] = type;
+        xs[nodeCount] = x;
+        ys[nodeCount] = y;
+        zs[nodeCount] = z;
+        radii[nodeCount] = radius;
+        parentIndices[nodeCount] = parent == -1 ? -1 : parent - 1;
+        nodeCount++;
+    }
+
+    private boolean startsWith(final int lineStart,
+                               final byte[] prefix) {
+        if (lineEnd - lineStart < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (buffer.get(lineStart + i) != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the number formed by all digits in the line, or null if there are none
+     */
+    private Long digitsOfLine(final int lineStart) {
+        long value = 0;
+        boolean hasDigits = false;
+        for (int i = lineStart; i < lineEnd; i++) {
+            final byte b = buffer.get(i);
+            if (b >= '0' && b <= '9') {
+                try {
+                    value = Math.addExact(Math.multiplyExact(value, 10), b - '0');
+                } catch (final ArithmeticException e) {
+                    throw new NumberFormatException("mutation id on line " + lineNumber + " is too large");
+                }
+                hasDigits = true;
+            }
+        }
+        return hasDigits ? value : null;
+    }
+
+    private void ensureCapacity() {
+        if (nodeCount == rowNumbers.length) {
+            final int capacity = rowNumbers.length * 2;
+            rowNumbers = Arrays.copyOf(rowNumbers, capacity);
+            types = Arrays.copyOf(types, capacity);
+            xs = Arrays.copyOf(xs, capacity);
+            ys = Arrays.copyOf(ys, capacity);
+            zs = Arrays.copyOf(zs, capacity);
+            radii = Arrays.copyOf(radii, capacity);
+            parentIndices = Arrays.copyOf(parentIndices, capacity);
+        }
+    }
+
+    private static boolean isSeparator(final byte b) {
+        return b == ' ' || b == '\t' || b == '\r';
+    }
+
+    /**
+     * Moves to the next value in the line.
+     *
+     * @return false if there are no more values in the line
+     */
+    private boolean nextToken() {
+        int position = tokenEnd;
+        while (position < lineEnd && isSeparator(buffer.get(position))) {
+            position++;
+        }
+        tokenStart = position;
+        while (position < lineEnd && !isSeparator(buffer.get(position))) {
+            position++;
+        }
+        tokenEnd = position;
+        return tokenStart < tokenEnd;
+    }
+
+    private void nextRequiredToken() throws IOException {
+        if (!nextToken()) {
+            throw new IOException("line " + lineNumber + " of swc has fewer than 7 values");
+        }
+    }
+
+    private String token() {
+        final byte[] bytes = new byte[tokenEnd - tokenStart];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = buffer.get(tokenStart + i);
+        }
+        return new String(bytes, StandardCharsets.US_ASCII);
+    }
+
+    private NumberFormatException invalidToken() {
+        return new NumberFormatException("line " + lineNumber + ": For input string: \"" + token() + "\"");
+    }
+
+    /**
+     * Parses the token as {@link Integer#parseInt(String)} would.
+     */
+    private int parseInt() {
+        final long value = parseLongDigits();
+        if (value == Long.MIN_VALUE) {
+            throw invalidToken();
+        }
+        return (int) value;
+    }
+
+    /**
+     * @return the token as an int, or Long.MIN_VALUE if it is not an optionally signed integer within int range
+     */
+    private long parseLongDigits() {
+        int position = tokenStart;
+        boolean negative = false;
+        final byte first = buffer.get(position);
+        if (first == '-' || first == '+') {
+            negative = first == '-';
+            position++;
+        }
+        if (position == tokenEnd || tokenEnd - position > 10) {
+            return Long.MIN_VALUE;
+        }
+        long value = 0;
+        for (; position < tokenEnd; position++) {
+            final byte b = buffer.get(position);
+            if (b < '0' || b > '9') {
+                return Long.MIN_VALUE;
+            }
+            value = value * 10 + (b - '0');
+        }
+        value = negative ? -value : value;
+        return value < Integer.MIN_VALUE || value > Integer.MAX_VALUE ? Long.MIN_VALUE : value;
+    }
+
+    /**
+     * Parses the token as an int if possible, otherwise rounds its float value, as the reader-based parser has.
+     */
+    private int parseCoordinate() {
+        final long intValue = parseLongDigits();
+        if (intValue != Long.MIN_VALUE) {
+            return (int) intValue;
+        }
+        if (parseDecimal(MAX_FLOAT_DIGITS, FLOAT_POWERS_OF_TEN.length - 1)) {
+            final float value = (float) decimalMantissa / FLOAT_POWERS_OF_TEN[decimalFractionDigits];
+            return Math.round(decimalNegative ? -value : value);
+        }
+        return Math.round(Float.parseFloat(token()));
+    }
+
+    /**
+     * Parses the token as {@link Double#parseDouble(String)} would.
+     */
+    private double parseDouble() {
+        if (parseDecimal(MAX_DOUBLE_DIGITS, DOUBLE_POWERS_OF_TEN.length - 1)) {
+            final double value = (double) decimalMantissa / DOUBLE_POWERS_OF_TEN[decimalFractionDigits];
+            return decimalNegative ? -value : value;
+        }
+        return Double.parseDouble(token());
+    }
+
+    /**
+     * Reads a plain decimal token (optional sign, digits, optional fraction) into decimalMantissa,
+     * decimalFractionDigits and decimalNegative. Dividing the mantissa by the power of ten given by the number of
+     * fraction digits divides two exactly representable numbers, so the quotient is the correctly rounded value
+     * that Float.parseFloat or Double.parseDouble would return.
+     *
+     * @return false if the token is not a plain decimal or has too many digits to be converted this way
+     */
+    private boolean parseDecimal(final int maxDigits,
+                                 final int maxFractionDigits) {
+        int position = tokenStart;
+        final byte first = buffer.get(position);
+        decimalNegative = first == '-';
+        if (first == '-' || first == '+') {
+            position++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int fractionDigits = 0;
+        boolean inFraction = false;
+        for (; position < tokenEnd; position++) {
+            final byte b = buffer.get(position);
+            if (b >= '0' && b <= '9') {
+                if (++digits > maxDigits) {
+                    return false;
+                }
+                mantissa = mantissa * 10 + (b - '0');
+                if (inFraction) {
+                    fractionDigits++;
+                }
+            } else if (b == '.' && !inFraction) {
+                inFraction = true;
+            } else {
+                return false;
+            }
+        }
+        if (digits == 0 || fractionDigits > maxFractionDigits) {
+            return false;
+        }
+        decimalMantissa = mantissa;
+        decimalFractionDigits = fractionDigits;
+        return true;
+    }
+
+}
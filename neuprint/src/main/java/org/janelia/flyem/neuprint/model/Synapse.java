@@ -27,7 +27,7 @@ public class Synapse {
     private String type;
 
     @SerializedName("location")
-    private Location location;
+    private long packedLocation;
 
     @SerializedName("confidence")
     private double confidence;
@@ -46,7 +46,22 @@ public class Synapse {
     public Synapse(String type, double confidence, Location location, Set<String> roiSet) {
         this.type = type;
         this.confidence = confidence;
-        this.location = location;
+        this.packedLocation = location.getPackedLocation();
+        this.rois = roiSet;
+    }
+
+    /**
+     * Class constructor used when decoding synapse JSON.
+     *
+     * @param type           type of synaptic density (pre or post)
+     * @param confidence     confidence of prediction
+     * @param packedLocation 3D location of density packed into a long (see {@link Location#getPackedLocation()})
+     * @param roiSet         set of rois synapse is located in
+     */
+    public Synapse(String type, double confidence, long packedLocation, Set<String> roiSet) {
+        this.type = type;
+        this.confidence = confidence;
+        this.packedLocation = packedLocation;
         this.rois = roiSet;
     }
 
@@ -62,21 +77,21 @@ public class Synapse {
     public Synapse(String type, Long x, Long y, Long z, Set<String> roiSet) {
         this.type = type;
         this.confidence = 0.0D;
-        this.location = new Location(x, y, z);
+        this.packedLocation = Location.pack(x, y, z);
         this.rois = roiSet;
     }
 
     public Synapse(String type, double confidence, Location location) {
         this.type = type;
         this.confidence = confidence;
-        this.location = location;
+        this.packedLocation = location.getPackedLocation();
         this.rois = new LinkedHashSet<>();
     }
 
     public Synapse(String type, Long x, Long y, Long z) {
         this.type = type;
         this.confidence = 0.0D;
-        this.location = new Location(x, y, z);
+        this.packedLocation = Location.pack(x, y, z);
         this.rois = new LinkedHashSet<>();
     }
 
@@ -88,14 +103,14 @@ public class Synapse {
      * @param z z coordinate of location
      */
     public Synapse(Long x, Long y, Long z) {
-        this.location = new Location(x, y, z);
+        this.packedLocation = Location.pack(x, y, z);
     }
 
     @Override
     public String toString() {
         return "Synapse { " + "type=" + type +
                 ", confidence=" + confidence +
-                ", location=" + location +
+                ", location=" + getLocation() +
                 ", rois=" + rois +
                 " }";
     }
@@ -107,7 +122,7 @@ public class Synapse {
             isEqual = true;
         } else if (o instanceof Synapse) {
             final Synapse that = (Synapse) o;
-            isEqual = this.location.equals(that.location) && this.type.equals(that.type);
+            isEqual = this.packedLocation == that.packedLocation && this.type.equals(that.type);
         }
         return isEqual;
     }
@@ -115,7 +130,7 @@ public class Synapse {
     @Override
     public int hashCode() {
         int result = 17;
-        result = 31 * result + location.hashCode();
+        result = 31 * result + Long.hashCode(packedLocation);
         result = 31 * result + type.hashCode();
         return result;
     }
@@ -136,14 +151,21 @@ public class Synapse {
      * @return the location represented as a string in format "x:y:z"
      */
     public String getLocationString() {
-        return locationToStringKey(this.location);
+        return locationToStringKey(getLocation());
     }
 
     /**
      * @return synaptic density's 3D location
      */
     public Location getLocation() {
-        return this.location;
+        return Location.fromPackedLocation(this.packedLocation);
+    }
+
+    /**
+     * @return synaptic density's 3D location packed into a long (see {@link Location#getPackedLocation()})
+     */
+    public long getPackedLocation() {
+        return this.packedLocation;
     }
 
     /**
@@ -152,7 +174,7 @@ public class Synapse {
      * @return {@link Point}
      */
     public Point getLocationAsPoint() {
-        return Values.point(9157, this.location.getX(), this.location.getY(), this.location.getZ()).asPoint();
+        return Values.point(9157, Location.unpackX(packedLocation), Location.unpackY(packedLocation), Location.unpackZ(packedLocation)).asPoint();
     }
 
     /**
@@ -16,27 +16,52 @@ import java.util.List;
 public class SynapticConnection {
 
     @SerializedName("pre")
-    private Location preLocation;
+    private long packedPreLocation;
 
     @SerializedName("post")
-    private Location postLocation;
+    private long packedPostLocation;
 
     public SynapticConnection(Location preLocation, Location postLocation) {
-        this.preLocation = preLocation;
-        this.postLocation = postLocation;
+        this.packedPreLocation = preLocation.getPackedLocation();
+        this.packedPostLocation = postLocation.getPackedLocation();
+    }
+
+    /**
+     * Class constructor used when decoding connection JSON.
+     *
+     * @param packedPreLocation  presynaptic location packed into a long (see {@link Location#getPackedLocation()})
+     * @param packedPostLocation postsynaptic location packed into a long
+     */
+    public SynapticConnection(long packedPreLocation, long packedPostLocation) {
+        this.packedPreLocation = packedPreLocation;
+        this.packedPostLocation = packedPostLocation;
     }
 
     public Location getPreLocation() {
-        return preLocation;
+        return Location.fromPackedLocation(packedPreLocation);
     }
 
     public Location getPostLocation() {
-        return postLocation;
+        return Location.fromPackedLocation(packedPostLocation);
+    }
+
+    /**
+     * @return presynaptic location packed into a long (see {@link Location#getPackedLocation()})
+     */
+    public long getPackedPreLocation() {
+        return packedPreLocation;
+    }
+
+    /**
+     * @return postsynaptic location packed into a long (see {@link Location#getPackedLocation()})
+     */
+    public long getPackedPostLocation() {
+        return packedPostLocation;
     }
 
     @Override
     public String toString() {
-        return this.preLocation + "->" + this.postLocation;
+        return getPreLocation() + "->" + getPostLocation();
     }
 
     @Override
@@ -46,7 +71,7 @@ public class SynapticConnection {
             isEqual = true;
         } else if (o instanceof SynapticConnection) {
             final SynapticConnection that = (SynapticConnection) o;
-            isEqual = this.preLocation.equals(that.preLocation) && this.postLocation.equals(that.postLocation);
+            isEqual = this.packedPreLocation == that.packedPreLocation && this.packedPostLocation == that.packedPostLocation;
         }
         return isEqual;
     }
@@ -54,8 +79,8 @@ public class SynapticConnection {
     @Override
     public int hashCode() {
         int result = 17;
-        result = 31 * result + this.preLocation.hashCode();
-        result = 31 * result + this.postLocation.hashCode();
+        result = 31 * result + Long.hashCode(this.packedPreLocation);
+        result = 31 * result + Long.hashCode(this.packedPostLocation);
         return result;
     }
 
@@ -0,0 +1,148 @@
+package org.janelia.flyem.neuprint;
+
+import apoc.convert.Json;
+import apoc.create.Create;
+import org.janelia.flyem.neuprint.model.Location;
+import org.janelia.flyem.neuprint.model.Neuron;
+import org.janelia.flyem.neuprint.model.Synapse;
+import org.janelia.flyem.neuprint.model.SynapticConnection;
+import org.janelia.flyem.neuprintloadprocedures.procedures.LoadingProcedures;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.neo4j.driver.v1.Config;
+import org.neo4j.driver.v1.Driver;
+import org.neo4j.driver.v1.GraphDatabase;
+import org.neo4j.driver.v1.Session;
+import org.neo4j.harness.junit.Neo4jRule;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+/**
+ * Loads the test resources adding connection info with the loader.addPropsAndConnectionInfoToSegment procedure and
+ * with a {@link ConnectivitySummary} computed client side, and checks that both loads produce the same connectivity.
+ */
+public class ClientSideConnectionInfoTest {
+
+    @ClassRule
+    public static Neo4jRule neo4j;
+    private static Driver driver;
+
+    private static final String PROCEDURE_DATASET = "procedure";
+    private static final String CLIENT_SIDE_DATASET = "clientside";
+    private static final String CLIENT_SIDE_UNWIND_DATASET = "clientsideunwind";
+
+    private static List<Synapse> synapseList;
+    private static List<SynapticConnection> connectionsList;
+    private static List<Neuron> neuronList;
+
+    static {
+        neo4j = new Neo4jRule()
+                .withFunction(Json.class)
+                .withProcedure(LoadingProcedures.class)
+                .withProcedure(Create.class);
+    }
+
+    @BeforeClass
+    public static void before() {
+
+        neuronList = NeuPrintMain.readNeuronsJson("src/test/resources/neuronList.json");
+        synapseList = NeuPrintMain.readSynapsesJson("src/test/resources/synapseList.json");
+        connectionsList = NeuPrintMain.readConnectionsJson("src/test/resources/connectionsList.json");
+
+        driver = GraphDatabase.driver(neo4j.boltURI(), Config.build().withoutEncryption().toConfig());
+
+        load(new Neo4jImporter(driver), PROCEDURE_DATASET, false);
+
+        load(new Neo4jImporter(driver), CLIENT_SIDE_DATASET, true);
+
+        Neo4jImporter unwindImporter = new Neo4jImporter(driver, 4);
+        unwindImporter.setUseUnwindBatches(true);
+        load(unwindImporter, CLIENT_SIDE_UNWIND_DATASET, true);
+
+    }
+
+    private static void load(Neo4jImporter neo4jImporter,
+                             String dataset,
+                             boolean clientSideConnectionInfo) {
+
+        final LocalDateTime timeStamp = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS);
+
+        NeuPrintMain.initializeDatabase(neo4jImporter, dataset, 1.0F, .2D, .8D, true, true, timeStamp);
+
+        neo4jImporter.addSynapsesWithRois(dataset, synapseList, timeStamp);
+        neo4jImporter.addSynapsesTo(dataset, connectionsList, timeStamp);
+        neo4jImporter.addSegments(dataset, neuronList, timeStamp);
+        if (clientSideConnectionInfo) {
+            ConnectivitySummary summary = new ConnectivitySummary(synapseList, connectionsList, neuronList, .2D, .8D, 5);
+            neo4jImporter.addConnectionInfo(dataset, summary, true, timeStamp);
+        } else {
+            neo4jImporter.addConnectionInfo(dataset, neuronList, true, .2D, .8D, 5);
+        }
+    }
+
+    @AfterClass
+    public static void after() {
+        driver.close();
+    }
+
+    private static Object value(Session session, String queryTemplate, String dataset) {
+        return session.readTransaction(tx -> tx.run(String.format(queryTemplate, dataset))).single().get(0).asObject();
+    }
+
+    @Test
+    public void clientSideConnectionInfoShouldMatchProcedure() {
+
+        String[] queries = {
+                "MATCH (:`%1$s-Segment`)-[r:ConnectsTo]->(:`%1$s-Segment`) RETURN count(r)",
+                "MATCH (a:`%1$s-Segment`)-[r:ConnectsTo]->(b:`%1$s-Segment`) WITH a, b, r ORDER BY a.bodyId, b.bodyId RETURN collect([a.bodyId, b.bodyId, r.weight, r.weightHP])",
+                "MATCH (a:`%1$s-Segment`)<-[:From]-(c:`%1$s-ConnectionSet`:ConnectionSet:%1$s)-[:To]->(b:`%1$s-Segment`) WITH a, b, c ORDER BY a.bodyId, b.bodyId RETURN collect([a.bodyId, b.bodyId, c.datasetBodyIds = '%1$s:' + a.bodyId + ':' + b.bodyId, c.roiInfo])",
+                "MATCH (a:`%1$s-Segment`)<-[:From]-(c:`%1$s-ConnectionSet`)-[:Contains]->(s:`%1$s-Synapse`) WITH a, s ORDER BY a.bodyId, s.type, s.location.x, s.location.y, s.location.z RETURN collect([a.bodyId, s.type, s.location.x, s.location.y, s.location.z])",
+                "MATCH (n:`%1$s-Segment`) WHERE exists(n.pre) WITH n ORDER BY n.bodyId RETURN collect([n.bodyId, n.pre, n.post, n.roiInfo, n.roiA, n.roiB])",
+                "MATCH (n:`%1$s-Neuron`:Neuron:`%1$s-Segment`) WITH n ORDER BY n.bodyId RETURN collect([n.bodyId, n.clusterName])"
+        };
+
+        try (Session session = driver.session()) {
+            for (String query : queries) {
+                Object expected = value(session, query, PROCEDURE_DATASET);
+                Assert.assertEquals(query, expected, value(session, query, CLIENT_SIDE_DATASET));
+                Assert.assertEquals(query, expected, value(session, query, CLIENT_SIDE_UNWIND_DATASET));
+            }
+
+            Assert.assertNotEquals(0L, value(session, queries[0], CLIENT_SIDE_DATASET));
+        }
+    }
+
+    @Test
+    public void summaryShouldCountSegmentSynapses() {
+
+        ConnectivitySummary summary = new ConnectivitySummary(synapseList, connectionsList, neuronList, .2D, .8D, 5);
+
+        ConnectivitySummary.SegmentSummary segment = summary.getSegmentSummary(8426959L);
+        Assert.assertEquals(2L, segment.getPre());
+        Assert.assertEquals(3L, segment.getPost());
+        Assert.assertTrue(segment.isNeuron());
+        Assert.assertEquals("roiA.roiB-roiA", segment.getClusterName());
+
+        Assert.assertEquals(4L, summary.getTotalPreCount());
+        Assert.assertEquals(7L, summary.getTotalPostCount());
+    }
+
+    @Test
+    public void packedLocationsShouldBeDistinct() {
+
+        Assert.assertNotEquals(ConnectivitySummary.packLocation(new Location(1L, 2L, 3L)), ConnectivitySummary.packLocation(new Location(3L, 2L, 1L)));
+        Assert.assertNotEquals(ConnectivitySummary.packLocation(new Location(-1L, 0L, 0L)), ConnectivitySummary.packLocation(new Location(0L, -1L, 0L)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void packLocationShouldRejectCoordinatesOutOfRange() {
+
+        ConnectivitySummary.packLocation(new Location(1L << 21, 0L, 0L));
+    }
+
+}
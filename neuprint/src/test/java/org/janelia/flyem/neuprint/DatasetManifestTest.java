@@ -0,0 +1,114 @@
+package org.janelia.flyem.neuprint;
+
+import org.janelia.flyem.neuprint.metrics.LoadMetrics;
+import org.janelia.flyem.neuprint.metrics.LoadProfile;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+/**
+ * Tests loading several datasets listed in a manifest (--datasetManifest) in one load.
+ */
+public class DatasetManifestTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void manifestShouldOverrideCommandLineOptions() throws IOException {
+
+        final NeuPrintMain.NeuPrintParameters parameters = new NeuPrintMain.NeuPrintParameters();
+        parameters.synapseJson = "common-synapses.json";
+        parameters.synapseBatchSize = 100;
+        parameters.maxPhaseWriters = 6;
+
+        final List<NeuPrintMain.NeuPrintParameters> datasets = NeuPrintMain.readDatasetManifest(
+                writeManifest("[{\"datasetLabel\": \"left\", \"synapseBatchSize\": 500}, {\"datasetLabel\": \"right\", \"synapseJson\": \"right-synapses.json\", \"mortonSort\": true}]"),
+                parameters);
+
+        Assert.assertEquals(2, datasets.size());
+        Assert.assertEquals("left", datasets.get(0).datasetLabel);
+        Assert.assertEquals("common-synapses.json", datasets.get(0).synapseJson);
+        Assert.assertEquals(500, datasets.get(0).synapseBatchSize);
+        Assert.assertFalse(datasets.get(0).mortonSort);
+        Assert.assertEquals("right", datasets.get(1).datasetLabel);
+        Assert.assertEquals("right-synapses.json", datasets.get(1).synapseJson);
+        Assert.assertEquals(100, datasets.get(1).synapseBatchSize);
+        Assert.assertTrue(datasets.get(1).mortonSort);
+        Assert.assertEquals(1.0F, datasets.get(1).dataModelVersion, 0);
+        Assert.assertEquals(6, datasets.get(1).maxPhaseWriters);
+
+    }
+
+    @Test
+    public void manifestShouldRejectInvalidEntries() throws IOException {
+
+        final NeuPrintMain.NeuPrintParameters parameters = new NeuPrintMain.NeuPrintParameters();
+        for (final String manifest : new String[]{
+                "{\"datasetLabel\": \"left\"}",
+                "[]",
+                "[{\"synapseJson\": \"synapses.json\"}]",
+                "[{\"datasetLabel\": \"left\"}, {\"datasetLabel\": \"left\"}]",
+                "[{\"datasetLabel\": \"left\", \"synapseFile\": \"synapses.json\"}]",
+                "[{\"datasetLabel\": \"left\", \"maxPhaseWriters\": 8}]",
+                "[{\"datasetLabel\": \"left\", \"synapseBatchSize\": \"many\"}]",
+                "[{\"datasetLabel\": \"left\", \"clientSideConnectionInfo\": true}]"}) {
+            try {
+                NeuPrintMain.readDatasetManifest(writeManifest(manifest), parameters);
+                Assert.fail("should reject " + manifest);
+            } catch (final IllegalArgumentException e) {
+                // expected
+            }
+        }
+
+    }
+
+    @Test
+    public void datasetsShouldBeLoadedTogetherInDryRun() throws Exception {
+
+        final NeuPrintMain.NeuPrintParameters parameters = new NeuPrintMain.NeuPrintParameters();
+        parameters.dryRun = true;
+        parameters.synapseJson = "src/test/resources/synapseList.json";
+        parameters.connectionJson = "src/test/resources/connectionsList.json";
+
+        final List<NeuPrintMain.NeuPrintParameters> datasets = NeuPrintMain.readDatasetManifest(
+                writeManifest("[{\"datasetLabel\": \"manifest-a\"}, {\"datasetLabel\": \"manifest-b\", \"synapseBatchSize\": 3, \"connectionBatchSize\": 3}]"),
+                parameters);
+        final LoadProfile profile = new LoadProfile(1, 1000);
+
+        final LoadPhaseScheduler scheduler = NeuPrintMain.loadDatasets(parameters, datasets, profile, LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS));
+
+        Assert.assertEquals("initializing, synapse and connection phases of each dataset", 6, scheduler.getPhases().size());
+        for (final LoadPhaseScheduler.Phase phase : scheduler.getPhases()) {
+            Assert.assertEquals(LoadPhaseScheduler.Status.COMPLETE, phase.getStatus());
+            Assert.assertTrue(phase.getName().startsWith("manifest-"));
+        }
+        // the second dataset's database is initialized after the first's
+        Assert.assertSame(scheduler.getPhases().get(0), scheduler.getPhases().get(3).getDependencies().get(0));
+
+        Assert.assertTrue(profile.getPhase("manifest-a: " + NeuPrintMain.SYNAPSE_PHASE).getStatementCount() > 0);
+        Assert.assertTrue(profile.getPhase("manifest-b: " + NeuPrintMain.SYNAPSE_PHASE).getStatementCount() > 0);
+        Assert.assertTrue(profile.getPhase("manifest-b: " + NeuPrintMain.CONNECTION_PHASE).getStatementCount() > 0);
+
+        // the batched phases of the second dataset have their own progress
+        Assert.assertTrue(LoadMetrics.getInstance().getPhase("manifest-b: " + NeuPrintMain.SYNAPSE_PHASE).isFinished());
+        Assert.assertTrue(LoadMetrics.getInstance().getPhase("manifest-b: " + NeuPrintMain.CONNECTION_PHASE).getRows() > 0);
+
+    }
+
+    private String writeManifest(final String json) throws IOException {
+        final File manifest = File.createTempFile("manifest", ".json", folder.getRoot());
+        Files.write(manifest.toPath(), json.getBytes(StandardCharsets.UTF_8));
+        return manifest.getAbsolutePath();
+    }
+
+}
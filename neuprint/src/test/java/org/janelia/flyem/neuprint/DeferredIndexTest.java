@@ -0,0 +1,125 @@
+package org.janelia.flyem.neuprint;
+
+import apoc.convert.Json;
+import apoc.create.Create;
+import org.janelia.flyem.neuprint.model.Synapse;
+import org.janelia.flyem.neuprintloadprocedures.procedures.LoadingProcedures;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.neo4j.driver.v1.Config;
+import org.neo4j.driver.v1.Driver;
+import org.neo4j.driver.v1.GraphDatabase;
+import org.neo4j.driver.v1.Record;
+import org.neo4j.driver.v1.Session;
+import org.neo4j.harness.junit.Neo4jRule;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tests deferring index creation until after a load ({@link Neo4jImporter#setDeferIndexes(boolean)}).
+ */
+public class DeferredIndexTest {
+
+    @ClassRule
+    public static Neo4jRule neo4j;
+    private static Driver driver;
+    private static Map<String, String> indexStatesBeforeSynapses;
+    private static Map<String, String> indexStatesDuringLoad;
+    private static Map<String, String> indexStatesAfterLoad;
+
+    private static final String DATASET = "deferred";
+
+    static {
+        neo4j = new Neo4jRule()
+                .withFunction(Json.class)
+                .withProcedure(LoadingProcedures.class)
+                .withProcedure(Create.class);
+    }
+
+    @BeforeClass
+    public static void before() {
+
+        List<Synapse> synapseList = NeuPrintMain.readSynapsesJson("src/test/resources/synapseList.json");
+
+        driver = GraphDatabase.driver(neo4j.boltURI(), Config.build().withoutEncryption().toConfig());
+
+        final LocalDateTime timeStamp = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS);
+
+        Neo4jImporter neo4jImporter = new Neo4jImporter(driver);
+        neo4jImporter.setDeferIndexes(true);
+
+        NeuPrintMain.initializeDatabase(neo4jImporter, DATASET, 1.0F, .2D, .8D, true, true, timeStamp);
+        indexStatesBeforeSynapses = getIndexStates();
+        neo4jImporter.addSynapsesWithRois(DATASET, synapseList, timeStamp);
+        neo4jImporter.indexBooleanRoiProperties(DATASET);
+        indexStatesDuringLoad = getIndexStates();
+
+        neo4jImporter.createDeferredIndexes(DATASET, true);
+        indexStatesAfterLoad = getIndexStates();
+
+    }
+
+    private static Map<String, String> getIndexStates() {
+        final Map<String, String> states = new HashMap<>();
+        try (Session session = driver.session()) {
+            for (final Record index : session.readTransaction(tx -> tx.run("CALL db.indexes() YIELD description, state RETURN description, state").list())) {
+                states.put(index.get("description").asString(), index.get("state").asString());
+            }
+        }
+        return states;
+    }
+
+    private static boolean hasIndex(final Map<String, String> indexStates, final String label, final String property) {
+        return indexStates.keySet().stream().anyMatch(d -> d.contains(label) && d.contains("(" + property + ")"));
+    }
+
+    @AfterClass
+    public static void after() {
+        driver.close();
+    }
+
+    @Test
+    public void shouldOnlyCreateConstraintsAndLookupIndexesBeforeLoad() {
+
+        Assert.assertTrue(hasIndex(indexStatesDuringLoad, DATASET + "-PreSyn", "location"));
+        Assert.assertTrue(hasIndex(indexStatesDuringLoad, DATASET + "-Neuron", "bodyId"));
+
+        Assert.assertFalse(hasIndex(indexStatesDuringLoad, DATASET + "-Neuron", "status"));
+        Assert.assertFalse(hasIndex(indexStatesDuringLoad, DATASET + "-Neuron", "clusterName"));
+        Assert.assertFalse(hasIndex(indexStatesDuringLoad, DATASET + "-PreSyn", "roiA"));
+
+    }
+
+    @Test
+    public void shouldCreateSynapseLocationIndexBeforeSynapses() {
+
+        // synapses are merged and matched on this index while they are loaded
+        Assert.assertTrue(hasIndex(indexStatesBeforeSynapses, DATASET + "-Synapse", "location"));
+        Assert.assertFalse(hasIndex(indexStatesBeforeSynapses, DATASET + "-Neuron", "status"));
+
+    }
+
+    @Test
+    public void shouldCreateAllIndexesOnlineAfterLoad() {
+
+        Assert.assertTrue(hasIndex(indexStatesAfterLoad, DATASET + "-Neuron", "status"));
+        Assert.assertTrue(hasIndex(indexStatesAfterLoad, DATASET + "-Neuron", "clusterName"));
+        Assert.assertTrue(hasIndex(indexStatesAfterLoad, DATASET + "-Synapse", "location"));
+        Assert.assertTrue(hasIndex(indexStatesAfterLoad, DATASET + "-PreSyn", "roiA"));
+        Assert.assertTrue(hasIndex(indexStatesAfterLoad, DATASET + "-PostSyn", "roiA"));
+        Assert.assertTrue(hasIndex(indexStatesAfterLoad, DATASET + "-Segment", "roiA"));
+
+        for (final Map.Entry<String, String> index : indexStatesAfterLoad.entrySet()) {
+            Assert.assertEquals(index.getKey(), "ONLINE", index.getValue());
+        }
+
+    }
+
+}
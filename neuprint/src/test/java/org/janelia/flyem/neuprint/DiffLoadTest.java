@@ -0,0 +1,199 @@
+package org.janelia.flyem.neuprint;
+
+import apoc.convert.Json;
+import apoc.create.Create;
+import org.janelia.flyem.neuprint.model.Location;
+import org.janelia.flyem.neuprint.model.Neuron;
+import org.janelia.flyem.neuprint.model.Synapse;
+import org.janelia.flyem.neuprint.model.SynapticConnection;
+import org.janelia.flyem.neuprintloadprocedures.procedures.LoadingProcedures;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.neo4j.driver.v1.Config;
+import org.neo4j.driver.v1.Driver;
+import org.neo4j.driver.v1.GraphDatabase;
+import org.neo4j.driver.v1.Session;
+import org.neo4j.harness.junit.Neo4jRule;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Diff loads the test resources and then a changed copy of them, and checks that the result matches a full load
+ * of the changed copy.
+ */
+public class DiffLoadTest {
+
+    @ClassRule
+    public static Neo4jRule neo4j;
+    private static Driver driver;
+
+    private static final String FULL_DATASET = "full";
+    private static final String DIFF_DATASET = "diff";
+
+    private static DiffLoader.Changes[] firstChanges;
+    private static DiffLoader.Changes[] secondChanges;
+    private static DiffLoader.Changes[] repeatedChanges;
+
+    static {
+        neo4j = new Neo4jRule()
+                .withFunction(Json.class)
+                .withProcedure(LoadingProcedures.class)
+                .withProcedure(Create.class);
+    }
+
+    @BeforeClass
+    public static void before() {
+
+        final List<Neuron> neuronList = NeuPrintMain.readNeuronsJson("src/test/resources/neuronList.json");
+        final List<Synapse> synapseList = NeuPrintMain.readSynapsesJson("src/test/resources/synapseList.json");
+        final List<SynapticConnection> connectionsList = NeuPrintMain.readConnectionsJson("src/test/resources/connectionsList.json");
+
+        // one synapse with a new confidence, one connection and one neuron removed, and one neuron renamed
+        final List<Synapse> changedSynapseList = new ArrayList<>(synapseList);
+        final Synapse synapse = changedSynapseList.get(0);
+        changedSynapseList.set(0, new Synapse(synapse.getType(), synapse.getConfidence() == .5D ? .25D : .5D, synapse.getLocation(), synapse.getRois()));
+        final List<SynapticConnection> changedConnectionsList = new ArrayList<>(connectionsList);
+        changedConnectionsList.remove(changedConnectionsList.size() - 1);
+        final List<Neuron> changedNeuronList = new ArrayList<>(neuronList);
+        changedNeuronList.remove(changedNeuronList.size() - 1);
+        final Neuron neuron = changedNeuronList.get(0);
+        changedNeuronList.set(0, new Neuron(neuron.getId(), neuron.getStatus(), "renamed", neuron.getType(), neuron.getInstance(), neuron.getPrimaryNeurite(),
+                neuron.getMajorInput(), neuron.getMajorOutput(), neuron.getClonalUnit(), neuron.getNeurotransmitter(), neuron.getProperty(),
+                neuron.getSize(), neuron.getRois(), neuron.getSoma(), neuron.getSynapseLocationSet()));
+
+        driver = GraphDatabase.driver(neo4j.boltURI(), Config.build().withoutEncryption().toConfig());
+
+        final Neo4jImporter neo4jImporter = new Neo4jImporter(driver);
+        final LocalDateTime timeStamp = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS);
+
+        NeuPrintMain.initializeDatabase(neo4jImporter, FULL_DATASET, 1.0F, .2D, .8D, true, true, timeStamp);
+        neo4jImporter.addSynapsesWithRois(FULL_DATASET, changedSynapseList, timeStamp);
+        neo4jImporter.addSynapsesTo(FULL_DATASET, changedConnectionsList, timeStamp);
+        neo4jImporter.addSegments(FULL_DATASET, changedNeuronList, timeStamp);
+        neo4jImporter.addConnectionInfo(FULL_DATASET, changedNeuronList, true, .2D, .8D, 5);
+        neo4jImporter.reconcileSynapseCounts(FULL_DATASET, timeStamp);
+
+        NeuPrintMain.initializeDatabase(neo4jImporter, DIFF_DATASET, 1.0F, .2D, .8D, true, true, timeStamp);
+        neo4jImporter.prepDatabaseForDiffLoad(DIFF_DATASET);
+        firstChanges = diffLoad(neo4jImporter, synapseList, connectionsList, neuronList, timeStamp);
+        secondChanges = diffLoad(neo4jImporter, changedSynapseList, changedConnectionsList, changedNeuronList, timeStamp);
+        repeatedChanges = diffLoad(neo4jImporter, changedSynapseList, changedConnectionsList, changedNeuronList, timeStamp);
+
+    }
+
+    private static DiffLoader.Changes[] diffLoad(Neo4jImporter neo4jImporter,
+                                                 List<Synapse> synapseList,
+                                                 List<SynapticConnection> connectionsList,
+                                                 List<Neuron> neuronList,
+                                                 LocalDateTime timeStamp) {
+        try {
+            // a small write batch size so that the changes are written in several chunks
+            final DiffLoader diffLoader = new DiffLoader(DIFF_DATASET, timeStamp, 2);
+            final DiffLoader.Changes[] changes = {
+                    diffLoader.diffSynapses(neo4jImporter, writer -> writer.writeBatch(synapseList)),
+                    diffLoader.diffConnections(neo4jImporter, writer -> writer.writeBatch(connectionsList)),
+                    diffLoader.diffNeurons(neo4jImporter, writer -> writer.writeBatch(neuronList), true, .2D, .8D, 5)
+            };
+            neo4jImporter.reconcileSynapseCounts(DIFF_DATASET, timeStamp);
+            return changes;
+        } catch (Exception e) {
+            throw new AssertionError("diff load failed", e);
+        }
+    }
+
+    @AfterClass
+    public static void after() {
+        driver.close();
+    }
+
+    private static Object value(Session session, String queryTemplate, String dataset) {
+        return session.readTransaction(tx -> tx.run(String.format(queryTemplate, dataset))).single().get(0).asObject();
+    }
+
+    @Test
+    public void diffLoadShouldMatchFullLoad() {
+
+        String[] queries = {
+                "MATCH (s:`%1$s-Synapse`) WITH s ORDER BY s.location.x, s.location.y, s.location.z RETURN collect([s.type, s.confidence, s.location.x, s.location.y, s.location.z, s.roiA, s.roiB])",
+                "MATCH (a:`%1$s-Synapse`)-[:SynapsesTo]->(b:`%1$s-Synapse`) WITH a, b ORDER BY a.location.x, a.location.y, a.location.z, b.location.x, b.location.y, b.location.z RETURN collect([a.location.x, a.location.y, a.location.z, b.location.x, b.location.y, b.location.z])",
+                "MATCH (n:`%1$s-Segment`) WITH n ORDER BY n.bodyId RETURN collect([n.bodyId, n.name, n.status, n.size, n.pre, n.post, n.roiInfo])",
+                "MATCH (n:`%1$s-Segment`)-[:Contains]->(:`%1$s-SynapseSet`)-[:Contains]->(s:`%1$s-Synapse`) WITH n, s ORDER BY n.bodyId, s.location.x, s.location.y, s.location.z RETURN collect([n.bodyId, s.location.x, s.location.y, s.location.z])",
+                "MATCH (a:`%1$s-Segment`)-[r:ConnectsTo]->(b:`%1$s-Segment`) WITH a, b, r ORDER BY a.bodyId, b.bodyId RETURN collect([a.bodyId, b.bodyId, r.weight, r.weightHP])",
+                "MATCH (a:`%1$s-Segment`)<-[:From]-(c:`%1$s-ConnectionSet`)-[:To]->(b:`%1$s-Segment`) WITH a, b, c ORDER BY a.bodyId, b.bodyId RETURN collect([a.bodyId, b.bodyId, c.roiInfo])",
+                "MATCH (a:`%1$s-Segment`)<-[:From]-(c:`%1$s-ConnectionSet`)-[:Contains]->(s:`%1$s-Synapse`) WITH a, s ORDER BY a.bodyId, s.type, s.location.x, s.location.y, s.location.z RETURN collect([a.bodyId, s.type, s.location.x, s.location.y, s.location.z])",
+                "MATCH (n:`%1$s-Neuron`:Neuron:`%1$s-Segment`) WITH n ORDER BY n.bodyId RETURN collect([n.bodyId, n.clusterName])"
+        };
+
+        try (Session session = driver.session()) {
+            for (String query : queries) {
+                Assert.assertEquals(query, value(session, query, FULL_DATASET), value(session, query, DIFF_DATASET));
+            }
+        }
+    }
+
+    @Test
+    public void diffLoadShouldOnlyWriteChanges() {
+
+        // nothing stored before the first diff load
+        Assert.assertEquals(0L, firstChanges[0].getUnchanged());
+        Assert.assertEquals(0L, firstChanges[2].getUnchanged());
+
+        Assert.assertEquals(1L, secondChanges[0].getChanged());
+        Assert.assertEquals(0L, secondChanges[0].getAdded() + secondChanges[0].getRemoved());
+        Assert.assertEquals(1L, secondChanges[1].getRemoved());
+        Assert.assertEquals(0L, secondChanges[1].getAdded());
+        Assert.assertEquals(1L, secondChanges[2].getRemoved());
+        Assert.assertEquals(0L, secondChanges[2].getAdded());
+        Assert.assertTrue(secondChanges[2].getChanged() >= 1L);
+        Assert.assertTrue(secondChanges[2].getUnchanged() >= 1L);
+
+        for (DiffLoader.Changes changes : repeatedChanges) {
+            Assert.assertEquals(changes.toString(), 0L, changes.getAdded() + changes.getRemoved() + changes.getChanged());
+        }
+    }
+
+    @Test
+    public void blockDigestShouldFindChangedEntries() {
+
+        final long a = new Location(1L, 2L, 3L).getPackedLocation();
+        final long b = new Location(4L, 5L, 6L).getPackedLocation();
+        final long c = new Location(7L, 8L, 9L).getPackedLocation();
+        final ContentDigests.BlockDigest stored = new ContentDigests.BlockDigest(0L, new long[]{b, a}, new long[]{2L, 1L});
+        final ContentDigests.BlockDigest current = new ContentDigests.BlockDigest(0L, new long[]{c, a}, new long[]{3L, 1L});
+        Assert.assertEquals(new ContentDigests.BlockDigest(0L, new long[]{a, b}, new long[]{1L, 2L}).getHash(), stored.getHash());
+        Assert.assertNotEquals(stored.getHash(), current.getHash());
+
+        final List<Long> removed = new ArrayList<>();
+        final List<Long> added = new ArrayList<>();
+        stored.diff(current, new ContentDigests.EntryDiffListener() {
+            @Override
+            public void removed(long key, long value) {
+                removed.add(key);
+            }
+
+            @Override
+            public void added(long key, long value) {
+                added.add(key);
+            }
+        });
+        Assert.assertEquals(1, removed.size());
+        Assert.assertEquals(b, (long) removed.get(0));
+        Assert.assertEquals(1, added.size());
+        Assert.assertEquals(c, (long) added.get(0));
+
+        final ContentDigests.Builder builder = new ContentDigests.Builder();
+        builder.add(a, 1L);
+        builder.add(new Location((long) ContentDigests.BLOCK_SIZE, 0L, 0L).getPackedLocation(), 1L);
+        final Map<Long, ContentDigests.BlockDigest> digests = builder.build();
+        Assert.assertEquals(2, digests.size());
+        Assert.assertTrue(digests.containsKey(ContentDigests.blockOf(a)));
+    }
+
+}
@@ -0,0 +1,92 @@
+package org.janelia.flyem.neuprint;
+
+import org.janelia.flyem.neuprint.db.ProfilingTransactionBatch;
+import org.janelia.flyem.neuprint.db.StatementProfile;
+import org.janelia.flyem.neuprint.metrics.LoadMetrics;
+import org.janelia.flyem.neuprint.metrics.LoadProfile;
+import org.janelia.flyem.neuprint.model.Neuron;
+import org.janelia.flyem.neuprint.model.Synapse;
+import org.janelia.flyem.neuprint.model.SynapticConnection;
+import org.junit.Assert;
+import org.junit.Test;
+import org.neo4j.driver.v1.Statement;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+import static org.neo4j.driver.v1.Values.parameters;
+
+/**
+ * Tests dry runs of a load, which record statements in a {@link StatementProfile} instead of writing them.
+ */
+public class DryRunTest {
+
+    @Test
+    public void batchShouldCountStatementsTransactionsAndPayload() {
+
+        final StatementProfile profile = new StatementProfile("test", 1, 1000);
+        final ProfilingTransactionBatch batch = new ProfilingTransactionBatch(profile, 3);
+        for (int i = 0; i < 7; i++) {
+            batch.addStatement(new Statement("MERGE (n:Test{id:$id})", parameters("id", i)));
+        }
+        batch.writeTransaction();
+        batch.writeTransaction();
+        batch.close();
+
+        Assert.assertEquals(7, profile.getStatementCount());
+        Assert.assertEquals("two full transactions and one with the remaining statement", 3, profile.getTransactionCount());
+        // map header, key "id" and a number
+        Assert.assertEquals(7 * (3 + 5 + 9), profile.getEstimatedParameterBytes());
+
+        final StatementProfile sampled = new StatementProfile("sampled", 4, 1000);
+        for (int i = 0; i < 8; i++) {
+            sampled.recordStatement(new Statement("MATCH (n) SET n.name=$name", parameters("name", i % 4 == 0 ? "abc" : "much longer name")));
+        }
+        Assert.assertEquals("only the short names are sampled", 8 * (3 + 7 + 6), sampled.getEstimatedParameterBytes());
+
+    }
+
+    @Test
+    public void importerShouldRunWithoutDatabase() {
+
+        final List<Neuron> neuronList = NeuPrintMain.readNeuronsJson("src/test/resources/neuronList.json");
+        final List<Synapse> synapseList = NeuPrintMain.readSynapsesJson("src/test/resources/synapseList.json");
+        final List<SynapticConnection> connectionsList = NeuPrintMain.readConnectionsJson("src/test/resources/connectionsList.json");
+        final LocalDateTime timeStamp = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS);
+
+        final LoadProfile loadProfile = new LoadProfile(1, 1000);
+        try (Neo4jImporter neo4jImporter = new Neo4jImporter(null, loadProfile.getPhase("initializing database"))) {
+            NeuPrintMain.initializeDatabase(neo4jImporter, "test", 1.0F, .2D, .8D, true, true, timeStamp);
+        }
+        try (Neo4jImporter neo4jImporter = new Neo4jImporter(null, loadProfile.getPhase(NeuPrintMain.SYNAPSE_PHASE))) {
+            neo4jImporter.addSynapsesWithRois("test", synapseList, timeStamp);
+            neo4jImporter.indexBooleanRoiProperties("test");
+        }
+        try (Neo4jImporter neo4jImporter = new Neo4jImporter(null, loadProfile.getPhase(NeuPrintMain.CONNECTION_PHASE))) {
+            neo4jImporter.addSynapsesTo("test", connectionsList, timeStamp);
+            neo4jImporter.reconcileSynapseCounts("test", timeStamp);
+        }
+        try (Neo4jImporter neo4jImporter = new Neo4jImporter(null, loadProfile.getPhase(NeuPrintMain.NEURON_PHASE))) {
+            neo4jImporter.setUseUnwindBatches(true);
+            neo4jImporter.addSegments("test", neuronList, timeStamp);
+        }
+
+        final StatementProfile synapses = loadProfile.getPhase(NeuPrintMain.SYNAPSE_PHASE);
+        Assert.assertTrue(synapses.getStatementCount() >= synapseList.size());
+        Assert.assertTrue(synapses.getDistinctQueryCount() > 1);
+        Assert.assertTrue(synapses.getEstimatedParameterBytes() > 0);
+        Assert.assertTrue(loadProfile.getPhase(NeuPrintMain.CONNECTION_PHASE).getTransactionCount() > 0);
+
+        // one UNWIND statement carries up to 1000 segments
+        final StatementProfile neurons = loadProfile.getPhase(NeuPrintMain.NEURON_PHASE);
+        Assert.assertTrue(neurons.getStatementCount() > 0);
+        Assert.assertTrue(neurons.getStatementCount() < neuronList.size());
+
+        final String report = loadProfile.getReport(new LoadMetrics());
+        Assert.assertTrue(report.contains(NeuPrintMain.SYNAPSE_PHASE));
+        Assert.assertTrue(report.contains("initializing database"));
+
+    }
+
+}
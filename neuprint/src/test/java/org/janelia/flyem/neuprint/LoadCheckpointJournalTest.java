@@ -0,0 +1,153 @@
+package org.janelia.flyem.neuprint;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Tests the {@link LoadCheckpointJournal} class.
+ */
+public class LoadCheckpointJournalTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private String inputFile() throws IOException {
+        final File inputFile = folder.newFile("synapses.json");
+        Files.write(inputFile.toPath(), "[{},{},{},{},{},{},{},{},{},{}]".getBytes(StandardCharsets.UTF_8));
+        return inputFile.getAbsolutePath();
+    }
+
+    @Test
+    public void shouldResumeAfterContiguousCommittedBatches() throws IOException {
+
+        final String inputFile = inputFile();
+
+        try (LoadCheckpointJournal journal = LoadCheckpointJournal.open(inputFile, "test", false)) {
+            journal.recordBatch("synapses", 0, 0, 2);
+            journal.recordBatch("synapses", 2, 4, 2);
+            journal.recordBatch("synapses", 1, 2, 2);
+            journal.recordBatch("synapses", 4, 8, 2);
+            journal.recordPhaseComplete("neurons");
+        }
+
+        try (LoadCheckpointJournal journal = LoadCheckpointJournal.open(inputFile, "test", true)) {
+            Assert.assertEquals(6, journal.getCommittedCount("synapses"));
+            Assert.assertEquals(5, journal.getNextBatchNumber("synapses"));
+            Assert.assertFalse(journal.isPhaseComplete("synapses"));
+            Assert.assertTrue(journal.isPhaseComplete("neurons"));
+            Assert.assertEquals(0, journal.getCommittedCount("synaptic connections"));
+
+            journal.recordBatch("synapses", 5, 6, 2);
+        }
+
+        try (LoadCheckpointJournal journal = LoadCheckpointJournal.open(inputFile, "test", true)) {
+            Assert.assertEquals(10, journal.getCommittedCount("synapses"));
+        }
+    }
+
+    @Test
+    public void shouldStartOverWithoutResume() throws IOException {
+
+        final String inputFile = inputFile();
+
+        try (LoadCheckpointJournal journal = LoadCheckpointJournal.open(inputFile, "test", false)) {
+            journal.recordBatch("synapses", 0, 0, 2);
+            journal.recordPhaseComplete("synapses");
+        }
+
+        try (LoadCheckpointJournal journal = LoadCheckpointJournal.open(inputFile, "test", false)) {
+            Assert.assertEquals(0, journal.getCommittedCount("synapses"));
+            Assert.assertFalse(journal.isPhaseComplete("synapses"));
+        }
+
+        try (LoadCheckpointJournal journal = LoadCheckpointJournal.open(inputFile, "test", true)) {
+            Assert.assertEquals(0, journal.getCommittedCount("synapses"));
+        }
+    }
+
+    @Test
+    public void shouldIgnoreLineCutShort() throws IOException {
+
+        final String inputFile = inputFile();
+        final Path journalPath = LoadCheckpointJournal.journalPathFor(inputFile, "test");
+
+        try (LoadCheckpointJournal journal = LoadCheckpointJournal.open(inputFile, "test", false)) {
+            journal.recordBatch("synapses", 0, 0, 2);
+        }
+        Files.write(journalPath, ("batch\tsynapses\t" + inputFile + "\t1\t2\t2").getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+
+        try (LoadCheckpointJournal journal = LoadCheckpointJournal.open(inputFile, "test", true)) {
+            Assert.assertEquals(2, journal.getCommittedCount("synapses"));
+            journal.recordBatch("synapses", 1, 2, 2);
+        }
+
+        try (LoadCheckpointJournal journal = LoadCheckpointJournal.open(inputFile, "test", true)) {
+            Assert.assertEquals(4, journal.getCommittedCount("synapses"));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectJournalForChangedInput() throws IOException {
+
+        final String inputFile = inputFile();
+
+        try (LoadCheckpointJournal journal = LoadCheckpointJournal.open(inputFile, "test", false)) {
+            journal.recordBatch("synapses", 0, 0, 2);
+        }
+        Files.write(new File(inputFile).toPath(), "[{},{}]".getBytes(StandardCharsets.UTF_8));
+
+        LoadCheckpointJournal.open(inputFile, "test", true);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectJournalForAddedShard() throws IOException {
+
+        final File shardDirectory = folder.newFolder("synapses");
+        Files.write(new File(shardDirectory, "part-0.json").toPath(), "[{},{}]".getBytes(StandardCharsets.UTF_8));
+        final String input = shardDirectory.getAbsolutePath() + "/part-*.json";
+
+        try (LoadCheckpointJournal journal = LoadCheckpointJournal.open(input, "test", false)) {
+            journal.recordBatch("synapses", 0, 0, 2);
+        }
+        try (LoadCheckpointJournal journal = LoadCheckpointJournal.open(input, "test", true)) {
+            Assert.assertEquals(2, journal.getCommittedCount("synapses"));
+        }
+        Files.write(new File(shardDirectory, "part-1.json").toPath(), "[{},{}]".getBytes(StandardCharsets.UTF_8));
+
+        LoadCheckpointJournal.open(input, "test", true);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectJournalForChangedShardInDirectory() throws IOException {
+
+        final File shardDirectory = folder.newFolder("synapses");
+        final Path shard = new File(shardDirectory, "part-0.json").toPath();
+        Files.write(shard, "[{},{}]".getBytes(StandardCharsets.UTF_8));
+
+        try (LoadCheckpointJournal journal = LoadCheckpointJournal.open(shardDirectory.getAbsolutePath(), "test", false)) {
+            journal.recordBatch("synapses", 0, 0, 2);
+        }
+        Files.write(shard, "[{},{},{}]".getBytes(StandardCharsets.UTF_8));
+
+        LoadCheckpointJournal.open(shardDirectory.getAbsolutePath(), "test", true);
+    }
+
+    @Test
+    public void shouldNameJournalOfPatternWithoutGlobCharacters() throws IOException {
+
+        final Path journalPath = LoadCheckpointJournal.journalPathFor(folder.getRoot().getAbsolutePath() + "/synapses-*.json.gz", "test");
+
+        Assert.assertEquals(folder.getRoot().toPath().toAbsolutePath().normalize(), journalPath.getParent());
+        Assert.assertEquals("synapses-_.json.gz.test.checkpoint", journalPath.getFileName().toString());
+    }
+
+}
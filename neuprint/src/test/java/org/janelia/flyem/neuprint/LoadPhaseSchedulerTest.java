@@ -0,0 +1,142 @@
+package org.janelia.flyem.neuprint;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests the {@link LoadPhaseScheduler} class.
+ */
+public class LoadPhaseSchedulerTest {
+
+    private static final List<String> NONE = Collections.emptyList();
+
+    /**
+     * Records the most phases running at once.
+     */
+    private static class Overlap {
+        private final AtomicInteger running = new AtomicInteger();
+        private final AtomicInteger maxRunning = new AtomicInteger();
+
+        LoadPhaseScheduler.PhaseAction action() {
+            return () -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                Thread.sleep(50);
+                running.decrementAndGet();
+            };
+        }
+    }
+
+    @Test
+    public void shouldRunPhasesInOrderWhenNotConcurrent() throws Exception {
+
+        final List<String> started = Collections.synchronizedList(new ArrayList<>());
+        final Overlap overlap = new Overlap();
+        final LoadPhaseScheduler scheduler = new LoadPhaseScheduler(false, 10);
+        for (final String name : Arrays.asList("a", "b", "c")) {
+            final LoadPhaseScheduler.PhaseAction action = overlap.action();
+            scheduler.addPhase(name, NONE, NONE, 0, false, () -> {
+                started.add(name);
+                action.run();
+            });
+        }
+
+        scheduler.run();
+
+        Assert.assertEquals(Arrays.asList("a", "b", "c"), started);
+        Assert.assertEquals(1, overlap.maxRunning.get());
+        for (final LoadPhaseScheduler.Phase phase : scheduler.getPhases()) {
+            Assert.assertEquals(LoadPhaseScheduler.Status.COMPLETE, phase.getStatus());
+        }
+
+    }
+
+    @Test
+    public void shouldRunIndependentPhasesConcurrentlyAfterTheirInputs() throws Exception {
+
+        final CountDownLatch aStarted = new CountDownLatch(1);
+        final CountDownLatch bStarted = new CountDownLatch(1);
+        final List<String> finished = Collections.synchronizedList(new ArrayList<>());
+
+        final LoadPhaseScheduler scheduler = new LoadPhaseScheduler(true, 10);
+        scheduler.addPhase("base", NONE, Collections.singletonList("x"), 1, false, () -> finished.add("base"));
+        // each of these waits until the other has started, so they only finish if they run at the same time
+        scheduler.addPhase("a", Collections.singletonList("x"), Collections.singletonList("y"), 1, false, () -> {
+            aStarted.countDown();
+            Assert.assertTrue(bStarted.await(10, TimeUnit.SECONDS));
+            finished.add("a");
+        });
+        scheduler.addPhase("b", Collections.singletonList("x"), Collections.singletonList("z"), 1, false, () -> {
+            bStarted.countDown();
+            Assert.assertTrue(aStarted.await(10, TimeUnit.SECONDS));
+            finished.add("b");
+        });
+        final LoadPhaseScheduler.Phase last = scheduler.addPhase("last", Arrays.asList("y", "z", "not produced"), NONE, 1, false, () -> finished.add("last"));
+
+        scheduler.run();
+
+        Assert.assertEquals(2, last.getDependencies().size());
+        Assert.assertEquals("base", finished.get(0));
+        Assert.assertEquals("last", finished.get(3));
+
+    }
+
+    @Test
+    public void shouldKeepConcurrentPhasesWithinBudget() throws Exception {
+
+        final Overlap writers = new Overlap();
+        final LoadPhaseScheduler writerScheduler = new LoadPhaseScheduler(true, 3);
+        for (int i = 0; i < 4; i++) {
+            writerScheduler.addPhase("writer " + i, NONE, NONE, 2, false, writers.action());
+        }
+        writerScheduler.run();
+        Assert.assertEquals(1, writers.maxRunning.get());
+
+        final Overlap memory = new Overlap();
+        final LoadPhaseScheduler memoryScheduler = new LoadPhaseScheduler(true, 10);
+        for (int i = 0; i < 4; i++) {
+            memoryScheduler.addPhase("in memory " + i, NONE, NONE, 0, true, memory.action());
+        }
+        memoryScheduler.run();
+        Assert.assertEquals(1, memory.maxRunning.get());
+
+        final Overlap large = new Overlap();
+        final LoadPhaseScheduler largeScheduler = new LoadPhaseScheduler(true, 1);
+        largeScheduler.addPhase("more writers than budget", NONE, NONE, 4, false, large.action());
+        largeScheduler.addPhase("other", NONE, NONE, 1, false, large.action());
+        largeScheduler.run();
+        Assert.assertEquals(1, large.maxRunning.get());
+
+    }
+
+    @Test
+    public void shouldStopStartingPhasesAfterFailure() throws Exception {
+
+        final LoadPhaseScheduler scheduler = new LoadPhaseScheduler(true, 10);
+        scheduler.addPhase("fails", NONE, Collections.singletonList("x"), 1, false, () -> {
+            throw new IOException("cannot read input");
+        });
+        final LoadPhaseScheduler.Phase dependent = scheduler.addPhase("dependent", Collections.singletonList("x"), NONE, 1, false, () -> Assert.fail("should not run"));
+
+        try {
+            scheduler.run();
+            Assert.fail("failure should be thrown");
+        } catch (IOException e) {
+            Assert.assertEquals("cannot read input", e.getMessage());
+        }
+
+        Assert.assertEquals(LoadPhaseScheduler.Status.FAILED, scheduler.getPhases().get(0).getStatus());
+        Assert.assertEquals(LoadPhaseScheduler.Status.PENDING, dependent.getStatus());
+        Assert.assertTrue(scheduler.getReport().contains("dependent"));
+
+    }
+
+}
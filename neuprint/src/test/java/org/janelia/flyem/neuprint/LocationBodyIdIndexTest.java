@@ -0,0 +1,122 @@
+package org.janelia.flyem.neuprint;
+
+import org.janelia.flyem.neuprint.model.Location;
+import org.janelia.flyem.neuprint.model.LocationSet;
+import org.janelia.flyem.neuprint.model.Neuron;
+import org.janelia.flyem.neuprint.model.Synapse;
+import org.janelia.flyem.neuprint.model.SynapticConnection;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Tests the {@link LocationBodyIdIndex} class.
+ */
+public class LocationBodyIdIndexTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static long indexFileCount(final Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.count();
+        }
+    }
+
+    @Test
+    public void shouldFindBodyIdsAfterGrowing() throws IOException {
+
+        final Path directory = folder.getRoot().toPath();
+        final Random random = new Random(7);
+        final Map<Long, Long> expected = new HashMap<>();
+
+        try (LocationBodyIdIndex index = LocationBodyIdIndex.create(directory)) {
+            // location 0 must not be mistaken for an empty slot
+            Assert.assertEquals(LocationBodyIdIndex.NO_BODY_ID, index.get(0L));
+            index.put(Location.pack(0, 0, 0), 5L);
+            expected.put(Location.pack(0, 0, 0), 5L);
+
+            while (expected.size() < 200000) {
+                final long packedLocation = Location.pack(random.nextInt(20000) - 10000, random.nextInt(20000) - 10000, random.nextInt(20000) - 10000);
+                final long bodyId = random.nextInt(1000);
+                final Long previousBodyId = expected.put(packedLocation, bodyId);
+                Assert.assertEquals(previousBodyId == null ? LocationBodyIdIndex.NO_BODY_ID : previousBodyId, index.put(packedLocation, bodyId));
+            }
+
+            Assert.assertEquals(expected.size(), index.size());
+            Assert.assertEquals("old index files should be deleted when the index grows", 1, indexFileCount(directory));
+            for (final Map.Entry<Long, Long> entry : expected.entrySet()) {
+                Assert.assertEquals(entry.getValue().longValue(), index.get(entry.getKey()));
+            }
+            Assert.assertEquals(LocationBodyIdIndex.NO_BODY_ID, index.get(Location.pack(10001, 0, 0)));
+        }
+
+        Assert.assertEquals("index file should be deleted when closed", 0, indexFileCount(directory));
+
+    }
+
+    private static Neuron neuron(final long bodyId, final LocationSet synapseLocationSet) {
+        return new Neuron(bodyId, null, null, null, null, null, null, null, null, null, null, null, null, null, synapseLocationSet);
+    }
+
+    @Test
+    public void shouldCountLocationsInMoreThanOneSynapseSet() throws IOException {
+
+        final Neuron a = neuron(1L, new LocationSet(Arrays.asList(new Location(1L, 2L, 3L), new Location(4L, 5L, 6L))));
+        final Neuron b = neuron(2L, new LocationSet(Arrays.asList(new Location(4L, 5L, 6L), new Location(7L, 8L, 9L))));
+        final Neuron noSynapses = neuron(3L, null);
+
+        try (LocationBodyIdIndex index = LocationBodyIdIndex.create(folder.getRoot().toPath())) {
+            index.addNeurons(Arrays.asList(a, a, noSynapses, b));
+
+            Assert.assertEquals(3, index.size());
+            Assert.assertEquals(1, index.getConflictCount());
+            Assert.assertEquals(1L, index.get(new Location(1L, 2L, 3L)));
+            Assert.assertEquals(2L, index.get(new Location(4L, 5L, 6L)));
+            Assert.assertEquals(2L, index.get(new Location(7L, 8L, 9L)));
+        }
+
+    }
+
+    @Test
+    public void summaryShouldFindTheSameConnectionSetsWithIndex() throws IOException {
+
+        final List<Neuron> neuronList = NeuPrintMain.readNeuronsJson("src/test/resources/neuronList.json");
+        final List<Synapse> synapseList = NeuPrintMain.readSynapsesJson("src/test/resources/synapseList.json");
+        final List<SynapticConnection> connectionsList = NeuPrintMain.readConnectionsJson("src/test/resources/connectionsList.json");
+
+        final ConnectivitySummary expected = new ConnectivitySummary(synapseList, connectionsList, neuronList, .2D, .8D, 5);
+        final ConnectivitySummary actual;
+        try (LocationBodyIdIndex index = LocationBodyIdIndex.create(folder.getRoot().toPath())) {
+            index.addNeurons(neuronList);
+            actual = new ConnectivitySummary(synapseList, connectionsList, neuronList, index, .2D, .8D, 5);
+        }
+
+        Assert.assertFalse(expected.getConnectionSets().isEmpty());
+        Assert.assertEquals(describe(expected.getConnectionSets()), describe(actual.getConnectionSets()));
+
+    }
+
+    private static List<List<Object>> describe(final Iterable<ConnectivitySummary.ConnectionSetSummary> connectionSets) {
+        final List<List<Object>> descriptions = new ArrayList<>();
+        for (final ConnectivitySummary.ConnectionSetSummary connectionSet : connectionSets) {
+            descriptions.add(Arrays.asList(connectionSet.getPreBodyId(), connectionSet.getPostBodyId(), connectionSet.getWeight(), connectionSet.getWeightHP(),
+                                           connectionSet.getSynapses().stream().map(Synapse::getPackedLocation).sorted().collect(Collectors.toList())));
+        }
+        return descriptions;
+    }
+
+}
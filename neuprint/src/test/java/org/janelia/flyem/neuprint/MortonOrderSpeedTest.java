@@ -0,0 +1,159 @@
+package org.janelia.flyem.neuprint;
+
+import apoc.convert.Json;
+import apoc.create.Create;
+import com.google.common.base.Stopwatch;
+import org.janelia.flyem.neuprint.columnar.ColumnarReader;
+import org.janelia.flyem.neuprint.columnar.MortonOrderSorter;
+import org.janelia.flyem.neuprint.model.Location;
+import org.janelia.flyem.neuprint.model.Synapse;
+import org.janelia.flyem.neuprint.model.SynapticConnection;
+import org.janelia.flyem.neuprintloadprocedures.procedures.LoadingProcedures;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.neo4j.driver.v1.Config;
+import org.neo4j.driver.v1.Driver;
+import org.neo4j.driver.v1.GraphDatabase;
+import org.neo4j.driver.v1.Session;
+import org.neo4j.harness.junit.Neo4jRule;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Loads the same synthetic synapses and connections once in input order and once in Morton order
+ * ({@link MortonOrderSorter}), reports the time of common traversals on each and checks that they return the
+ * same results. Differences in traversal time come from page cache locality and only show on stores larger
+ * than the page cache, so this is a harness for comparing loads rather than an assertion about speed.
+ */
+public class MortonOrderSpeedTest {
+
+    @ClassRule
+    public static Neo4jRule neo4j;
+    @ClassRule
+    public static TemporaryFolder folder = new TemporaryFolder();
+    private static Driver driver;
+
+    private static final String INPUT_ORDER_DATASET = "inputorder";
+    private static final String MORTON_ORDER_DATASET = "mortonorder";
+
+    private static final String[] TRAVERSALS = {
+            // synapses in a ROI
+            "MATCH (s:`%1$s-PreSyn`) WHERE s.roiA RETURN count(s)",
+            // synapses in a box
+            "MATCH (s:`%1$s-Synapse`) WHERE s.location.x < 2000 AND s.location.y < 2000 AND s.location.z < 2000 RETURN count(s)",
+            // partners of the synapses in a ROI
+            "MATCH (s:`%1$s-PreSyn`)-[:SynapsesTo]->(t:`%1$s-PostSyn`) WHERE s.roiB RETURN count(t)",
+            // all connections
+            "MATCH (:`%1$s-PreSyn`)-[r:SynapsesTo]->(:`%1$s-PostSyn`) RETURN count(r)"
+    };
+
+    static {
+        neo4j = new Neo4jRule()
+                .withFunction(Json.class)
+                .withProcedure(LoadingProcedures.class)
+                .withProcedure(Create.class);
+    }
+
+    @BeforeClass
+    public static void before() throws IOException {
+
+        final Random random = new Random(3);
+        final List<Synapse> synapseList = new ArrayList<>();
+        final List<SynapticConnection> connectionsList = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            final long x = random.nextInt(10000);
+            final long y = random.nextInt(10000);
+            final long z = random.nextInt(10000);
+            final String roi = x < 5000 ? "roiA" : "roiB";
+            final Synapse pre = new Synapse("pre", random.nextDouble(), Location.pack(x, y, z), new HashSet<>(Collections.singletonList(roi)));
+            final Synapse post = new Synapse("post", random.nextDouble(), Location.pack(x + 1, y + 1, z + 1), new HashSet<>(Arrays.asList(roi, "roiC")));
+            synapseList.add(pre);
+            synapseList.add(post);
+            connectionsList.add(new SynapticConnection(pre.getPackedLocation(), post.getPackedLocation()));
+        }
+
+        final Path synapsePath = folder.getRoot().toPath().resolve("synapses.npcol");
+        final List<Synapse> sortedSynapseList;
+        try (MortonOrderSorter<Synapse> sorter = MortonOrderSorter.forSynapses(folder.getRoot().toPath(), 1000)) {
+            sorter.addAll(synapseList);
+            sorter.sortTo(synapsePath);
+        }
+        try (ColumnarReader reader = ColumnarReader.open(synapsePath)) {
+            sortedSynapseList = reader.readSynapses(0, synapseList.size());
+        }
+
+        final Path connectionPath = folder.getRoot().toPath().resolve("connections.npcol");
+        final List<SynapticConnection> sortedConnectionsList;
+        try (MortonOrderSorter<SynapticConnection> sorter = MortonOrderSorter.forConnections(folder.getRoot().toPath(), 1000)) {
+            sorter.addAll(connectionsList);
+            sorter.sortTo(connectionPath);
+        }
+        try (ColumnarReader reader = ColumnarReader.open(connectionPath)) {
+            sortedConnectionsList = reader.readConnections(0, connectionsList.size());
+        }
+
+        driver = GraphDatabase.driver(neo4j.boltURI(), Config.build().withoutEncryption().toConfig());
+
+        load(INPUT_ORDER_DATASET, synapseList, connectionsList);
+        load(MORTON_ORDER_DATASET, sortedSynapseList, sortedConnectionsList);
+
+    }
+
+    private static void load(String dataset, List<Synapse> synapseList, List<SynapticConnection> connectionsList) {
+
+        final LocalDateTime timeStamp = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS);
+
+        Neo4jImporter neo4jImporter = new Neo4jImporter(driver);
+        neo4jImporter.setUseUnwindBatches(true);
+        NeuPrintMain.initializeDatabase(neo4jImporter, dataset, 1.0F, .2D, .8D, true, true, timeStamp);
+        neo4jImporter.addSynapsesWithRois(dataset, synapseList, timeStamp);
+        neo4jImporter.addSynapsesTo(dataset, connectionsList, timeStamp);
+    }
+
+    @AfterClass
+    public static void after() {
+        driver.close();
+    }
+
+    private static long count(Session session, String queryTemplate, String dataset) {
+        return session.readTransaction(tx -> tx.run(String.format(queryTemplate, dataset))).single().get(0).asLong();
+    }
+
+    @Test
+    public void bothOrdersShouldReturnTheSameTraversalResults() {
+
+        try (Session session = driver.session()) {
+            for (final String traversal : TRAVERSALS) {
+                // first run warms the query cache
+                final long inputOrderCount = count(session, traversal, INPUT_ORDER_DATASET);
+                final long mortonOrderCount = count(session, traversal, MORTON_ORDER_DATASET);
+                Assert.assertEquals(traversal, inputOrderCount, mortonOrderCount);
+                Assert.assertTrue(traversal, mortonOrderCount > 0);
+
+                final Stopwatch inputOrderTime = Stopwatch.createStarted();
+                count(session, traversal, INPUT_ORDER_DATASET);
+                inputOrderTime.stop();
+                final Stopwatch mortonOrderTime = Stopwatch.createStarted();
+                count(session, traversal, MORTON_ORDER_DATASET);
+                mortonOrderTime.stop();
+
+                System.out.println(String.format(traversal, "<dataset>") + ": input order " + inputOrderTime + ", Morton order " + mortonOrderTime);
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,126 @@
+package org.janelia.flyem.neuprint;
+
+import org.janelia.flyem.neuprint.model.Neuron;
+import org.janelia.flyem.neuprint.model.Skeleton;
+import org.janelia.flyem.neuprint.model.Synapse;
+import org.janelia.flyem.neuprint.model.SynapticConnection;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Tests the {@link Neo4jAdminImportExporter} class. Expected counts and weights match those of a standard load
+ * of the same files (see {@link Neo4jImporterTest}).
+ */
+public class Neo4jAdminImportExporterTest {
+
+    @ClassRule
+    public static TemporaryFolder folder = new TemporaryFolder();
+
+    private static File outputDirectory;
+
+    @BeforeClass
+    public static void before() throws IOException {
+
+        File swcFile1 = new File("src/test/resources/101.swc");
+        File swcFile2 = new File("src/test/resources/102.swc");
+        File swcFile3 = new File("src/test/resources/831744.swc");
+
+        File[] arrayOfSwcFiles = new File[]{swcFile1, swcFile2, swcFile3};
+
+        List<Skeleton> skeletonList = NeuPrintMain.createSkeletonListFromSwcFileArray(arrayOfSwcFiles);
+        List<Neuron> neuronList = NeuPrintMain.readNeuronsJson("src/test/resources/neuronList.json");
+        List<Synapse> synapseList = NeuPrintMain.readSynapsesJson("src/test/resources/synapseList.json");
+        List<SynapticConnection> connectionsList = NeuPrintMain.readConnectionsJson("src/test/resources/connectionsList.json");
+
+        outputDirectory = new File(folder.getRoot(), "import");
+
+        LocalDateTime timeStamp = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS);
+
+        new Neo4jAdminImportExporter(outputDirectory, "test", 1.0F, .2D, .8D, true, 5, true, timeStamp)
+                .export(synapseList, connectionsList, neuronList, skeletonList);
+    }
+
+    private static List<String> readRows(String fileName) throws IOException {
+        List<String> lines = Files.readAllLines(new File(outputDirectory, fileName).toPath(), StandardCharsets.UTF_8);
+        return lines.subList(1, lines.size());
+    }
+
+    private static String readHeader(String fileName) throws IOException {
+        return Files.readAllLines(new File(outputDirectory, fileName).toPath(), StandardCharsets.UTF_8).get(0);
+    }
+
+    @Test
+    public void shouldWriteSynapsesFromSynapseAndConnectionFiles() throws IOException {
+
+        List<String> synapses = readRows("synapses.csv");
+
+        Assert.assertEquals(4, synapses.stream().filter(s -> s.endsWith(";PreSyn;test;test-Synapse;test-PreSyn\"")).count());
+        Assert.assertEquals(7, synapses.stream().filter(s -> s.endsWith(";PostSyn;test;test-Synapse;test-PostSyn\"")).count());
+
+        Assert.assertTrue(readHeader("synapses.csv").contains("roiA:boolean"));
+        Assert.assertTrue(synapses.stream().anyMatch(s -> s.startsWith("\"4287:2277:1502:pre\",\"{x:4287, y:2277, z:1502}\",\"pre\",1.0,")));
+
+        String meta = readRows("meta.csv").get(0);
+        Assert.assertTrue(meta.contains(",4,7,"));
+    }
+
+    @Test
+    public void shouldHaveCorrectConnectsToWeights() throws IOException {
+
+        List<String> connectsTo = readRows("connects_to.csv");
+
+        Assert.assertEquals("8426959,2589725,1,1,\"ConnectsTo\"", connectsTo.stream().filter(c -> c.startsWith("8426959,2589725,")).findFirst().orElse(null));
+        Assert.assertTrue(connectsTo.stream().anyMatch(c -> c.startsWith("8426959,26311,1,")));
+        Assert.assertTrue(connectsTo.stream().anyMatch(c -> c.startsWith("8426959,831744,1,")));
+        Assert.assertTrue(connectsTo.stream().anyMatch(c -> c.startsWith("26311,8426959,2,")));
+        Assert.assertTrue(connectsTo.stream().anyMatch(c -> c.startsWith("8426959,8426959,1,")));
+
+        Assert.assertEquals(connectsTo.size(), readRows("connectionsets.csv").size());
+        Assert.assertEquals(connectsTo.size(), readRows("connectionset_from.csv").size());
+        Assert.assertEquals(connectsTo.size(), readRows("connectionset_to.csv").size());
+    }
+
+    @Test
+    public void shouldLabelNeuronsAndWriteSkeletonOnlySegments() throws IOException {
+
+        List<String> segments = readRows("segments.csv");
+
+        List<String> neurons = segments.stream().filter(s -> s.endsWith(";Neuron;test-Neuron\"")).collect(Collectors.toList());
+        Assert.assertTrue(neurons.stream().anyMatch(s -> s.startsWith("8426959,8426959,")));
+
+        // 101 and 102 only have skeletons
+        Assert.assertTrue(segments.stream().anyMatch(s -> s.startsWith("101,101,")));
+        Assert.assertTrue(segments.stream().anyMatch(s -> s.startsWith("102,102,")));
+
+        Assert.assertEquals(3, readRows("skeletons.csv").size());
+        Assert.assertEquals(readRows("skelnodes.csv").size(), readRows("skeleton_contains_skelnode.csv").size());
+    }
+
+    @Test
+    public void shouldWriteImportArgumentsAndSchema() throws IOException {
+
+        List<String> arguments = Files.readAllLines(new File(outputDirectory, Neo4jAdminImportExporter.IMPORT_ARGUMENTS_FILE).toPath(), StandardCharsets.UTF_8);
+
+        Assert.assertEquals(8, arguments.stream().filter(a -> a.startsWith("--nodes=")).count());
+        Assert.assertEquals(11, arguments.stream().filter(a -> a.startsWith("--relationships=")).count());
+
+        List<String> schema = Files.readAllLines(new File(outputDirectory, Neo4jAdminImportExporter.SCHEMA_FILE).toPath(), StandardCharsets.UTF_8);
+
+        Assert.assertTrue(schema.contains("CREATE CONSTRAINT ON (n:`test-Segment`) ASSERT n.bodyId IS UNIQUE;"));
+        Assert.assertTrue(schema.contains("CREATE INDEX ON :`test-Neuron`(clusterName);"));
+        Assert.assertTrue(schema.contains("CREATE INDEX ON :`test-PreSyn`(`roiA`);"));
+    }
+
+}
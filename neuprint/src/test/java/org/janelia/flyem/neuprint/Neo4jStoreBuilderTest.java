@@ -0,0 +1,164 @@
+package org.janelia.flyem.neuprint;
+
+import apoc.convert.Json;
+import apoc.create.Create;
+import org.janelia.flyem.neuprint.model.MetaInfo;
+import org.janelia.flyem.neuprint.model.Neuron;
+import org.janelia.flyem.neuprint.model.Skeleton;
+import org.janelia.flyem.neuprint.model.Synapse;
+import org.janelia.flyem.neuprint.model.SynapticConnection;
+import org.janelia.flyem.neuprintloadprocedures.procedures.LoadingProcedures;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.neo4j.driver.v1.Config;
+import org.neo4j.driver.v1.Driver;
+import org.neo4j.driver.v1.GraphDatabase;
+import org.neo4j.driver.v1.Session;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.graphdb.factory.GraphDatabaseFactory;
+import org.neo4j.graphdb.schema.ConstraintDefinition;
+import org.neo4j.graphdb.schema.IndexDefinition;
+import org.neo4j.harness.junit.Neo4jRule;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Builds a store for the test resources with the {@link Neo4jStoreBuilder} and checks that it holds the same graph
+ * and schema as a standard transactional load.
+ */
+public class Neo4jStoreBuilderTest {
+
+    @ClassRule
+    public static Neo4jRule neo4j;
+    @ClassRule
+    public static TemporaryFolder folder = new TemporaryFolder();
+    private static Driver driver;
+    private static GraphDatabaseService builtDatabase;
+
+    static {
+        neo4j = new Neo4jRule()
+                .withFunction(Json.class)
+                .withProcedure(LoadingProcedures.class)
+                .withProcedure(Create.class);
+    }
+
+    @BeforeClass
+    public static void before() throws IOException {
+
+        File swcFile1 = new File("src/test/resources/101.swc");
+        File swcFile2 = new File("src/test/resources/102.swc");
+        File swcFile3 = new File("src/test/resources/831744.swc");
+
+        File[] arrayOfSwcFiles = new File[]{swcFile1, swcFile2, swcFile3};
+
+        List<Skeleton> skeletonList = NeuPrintMain.createSkeletonListFromSwcFileArray(arrayOfSwcFiles);
+        List<Neuron> neuronList = NeuPrintMain.readNeuronsJson("src/test/resources/neuronList.json");
+        List<Synapse> synapseList = NeuPrintMain.readSynapsesJson("src/test/resources/synapseList.json");
+        List<SynapticConnection> connectionsList = NeuPrintMain.readConnectionsJson("src/test/resources/connectionsList.json");
+        MetaInfo metaInfo = NeuPrintMain.readMetaInfoJson("src/test/resources/testMetaInfo.json");
+
+        final LocalDateTime timeStamp = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS);
+
+        driver = GraphDatabase.driver(neo4j.boltURI(), Config.build().withoutEncryption().toConfig());
+
+        NeuPrintMain.runStandardLoad(new Neo4jImporter(driver), "test", synapseList, connectionsList, neuronList, skeletonList, metaInfo, 1.0F, .2D, .8D, 5, true, true, timeStamp);
+
+        File storeDirectory = new File(folder.getRoot(), "graph.db");
+
+        new Neo4jStoreBuilder(storeDirectory, "test", 1.0F, .2D, .8D, true, 5, true, timeStamp)
+                .build(synapseList, connectionsList, neuronList, skeletonList);
+
+        builtDatabase = new GraphDatabaseFactory().newEmbeddedDatabase(storeDirectory);
+    }
+
+    @AfterClass
+    public static void after() {
+        driver.close();
+        builtDatabase.shutdown();
+    }
+
+    private static Object loadedValue(String query) {
+        try (Session session = driver.session()) {
+            return session.readTransaction(tx -> tx.run(query)).single().get(0).asObject();
+        }
+    }
+
+    private static Object builtValue(String query) {
+        try (Transaction tx = builtDatabase.beginTx()) {
+            Object value = builtDatabase.execute(query).columnAs("value").next();
+            tx.success();
+            return value;
+        }
+    }
+
+    @Test
+    public void builtStoreShouldHaveTheSameGraphAsAStandardLoad() {
+
+        String[] queries = {
+                "MATCH (s:`test-PreSyn`:`test-Synapse`:PreSyn:Synapse:test) RETURN count(s) AS value",
+                "MATCH (s:`test-PostSyn`:`test-Synapse`:PostSyn:Synapse:test) RETURN count(s) AS value",
+                "MATCH (:`test-PreSyn`)-[r:SynapsesTo]->(:`test-PostSyn`) RETURN count(r) AS value",
+                "MATCH (n:`test-Segment`:Segment:test) RETURN count(n) AS value",
+                "MATCH (n:`test-Neuron`:Neuron) RETURN count(n) AS value",
+                "MATCH (:`test-Segment`)-[:Contains]->(ss:`test-SynapseSet`:SynapseSet:test) RETURN count(ss) AS value",
+                "MATCH (:`test-SynapseSet`)-[r:Contains]->(:`test-Synapse`) RETURN count(r) AS value",
+                "MATCH (:`test-Segment`)<-[:From]-(cs:`test-ConnectionSet`:ConnectionSet:test)-[:To]->(:`test-Segment`) RETURN count(cs) AS value",
+                "MATCH (:`test-ConnectionSet`)-[r:Contains]->(:`test-Synapse`) RETURN count(r) AS value",
+                "MATCH (:`test-Segment`)-[r:ConnectsTo]->(:`test-Segment`) RETURN sum(r.weight) AS value",
+                "MATCH (:`test-Segment`)-[r:ConnectsTo]->(:`test-Segment`) RETURN sum(r.weightHP) AS value",
+                "MATCH (:`test-Segment`)-[:Contains]->(sk:`test-Skeleton`:Skeleton:test) RETURN count(sk) AS value",
+                "MATCH (:`test-Skeleton`)-[:Contains]->(sn:`test-SkelNode`:SkelNode:test) RETURN count(sn) AS value",
+                "MATCH (:`test-SkelNode`)-[r:LinksTo]->(:`test-SkelNode`) RETURN count(r) AS value",
+                "MATCH (n:`test-Segment`{bodyId:8426959}) RETURN [n.pre, n.post, n.clusterName] AS value",
+                "MATCH (n:`test-Segment`{bodyId:8426959}) RETURN n.roiInfo AS value",
+                "MATCH (s:`test-PostSyn`{location:point({x:4301, y:2276, z:1535})}) RETURN [s.confidence, s.roiA, s.roiB] AS value",
+                "MATCH (m:Meta:test) RETURN [m.totalPreCount, m.totalPostCount, m.roiInfo] AS value",
+                "MATCH (:Meta)-[:Is]->(d:DataModel) RETURN d.dataModelVersion AS value"
+        };
+
+        for (String query : queries) {
+            Assert.assertEquals(query, loadedValue(query), builtValue(query));
+        }
+
+        Assert.assertEquals(4L, builtValue(queries[0]));
+        Assert.assertEquals(7L, builtValue(queries[1]));
+    }
+
+    @Test
+    public void builtStoreShouldHaveConstraintsAndIndices() {
+
+        try (Transaction tx = builtDatabase.beginTx()) {
+
+            Set<String> constraints = new HashSet<>();
+            for (ConstraintDefinition constraint : builtDatabase.schema().getConstraints()) {
+                constraints.add(constraint.getLabel().name() + "." + constraint.getPropertyKeys().iterator().next());
+            }
+            Assert.assertTrue(constraints.contains("test-Segment.bodyId"));
+            Assert.assertTrue(constraints.contains("test-PreSyn.location"));
+            Assert.assertTrue(constraints.contains("Meta.dataset"));
+
+            Set<String> indices = new HashSet<>();
+            for (IndexDefinition index : builtDatabase.schema().getIndexes(Label.label("test-Neuron"))) {
+                indices.add(index.getPropertyKeys().iterator().next());
+            }
+            Assert.assertTrue(indices.contains("clusterName"));
+            Assert.assertTrue(indices.contains("roiA"));
+            Assert.assertTrue(indices.contains("status"));
+
+            tx.success();
+        }
+    }
+
+}
@@ -0,0 +1,64 @@
+package org.janelia.flyem.neuprint;
+
+import org.janelia.flyem.neuprint.json.NeuPrintJsonDecoder;
+import org.janelia.flyem.neuprint.model.Synapse;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tests the {@link ParallelJsonArrayBatchReader} class.
+ */
+public class ParallelJsonArrayBatchReaderTest {
+
+    private static final Path SYNAPSE_JSON = Paths.get("src/test/resources/synapseList.json");
+
+    private static List<List<Synapse>> readAllBatches(final int batchSize, final long firstIndex, final long chunkBytes) throws IOException {
+        final List<List<Synapse>> batches = new ArrayList<>();
+        try (ParallelJsonArrayBatchReader<Synapse> reader = new ParallelJsonArrayBatchReader<>(SYNAPSE_JSON, batchSize, 3, NeuPrintJsonDecoder::readSynapse, firstIndex, chunkBytes)) {
+            List<Synapse> batch = reader.readBatch();
+            while (!batch.isEmpty()) {
+                batches.add(batch);
+                batch = reader.readBatch();
+            }
+        }
+        return batches;
+    }
+
+    @Test
+    public void shouldReturnFullBatchesInFileOrder() throws IOException {
+
+        final List<Synapse> expected = NeuPrintJsonDecoder.forFile(SYNAPSE_JSON.toString()).readArray(NeuPrintJsonDecoder::readSynapse);
+
+        final List<List<Synapse>> batches = readAllBatches(3, 0, 150);
+
+        final List<Synapse> actual = new ArrayList<>();
+        for (int i = 0; i < batches.size(); i++) {
+            if (i < batches.size() - 1) {
+                Assert.assertEquals(3, batches.get(i).size());
+            }
+            actual.addAll(batches.get(i));
+        }
+        Assert.assertEquals(expected, actual);
+
+    }
+
+    @Test
+    public void shouldSkipElementsBeforeFirstIndex() throws IOException {
+
+        final List<Synapse> expected = NeuPrintJsonDecoder.forFile(SYNAPSE_JSON.toString()).readArray(NeuPrintJsonDecoder::readSynapse);
+
+        for (int firstIndex = 0; firstIndex <= expected.size(); firstIndex++) {
+            final List<Synapse> actual = new ArrayList<>();
+            readAllBatches(2, firstIndex, 150).forEach(actual::addAll);
+            Assert.assertEquals(expected.subList(firstIndex, expected.size()), actual);
+        }
+
+    }
+
+}
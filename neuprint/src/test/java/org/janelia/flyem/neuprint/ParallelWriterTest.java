@@ -0,0 +1,139 @@
+package org.janelia.flyem.neuprint;
+
+import apoc.convert.Json;
+import apoc.create.Create;
+import org.janelia.flyem.neuprint.model.Neuron;
+import org.janelia.flyem.neuprint.model.Skeleton;
+import org.janelia.flyem.neuprint.model.Synapse;
+import org.janelia.flyem.neuprint.model.SynapticConnection;
+import org.janelia.flyem.neuprintloadprocedures.procedures.LoadingProcedures;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.neo4j.driver.v1.Config;
+import org.neo4j.driver.v1.Driver;
+import org.neo4j.driver.v1.GraphDatabase;
+import org.neo4j.driver.v1.Session;
+import org.neo4j.harness.junit.Neo4jRule;
+
+import java.io.File;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Loads the test resources with a single writer and with several concurrent writers, in both write
+ * modes, and checks that all loads produce the same graph.
+ */
+public class ParallelWriterTest {
+
+    @ClassRule
+    public static Neo4jRule neo4j;
+    private static Driver driver;
+
+    private static final String SINGLE_WRITER_DATASET = "single";
+    private static final String PARALLEL_DATASET = "parallel";
+    private static final String PARALLEL_UNWIND_DATASET = "parallelunwind";
+    private static final String SKELETON_PIPELINE_DATASET = "skeletonpipeline";
+
+    static {
+        neo4j = new Neo4jRule()
+                .withFunction(Json.class)
+                .withProcedure(LoadingProcedures.class)
+                .withProcedure(Create.class);
+    }
+
+    @BeforeClass
+    public static void before() {
+
+        File swcFile1 = new File("src/test/resources/101.swc");
+        File swcFile2 = new File("src/test/resources/102.swc");
+        File swcFile3 = new File("src/test/resources/831744.swc");
+
+        File[] arrayOfSwcFiles = new File[]{swcFile1, swcFile2, swcFile3};
+
+        List<Skeleton> skeletonList = NeuPrintMain.createSkeletonListFromSwcFileArray(arrayOfSwcFiles);
+        List<Neuron> neuronList = NeuPrintMain.readNeuronsJson("src/test/resources/neuronList.json");
+        List<Synapse> synapseList = NeuPrintMain.readSynapsesJson("src/test/resources/synapseList.json");
+        List<SynapticConnection> connectionsList = NeuPrintMain.readConnectionsJson("src/test/resources/connectionsList.json");
+
+        driver = GraphDatabase.driver(neo4j.boltURI(), Config.build().withoutEncryption().toConfig());
+
+        load(new Neo4jImporter(driver), SINGLE_WRITER_DATASET, synapseList, connectionsList, neuronList, skeletonList);
+
+        load(new Neo4jImporter(driver, 4), PARALLEL_DATASET, synapseList, connectionsList, neuronList, skeletonList);
+
+        Neo4jImporter parallelUnwindImporter = new Neo4jImporter(driver, 4);
+        parallelUnwindImporter.setUseUnwindBatches(true);
+        load(parallelUnwindImporter, PARALLEL_UNWIND_DATASET, synapseList, connectionsList, neuronList, skeletonList);
+
+        // skeletons are parsed on a thread pool and written with bulk statements; the second load finds them all existing
+        Neo4jImporter skeletonPipelineImporter = new Neo4jImporter(driver, 4);
+        load(skeletonPipelineImporter, SKELETON_PIPELINE_DATASET, synapseList, connectionsList, neuronList, new ArrayList<>());
+        final LocalDateTime timeStamp = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS);
+        for (int i = 0; i < 2; i++) {
+            NeuPrintMain.loadSkeletonsInBatches(arrayOfSwcFiles, 2, true, skeletonPipelineImporter, SKELETON_PIPELINE_DATASET, 1.0F, .2D, .8D, true, true, timeStamp, 3, 2, 2);
+        }
+
+    }
+
+    private static void load(Neo4jImporter neo4jImporter,
+                             String dataset,
+                             List<Synapse> synapseList,
+                             List<SynapticConnection> connectionsList,
+                             List<Neuron> neuronList,
+                             List<Skeleton> skeletonList) {
+
+        final LocalDateTime timeStamp = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS);
+
+        NeuPrintMain.initializeDatabase(neo4jImporter, dataset, 1.0F, .2D, .8D, true, true, timeStamp);
+
+        neo4jImporter.addSynapsesWithRois(dataset, synapseList, timeStamp);
+        neo4jImporter.addSynapsesTo(dataset, connectionsList, timeStamp);
+        neo4jImporter.addSegments(dataset, neuronList, timeStamp);
+        neo4jImporter.addSkeletonNodes(dataset, skeletonList, timeStamp);
+    }
+
+    @AfterClass
+    public static void after() {
+        driver.close();
+    }
+
+    private static long count(Session session, String queryTemplate, String dataset) {
+        return session.readTransaction(tx -> tx.run(String.format(queryTemplate, dataset))).single().get(0).asLong();
+    }
+
+    @Test
+    public void parallelWritersShouldCreateTheSameNodesAndRelationships() {
+
+        String[] countQueries = {
+                "MATCH (s:`%1$s-PreSyn`:`%1$s-Synapse`:PreSyn:Synapse:%1$s) RETURN count(s)",
+                "MATCH (s:`%1$s-PostSyn`:`%1$s-Synapse`:PostSyn:Synapse:%1$s) RETURN count(s)",
+                "MATCH (:`%1$s-PreSyn`)-[r:SynapsesTo]->(:`%1$s-PostSyn`) RETURN count(r)",
+                "MATCH (n:`%1$s-Segment`:Segment:%1$s) RETURN count(n)",
+                "MATCH (:`%1$s-Segment`)-[:Contains]->(ss:`%1$s-SynapseSet`:SynapseSet:%1$s) RETURN count(ss)",
+                "MATCH (:`%1$s-SynapseSet`)-[r:Contains]->(:`%1$s-Synapse`) RETURN count(r)",
+                "MATCH (:`%1$s-Segment`)-[:Contains]->(sk:`%1$s-Skeleton`:Skeleton:%1$s) RETURN count(sk)",
+                "MATCH (:`%1$s-Skeleton`)-[:Contains]->(sn:`%1$s-SkelNode`:SkelNode:%1$s) RETURN count(sn)",
+                "MATCH (:`%1$s-SkelNode`)-[r:LinksTo]->(:`%1$s-SkelNode`) RETURN count(r)"
+        };
+
+        try (Session session = driver.session()) {
+
+            for (String countQuery : countQueries) {
+                long expected = count(session, countQuery, SINGLE_WRITER_DATASET);
+                Assert.assertEquals(countQuery, expected, count(session, countQuery, PARALLEL_DATASET));
+                Assert.assertEquals(countQuery, expected, count(session, countQuery, PARALLEL_UNWIND_DATASET));
+                Assert.assertEquals(countQuery, expected, count(session, countQuery, SKELETON_PIPELINE_DATASET));
+            }
+
+            Assert.assertEquals(4L, count(session, countQueries[0], PARALLEL_DATASET));
+            Assert.assertEquals(7L, count(session, countQueries[1], PARALLEL_DATASET));
+        }
+
+    }
+
+}
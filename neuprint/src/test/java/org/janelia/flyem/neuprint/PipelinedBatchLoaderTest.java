@@ -0,0 +1,157 @@
+package org.janelia.flyem.neuprint;
+
+import com.google.common.util.concurrent.Uninterruptibles;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests the {@link PipelinedBatchLoader} class.
+ */
+public class PipelinedBatchLoaderTest {
+
+    private static PipelinedBatchLoader.BatchReader<Integer> batchesOf(final int batchSize, final int count) {
+        final Iterator<Integer> iterator = range(count).iterator();
+        return () -> {
+            final List<Integer> batch = new ArrayList<>();
+            while (iterator.hasNext() && batch.size() < batchSize) {
+                batch.add(iterator.next());
+            }
+            return batch;
+        };
+    }
+
+    private static List<Integer> range(final int count) {
+        final List<Integer> values = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            values.add(i);
+        }
+        return values;
+    }
+
+    @Test
+    public void shouldWriteBatchesInOrderWithoutQueue() throws IOException {
+
+        final List<Integer> written = new ArrayList<>();
+
+        new PipelinedBatchLoader<Integer>("test", 0, 4).load(batchesOf(3, 10), written::addAll);
+
+        Assert.assertEquals(range(10), written);
+    }
+
+    @Test
+    public void shouldWriteBatchesInOrderWithOneWriter() throws IOException {
+
+        final List<Integer> written = new ArrayList<>();
+
+        new PipelinedBatchLoader<Integer>("test", 2, 1).load(batchesOf(3, 100), written::addAll);
+
+        Assert.assertEquals(range(100), written);
+    }
+
+    @Test
+    public void shouldWriteAllBatchesWithSeveralWriters() throws IOException {
+
+        final List<Integer> written = Collections.synchronizedList(new ArrayList<>());
+        final AtomicInteger batchCount = new AtomicInteger();
+
+        new PipelinedBatchLoader<Integer>("test", 2, 3).load(batchesOf(7, 1000), batch -> {
+            batchCount.incrementAndGet();
+            written.addAll(batch);
+        });
+
+        final List<Integer> sorted = new ArrayList<>(written);
+        Collections.sort(sorted);
+
+        Assert.assertEquals(range(1000), sorted);
+        Assert.assertEquals(143, batchCount.get());
+    }
+
+    @Test
+    public void shouldNumberWrittenBatchesInReadOrder() throws IOException {
+
+        final List<Long> firstValueMinusBatchStart = Collections.synchronizedList(new ArrayList<>());
+
+        new PipelinedBatchLoader<Integer>("test", 2, 3).load(batchesOf(5, 100), batch -> {
+        }, (batchNumber, batch) -> firstValueMinusBatchStart.add(batch.get(0) - batchNumber * 5));
+
+        Assert.assertEquals(20, firstValueMinusBatchStart.size());
+        Assert.assertEquals(Collections.nCopies(20, 0L), firstValueMinusBatchStart);
+    }
+
+    @Test(expected = IOException.class)
+    public void shouldRethrowListenerFailure() throws IOException {
+
+        new PipelinedBatchLoader<Integer>("test", 1, 2).load(batchesOf(1, 100), batch -> {
+        }, (batchNumber, batch) -> {
+            throw new IOException("failed to record batch");
+        });
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void shouldRethrowWriterFailure() throws IOException {
+
+        new PipelinedBatchLoader<Integer>("test", 1, 2).load(batchesOf(1, 100), batch -> {
+            if (batch.get(0) == 5) {
+                throw new IllegalStateException("failed to write batch");
+            }
+        });
+    }
+
+    @Test
+    public void shouldStopWritingAndReportingAfterWriterFailure() throws Exception {
+
+        final List<Integer> written = Collections.synchronizedList(new ArrayList<>());
+        final List<Long> reported = Collections.synchronizedList(new ArrayList<>());
+        final CountDownLatch failing = new CountDownLatch(1);
+        final CountDownLatch firstBatchWritten = new CountDownLatch(1);
+
+        // batch 0 is still being written by one writer, which is not interrupted, when the other fails writing batch 1
+        final PipelinedBatchLoader.BatchWriter<Integer> writer = batch -> {
+            if (batch.get(0) == 0) {
+                Uninterruptibles.awaitUninterruptibly(failing);
+                Uninterruptibles.sleepUninterruptibly(200, TimeUnit.MILLISECONDS);
+            } else if (batch.get(0) == 1) {
+                failing.countDown();
+                throw new IllegalStateException("failed to write batch");
+            }
+            written.addAll(batch);
+            firstBatchWritten.countDown();
+        };
+
+        try {
+            new PipelinedBatchLoader<Integer>("test", 1, 2).load(batchesOf(1, 100), writer, (batchNumber, batch) -> reported.add(batchNumber));
+            Assert.fail("writer failure should be rethrown");
+        } catch (IllegalStateException e) {
+            Assert.assertEquals("failed to write batch", e.getMessage());
+        }
+
+        Assert.assertTrue(firstBatchWritten.await(5, TimeUnit.SECONDS));
+        // time for the remaining writer to report batch 0 or take another batch if it did not stop
+        Thread.sleep(200);
+
+        // the batch written while the other writer failed is not reported, and no later batch is written
+        Assert.assertEquals(Collections.singletonList(0), written);
+        Assert.assertEquals(Collections.emptyList(), reported);
+    }
+
+    @Test(expected = IOException.class)
+    public void shouldRethrowReaderFailure() throws IOException {
+
+        final PipelinedBatchLoader.BatchReader<Integer> reader = () -> {
+            throw new IOException("failed to read batch");
+        };
+
+        new PipelinedBatchLoader<Integer>("test", 2, 2).load(reader, batch -> {
+        });
+    }
+
+}
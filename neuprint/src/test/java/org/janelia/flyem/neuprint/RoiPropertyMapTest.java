@@ -0,0 +1,119 @@
+package org.janelia.flyem.neuprint;
+
+import apoc.convert.Json;
+import apoc.create.Create;
+import org.janelia.flyem.neuprint.db.QueryPlanCacheStats;
+import org.janelia.flyem.neuprint.model.Neuron;
+import org.janelia.flyem.neuprint.model.Synapse;
+import org.janelia.flyem.neuprintloadprocedures.procedures.LoadingProcedures;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.neo4j.driver.v1.Config;
+import org.neo4j.driver.v1.Driver;
+import org.neo4j.driver.v1.GraphDatabase;
+import org.neo4j.driver.v1.Record;
+import org.neo4j.driver.v1.Session;
+import org.neo4j.harness.junit.Neo4jRule;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Tests loading synapse and segment ROI membership as map parameters ({@link Neo4jImporter#setUseRoiPropertyMaps(boolean)}).
+ */
+public class RoiPropertyMapTest {
+
+    @ClassRule
+    public static Neo4jRule neo4j;
+    private static Driver driver;
+    private static QueryPlanCacheStats roiStringStats;
+    private static QueryPlanCacheStats roiMapStats;
+
+    private static final String ROI_STRING_DATASET = "roistring";
+    private static final String ROI_MAP_DATASET = "roimap";
+
+    static {
+        neo4j = new Neo4jRule()
+                .withFunction(Json.class)
+                .withProcedure(LoadingProcedures.class)
+                .withProcedure(Create.class);
+    }
+
+    @BeforeClass
+    public static void before() {
+
+        List<Neuron> neuronList = NeuPrintMain.readNeuronsJson("src/test/resources/neuronList.json");
+        List<Synapse> synapseList = NeuPrintMain.readSynapsesJson("src/test/resources/synapseList.json");
+
+        driver = GraphDatabase.driver(neo4j.boltURI(), Config.build().withoutEncryption().toConfig());
+
+        roiStringStats = load(ROI_STRING_DATASET, false, synapseList, neuronList);
+        roiMapStats = load(ROI_MAP_DATASET, true, synapseList, neuronList);
+
+        System.out.println("ROI names in query text: " + roiStringStats);
+        System.out.println("ROI map parameters: " + roiMapStats);
+
+    }
+
+    private static QueryPlanCacheStats load(String dataset, boolean useRoiPropertyMaps, List<Synapse> synapseList, List<Neuron> neuronList) {
+
+        final LocalDateTime timeStamp = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS);
+
+        NeuPrintMain.initializeDatabase(new Neo4jImporter(driver), dataset, 1.0F, .2D, .8D, true, true, timeStamp);
+
+        Neo4jImporter neo4jImporter = new Neo4jImporter(driver);
+        neo4jImporter.setUseRoiPropertyMaps(useRoiPropertyMaps);
+        neo4jImporter.addSynapsesWithRois(dataset, synapseList, timeStamp);
+        neo4jImporter.addSegments(dataset, neuronList, timeStamp);
+
+        return neo4jImporter.getQueryPlanCacheStats();
+    }
+
+    @AfterClass
+    public static void after() {
+        driver.close();
+    }
+
+    private static Set<String> collect(Session session, String queryTemplate, String dataset) {
+        List<Record> records = session.readTransaction(tx -> tx.run(String.format(queryTemplate, dataset)).list());
+        Set<String> values = new TreeSet<>();
+        for (Record record : records) {
+            values.add(record.get(0).asObject() + ":" + new TreeSet<>(record.get(1).asList()));
+        }
+        return values;
+    }
+
+    @Test
+    public void shouldSetSameRoiPropertiesAsQueryTextRois() {
+
+        Session session = driver.session();
+
+        String synapseRoiQuery = "MATCH (s:`%s-Synapse`) RETURN toString(s.location), [k IN keys(s) WHERE s[k] = true]";
+        String segmentRoiQuery = "MATCH (n:`%s-Segment`) RETURN n.bodyId, [k IN keys(n) WHERE n[k] = true]";
+        String metaQuery = "MATCH (m:Meta{dataset:\"%s\"}) RETURN m.roiInfo, m.superLevelRois";
+
+        Set<String> synapseRois = collect(session, synapseRoiQuery, ROI_MAP_DATASET);
+        Assert.assertTrue(synapseRois.stream().anyMatch(s -> s.contains("roiA")));
+
+        Assert.assertEquals(collect(session, synapseRoiQuery, ROI_STRING_DATASET), synapseRois);
+        Assert.assertEquals(collect(session, segmentRoiQuery, ROI_STRING_DATASET), collect(session, segmentRoiQuery, ROI_MAP_DATASET));
+        Assert.assertEquals(collect(session, metaQuery, ROI_STRING_DATASET), collect(session, metaQuery, ROI_MAP_DATASET));
+
+    }
+
+    @Test
+    public void shouldUseFewerDistinctQueryTextsWithRoiMaps() {
+
+        Assert.assertEquals(roiStringStats.getStatementCount(), roiMapStats.getStatementCount());
+        Assert.assertTrue(roiMapStats.getDistinctQueryCount() < roiStringStats.getDistinctQueryCount());
+        Assert.assertTrue(roiMapStats.getHitRate() > roiStringStats.getHitRate());
+
+    }
+
+}
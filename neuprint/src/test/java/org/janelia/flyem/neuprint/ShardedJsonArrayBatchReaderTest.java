@@ -0,0 +1,127 @@
+package org.janelia.flyem.neuprint;
+
+import com.google.gson.JsonParseException;
+import org.janelia.flyem.neuprint.json.NeuPrintJsonDecoder;
+import org.janelia.flyem.neuprint.model.Synapse;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Tests the {@link ShardedJsonArrayBatchReader} class.
+ */
+public class ShardedJsonArrayBatchReaderTest {
+
+    private static final Path SYNAPSE_JSON = Paths.get("src/test/resources/synapseList.json");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Writes the synapses of the test file to shards of up to shardSize synapses, compressing every other shard.
+     */
+    private List<Path> writeShards(final List<Synapse> synapses, final int shardSize) throws IOException {
+        final String json = new String(Files.readAllBytes(SYNAPSE_JSON), StandardCharsets.UTF_8);
+        final List<String> elements = splitTopLevelElements(json);
+        Assert.assertEquals(synapses.size(), elements.size());
+
+        final List<Path> shards = new ArrayList<>();
+        for (int first = 0; first < elements.size(); first += shardSize) {
+            final String shardJson = "[" + String.join(",", elements.subList(first, Math.min(elements.size(), first + shardSize))) + "]";
+            final Path shard = folder.getRoot().toPath().resolve("shard-" + shards.size() + ".json");
+            try (OutputStream out = shards.size() % 2 == 0 ? Files.newOutputStream(shard) : new GZIPOutputStream(Files.newOutputStream(shard))) {
+                out.write(shardJson.getBytes(StandardCharsets.UTF_8));
+            }
+            shards.add(shard);
+        }
+        // an empty shard must not end the input
+        final Path empty = Files.write(folder.getRoot().toPath().resolve("shard-" + shards.size() + ".json"), "[]".getBytes(StandardCharsets.UTF_8));
+        shards.add(1, empty);
+        return shards;
+    }
+
+    private static List<String> splitTopLevelElements(final String json) {
+        final List<String> elements = new ArrayList<>();
+        int depth = 0;
+        int start = -1;
+        for (int i = 0; i < json.length(); i++) {
+            final char c = json.charAt(i);
+            if (c == '{') {
+                if (depth++ == 0) {
+                    start = i;
+                }
+            } else if (c == '}' && --depth == 0) {
+                elements.add(json.substring(start, i + 1));
+            }
+        }
+        return elements;
+    }
+
+    private static List<List<Synapse>> readAllBatches(final List<Path> shards, final int batchSize, final long firstIndex) throws IOException {
+        final List<List<Synapse>> batches = new ArrayList<>();
+        try (ShardedJsonArrayBatchReader<Synapse> reader = new ShardedJsonArrayBatchReader<>(shards, batchSize, 2, NeuPrintJsonDecoder::readSynapse, firstIndex)) {
+            List<Synapse> batch = reader.readBatch();
+            while (!batch.isEmpty()) {
+                batches.add(batch);
+                batch = reader.readBatch();
+            }
+        }
+        return batches;
+    }
+
+    @Test
+    public void shouldReturnFullBatchesInShardOrder() throws IOException {
+
+        final List<Synapse> expected = NeuPrintJsonDecoder.forFile(SYNAPSE_JSON.toString()).readArray(NeuPrintJsonDecoder::readSynapse);
+        final List<Path> shards = writeShards(expected, 2);
+
+        final List<List<Synapse>> batches = readAllBatches(shards, 3, 0);
+
+        final List<Synapse> actual = new ArrayList<>();
+        for (int i = 0; i < batches.size(); i++) {
+            if (i < batches.size() - 1) {
+                Assert.assertEquals(3, batches.get(i).size());
+            }
+            actual.addAll(batches.get(i));
+        }
+        Assert.assertEquals(expected, actual);
+
+    }
+
+    @Test
+    public void shouldSkipElementsBeforeFirstIndex() throws IOException {
+
+        final List<Synapse> expected = NeuPrintJsonDecoder.forFile(SYNAPSE_JSON.toString()).readArray(NeuPrintJsonDecoder::readSynapse);
+        final List<Path> shards = writeShards(expected, 3);
+
+        for (int firstIndex = 0; firstIndex <= expected.size(); firstIndex++) {
+            final List<Synapse> actual = new ArrayList<>();
+            readAllBatches(shards, 2, firstIndex).forEach(actual::addAll);
+            Assert.assertEquals(expected.subList(firstIndex, expected.size()), actual);
+        }
+
+    }
+
+    @Test(expected = JsonParseException.class)
+    public void shouldErrorIfShardCannotBeDecoded() throws IOException {
+
+        final List<Synapse> expected = NeuPrintJsonDecoder.forFile(SYNAPSE_JSON.toString()).readArray(NeuPrintJsonDecoder::readSynapse);
+        final List<Path> shards = writeShards(expected, 2);
+        shards.add(Files.write(folder.getRoot().toPath().resolve("broken.json"), "[{\"type\": \"pre\"".getBytes(StandardCharsets.UTF_8)));
+
+        readAllBatches(shards, 3, 0);
+
+    }
+
+}
@@ -0,0 +1,162 @@
+package org.janelia.flyem.neuprint;
+
+import apoc.convert.Json;
+import apoc.create.Create;
+import com.google.common.base.Stopwatch;
+import org.janelia.flyem.neuprint.model.Neuron;
+import org.janelia.flyem.neuprint.model.Skeleton;
+import org.janelia.flyem.neuprint.model.Synapse;
+import org.janelia.flyem.neuprint.model.SynapticConnection;
+import org.janelia.flyem.neuprintloadprocedures.procedures.LoadingProcedures;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.neo4j.driver.v1.Config;
+import org.neo4j.driver.v1.Driver;
+import org.neo4j.driver.v1.GraphDatabase;
+import org.neo4j.driver.v1.Record;
+import org.neo4j.driver.v1.Session;
+import org.neo4j.harness.junit.Neo4jRule;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Loads the test resources once with one statement per entity and once with UNWIND batches, reports
+ * the load time of each write mode and checks that both produce the same graph.
+ */
+public class UnwindBatchSpeedTest {
+
+    @ClassRule
+    public static Neo4jRule neo4j;
+    private static Driver driver;
+
+    private static final String PER_ROW_DATASET = "perrow";
+    private static final String UNWIND_DATASET = "unwind";
+
+    static {
+        neo4j = new Neo4jRule()
+                .withFunction(Json.class)
+                .withProcedure(LoadingProcedures.class)
+                .withProcedure(Create.class);
+    }
+
+    @BeforeClass
+    public static void before() {
+
+        File swcFile1 = new File("src/test/resources/101.swc");
+        File swcFile2 = new File("src/test/resources/102.swc");
+        File swcFile3 = new File("src/test/resources/831744.swc");
+
+        File[] arrayOfSwcFiles = new File[]{swcFile1, swcFile2, swcFile3};
+
+        List<Skeleton> skeletonList = NeuPrintMain.createSkeletonListFromSwcFileArray(arrayOfSwcFiles);
+        List<Neuron> neuronList = NeuPrintMain.readNeuronsJson("src/test/resources/neuronList.json");
+        List<Synapse> synapseList = NeuPrintMain.readSynapsesJson("src/test/resources/synapseList.json");
+        List<SynapticConnection> connectionsList = NeuPrintMain.readConnectionsJson("src/test/resources/connectionsList.json");
+
+        driver = GraphDatabase.driver(neo4j.boltURI(), Config.build().withoutEncryption().toConfig());
+
+        Neo4jImporter perRowImporter = new Neo4jImporter(driver);
+        Stopwatch perRowTime = load(perRowImporter, PER_ROW_DATASET, synapseList, connectionsList, neuronList, skeletonList);
+
+        Neo4jImporter unwindImporter = new Neo4jImporter(driver);
+        unwindImporter.setUseUnwindBatches(true);
+        Stopwatch unwindTime = load(unwindImporter, UNWIND_DATASET, synapseList, connectionsList, neuronList, skeletonList);
+
+        LOG.info("Statement per entity load: {}", perRowTime);
+        LOG.info("UNWIND batch load: {}", unwindTime);
+
+    }
+
+    private static Stopwatch load(Neo4jImporter neo4jImporter,
+                                  String dataset,
+                                  List<Synapse> synapseList,
+                                  List<SynapticConnection> connectionsList,
+                                  List<Neuron> neuronList,
+                                  List<Skeleton> skeletonList) {
+
+        final LocalDateTime timeStamp = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS);
+
+        NeuPrintMain.initializeDatabase(neo4jImporter, dataset, 1.0F, .2D, .8D, true, true, timeStamp);
+
+        Stopwatch timer = Stopwatch.createStarted();
+        neo4jImporter.addSynapsesWithRois(dataset, synapseList, timeStamp);
+        neo4jImporter.addSynapsesTo(dataset, connectionsList, timeStamp);
+        neo4jImporter.addSegments(dataset, neuronList, timeStamp);
+        neo4jImporter.addSkeletonNodes(dataset, skeletonList, timeStamp);
+        return timer.stop();
+    }
+
+    @AfterClass
+    public static void after() {
+        driver.close();
+    }
+
+    private static long count(Session session, String queryTemplate, String dataset) {
+        return session.readTransaction(tx -> tx.run(String.format(queryTemplate, dataset))).single().get(0).asLong();
+    }
+
+    private static Set<String> collect(Session session, String queryTemplate, String dataset) {
+        List<Record> records = session.readTransaction(tx -> tx.run(String.format(queryTemplate, dataset)).list());
+        Set<String> values = new TreeSet<>();
+        for (Record record : records) {
+            values.add(record.get(0).asObject() + ":" + new TreeSet<>(record.get(1).asList()));
+        }
+        return values;
+    }
+
+    @Test
+    public void bothWriteModesShouldCreateTheSameNodesAndRelationships() {
+
+        String[] countQueries = {
+                "MATCH (s:`%1$s-PreSyn`:`%1$s-Synapse`:PreSyn:Synapse:%1$s) RETURN count(s)",
+                "MATCH (s:`%1$s-PostSyn`:`%1$s-Synapse`:PostSyn:Synapse:%1$s) RETURN count(s)",
+                "MATCH (:`%1$s-PreSyn`)-[r:SynapsesTo]->(:`%1$s-PostSyn`) RETURN count(r)",
+                "MATCH (n:`%1$s-Segment`:Segment:%1$s) RETURN count(n)",
+                "MATCH (:`%1$s-Segment`)-[:Contains]->(ss:`%1$s-SynapseSet`:SynapseSet:%1$s) RETURN count(ss)",
+                "MATCH (:`%1$s-SynapseSet`)-[r:Contains]->(:`%1$s-Synapse`) RETURN count(r)",
+                "MATCH (:`%1$s-Segment`)-[:Contains]->(sk:`%1$s-Skeleton`:Skeleton:%1$s) RETURN count(sk)",
+                "MATCH (:`%1$s-Skeleton`)-[:Contains]->(sn:`%1$s-SkelNode`:SkelNode:%1$s) RETURN count(sn)",
+                "MATCH (:`%1$s-SkelNode`)-[r:LinksTo]->(:`%1$s-SkelNode`) RETURN count(r)"
+        };
+
+        try (Session session = driver.session()) {
+
+            for (String countQuery : countQueries) {
+                Assert.assertEquals(countQuery, count(session, countQuery, PER_ROW_DATASET), count(session, countQuery, UNWIND_DATASET));
+            }
+
+            // the synaptic connections add a PreSyn and a PostSyn that are not in the synapse file
+            Assert.assertEquals(4L, count(session, countQueries[0], UNWIND_DATASET));
+            Assert.assertEquals(7L, count(session, countQueries[1], UNWIND_DATASET));
+        }
+
+    }
+
+    @Test
+    public void bothWriteModesShouldSetTheSameRoiProperties() {
+
+        Session session = driver.session();
+
+        String synapseRoiQuery = "MATCH (s:`%s-Synapse`) RETURN toString(s.location), [k IN keys(s) WHERE s[k] = true]";
+        String segmentRoiQuery = "MATCH (n:`%s-Segment`) RETURN n.bodyId, [k IN keys(n) WHERE n[k] = true]";
+        String metaQuery = "MATCH (m:Meta{dataset:\"%s\"}) RETURN m.roiInfo, m.superLevelRois";
+
+        Assert.assertEquals(collect(session, synapseRoiQuery, PER_ROW_DATASET), collect(session, synapseRoiQuery, UNWIND_DATASET));
+        Assert.assertEquals(collect(session, segmentRoiQuery, PER_ROW_DATASET), collect(session, segmentRoiQuery, UNWIND_DATASET));
+        Assert.assertEquals(collect(session, metaQuery, PER_ROW_DATASET), collect(session, metaQuery, UNWIND_DATASET));
+
+    }
+
+    private static final Logger LOG = LoggerFactory.getLogger(UnwindBatchSpeedTest.class);
+
+}
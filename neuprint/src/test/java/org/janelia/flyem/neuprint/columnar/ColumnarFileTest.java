@@ -0,0 +1,123 @@
+package org.janelia.flyem.neuprint.columnar;
+
+import org.janelia.flyem.neuprint.json.NeuPrintJsonDecoder;
+import org.janelia.flyem.neuprint.model.Synapse;
+import org.janelia.flyem.neuprint.model.SynapticConnection;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Tests the {@link ColumnarWriter} and {@link ColumnarReader} classes.
+ */
+public class ColumnarFileTest {
+
+    private static final Path SYNAPSE_JSON = Paths.get("src/test/resources/synapseList.json");
+    private static final Path CONNECTION_JSON = Paths.get("src/test/resources/connectionsList.json");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path writeSynapses(final List<Synapse> synapses, final int blockRows) throws IOException {
+        final Path path = folder.newFile("synapses.npcol").toPath();
+        try (ColumnarWriter writer = ColumnarWriter.create(path, ColumnarFile.Kind.SYNAPSES, blockRows)) {
+            for (final Synapse synapse : synapses) {
+                writer.addSynapse(synapse);
+            }
+        }
+        return path;
+    }
+
+    private static List<String> rois(final Synapse synapse) {
+        return synapse.rois == null ? Collections.emptyList() : new ArrayList<>(synapse.rois);
+    }
+
+    @Test
+    public void shouldReadSynapsesWrittenAcrossBlocks() throws IOException {
+
+        final List<Synapse> expected = NeuPrintJsonDecoder.forFile(SYNAPSE_JSON.toString()).readArray(NeuPrintJsonDecoder::readSynapse);
+        final Path path = writeSynapses(expected, 3);
+
+        try (ColumnarReader reader = ColumnarReader.open(path)) {
+            Assert.assertEquals(ColumnarFile.Kind.SYNAPSES, reader.getKind());
+            Assert.assertEquals(expected.size(), reader.getRowCount());
+
+            final List<Synapse> actual = reader.readSynapses(0, Integer.MAX_VALUE);
+            Assert.assertEquals(expected, actual);
+            for (int i = 0; i < expected.size(); i++) {
+                Assert.assertEquals(expected.get(i).getConfidence(), actual.get(i).getConfidence(), 0.0);
+                Assert.assertEquals(rois(expected.get(i)), rois(actual.get(i)));
+            }
+
+            // every range, including ranges that start and end inside blocks
+            for (int first = 0; first <= expected.size(); first++) {
+                for (int count = 1; count <= 7; count++) {
+                    Assert.assertEquals(expected.subList(first, Math.min(expected.size(), first + count)), reader.readSynapses(first, count));
+                }
+            }
+        }
+
+    }
+
+    @Test
+    public void shouldConvertJsonFiles() throws IOException {
+
+        final List<Synapse> expectedSynapses = NeuPrintJsonDecoder.forFile(SYNAPSE_JSON.toString()).readArray(NeuPrintJsonDecoder::readSynapse);
+        final Path synapsePath = folder.getRoot().toPath().resolve("synapseList.npcol");
+        Assert.assertEquals(expectedSynapses.size(), ColumnarWriter.convertSynapseJson(SYNAPSE_JSON, synapsePath));
+        try (ColumnarReader reader = ColumnarReader.open(synapsePath)) {
+            Assert.assertEquals(expectedSynapses, reader.readSynapses(0, expectedSynapses.size()));
+        }
+
+        final List<SynapticConnection> expectedConnections = NeuPrintJsonDecoder.forFile(CONNECTION_JSON.toString()).readArray(NeuPrintJsonDecoder::readConnection);
+        final Path connectionPath = folder.getRoot().toPath().resolve("connectionsList.npcol");
+        Assert.assertEquals(expectedConnections.size(), ColumnarWriter.convertConnectionJson(CONNECTION_JSON, connectionPath));
+        try (ColumnarReader reader = ColumnarReader.open(connectionPath)) {
+            Assert.assertEquals(ColumnarFile.Kind.CONNECTIONS, reader.getKind());
+            Assert.assertEquals(expectedConnections, reader.readConnections(0, expectedConnections.size()));
+            Assert.assertEquals(expectedConnections.subList(1, 3), reader.readConnections(1, 2));
+            Assert.assertTrue(reader.readConnections(expectedConnections.size(), 10).isEmpty());
+        }
+
+        Assert.assertTrue(ColumnarFile.isColumnarFile(synapsePath));
+        Assert.assertFalse(ColumnarFile.isColumnarFile(SYNAPSE_JSON));
+
+    }
+
+    @Test
+    public void shouldReadEmptyFile() throws IOException {
+
+        final Path path = writeSynapses(Collections.emptyList(), 3);
+
+        try (ColumnarReader reader = ColumnarReader.open(path)) {
+            Assert.assertEquals(0, reader.getRowCount());
+            Assert.assertTrue(reader.readSynapses(0, 10).isEmpty());
+        }
+
+    }
+
+    @Test(expected = IOException.class)
+    public void shouldErrorIfKindDoesNotMatch() throws IOException {
+
+        final Path path = writeSynapses(NeuPrintJsonDecoder.forFile(SYNAPSE_JSON.toString()).readArray(NeuPrintJsonDecoder::readSynapse), 3);
+
+        try (ColumnarReader reader = ColumnarReader.open(path)) {
+            reader.readConnections(0, 1);
+        }
+
+    }
+
+    @Test(expected = IOException.class)
+    public void shouldErrorIfNotColumnarFile() throws IOException {
+        ColumnarReader.open(SYNAPSE_JSON).close();
+    }
+
+}
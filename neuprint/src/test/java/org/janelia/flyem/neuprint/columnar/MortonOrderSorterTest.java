@@ -0,0 +1,115 @@
+package org.janelia.flyem.neuprint.columnar;
+
+import org.janelia.flyem.neuprint.json.NeuPrintJsonDecoder;
+import org.janelia.flyem.neuprint.model.Location;
+import org.janelia.flyem.neuprint.model.Synapse;
+import org.janelia.flyem.neuprint.model.SynapticConnection;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Tests the {@link MortonOrderSorter} class.
+ */
+public class MortonOrderSorterTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static List<Synapse> randomSynapses(final int count) {
+        final Random random = new Random(11);
+        final List<Synapse> synapses = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            synapses.add(new Synapse(random.nextBoolean() ? "pre" : "post", random.nextDouble(),
+                                     Location.pack(random.nextInt(20000) - 10000, random.nextInt(20000), random.nextInt(20000)), null));
+        }
+        return synapses;
+    }
+
+    private List<Synapse> sortSynapses(final List<Synapse> synapses, final int maxRowsInMemory, final int batchSize) throws IOException {
+        final Path sortedPath = folder.getRoot().toPath().resolve("sorted-" + maxRowsInMemory + ".npcol");
+        try (MortonOrderSorter<Synapse> sorter = MortonOrderSorter.forSynapses(folder.getRoot().toPath().resolve("runs"), maxRowsInMemory)) {
+            for (int first = 0; first < synapses.size(); first += batchSize) {
+                sorter.addAll(synapses.subList(first, Math.min(synapses.size(), first + batchSize)));
+            }
+            Assert.assertEquals(synapses.size(), sorter.sortTo(sortedPath));
+        }
+        try (Stream<Path> runs = Files.list(folder.getRoot().toPath().resolve("runs"))) {
+            Assert.assertEquals("sorted runs should be deleted", 0, runs.count());
+        }
+        try (ColumnarReader reader = ColumnarReader.open(sortedPath)) {
+            return reader.readSynapses(0, Integer.MAX_VALUE);
+        }
+    }
+
+    @Test
+    public void shouldSortSynapsesInMemoryAndInRuns() throws IOException {
+
+        final List<Synapse> synapses = randomSynapses(5000);
+        final List<Synapse> expected = synapses.stream()
+                .sorted(Comparator.comparingLong((Synapse s) -> Location.mortonCode(s.getPackedLocation())).thenComparing(Synapse::getType))
+                .collect(Collectors.toList());
+
+        Assert.assertEquals(expected, sortSynapses(synapses, 100000, 64));
+        Assert.assertEquals(expected, sortSynapses(synapses, 300, 64));
+        Assert.assertEquals(expected, sortSynapses(synapses, 1, 1000));
+
+    }
+
+    @Test
+    public void shouldKeepSynapsePropertiesWhenSorting() throws IOException {
+
+        final List<Synapse> synapses = NeuPrintJsonDecoder.forFile("src/test/resources/synapseList.json").readArray(NeuPrintJsonDecoder::readSynapse);
+
+        final List<Synapse> sorted = sortSynapses(synapses, 2, 3);
+
+        Assert.assertEquals(synapses.size(), sorted.size());
+        for (final Synapse synapse : sorted) {
+            final Synapse original = synapses.get(synapses.indexOf(synapse));
+            Assert.assertEquals(original.getConfidence(), synapse.getConfidence(), 0.0);
+            Assert.assertEquals(original.getRois(), synapse.getRois());
+        }
+        for (int i = 1; i < sorted.size(); i++) {
+            Assert.assertTrue(Location.mortonCode(sorted.get(i - 1).getPackedLocation()) <= Location.mortonCode(sorted.get(i).getPackedLocation()));
+        }
+
+    }
+
+    @Test
+    public void shouldSortConnectionsByPreThenPost() throws IOException {
+
+        final Random random = new Random(5);
+        final List<SynapticConnection> connections = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            // few pre locations, so that many connections share one
+            connections.add(new SynapticConnection(Location.pack(random.nextInt(4), random.nextInt(4), 0),
+                                                   Location.pack(random.nextInt(1000), random.nextInt(1000), random.nextInt(1000))));
+        }
+        final List<SynapticConnection> expected = connections.stream()
+                .sorted(Comparator.comparingLong((SynapticConnection c) -> Location.mortonCode(c.getPackedPreLocation()))
+                                .thenComparingLong(c -> Location.mortonCode(c.getPackedPostLocation())))
+                .collect(Collectors.toList());
+
+        final Path sortedPath = folder.getRoot().toPath().resolve("connections.npcol");
+        try (MortonOrderSorter<SynapticConnection> sorter = MortonOrderSorter.forConnections(folder.getRoot().toPath(), 150)) {
+            sorter.addAll(connections);
+            Assert.assertEquals(connections.size(), sorter.sortTo(sortedPath));
+        }
+        try (ColumnarReader reader = ColumnarReader.open(sortedPath)) {
+            Assert.assertEquals(expected, reader.readConnections(0, Integer.MAX_VALUE));
+        }
+
+    }
+
+}
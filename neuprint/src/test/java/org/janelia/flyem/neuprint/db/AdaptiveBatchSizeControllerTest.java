@@ -0,0 +1,81 @@
+package org.janelia.flyem.neuprint.db;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests the {@link AdaptiveBatchSizeController} class.
+ */
+public class AdaptiveBatchSizeControllerTest {
+
+    private static long millis(long millis) {
+        return TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+
+    @Test
+    public void shouldGrowFastCommitsAtMostTwofold() {
+
+        AdaptiveBatchSizeController controller = new AdaptiveBatchSizeController("test", 10, 1000, 1000);
+
+        controller.recordCommit(10, millis(100));
+        Assert.assertEquals(20, controller.getBatchSize());
+
+        controller.recordCommit(20, millis(500));
+        Assert.assertEquals(40, controller.getBatchSize());
+
+        controller.recordCommit(40, millis(800));
+        Assert.assertEquals(50, controller.getBatchSize());
+
+    }
+
+    @Test
+    public void shouldShrinkSlowCommitsAtMostByHalf() {
+
+        AdaptiveBatchSizeController controller = new AdaptiveBatchSizeController("test", 100, 1000, 1000);
+
+        controller.recordCommit(100, millis(1250));
+        Assert.assertEquals(80, controller.getBatchSize());
+
+        controller.recordCommit(80, millis(10000));
+        Assert.assertEquals(40, controller.getBatchSize());
+
+    }
+
+    @Test
+    public void shouldStayWithinBounds() {
+
+        AdaptiveBatchSizeController controller = new AdaptiveBatchSizeController("test", 50, 60, 1000);
+
+        controller.recordCommit(50, 0);
+        Assert.assertEquals(60, controller.getBatchSize());
+
+        controller = new AdaptiveBatchSizeController("test", 1, 60, 1000);
+        controller.recordCommit(1, millis(5000));
+        Assert.assertEquals(1, controller.getBatchSize());
+        controller.recordFailure();
+        Assert.assertEquals(1, controller.getBatchSize());
+
+    }
+
+    @Test
+    public void shouldHalveBatchSizeOnFailure() {
+
+        AdaptiveBatchSizeController controller = new AdaptiveBatchSizeController("test", 64, 1000, 1000);
+
+        controller.recordFailure();
+        controller.recordFailure();
+
+        Assert.assertEquals(16, controller.getBatchSize());
+        Assert.assertEquals(2, controller.getFailureCount());
+        Assert.assertEquals(0, controller.getCommitCount());
+
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRequirePositiveTarget() {
+        new AdaptiveBatchSizeController("test", 10, 100, 0);
+    }
+
+}
@@ -0,0 +1,56 @@
+package org.janelia.flyem.neuprint.db;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+/**
+ * Tests the {@link DbConfig} class.
+ */
+public class DbConfigTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File propertiesFile(final String extraProperties) throws IOException {
+        final File file = folder.newFile();
+        Files.write(file.toPath(), ("uri=bolt://localhost:7687\nusername=neo4j\npassword=neo4j\n" + extraProperties).getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    @Test
+    public void shouldReadRowsPerUnwindStatement() throws IOException {
+
+        Assert.assertEquals(1000, DbConfig.fromFile(propertiesFile("")).getRowsPerUnwindStatement());
+        Assert.assertEquals(250, DbConfig.fromFile(propertiesFile("rowsPerUnwindStatement=250\n")).getRowsPerUnwindStatement());
+    }
+
+    @Test
+    public void shouldKeepTransactionSizesFixedByDefault() throws IOException {
+
+        final DbConfig dbConfig = DbConfig.fromFile(propertiesFile("statementsPerTransaction=200\n"));
+        Assert.assertEquals(0, dbConfig.getTargetCommitMillis());
+        Assert.assertEquals(200, dbConfig.getStatementsPerTransaction());
+        Assert.assertEquals(500, DbConfig.fromFile(propertiesFile("targetCommitMillis=500\n")).getTargetCommitMillis());
+    }
+
+    @Test
+    public void shouldRejectRowsPerUnwindStatementLessThanOne() throws IOException {
+
+        for (final String value : new String[]{"0", "-5"}) {
+            try {
+                DbConfig.fromFile(propertiesFile("rowsPerUnwindStatement=" + value + "\n"));
+                Assert.fail("rowsPerUnwindStatement " + value + " should be rejected");
+            } catch (IllegalArgumentException e) {
+                Assert.assertTrue(e.getCause().getMessage(), e.getCause().getMessage().contains("must be at least 1"));
+            }
+        }
+    }
+
+}
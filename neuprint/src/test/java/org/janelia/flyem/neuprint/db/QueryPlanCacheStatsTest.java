@@ -0,0 +1,87 @@
+package org.janelia.flyem.neuprint.db;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.neo4j.driver.v1.Statement;
+
+/**
+ * Tests the {@link QueryPlanCacheStats} class.
+ */
+public class QueryPlanCacheStatsTest {
+
+    @Test
+    public void shouldCountRepeatedQueryTextAsHit() {
+
+        QueryPlanCacheStats queryPlanCacheStats = new QueryPlanCacheStats(2);
+
+        queryPlanCacheStats.record("MATCH (n) RETURN n");
+        queryPlanCacheStats.record("MATCH (n) RETURN n");
+        queryPlanCacheStats.record("MATCH (n) RETURN n");
+
+        Assert.assertEquals(3, queryPlanCacheStats.getStatementCount());
+        Assert.assertEquals(2, queryPlanCacheStats.getHitCount());
+        Assert.assertEquals(1, queryPlanCacheStats.getMissCount());
+        Assert.assertEquals(1, queryPlanCacheStats.getDistinctQueryCount());
+        Assert.assertEquals(2.0 / 3.0, queryPlanCacheStats.getHitRate(), 0.0001);
+
+    }
+
+    @Test
+    public void shouldEvictLeastRecentlyUsedQueryText() {
+
+        QueryPlanCacheStats queryPlanCacheStats = new QueryPlanCacheStats(2);
+
+        queryPlanCacheStats.record("a");
+        queryPlanCacheStats.record("b");
+        queryPlanCacheStats.record("a"); // hit, b is now least recently used
+        queryPlanCacheStats.record("c"); // evicts b
+        queryPlanCacheStats.record("b"); // miss, evicts a
+        queryPlanCacheStats.record("c"); // hit
+
+        Assert.assertEquals(6, queryPlanCacheStats.getStatementCount());
+        Assert.assertEquals(2, queryPlanCacheStats.getHitCount());
+        Assert.assertEquals(3, queryPlanCacheStats.getDistinctQueryCount());
+        Assert.assertEquals(2, queryPlanCacheStats.getCachedQueryCount());
+
+    }
+
+    @Test
+    public void shouldKeepNoMoreQueryTextsThanCacheSize() {
+
+        QueryPlanCacheStats queryPlanCacheStats = new QueryPlanCacheStats(10);
+
+        for (int i = 0; i < 1000; i++) {
+            queryPlanCacheStats.record("MERGE (s:Synapse{location:$location}) ON CREATE SET s.`roi" + i + "` = TRUE");
+        }
+
+        Assert.assertEquals(1000, queryPlanCacheStats.getMissCount());
+        Assert.assertEquals(1000, queryPlanCacheStats.getDistinctQueryCount());
+        Assert.assertEquals(10, queryPlanCacheStats.getCachedQueryCount());
+
+    }
+
+    @Test
+    public void shouldReturnZeroHitRateWhenNothingRecorded() {
+        Assert.assertEquals(0.0, new QueryPlanCacheStats(10).getHitRate(), 0.0);
+    }
+
+    @Test
+    public void trackingBatchShouldRecordEachStatement() {
+
+        QueryPlanCacheStats queryPlanCacheStats = new QueryPlanCacheStats(10);
+
+        try (TransactionBatch batch = new QueryPlanCacheTrackingTransactionBatch(new StdOutTransactionBatch(), queryPlanCacheStats)) {
+            batch.addStatement(new Statement("MERGE (s:Synapse{location:$location}) ON CREATE SET s.`roiA` = TRUE"));
+            batch.addStatement(new Statement("MERGE (s:Synapse{location:$location}) ON CREATE SET s.`roiB` = TRUE"));
+            batch.addStatement(new Statement("MERGE (s:Synapse{location:$location}) ON CREATE SET s += $roiProps"));
+            batch.addStatement(new Statement("MERGE (s:Synapse{location:$location}) ON CREATE SET s += $roiProps"));
+            batch.writeTransaction();
+        }
+
+        Assert.assertEquals(4, queryPlanCacheStats.getStatementCount());
+        Assert.assertEquals(1, queryPlanCacheStats.getHitCount());
+        Assert.assertEquals(3, queryPlanCacheStats.getDistinctQueryCount());
+
+    }
+
+}
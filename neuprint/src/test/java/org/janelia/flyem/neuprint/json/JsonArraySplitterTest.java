@@ -0,0 +1,100 @@
+package org.janelia.flyem.neuprint.json;
+
+import com.google.gson.JsonSyntaxException;
+import org.janelia.flyem.neuprint.model.Synapse;
+import org.janelia.flyem.neuprint.model.SynapticConnection;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+public class JsonArraySplitterTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private int fileCount;
+
+    private Path jsonFile(final String json) throws IOException {
+        final File file = folder.newFile("array" + fileCount++ + ".json");
+        Files.write(file.toPath(), json.getBytes(StandardCharsets.UTF_8));
+        return file.toPath();
+    }
+
+    private static List<JsonArraySplitter.Chunk> split(final Path path, final long chunkBytes) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return JsonArraySplitter.split(channel, chunkBytes);
+        }
+    }
+
+    @Test
+    public void shouldSplitBetweenTopLevelElementsOnly() throws IOException {
+
+        // commas, brackets and escaped quotes inside strings and nested values must not end an element
+        final Path path = jsonFile(" [ {\"a\": \"x, ]\\\"}, {\", \"b\": [1, 2, {\"c\": 3}]},\n" +
+                "\"s,\\\\\", 12.5e3 , [[], {}], null\n]\n");
+
+        final List<JsonArraySplitter.Chunk> chunks = split(path, 1);
+
+        Assert.assertEquals(5, chunks.size());
+        for (final JsonArraySplitter.Chunk chunk : chunks) {
+            Assert.assertEquals(1, chunk.getElementCount());
+        }
+        final String json = new String(Files.readAllBytes(path), StandardCharsets.UTF_8);
+        Assert.assertEquals("{\"a\": \"x, ]\\\"}, {\", \"b\": [1, 2, {\"c\": 3}]}", json.substring((int) chunks.get(0).getStart(), (int) chunks.get(0).getEnd()).trim());
+        Assert.assertEquals("\"s,\\\\\"", json.substring((int) chunks.get(1).getStart(), (int) chunks.get(1).getEnd()).trim());
+        Assert.assertEquals("null", json.substring((int) chunks.get(4).getStart(), (int) chunks.get(4).getEnd()).trim());
+
+        final List<JsonArraySplitter.Chunk> oneChunk = split(path, 1 << 20);
+        Assert.assertEquals(1, oneChunk.size());
+        Assert.assertEquals(5, oneChunk.get(0).getElementCount());
+
+        Assert.assertTrue(split(jsonFile(" [ ] "), 1).isEmpty());
+
+    }
+
+    @Test
+    public void shouldDecodeChunksInParallelInFileOrder() throws IOException {
+
+        final Path synapsePath = Paths.get("src/test/resources/synapseList.json");
+        final List<Synapse> expectedSynapses = NeuPrintJsonDecoder.forFile(synapsePath.toString()).readArray(NeuPrintJsonDecoder::readSynapse);
+
+        final List<JsonArraySplitter.Chunk> chunks = split(synapsePath, 200);
+        Assert.assertTrue(chunks.size() > 1);
+        Assert.assertEquals(expectedSynapses.size(), chunks.stream().mapToInt(JsonArraySplitter.Chunk::getElementCount).sum());
+
+        Assert.assertEquals(expectedSynapses, JsonArraySplitter.decodeInParallel(synapsePath, NeuPrintJsonDecoder::readSynapse, 4, 200));
+        Assert.assertEquals(expectedSynapses, JsonArraySplitter.decodeInParallel(synapsePath, NeuPrintJsonDecoder::readSynapse, 4));
+
+        final Path connectionPath = Paths.get("src/test/resources/connectionsList.json");
+        final List<SynapticConnection> expectedConnections = NeuPrintJsonDecoder.forFile(connectionPath.toString()).readArray(NeuPrintJsonDecoder::readConnection);
+        Assert.assertEquals(expectedConnections, JsonArraySplitter.decodeInParallel(connectionPath, NeuPrintJsonDecoder::readConnection, 3, 100));
+
+    }
+
+    @Test(expected = JsonSyntaxException.class)
+    public void shouldErrorIfNotAnArray() throws IOException {
+        split(jsonFile("{\"type\": \"pre\"}"), 1);
+    }
+
+    @Test(expected = JsonSyntaxException.class)
+    public void shouldErrorIfArrayNotClosed() throws IOException {
+        split(jsonFile("[{\"type\": \"pre\"}, {\"type\": \"]\"}"), 1);
+    }
+
+    @Test(expected = JsonSyntaxException.class)
+    public void shouldErrorIfElementMissing() throws IOException {
+        split(jsonFile("[1, , 2]"), 1);
+    }
+
+}
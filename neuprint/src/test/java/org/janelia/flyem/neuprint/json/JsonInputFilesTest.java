@@ -0,0 +1,71 @@
+package org.janelia.flyem.neuprint.json;
+
+import org.janelia.flyem.neuprint.model.Synapse;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+public class JsonInputFilesTest {
+
+    private static final Path SYNAPSE_JSON = Paths.get("src/test/resources/synapseList.json");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void shouldResolveFileDirectoryAndGlob() throws IOException {
+
+        final File directory = folder.newFolder("shards");
+        final Path first = Files.write(directory.toPath().resolve("part-0.json"), new byte[]{'[', ']'});
+        final Path second = Files.write(directory.toPath().resolve("part-1.json.gz"), new byte[]{'[', ']'});
+        final Path other = Files.write(directory.toPath().resolve("notes.txt"), new byte[]{'x'});
+        Files.write(directory.toPath().resolve(".hidden"), new byte[]{'x'});
+
+        Assert.assertEquals(Arrays.asList(first), JsonInputFiles.resolve(first.toString()));
+        Assert.assertEquals(Arrays.asList(other, first, second), JsonInputFiles.resolve(directory.toString()));
+        Assert.assertEquals(Arrays.asList(first, second), JsonInputFiles.resolve(directory + File.separator + "part-*"));
+        Assert.assertEquals(Arrays.asList(second), JsonInputFiles.resolve(directory + File.separator + "*.json.gz"));
+
+    }
+
+    @Test(expected = FileNotFoundException.class)
+    public void shouldErrorIfNoFilesMatch() throws IOException {
+        JsonInputFiles.resolve(folder.getRoot() + File.separator + "*.json");
+    }
+
+    @Test
+    public void shouldDecodeGzipCompressedFile() throws IOException {
+
+        final Path compressed = folder.getRoot().toPath().resolve("synapses.json.gz");
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(compressed))) {
+            Files.copy(SYNAPSE_JSON, out);
+        }
+
+        Assert.assertTrue(JsonInputFiles.isCompressed(compressed));
+        Assert.assertFalse(JsonInputFiles.isCompressed(SYNAPSE_JSON));
+
+        final List<Synapse> expected = NeuPrintJsonDecoder.forFile(SYNAPSE_JSON.toString()).readArray(NeuPrintJsonDecoder::readSynapse);
+        Assert.assertEquals(expected, NeuPrintJsonDecoder.forFile(compressed.toString()).readArray(NeuPrintJsonDecoder::readSynapse));
+
+    }
+
+    @Test(expected = IOException.class)
+    public void shouldErrorIfZstdCompressed() throws IOException {
+        final Path compressed = Files.write(folder.getRoot().toPath().resolve("synapses.json.zst"),
+                                            new byte[]{(byte) 0x28, (byte) 0xb5, (byte) 0x2f, (byte) 0xfd, 0, 0});
+        JsonInputFiles.open(compressed).close();
+    }
+
+}
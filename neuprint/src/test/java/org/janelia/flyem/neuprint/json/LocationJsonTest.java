@@ -45,4 +45,11 @@ public class LocationJsonTest {
         GSON.fromJson("[1.445,2,3]", Location.class);
 
     }
+
+    @Test(expected = com.google.gson.JsonParseException.class)
+    public void shouldErrorIfCoordinatesAreOutOfRange() {
+
+        GSON.fromJson("[1,2097152,3]", Location.class);
+
+    }
 }
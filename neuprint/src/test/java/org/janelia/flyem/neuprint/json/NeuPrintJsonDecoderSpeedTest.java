@@ -0,0 +1,100 @@
+package org.janelia.flyem.neuprint.json;
+
+import com.google.common.base.Stopwatch;
+import com.google.gson.stream.JsonReader;
+import org.janelia.flyem.neuprint.model.Synapse;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decodes a generated synapse file repeatedly with Gson, one object at a time as batched loads did before
+ * {@link NeuPrintJsonDecoder}, and with {@link NeuPrintJsonDecoder}, and reports the throughput of each.
+ */
+public class NeuPrintJsonDecoderSpeedTest {
+
+    private static final int SYNAPSES = 50000;
+    private static final int WARM_UP_ITERATIONS = 5;
+    private static final int ITERATIONS = 10;
+
+    @Test
+    public void reportDecodeThroughput() throws IOException {
+
+        final byte[] synapseJson = generateSynapseJson();
+
+        long gsonTotal = 0;
+        long decoderTotal = 0;
+        for (int i = 0; i < WARM_UP_ITERATIONS; i++) {
+            gsonTotal += decodeWithGson(synapseJson);
+            decoderTotal += decodeWithDecoder(synapseJson);
+        }
+        Assert.assertEquals(gsonTotal, decoderTotal);
+
+        final Stopwatch gsonTimer = Stopwatch.createStarted();
+        for (int i = 0; i < ITERATIONS; i++) {
+            gsonTotal += decodeWithGson(synapseJson);
+        }
+        gsonTimer.stop();
+
+        final Stopwatch decoderTimer = Stopwatch.createStarted();
+        for (int i = 0; i < ITERATIONS; i++) {
+            decoderTotal += decodeWithDecoder(synapseJson);
+        }
+        decoderTimer.stop();
+
+        System.out.println(String.format("gson: %d synapses/s (%s), decoder: %d synapses/s (%s)",
+                synapsesPerSecond(gsonTimer),
+                gsonTimer,
+                synapsesPerSecond(decoderTimer),
+                decoderTimer));
+
+        Assert.assertEquals(gsonTotal, decoderTotal);
+    }
+
+    private static byte[] generateSynapseJson() {
+        final StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < SYNAPSES; i++) {
+            if (i > 0) {
+                json.append(",\n");
+            }
+            json.append("  {\"type\": \"").append(i % 4 == 0 ? "pre" : "post").append("\", ")
+                    .append("\"location\": [").append(10000 + i % 997).append(", ").append(20000 + i % 991).append(", ").append(30000 + i / 100).append("], ")
+                    .append("\"confidence\": 0.").append(100 + i % 900).append(", ")
+                    .append("\"rois\": [\"roi").append(i % 13).append("\", \"roi").append(13 + i % 7).append("\"]}");
+        }
+        return json.append("]").toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    // sums the packed locations so that neither loop can be optimized away
+    private static long decodeWithGson(final byte[] synapseJson) throws IOException {
+        long total = 0;
+        try (JsonReader reader = new JsonReader(new InputStreamReader(new ByteArrayInputStream(synapseJson), StandardCharsets.UTF_8))) {
+            reader.beginArray();
+            while (reader.hasNext()) {
+                total += Synapse.fromJsonSingleObject(reader).getPackedLocation();
+            }
+        }
+        return total;
+    }
+
+    private static long decodeWithDecoder(final byte[] synapseJson) throws IOException {
+        long total = 0;
+        try (NeuPrintJsonDecoder decoder = new NeuPrintJsonDecoder(new ByteArrayInputStream(synapseJson))) {
+            decoder.getReader().beginArray();
+            while (decoder.getReader().hasNext()) {
+                total += decoder.readSynapse().getPackedLocation();
+            }
+        }
+        return total;
+    }
+
+    private static long synapsesPerSecond(final Stopwatch timer) {
+        return (long) SYNAPSES * ITERATIONS * TimeUnit.SECONDS.toNanos(1) / Math.max(1, timer.elapsed(TimeUnit.NANOSECONDS));
+    }
+
+}
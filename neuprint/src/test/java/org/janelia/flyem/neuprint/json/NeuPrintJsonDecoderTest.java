@@ -0,0 +1,236 @@
+package org.janelia.flyem.neuprint.json;
+
+import com.google.gson.JsonParseException;
+import org.janelia.flyem.neuprint.model.Location;
+import org.janelia.flyem.neuprint.model.Neuron;
+import org.janelia.flyem.neuprint.model.Synapse;
+import org.janelia.flyem.neuprint.model.SynapticConnection;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+public class NeuPrintJsonDecoderTest {
+
+    @Test
+    public void shouldDecodeSynapsesLikeGson() throws IOException {
+
+        final List<Synapse> gsonSynapses;
+        try (BufferedReader reader = new BufferedReader(new FileReader("src/test/resources/synapseList.json"))) {
+            gsonSynapses = Synapse.fromJson(reader);
+        }
+        final List<Synapse> decodedSynapses;
+        try (NeuPrintJsonDecoder decoder = NeuPrintJsonDecoder.forFile("src/test/resources/synapseList.json")) {
+            decodedSynapses = decoder.readArray(NeuPrintJsonDecoder::readSynapse);
+        }
+
+        assertSameSynapses(gsonSynapses, decodedSynapses);
+
+    }
+
+    @Test
+    public void shouldDecodeConnectionsLikeGson() throws IOException {
+
+        final List<SynapticConnection> gsonConnections;
+        try (BufferedReader reader = new BufferedReader(new FileReader("src/test/resources/connectionsList.json"))) {
+            gsonConnections = SynapticConnection.fromJson(reader);
+        }
+        final List<SynapticConnection> decodedConnections;
+        try (NeuPrintJsonDecoder decoder = NeuPrintJsonDecoder.forFile("src/test/resources/connectionsList.json")) {
+            decodedConnections = decoder.readArray(NeuPrintJsonDecoder::readConnection);
+        }
+
+        Assert.assertFalse(gsonConnections.isEmpty());
+        Assert.assertEquals(gsonConnections, decodedConnections);
+
+    }
+
+    @Test
+    public void shouldDecodeNeuronsLikeGson() throws IOException {
+
+        final List<Neuron> gsonNeurons;
+        try (BufferedReader reader = new BufferedReader(new FileReader("src/test/resources/neuronList.json"))) {
+            gsonNeurons = Neuron.fromJson(reader);
+        }
+        final List<Neuron> decodedNeurons;
+        try (NeuPrintJsonDecoder decoder = NeuPrintJsonDecoder.forFile("src/test/resources/neuronList.json")) {
+            decodedNeurons = decoder.readArray(NeuPrintJsonDecoder::readNeuron);
+        }
+
+        Assert.assertFalse(gsonNeurons.isEmpty());
+        Assert.assertEquals(gsonNeurons.size(), decodedNeurons.size());
+        for (int i = 0; i < gsonNeurons.size(); i++) {
+            final Neuron expected = gsonNeurons.get(i);
+            final Neuron actual = decodedNeurons.get(i);
+            Assert.assertEquals(expected.getId(), actual.getId());
+            Assert.assertEquals(expected.getStatus(), actual.getStatus());
+            Assert.assertEquals(expected.getName(), actual.getName());
+            Assert.assertEquals(expected.getType(), actual.getType());
+            Assert.assertEquals(expected.getInstance(), actual.getInstance());
+            Assert.assertEquals(expected.getPrimaryNeurite(), actual.getPrimaryNeurite());
+            Assert.assertEquals(expected.getMajorInput(), actual.getMajorInput());
+            Assert.assertEquals(expected.getMajorOutput(), actual.getMajorOutput());
+            Assert.assertEquals(expected.getClonalUnit(), actual.getClonalUnit());
+            Assert.assertEquals(expected.getNeurotransmitter(), actual.getNeurotransmitter());
+            Assert.assertEquals(expected.getProperty(), actual.getProperty());
+            Assert.assertEquals(expected.getSize(), actual.getSize());
+            Assert.assertEquals(new ArrayList<>(expected.getRois()), new ArrayList<>(actual.getRois()));
+            Assert.assertEquals(expected.getSoma() == null, actual.getSoma() == null);
+            if (expected.getSoma() != null) {
+                Assert.assertEquals(expected.getSoma().getLocation(), actual.getSoma().getLocation());
+                Assert.assertEquals(expected.getSoma().getRadius(), actual.getSoma().getRadius());
+            }
+            Assert.assertEquals(expected.getSynapseLocationSet(), actual.getSynapseLocationSet());
+        }
+
+    }
+
+    @Test
+    public void shouldDecodeAcrossBufferBoundaries() throws IOException {
+
+        // several times the reader's buffer, with escaped and non-ascii strings and numbers of every form
+        final StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < 20000; i++) {
+            if (i > 0) {
+                json.append(",\n");
+            }
+            json.append("{\"type\": \"").append(i % 2 == 0 ? "pre" : "post").append("\", ")
+                    .append("\"confidence\": ").append(i % 3 == 0 ? "\"0.25\"" : i % 3 == 1 ? "1e-3" : (i % 1000) / 1000.0).append(", ")
+                    .append("\"location\": [").append(i).append(", ").append(-i).append(".0, ").append(i % 7).append("], ")
+                    .append("\"unknown\": {\"nested\": [1, \"]\\\"}\", null, true]}, ")
+                    .append("\"rois\": [\"roi").append(i % 5).append("\", \"r\\u00e9gion \\\"").append(i % 3).append("\\\"\", \"\u00e9t\u00e9\"]}");
+        }
+        json.append("]");
+        final byte[] bytes = json.toString().getBytes(StandardCharsets.UTF_8);
+
+        final List<Synapse> gsonSynapses = Synapse.fromJson(json.toString());
+        final List<Synapse> streamedSynapses = new NeuPrintJsonDecoder(new ByteArrayInputStream(bytes)).readArray(NeuPrintJsonDecoder::readSynapse);
+        final List<Synapse> bufferedSynapses = new NeuPrintJsonDecoder(ByteBuffer.wrap(bytes)).readArray(NeuPrintJsonDecoder::readSynapse);
+
+        assertSameSynapses(gsonSynapses, streamedSynapses);
+        assertSameSynapses(gsonSynapses, bufferedSynapses);
+
+    }
+
+    @Test
+    public void shouldShareRoiSetsAndPoolStrings() throws IOException {
+
+        final String json = "[{\"type\": \"pre\", \"location\": [1,2,3], \"rois\": [\"roiA\",\"roiB\"]}," +
+                "{\"type\": \"post\", \"location\": [4,5,6], \"rois\": [\"roiA\",\"roiB\"]}]";
+        final List<Synapse> synapses = new NeuPrintJsonDecoder(ByteBuffer.wrap(json.getBytes(StandardCharsets.UTF_8))).readArray(NeuPrintJsonDecoder::readSynapse);
+
+        Assert.assertSame(synapses.get(0).rois, synapses.get(1).rois);
+        Assert.assertEquals(new Location(4L, 5L, 6L), synapses.get(1).getLocation());
+        Assert.assertEquals(0.0, synapses.get(1).getConfidence(), 0.0);
+
+    }
+
+    @Test
+    public void shouldSkipNullAndUnknownProperties() throws IOException {
+
+        final Neuron neuron = decode("{\"id\": \"12\", \"status\": null, \"extra\": [[1], {\"a\": \"b\"}], " +
+                "\"soma\": {}, \"synapseSet\": [[1, 2, 3], [1, 2, 3]]}").readNeuron();
+
+        Assert.assertEquals(Long.valueOf(12), neuron.getId());
+        Assert.assertNull(neuron.getStatus());
+        Assert.assertNull(neuron.getSoma());
+        Assert.assertEquals(1, neuron.getSynapseLocationSet().size());
+
+    }
+
+    @Test
+    public void shouldDecodeEscapedSurrogatePairs() throws IOException {
+
+        final Neuron neuron = decode("{\"id\": 12, \"name\": \"KC \\ud83d\\ude00\\n\", " +
+                "\"rois\": [\"\\ud83d\\ude00\\ud83d\\ude00\", \"roi\\uD83D\\uDE00A\"]}").readNeuron();
+
+        Assert.assertEquals("KC \uD83D\uDE00\n", neuron.getName());
+        Assert.assertEquals(2, neuron.getRois().size());
+        Assert.assertTrue(neuron.getRois().contains("\uD83D\uDE00\uD83D\uDE00"));
+        Assert.assertTrue(neuron.getRois().contains("roi\uD83D\uDE00A"));
+
+    }
+
+    @Test(expected = JsonParseException.class)
+    public void shouldErrorIfSynapseTypeMissing() throws IOException {
+        decode("{\"confidence\": 0.5, \"location\": [5,6,7]}").readSynapse();
+    }
+
+    @Test(expected = JsonParseException.class)
+    public void shouldErrorIfSynapseNotPreOrPost() throws IOException {
+        decode("{\"type\": \"sjdfka\", \"location\": [5,6,7]}").readSynapse();
+    }
+
+    @Test(expected = JsonParseException.class)
+    public void shouldErrorIfConfidenceNotBetweenZeroAndOne() throws IOException {
+        decode("{\"type\": \"post\", \"confidence\": 5, \"location\": [5,6,7]}").readSynapse();
+    }
+
+    @Test(expected = JsonParseException.class)
+    public void shouldErrorIfSynapseLocationMissing() throws IOException {
+        decode("{\"type\": \"post\", \"confidence\": 0.5}").readSynapse();
+    }
+
+    @Test(expected = JsonParseException.class)
+    public void shouldErrorIfLocationNotThreeDimensional() throws IOException {
+        decode("{\"type\": \"post\", \"location\": [5,6,7,8]}").readSynapse();
+    }
+
+    @Test(expected = JsonParseException.class)
+    public void shouldErrorIfLocationNotInteger() throws IOException {
+        decode("{\"pre\": [5,6.5,7], \"post\": [1,2,3]}").readConnection();
+    }
+
+    @Test(expected = JsonParseException.class)
+    public void shouldErrorIfLocationNotNumber() throws IOException {
+        decode("{\"pre\": [5,\"six\",7], \"post\": [1,2,3]}").readConnection();
+    }
+
+    @Test(expected = JsonParseException.class)
+    public void shouldErrorIfConnectionPostMissing() throws IOException {
+        decode("{\"pre\": [5,6,7]}").readConnection();
+    }
+
+    @Test(expected = JsonParseException.class)
+    public void shouldErrorIfNeuronIdMissing() throws IOException {
+        decode("{\"status\": \"final\"}").readNeuron();
+    }
+
+    @Test(expected = JsonParseException.class)
+    public void shouldErrorIfNeuronIdNotInteger() throws IOException {
+        decode("{\"id\": 12.5}").readNeuron();
+    }
+
+    @Test(expected = JsonParseException.class)
+    public void shouldErrorIfSomaRadiusMissing() throws IOException {
+        decode("{\"id\": 12, \"soma\": {\"location\": [1,2,3]}}").readNeuron();
+    }
+
+    @Test(expected = JsonParseException.class)
+    public void shouldErrorIfJsonMalformed() throws IOException {
+        decode("[{\"type\": \"pre\", \"location\": [5,6,7]} {\"type\": \"pre\", \"location\": [5,6,8]}]").readArray(NeuPrintJsonDecoder::readSynapse);
+    }
+
+    private static NeuPrintJsonDecoder decode(final String json) {
+        return new NeuPrintJsonDecoder(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static void assertSameSynapses(final List<Synapse> expected, final List<Synapse> actual) {
+        Assert.assertFalse(expected.isEmpty());
+        Assert.assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            Assert.assertEquals(expected.get(i).getType(), actual.get(i).getType());
+            Assert.assertEquals(expected.get(i).getConfidence(), actual.get(i).getConfidence(), 0.0);
+            Assert.assertEquals(expected.get(i).getPackedLocation(), actual.get(i).getPackedLocation());
+            Assert.assertEquals(new ArrayList<>(expected.get(i).rois), new ArrayList<>(actual.get(i).rois));
+        }
+    }
+
+}
@@ -0,0 +1,131 @@
+package org.janelia.flyem.neuprint.metrics;
+
+import org.janelia.flyem.neuprint.PipelinedBatchLoader;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests the {@link LoadMetrics} class.
+ */
+public class LoadMetricsTest {
+
+    @Test
+    public void shouldCountCommitLatenciesInBuckets() {
+
+        final LatencyHistogram histogram = new LatencyHistogram();
+        Assert.assertEquals(-1, histogram.getUpperBoundMillis(0.5));
+
+        for (int i = 0; i < 98; i++) {
+            histogram.record(TimeUnit.MILLISECONDS.toNanos(3));
+        }
+        histogram.record(TimeUnit.MILLISECONDS.toNanos(150));
+        histogram.record(TimeUnit.MINUTES.toNanos(2));
+
+        Assert.assertEquals(100, histogram.getCount());
+        Assert.assertEquals(5, histogram.getUpperBoundMillis(0.5));
+        Assert.assertEquals(200, histogram.getUpperBoundMillis(0.99));
+        Assert.assertEquals(Long.MAX_VALUE, histogram.getUpperBoundMillis(1.0));
+        final Map<String, Long> counts = histogram.getBucketCounts();
+        Assert.assertEquals(Long.valueOf(98), counts.get("< 5 ms"));
+        Assert.assertEquals(Long.valueOf(1), counts.get(">= 60000 ms"));
+
+    }
+
+    @Test
+    public void shouldEstimateTimeRemainingFromBytesRead() throws Exception {
+
+        final LoadMetrics metrics = new LoadMetrics();
+        metrics.recordCommit(10, TimeUnit.MILLISECONDS.toNanos(40));
+        metrics.recordCommit(5, TimeUnit.MILLISECONDS.toNanos(60));
+        metrics.recordRetries(2);
+
+        final LoadMetrics.PhaseMetrics phase = metrics.getPhase("Synapse");
+        Assert.assertSame(phase, metrics.getPhase("Synapse"));
+        Assert.assertEquals(-1, phase.getEtaSeconds());
+
+        phase.start();
+        phase.setInputBytes(100000);
+        phase.addBytesRead(100);
+        phase.addRows(15);
+        Thread.sleep(100);
+
+        // a thousandth of the input took at least 100 ms, so the rest should take at least 99.9 s
+        Assert.assertTrue(phase.getEtaSeconds() >= 99);
+        Assert.assertTrue(phase.getRowsPerSecond() > 0);
+
+        phase.finish();
+        Assert.assertEquals(0, phase.getEtaSeconds());
+
+        Assert.assertEquals(15, metrics.getStatementCount());
+        Assert.assertEquals(2, metrics.getTransactionCount());
+        Assert.assertEquals(2, metrics.getRetryCount());
+        Assert.assertEquals(50, metrics.getCommitLatencyMedianMillis());
+        Assert.assertEquals(Long.valueOf(15), metrics.getRowsByPhase().get("Synapse"));
+        Assert.assertTrue(metrics.getStatusReport().contains("Synapse"));
+        Assert.assertTrue(metrics.getHeapUsedBytes() > 0);
+
+    }
+
+    @Test
+    public void pipelinedLoadShouldRecordRowsOfPhase() throws IOException {
+
+        final Iterator<List<Integer>> batches = Arrays.asList(Arrays.asList(1, 2, 3), Arrays.asList(4, 5), Collections.<Integer>emptyList()).iterator();
+        final List<Integer> written = Collections.synchronizedList(new ArrayList<>());
+
+        new PipelinedBatchLoader<Integer>("metrics test", 1, 2).load(batches::next, written::addAll);
+
+        final LoadMetrics.PhaseMetrics phase = LoadMetrics.getInstance().getPhase("metrics test");
+        Assert.assertEquals(5, written.size());
+        Assert.assertEquals(5, phase.getRows());
+        Assert.assertTrue(phase.isFinished());
+        Assert.assertTrue(LoadMetrics.getInstance().getRowsByPhase().containsKey("metrics test"));
+
+    }
+
+    @Test
+    public void statusServerShouldServeReportAndJson() throws IOException {
+
+        final LoadMetrics metrics = new LoadMetrics();
+        metrics.getPhase("Neuron").addRows(42);
+
+        try (LoadStatusServer server = LoadStatusServer.start(0, metrics)) {
+            final String report = get(new URL("http://localhost:" + server.getPort() + "/"));
+            Assert.assertTrue(report.startsWith("Load metrics:"));
+            Assert.assertTrue(report.contains("Neuron"));
+
+            final String json = get(new URL("http://localhost:" + server.getPort() + "/status.json"));
+            Assert.assertTrue(json.contains("\"statementsPerSecond\""));
+            Assert.assertTrue(json.contains("\"rows\": 42"));
+        }
+
+    }
+
+    private static String get(final URL url) throws IOException {
+        final HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        Assert.assertEquals(200, connection.getResponseCode());
+        try (InputStream in = connection.getInputStream()) {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            final byte[] buffer = new byte[4096];
+            int count;
+            while ((count = in.read(buffer)) > 0) {
+                out.write(buffer, 0, count);
+            }
+            return new String(out.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+
+}
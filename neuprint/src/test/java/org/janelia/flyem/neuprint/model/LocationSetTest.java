@@ -0,0 +1,114 @@
+package org.janelia.flyem.neuprint.model;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.PrimitiveIterator;
+import java.util.Random;
+import java.util.Set;
+
+public class LocationSetTest {
+
+    @Test
+    public void packedLocationsShouldRoundTrip() {
+
+        long[] coordinates = {0, 1, -1, 4287, -4287, Location.MIN_COORDINATE, Location.MAX_COORDINATE};
+
+        for (long x : coordinates) {
+            for (long y : coordinates) {
+                for (long z : coordinates) {
+                    Location location = new Location(x, y, z);
+                    Assert.assertEquals(x, location.getX());
+                    Assert.assertEquals(y, location.getY());
+                    Assert.assertEquals(z, location.getZ());
+                    Assert.assertTrue(location.getPackedLocation() >= 0);
+                    Assert.assertEquals(location, Location.fromPackedLocation(location.getPackedLocation()));
+                }
+            }
+        }
+
+    }
+
+    @Test
+    public void mortonCodesShouldInterleaveOffsetCoordinates() {
+
+        final Random random = new Random(7);
+        for (int i = 0; i < 1000; i++) {
+            final long x = Location.MIN_COORDINATE + random.nextInt(1 << Location.COORDINATE_BITS);
+            final long y = Location.MIN_COORDINATE + random.nextInt(1 << Location.COORDINATE_BITS);
+            final long z = Location.MIN_COORDINATE + random.nextInt(1 << Location.COORDINATE_BITS);
+
+            long expected = 0;
+            for (int bit = Location.COORDINATE_BITS - 1; bit >= 0; bit--) {
+                expected = (expected << 3) |
+                        ((((x - Location.MIN_COORDINATE) >> bit) & 1) << 2) |
+                        ((((y - Location.MIN_COORDINATE) >> bit) & 1) << 1) |
+                        (((z - Location.MIN_COORDINATE) >> bit) & 1);
+            }
+            Assert.assertEquals(expected, Location.mortonCode(Location.pack(x, y, z)));
+        }
+
+        Assert.assertEquals(0L, Location.mortonCode(Location.pack(Location.MIN_COORDINATE, Location.MIN_COORDINATE, Location.MIN_COORDINATE)));
+        Assert.assertEquals(Long.MAX_VALUE, Location.mortonCode(Location.pack(Location.MAX_COORDINATE, Location.MAX_COORDINATE, Location.MAX_COORDINATE)));
+        Assert.assertTrue(Location.mortonCode(Location.pack(-1, 0, 0)) < Location.mortonCode(Location.pack(0, 0, 0)));
+
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectCoordinatesOutOfRange() {
+        new Location(0L, Location.MIN_COORDINATE - 1, 0L);
+    }
+
+    @Test
+    public void shouldBehaveLikeHashSet() {
+
+        Random random = new Random(13);
+        LocationSet locationSet = new LocationSet();
+        Set<Location> hashSet = new HashSet<>();
+
+        for (int i = 0; i < 20000; i++) {
+            // a small coordinate range makes repeated adds and removes common
+            Location location = new Location(random.nextInt(40) - 20, random.nextInt(40) - 20, random.nextInt(20));
+            if (random.nextInt(3) == 0) {
+                Assert.assertEquals(hashSet.remove(location), locationSet.remove(location));
+            } else {
+                Assert.assertEquals(hashSet.add(location), locationSet.add(location));
+            }
+            Assert.assertEquals(hashSet.size(), locationSet.size());
+        }
+
+        Assert.assertEquals(hashSet, locationSet);
+        Assert.assertEquals(locationSet, hashSet);
+        Assert.assertEquals(hashSet.hashCode(), locationSet.hashCode());
+        for (Location location : hashSet) {
+            Assert.assertTrue(locationSet.contains(location));
+        }
+
+        Set<Long> packedLocations = new HashSet<>();
+        PrimitiveIterator.OfLong packedIterator = locationSet.packedIterator();
+        while (packedIterator.hasNext()) {
+            Assert.assertTrue(packedLocations.add(packedIterator.nextLong()));
+        }
+        Assert.assertEquals(hashSet.size(), packedLocations.size());
+
+        locationSet.clear();
+        Assert.assertTrue(locationSet.isEmpty());
+        Assert.assertFalse(locationSet.contains(hashSet.iterator().next()));
+
+    }
+
+    @Test
+    public void shouldCopyCollection() {
+
+        LocationSet locationSet = new LocationSet(Arrays.asList(new Location(1L, 2L, 3L), new Location(1L, 2L, 3L), new Location(-4L, 5L, 6L)));
+
+        Assert.assertEquals(2, locationSet.size());
+        Assert.assertTrue(locationSet.contains(new Location(-4L, 5L, 6L)));
+        Assert.assertFalse(locationSet.contains(new Location(4L, 5L, 6L)));
+        Assert.assertFalse(locationSet.contains("1:2:3"));
+
+    }
+
+}
@@ -0,0 +1,62 @@
+package org.janelia.flyem.neuprint.model;
+
+import com.google.common.base.Stopwatch;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parses the largest test swc file repeatedly line by line into SkelNodes (as skeletons were read before they
+ * were columnar) and with {@link SwcParser}, and reports the throughput of each.
+ */
+public class SwcParserSpeedTest {
+
+    private static final String SWC_FILE = "src/test/resources/multipleRootsSkeleton.swc";
+    private static final int WARM_UP_ITERATIONS = 20;
+    private static final int ITERATIONS = 50;
+
+    @Test
+    public void reportParseThroughput() throws IOException {
+
+        final SwcParser parser = new SwcParser();
+
+        long lineByLineNodes = 0;
+        long columnarNodes = 0;
+        for (int i = 0; i < WARM_UP_ITERATIONS; i++) {
+            lineByLineNodes += SwcParserTest.parseLineByLine(SWC_FILE, 10L).size();
+            columnarNodes += parser.parse(Paths.get(SWC_FILE), 10L).getNodeCount();
+        }
+        Assert.assertEquals(lineByLineNodes, columnarNodes);
+
+        final Stopwatch lineByLineTimer = Stopwatch.createStarted();
+        for (int i = 0; i < ITERATIONS; i++) {
+            final List<SkelNode> skelNodeList = SwcParserTest.parseLineByLine(SWC_FILE, 10L);
+            lineByLineNodes += skelNodeList.size();
+        }
+        lineByLineTimer.stop();
+
+        final Stopwatch columnarTimer = Stopwatch.createStarted();
+        for (int i = 0; i < ITERATIONS; i++) {
+            columnarNodes += parser.parse(Paths.get(SWC_FILE), 10L).getNodeCount();
+        }
+        columnarTimer.stop();
+
+        final long nodesPerIteration = parser.parse(Paths.get(SWC_FILE), 10L).getNodeCount();
+        System.out.println(String.format("line by line: %d nodes/s (%s), columnar: %d nodes/s (%s)",
+                nodesPerSecond(nodesPerIteration, lineByLineTimer),
+                lineByLineTimer,
+                nodesPerSecond(nodesPerIteration, columnarTimer),
+                columnarTimer));
+
+        Assert.assertEquals(lineByLineNodes, columnarNodes);
+    }
+
+    private static long nodesPerSecond(final long nodesPerIteration, final Stopwatch timer) {
+        return nodesPerIteration * ITERATIONS * TimeUnit.SECONDS.toNanos(1) / Math.max(1, timer.elapsed(TimeUnit.NANOSECONDS));
+    }
+
+}
@@ -0,0 +1,165 @@
+package org.janelia.flyem.neuprint.model;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Tests the {@link SwcParser} class.
+ */
+public class SwcParserTest {
+
+    private static final String[] SWC_FILES = {
+            "src/test/resources/101.swc",
+            "src/test/resources/102.swc",
+            "src/test/resources/831744.swc",
+            "src/test/resources/exampleSwc.swc",
+            "src/test/resources/multipleRootsSkeleton.swc"
+    };
+
+    private static Skeleton parse(final String swc) throws IOException {
+        return new SwcParser().parse(ByteBuffer.wrap(swc.getBytes(StandardCharsets.UTF_8)), 10L, null);
+    }
+
+    /**
+     * Parses an swc file line by line into SkelNodes as Skeleton.fromSwc did before skeletons were columnar.
+     */
+    static List<SkelNode> parseLineByLine(final String filepath, final Long associatedBodyId) throws IOException {
+        final List<SkelNode> skelNodeList = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new FileReader(filepath))) {
+            String swcLine;
+            while ((swcLine = reader.readLine()) != null) {
+                if (!swcLine.startsWith("#")) {
+                    final String[] lineComponents = swcLine.split(" ");
+                    final List<Integer> location = new ArrayList<>();
+                    for (int i = 2; i < 5; i++) {
+                        int coordinate;
+                        try {
+                            coordinate = Integer.parseInt(lineComponents[i]);
+                        } catch (NumberFormatException nfe) {
+                            coordinate = Math.round(Float.parseFloat(lineComponents[i]));
+                        }
+                        location.add(coordinate);
+                    }
+                    final int parentIndex = Integer.parseInt(lineComponents[6]);
+                    final SkelNode parent = parentIndex == -1 ? null : skelNodeList.get(parentIndex - 1);
+                    final SkelNode skelNode = new SkelNode(associatedBodyId, location, Double.parseDouble(lineComponents[5]), Integer.parseInt(lineComponents[1]), parent, Integer.parseInt(lineComponents[0]));
+                    if (parent != null) {
+                        parent.addChild(skelNode);
+                    }
+                    skelNodeList.add(skelNode);
+                }
+            }
+        }
+        return skelNodeList;
+    }
+
+    @Test
+    public void shouldMatchLineByLineParsing() throws IOException {
+
+        final SwcParser parser = new SwcParser();
+
+        for (final String swcFile : SWC_FILES) {
+            final List<SkelNode> expected = parseLineByLine(swcFile, 10L);
+            final Skeleton skeleton = parser.parse(Paths.get(swcFile), 10L);
+            final List<SkelNode> actual = skeleton.getSkelNodeList();
+
+            Assert.assertEquals(swcFile, expected.size(), skeleton.getNodeCount());
+            for (int i = 0; i < expected.size(); i++) {
+                final SkelNode expectedNode = expected.get(i);
+                Assert.assertEquals(expectedNode, actual.get(i));
+                Assert.assertEquals(expectedNode.getRadius(), actual.get(i).getRadius());
+                Assert.assertEquals(expectedNode.getType(), actual.get(i).getType());
+                Assert.assertEquals(expectedNode.getParent(), actual.get(i).getParent());
+                Assert.assertEquals(expectedNode.getChildren(), actual.get(i).getChildren());
+                Assert.assertEquals(expectedNode.getSkelNodeId("test"), skeleton.getSkelNodeId("test", i));
+            }
+        }
+    }
+
+    @Test
+    public void shouldReadColumns() throws IOException {
+
+        final Skeleton skeleton = parse("# comment\n" +
+                "#${\"mutation id\": 1002248266}\n" +
+                "1 0 3107 6526 1636 24.4258 -1\r\n" +
+                "\n" +
+                "2  1\t3107.5 -6476.5 1636.49 17 1\n" +
+                "3 2 1 2 3 1e1 2");
+
+        Assert.assertEquals(3, skeleton.getNodeCount());
+        Assert.assertEquals(Long.valueOf(1002248266L), skeleton.getMutationId().orElse(null));
+
+        Assert.assertEquals(1, skeleton.getRowNumber(0));
+        Assert.assertEquals(24.4258, skeleton.getRadius(0), 0);
+        Assert.assertEquals(-1, skeleton.getParentIndex(0));
+
+        Assert.assertEquals(1, skeleton.getType(1));
+        Assert.assertEquals(3108, skeleton.getX(1));
+        Assert.assertEquals(Math.round(-6476.5f), skeleton.getY(1));
+        Assert.assertEquals(1636, skeleton.getZ(1));
+        Assert.assertEquals(17.0, skeleton.getRadius(1), 0);
+        Assert.assertEquals(0, skeleton.getParentIndex(1));
+
+        Assert.assertEquals(10.0, skeleton.getRadius(2), 0);
+        Assert.assertEquals(1, skeleton.getParentIndex(2));
+        Assert.assertEquals("test:10:1:2:3:3", skeleton.getSkelNodeId("test", 2));
+    }
+
+    @Test
+    public void shouldAllowParentAfterChild() throws IOException {
+
+        final Skeleton skeleton = parse("1 0 1 1 1 1.0 2\n2 0 2 2 2 1.0 -1\n");
+
+        Assert.assertEquals(1, skeleton.getParentIndex(0));
+        Assert.assertEquals(skeleton.getSkelNodeList().get(1), skeleton.getSkelNodeList().get(0).getParent());
+    }
+
+    @Test(expected = IOException.class)
+    public void shouldRejectMissingParent() throws IOException {
+        parse("1 0 1 1 1 1.0 -1\n2 0 2 2 2 1.0 3\n");
+    }
+
+    @Test(expected = IOException.class)
+    public void shouldRejectShortRow() throws IOException {
+        parse("1 0 1 1 1 1.0\n");
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void shouldRejectInvalidValue() throws IOException {
+        parse("1 0 1 1 x 1.0 -1\n");
+    }
+
+    @Test
+    public void shouldConvertDecimalsAsJavaDoes() throws IOException {
+
+        final Random random = new Random(42);
+        final StringBuilder swc = new StringBuilder();
+        final List<String> coordinates = new ArrayList<>();
+        final List<String> radii = new ArrayList<>();
+        for (int i = 0; i < 10000; i++) {
+            final String coordinate = String.format("%d.%0" + (1 + random.nextInt(6)) + "d", random.nextInt(100000) - 50000, random.nextInt(1000));
+            final String radius = String.format("%d.%0" + (1 + random.nextInt(12)) + "d", random.nextInt(1000), Math.abs(random.nextLong() % 1000000000000L));
+            coordinates.add(coordinate);
+            radii.add(radius);
+            swc.append(i + 1).append(" 0 ").append(coordinate).append(" 0 0 ").append(radius).append(" -1\n");
+        }
+
+        final Skeleton skeleton = parse(swc.toString());
+
+        for (int i = 0; i < coordinates.size(); i++) {
+            Assert.assertEquals(coordinates.get(i), Math.round(Float.parseFloat(coordinates.get(i))), skeleton.getX(i));
+            Assert.assertEquals(radii.get(i), Double.parseDouble(radii.get(i)), skeleton.getRadius(i), 0);
+        }
+    }
+
+}